@@ -1,24 +1,27 @@
 package com.stockmarket.app.config;
 
+import com.stockmarket.app.service.KafkaConsumerService;
+import com.stockmarket.app.service.broker.InMemoryKafkaBroker;
+import com.stockmarket.app.service.broker.InMemoryProducer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
-import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
- * Dummy Kafka configuration that provides a minimal Kafka setup
- * to allow the application to run without a real Kafka server.
- * 
- * This configuration creates a Kafka producer factory that doesn't actually 
- * connect to a Kafka broker but allows the application to function without errors.
+ * Kafka configuration for development mode, which runs without a Kafka server.
+ *
+ * Records go to an InMemoryKafkaBroker with the same topics, partitions and keys as the
+ * real cluster, and its listener threads feed the KafkaConsumerService the way the
+ * @KafkaListener containers of KafkaConfig do. The whole pipeline (simulator, outbox,
+ * relay, producer, consumer) therefore runs in dev and in load tests, at in-memory speed.
  */
 @Configuration
 @Profile("dev")
@@ -26,31 +29,79 @@ public class DummyKafkaConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(DummyKafkaConfig.class);
 
+    @Value("${kafka.topics.stock-price-updates:stock-price-updates}")
+    private String stockPriceUpdatesTopic;
+
+    @Value("${kafka.topics.stock-transactions:stock-transactions}")
+    private String stockTransactionsTopic;
+
+    @Value("${spring.kafka.consumer.group-id:stockmarket-group}")
+    private String consumerGroupId;
+
+    @Value("${kafka.topics.partitions:3}")
+    private int partitions;
+
+    @Value("${kafka.consumer.concurrency:${kafka.topics.partitions:3}}")
+    private int consumerConcurrency;
+
+    @Value("${kafka.consumer.max-poll-records:2000}")
+    private int maxPollRecords;
+
+    // Records a partition queue holds before producers block, and how long they block before the send fails
+    @Value("${kafka.in-memory.partition-capacity:10000}")
+    private int partitionCapacity;
+
+    @Value("${kafka.in-memory.max-block-ms:5000}")
+    private long maxBlockMillis;
+
+    // Deliveries of a batch the listener fails on before it is skipped, and the pause between them
+    @Value("${kafka.in-memory.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${kafka.in-memory.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    /**
+     * Creates the in-memory broker that stands in for the Kafka cluster.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public InMemoryKafkaBroker inMemoryKafkaBroker(MeterRegistry meterRegistry) {
+        logger.info("Creating in-memory Kafka broker for development mode ({} partitions per topic)", partitions);
+        return new InMemoryKafkaBroker(meterRegistry, partitions, partitionCapacity, maxBlockMillis,
+                maxAttempts, retryBackoffMillis);
+    }
+
     /**
-     * Creates a producer factory that doesn't actually connect to Kafka.
-     * We configure it with minimal properties to avoid connection errors.
+     * Creates a producer factory whose producer appends to the in-memory broker.
      */
     @Bean
     @Primary
-    public ProducerFactory<String, Object> dummyProducerFactory() {
-        logger.info("Creating mock Kafka producer factory for development mode");
-        Map<String, Object> props = new HashMap<>();
-        // Set bootstrap servers to a non-existent server to avoid connection attempts
-        props.put("bootstrap.servers", "localhost:9092");
-        // Set buffer memory to minimal to avoid allocating unnecessary resources
-        props.put("buffer.memory", 1);
-        
-        return new DefaultKafkaProducerFactory<>(props);
+    public ProducerFactory<String, Object> dummyProducerFactory(InMemoryKafkaBroker broker) {
+        InMemoryProducer producer = new InMemoryProducer(broker);
+        return () -> producer;
     }
 
     /**
-     * Creates a KafkaTemplate that won't actually connect to Kafka.
-     * In dev mode, the KafkaProducerService will handle exceptions gracefully.
+     * Creates the KafkaTemplate used by the KafkaProducerService.
      */
     @Bean
     @Primary
-    public KafkaTemplate<String, Object> dummyKafkaTemplate() {
-        logger.info("Creating mock Kafka template for development mode");
-        return new KafkaTemplate<>(dummyProducerFactory());
+    public KafkaTemplate<String, Object> dummyKafkaTemplate(ProducerFactory<String, Object> dummyProducerFactory) {
+        return new KafkaTemplate<>(dummyProducerFactory);
+    }
+
+    /**
+     * Subscribes the KafkaConsumerService to both topics once every bean exists,
+     * before the scheduled tasks start sending.
+     */
+    @Bean
+    public SmartInitializingSingleton inMemoryKafkaListeners(InMemoryKafkaBroker broker,
+                                                            KafkaConsumerService consumerService) {
+        return () -> {
+            broker.subscribe(stockPriceUpdatesTopic, consumerGroupId, consumerConcurrency, maxPollRecords,
+                    consumerService::consumeStockPriceUpdates);
+            broker.subscribe(stockTransactionsTopic, consumerGroupId, consumerConcurrency, maxPollRecords,
+                    consumerService::consumeTransactions);
+        };
     }
-} 
\ No newline at end of file
+}
@@ -12,7 +12,8 @@ import org.slf4j.LoggerFactory;
  * Dummy Kafka topic configuration for development mode.
  * 
  * This class provides mock beans that replace the real Kafka topic beans
- * defined in KafkaConfig for the development environment.
+ * defined in KafkaConfig for the development environment. The topics exist
+ * in the InMemoryKafkaBroker as soon as something is sent to them.
  */
 @Configuration
 @Profile("dev")
@@ -34,9 +35,8 @@ public class DummyKafkaTopicConfig {
      */
     @Bean
     public TopicInfo mockTopicInfo() {
-        logger.info("In development mode - not creating Kafka topics");
-        logger.info("Would create topic: {}", stockPriceUpdatesTopic);
-        logger.info("Would create topic: {}", stockTransactionsTopic);
+        logger.info("In development mode - topics {} and {} live in the in-memory Kafka broker",
+                stockPriceUpdatesTopic, stockTransactionsTopic);
         
         return new TopicInfo(stockPriceUpdatesTopic, stockTransactionsTopic);
     }
@@ -1,32 +1,54 @@
 package com.stockmarket.app.config;
 
+import com.stockmarket.app.enums.SerializationFormat;
+import com.stockmarket.app.service.serialization.EventDeserializer;
+import com.stockmarket.app.service.serialization.EventSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 /**
  * Configuration class for Kafka setup.
- * This class configures Kafka producer and creates required topics.
+ * This class configures Kafka producer and consumer and creates required topics.
+ *
+ * Record values are written by EventSerializer in the format selected with
+ * kafka.serialization.format (json or binary) and read by EventDeserializer, which
+ * accepts both. Switch the consumers first, then the producers.
  * 
  * Only active when not using the 'dev' profile.
  */
 @Configuration
+@EnableKafka
 @Profile("!dev")
 public class KafkaConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(KafkaConfig.class);
+
     @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
     private String bootstrapServers;
 
@@ -36,6 +58,70 @@ public class KafkaConfig {
     @Value("${kafka.topics.stock-transactions:stock-transactions}")
     private String stockTransactionsTopic;
 
+    @Value("${spring.kafka.consumer.group-id:stockmarket-group}")
+    private String consumerGroupId;
+
+    @Value("${kafka.topics.partitions:3}")
+    private int partitions;
+
+    // One consumer thread per partition; more would sit idle
+    @Value("${kafka.consumer.concurrency:${kafka.topics.partitions:3}}")
+    private int consumerConcurrency;
+
+    @Value("${kafka.consumer.max-poll-records:2000}")
+    private int maxPollRecords;
+
+    @Value("${kafka.serialization.format:json}")
+    private String serializationFormat;
+
+    @Value("${kafka.producer.profile:balanced}")
+    private String producerProfile;
+
+    // Optional overrides of the values taken from the producer profile
+    @Value("${kafka.producer.linger-ms:#{null}}")
+    private Integer lingerMs;
+
+    @Value("${kafka.producer.batch-size:#{null}}")
+    private Integer batchSize;
+
+    @Value("${kafka.producer.compression-type:#{null}}")
+    private String compressionType;
+
+    /**
+     * Producer batching presets, selected with kafka.producer.profile.
+     *
+     * The producer groups records per partition into batches of up to batch.size bytes
+     * and waits up to linger.ms for a batch to fill. Larger batches mean fewer requests
+     * and better compression at the cost of a few milliseconds of delivery latency.
+     */
+    public enum ProducerProfile {
+        /** Send every record straight away. */
+        LATENCY(0, 16 * 1024, "none"),
+        /** A few milliseconds of batching; the default. */
+        BALANCED(5, 64 * 1024, "lz4"),
+        /** Large, well compressed batches for bulk price streams. */
+        THROUGHPUT(20, 256 * 1024, "zstd");
+
+        private final int lingerMs;
+        private final int batchSize;
+        private final String compressionType;
+
+        ProducerProfile(int lingerMs, int batchSize, String compressionType) {
+            this.lingerMs = lingerMs;
+            this.batchSize = batchSize;
+            this.compressionType = compressionType;
+        }
+
+        public static ProducerProfile fromName(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unknown kafka.producer.profile '" + name
+                        + "', expected latency, balanced or throughput");
+            }
+        }
+    }
+
     /**
      * Configures Kafka Admin client with bootstrap servers.
      * This is used for creating topics.
@@ -52,8 +138,8 @@ public class KafkaConfig {
      */
     @Bean
     public NewTopic stockPriceUpdatesTopic() {
-        // Create topic with 3 partitions and replication factor of 1
-        return new NewTopic(stockPriceUpdatesTopic, 3, (short) 1);
+        // Create topic with the configured partitions and replication factor of 1
+        return new NewTopic(stockPriceUpdatesTopic, partitions, (short) 1);
     }
 
     /**
@@ -61,31 +147,101 @@ public class KafkaConfig {
      */
     @Bean
     public NewTopic stockTransactionsTopic() {
-        // Create topic with 3 partitions and replication factor of 1
-        return new NewTopic(stockTransactionsTopic, 3, (short) 1);
+        // Create topic with the configured partitions and replication factor of 1
+        return new NewTopic(stockTransactionsTopic, partitions, (short) 1);
     }
 
     /**
      * Configures the producer factory with serializers and other settings.
      */
     @Bean
-    public ProducerFactory<String, Object> producerFactory() {
+    public ProducerFactory<String, Object> producerFactory(MeterRegistry meterRegistry) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         // Additional producer configurations for reliability
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 10);
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        configProps.putAll(batchingProperties(ProducerProfile.fromName(producerProfile),
+                lingerMs, batchSize, compressionType));
+        EventSerializer valueSerializer = new EventSerializer(
+                SerializationFormat.fromName(serializationFormat), new JsonSerializer<>(), meterRegistry);
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer);
+    }
+
+    /**
+     * The linger, batch size and compression settings of a profile, with the configured overrides applied.
+     */
+    static Map<String, Object> batchingProperties(ProducerProfile profile, Integer lingerMs,
+                                                  Integer batchSize, String compressionType) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs != null ? lingerMs : profile.lingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize != null ? batchSize : profile.batchSize);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG,
+                compressionType != null ? compressionType : profile.compressionType);
+        return props;
     }
 
     /**
      * Creates the Kafka template for sending messages.
      */
     @Bean
-    public KafkaTemplate<String, Object> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public KafkaTemplate<String, Object> kafkaTemplate(ProducerFactory<String, Object> producerFactory) {
+        return new KafkaTemplate<>(producerFactory);
+    }
+
+    /**
+     * Configures the consumer factory; values may be JSON or binary, whatever the producer format.
+     */
+    @Bean
+    public ConsumerFactory<String, Object> consumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProperties(), new StringDeserializer(),
+                new EventDeserializer(new JsonDeserializer<>()));
+    }
+
+    private Map<String, Object> consumerProperties() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, consumerGroupId);
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        // Only used for JSON payloads, which name their class in a header
+        configProps.put(JsonDeserializer.TRUSTED_PACKAGES, "com.stockmarket.app.dto,com.stockmarket.app.model");
+        return configProps;
+    }
+
+    /**
+     * Creates the container factory used by the @KafkaListener methods.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
+            ConsumerFactory<String, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(consumerConcurrency);
+        return factory;
+    }
+
+    /**
+     * Container factory for the batch listeners.
+     *
+     * Every poll (up to kafka.consumer.max-poll-records records) is handed to the listener
+     * as one list, and the offsets are committed once the listener has returned. Each of the
+     * kafka.consumer.concurrency consumers owns a share of the partitions.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchListenerContainerFactory() {
+        if (consumerConcurrency > partitions) {
+            logger.warn("kafka.consumer.concurrency {} is above the {} topic partitions; the extra consumers stay idle",
+                    consumerConcurrency, partitions);
+        }
+        Map<String, Object> configProps = consumerProperties();
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(configProps, new StringDeserializer(),
+                new EventDeserializer(new JsonDeserializer<>())));
+        factory.setConcurrency(consumerConcurrency);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        return factory;
     }
-} 
\ No newline at end of file
+}
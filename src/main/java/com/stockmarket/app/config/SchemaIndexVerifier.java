@@ -0,0 +1,115 @@
+package com.stockmarket.app.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks at startup that the indexes created by the Flyway migrations exist.
+ *
+ * The schema is owned by the migrations in db/migration/{vendor}, and Hibernate only
+ * validates the tables and columns, not the indexes. Without this check a missing
+ * migration or a hand-made schema would silently fall back to sequential scans.
+ *
+ * Missing indexes are logged as a warning, or fail the startup when
+ * schema.verify-indexes.fail-on-missing is true (as in the prod profile).
+ */
+@Component
+@Slf4j
+public class SchemaIndexVerifier {
+
+    /**
+     * Expected indexes per table; see V2__query_indexes.sql and V6__position_snapshots.sql.
+     */
+    static final Map<String, List<String>> EXPECTED_INDEXES = new LinkedHashMap<>();
+
+    static {
+        EXPECTED_INDEXES.put("stocks", List.of(
+                "ux_stocks_symbol", "ix_stocks_sector_industry", "ix_stocks_industry",
+                "ix_stocks_volume", "ix_stocks_change_percent"));
+        EXPECTED_INDEXES.put("transactions", List.of(
+                "ix_transactions_symbol_timestamp", "ix_transactions_type_timestamp", "ix_transactions_timestamp",
+                "ix_transactions_portfolio_id"));
+        EXPECTED_INDEXES.put("portfolios", List.of("ix_portfolios_username"));
+        EXPECTED_INDEXES.put("portfolio_items", List.of(
+                "ix_portfolio_items_portfolio", "ix_portfolio_items_symbol"));
+    }
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final boolean failOnMissing;
+
+    public SchemaIndexVerifier(DataSource dataSource,
+                               @Value("${schema.verify-indexes.enabled:true}") boolean enabled,
+                               @Value("${schema.verify-indexes.fail-on-missing:false}") boolean failOnMissing) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.failOnMissing = failOnMissing;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() throws SQLException {
+        if (!enabled) {
+            return;
+        }
+        List<String> missing = findMissingIndexes();
+        if (missing.isEmpty()) {
+            log.info("Schema index check passed ({} tables)", EXPECTED_INDEXES.size());
+            return;
+        }
+        String message = "Missing database indexes: " + missing + " (have the Flyway migrations run?)";
+        if (failOnMissing) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+
+    /**
+     * The expected indexes that do not exist, as table.index.
+     */
+    public List<String> findMissingIndexes() throws SQLException {
+        List<String> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (Map.Entry<String, List<String>> entry : EXPECTED_INDEXES.entrySet()) {
+                Set<String> existing = indexNames(metaData, connection.getSchema(), entry.getKey());
+                for (String index : entry.getValue()) {
+                    if (!existing.contains(index)) {
+                        missing.add(entry.getKey() + "." + index);
+                    }
+                }
+            }
+        }
+        return missing;
+    }
+
+    private Set<String> indexNames(DatabaseMetaData metaData, String schema, String table) throws SQLException {
+        // Unquoted identifiers are stored upper case by H2 and lower case by PostgreSQL
+        String storedTable = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        Set<String> names = new HashSet<>();
+        try (ResultSet indexes = metaData.getIndexInfo(null, schema, storedTable, false, true)) {
+            while (indexes.next()) {
+                String name = indexes.getString("INDEX_NAME");
+                if (name != null) {
+                    names.add(name.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return names;
+    }
+}
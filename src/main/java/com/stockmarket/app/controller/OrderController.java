@@ -0,0 +1,102 @@
+package com.stockmarket.app.controller;
+
+import com.stockmarket.app.dto.OrderRequest;
+import com.stockmarket.app.dto.OrderResultDTO;
+import com.stockmarket.app.service.StockService;
+import com.stockmarket.app.service.matching.MatchingEngine;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import javax.persistence.EntityNotFoundException;
+import javax.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST Controller for placing orders with the matching engine.
+ *
+ * Orders trade against the order book of their stock; every trade is stored as a
+ * BUY and a SELL transaction and moves the stock price to the trade price.
+ */
+@RestController
+@RequestMapping("/api/orders")
+@Tag(name = "Order", description = "Order placement and matching APIs")
+public class OrderController {
+
+    private final MatchingEngine matchingEngine;
+    private final StockService stockService;
+
+    @Autowired
+    public OrderController(MatchingEngine matchingEngine, StockService stockService) {
+        this.matchingEngine = matchingEngine;
+        this.stockService = stockService;
+    }
+
+    /**
+     * Place an order
+     *
+     * @param request the order
+     * @return the order after matching with HTTP 201 status
+     */
+    @PostMapping
+    @Operation(summary = "Place an order", description = "Matches a limit or market order against the order book of its stock")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Order matched", content = @Content(schema = @Schema(implementation = OrderResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid order"),
+            @ApiResponse(responseCode = "404", description = "Stock not found")
+    })
+    public ResponseEntity<OrderResultDTO> placeOrder(
+            @Parameter(description = "Order", required = true) @Valid @RequestBody OrderRequest request) {
+        stockService.getStockBySymbol(request.getStockSymbol());
+        OrderResultDTO result = matchingEngine.submit(request).join();
+        return new ResponseEntity<>(result, HttpStatus.CREATED);
+    }
+
+    /**
+     * Place many orders at once, e.g. for load tests
+     *
+     * @param requests the orders; orders of one stock are matched in list order
+     * @return the orders after matching, in request order, with HTTP 200 status
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Place orders in bulk", description = "Matches a list of orders with one task per matching shard")
+    @ApiResponse(responseCode = "200", description = "Orders matched")
+    public ResponseEntity<List<OrderResultDTO>> placeOrders(@RequestBody List<OrderRequest> requests) {
+        requests.stream()
+                .map(OrderRequest::getStockSymbol)
+                .distinct()
+                .forEach(symbol -> {
+                    if (symbol != null) {
+                        stockService.getStockBySymbol(symbol);
+                    }
+                });
+        return ResponseEntity.ok(matchingEngine.submitAll(requests));
+    }
+
+    /**
+     * Cancel a resting order
+     *
+     * @param symbol  the stock symbol of the order
+     * @param orderId the order ID
+     * @return the cancelled order with HTTP 200 status, or 404 if it is not resting
+     */
+    @DeleteMapping("/{symbol}/{orderId}")
+    @Operation(summary = "Cancel an order", description = "Removes what is left of a resting order from the order book")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Order cancelled", content = @Content(schema = @Schema(implementation = OrderResultDTO.class))),
+            @ApiResponse(responseCode = "404", description = "No resting order with this ID")
+    })
+    public ResponseEntity<OrderResultDTO> cancelOrder(@PathVariable String symbol, @PathVariable Long orderId) {
+        OrderResultDTO cancelled = matchingEngine.cancel(symbol, orderId).join()
+                .orElseThrow(() -> new EntityNotFoundException("No resting order " + orderId + " for " + symbol));
+        return ResponseEntity.ok(cancelled);
+    }
+}
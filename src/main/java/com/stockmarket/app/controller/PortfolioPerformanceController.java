@@ -1,30 +1,70 @@
 package com.stockmarket.app.controller;
 
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import com.stockmarket.app.dto.PortfolioPerformanceDTO;
+import com.stockmarket.app.service.PortfolioPerformanceService;
+import javax.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
 
 /**
- * >>>>>>>>>>>
- * QUIZ 10: Advanced Features
- * 
- * Your task:
- * 1. Implement a portfolio performance calculation:
- *    - Create a method to calculate the total value of stocks in a portfolio
- *    - Create an endpoint to return portfolio performance statistics
- *    - Integrate with the existing stock price functionality
- * 
- * 2. Features to include:
- *    - Calculate current portfolio value using the latest stock prices
- *    - Calculate daily/weekly/monthly gains/losses
- *    - Calculate portfolio diversity (percentage allocation per sector)
- *    - Add appropriate error handling
- * 
- * >>>>>>>>>>>
+ * REST Controller for portfolio performance.
+ *
+ * Demonstrates:
+ * 1. Optional date range parameters
+ * 2. Batch requests over many resources
+ * 3. Exception handling
  */
 @RestController
 @RequestMapping("/api/portfolios/performance")
 public class PortfolioPerformanceController {
-    
-    // TODO: Implement your solution here
-    
-} 
\ No newline at end of file
+
+    private final PortfolioPerformanceService performanceService;
+
+    @Autowired
+    public PortfolioPerformanceController(PortfolioPerformanceService performanceService) {
+        this.performanceService = performanceService;
+    }
+
+    /**
+     * Get the performance of a portfolio
+     *
+     * HTTP GET /api/portfolios/performance/1?from=2024-01-01&to=2024-12-31
+     *
+     * @param portfolioId the portfolio ID
+     * @param from the first day, by default the day of the portfolio's first trade
+     * @param to the last day, by default today
+     * @return the performance with HTTP 200 status, or 404 if the portfolio has no trades
+     */
+    @GetMapping("/{portfolioId}")
+    public ResponseEntity<PortfolioPerformanceDTO> getPerformance(
+            @PathVariable Long portfolioId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        PortfolioPerformanceDTO performance = performanceService.getPerformance(portfolioId, from, to)
+                .orElseThrow(() -> new EntityNotFoundException("No trades found for portfolio: " + portfolioId));
+        return ResponseEntity.ok(performance);
+    }
+
+    /**
+     * Get the performance of many portfolios over the same window
+     *
+     * HTTP GET /api/portfolios/performance?ids=1,2,3&from=2024-01-01
+     *
+     * @param ids the portfolio IDs
+     * @param from the first day, by default the day of each portfolio's first trade
+     * @param to the last day, by default today
+     * @return the performance of each portfolio that has trades with HTTP 200 status
+     */
+    @GetMapping
+    public ResponseEntity<List<PortfolioPerformanceDTO>> getPerformances(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(performanceService.getPerformance(ids, from, to));
+    }
+}
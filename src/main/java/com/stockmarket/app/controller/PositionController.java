@@ -0,0 +1,56 @@
+package com.stockmarket.app.controller;
+
+import com.stockmarket.app.dto.PositionDTO;
+import com.stockmarket.app.service.positions.PositionProjection;
+import javax.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST Controller for portfolio positions.
+ * 
+ * Demonstrates:
+ * 1. Serving a projection that is folded from the transactions ledger instead of stored as rows
+ * 2. Rebuilding a projection from its latest snapshot
+ * 3. Exception handling
+ */
+@RestController
+@RequestMapping("/api/positions")
+public class PositionController {
+
+    private final PositionProjection positionProjection;
+
+    @Autowired
+    public PositionController(PositionProjection positionProjection) {
+        this.positionProjection = positionProjection;
+    }
+
+    /**
+     * Get the positions of a portfolio
+     * 
+     * @param portfolioId the portfolio ID
+     * @return one position per traded stock with HTTP 200 status, or 404 if the portfolio has no transactions
+     */
+    @GetMapping("/{portfolioId}")
+    public ResponseEntity<List<PositionDTO>> getPositions(@PathVariable Long portfolioId) {
+        List<PositionDTO> positions = positionProjection.getPositions(portfolioId)
+                .orElseThrow(() -> new EntityNotFoundException("No transactions found for portfolio: " + portfolioId));
+        return ResponseEntity.ok(positions);
+    }
+
+    /**
+     * Rebuild the positions of a portfolio from its latest snapshot and the transactions after it
+     * 
+     * @param portfolioId the portfolio ID
+     * @return the rebuilt positions with HTTP 200 status, or 404 if the portfolio has no transactions
+     */
+    @PostMapping("/{portfolioId}/rebuild")
+    public ResponseEntity<List<PositionDTO>> rebuildPositions(@PathVariable Long portfolioId) {
+        List<PositionDTO> positions = positionProjection.rebuild(portfolioId)
+                .orElseThrow(() -> new EntityNotFoundException("No transactions found for portfolio: " + portfolioId));
+        return ResponseEntity.ok(positions);
+    }
+}
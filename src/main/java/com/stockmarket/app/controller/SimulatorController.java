@@ -2,6 +2,7 @@ package com.stockmarket.app.controller;
 
 import com.stockmarket.app.service.StockPriceSimulatorService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -26,11 +27,15 @@ public class SimulatorController {
      * Manually trigger a stock price simulation run.
      * This is useful for testing the simulator without waiting for the scheduled task.
      * 
-     * @return Response indicating that the simulation was triggered
+     * @return Response indicating that the simulation was triggered,
+     *         or 409 CONFLICT if a simulation cycle is already running
      */
     @PostMapping("/trigger")
     public ResponseEntity<String> triggerSimulation() {
-        simulatorService.simulateStockPriceChanges();
+        if (!simulatorService.simulateStockPriceChanges()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("A stock price simulation cycle is already running, or the outbox backlog is full");
+        }
         return ResponseEntity.ok("Stock price simulation triggered successfully");
     }
 } 
\ No newline at end of file
@@ -1,18 +1,33 @@
 package com.stockmarket.app.controller;
 
+import com.stockmarket.app.dto.CandleDTO;
+import com.stockmarket.app.dto.OrderBookDepthDTO;
+import com.stockmarket.app.dto.StockChangesDTO;
 import com.stockmarket.app.dto.StockCreateRequest;
 import com.stockmarket.app.dto.StockDTO;
 import com.stockmarket.app.dto.StockUpdateRequest;
 import com.stockmarket.app.service.StockService;
+import com.stockmarket.app.service.candles.CandleAggregator;
+import com.stockmarket.app.service.candles.CandleInterval;
+import com.stockmarket.app.service.history.TickHistoryStore;
+import com.stockmarket.app.service.matching.MatchingEngine;
+import com.stockmarket.app.service.stream.DepthStreamService;
+import com.stockmarket.app.service.stream.PriceStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -47,6 +62,11 @@ public class StockController {
 
     // Dependency injected through constructor (RequiredArgsConstructor)
     private final StockService stockService;
+    private final TickHistoryStore tickHistoryStore;
+    private final CandleAggregator candleAggregator;
+    private final PriceStreamService priceStreamService;
+    private final MatchingEngine matchingEngine;
+    private final DepthStreamService depthStreamService;
 
     /**
      * Create a new stock.
@@ -95,17 +115,148 @@ public class StockController {
         return ResponseEntity.ok(stock);
     }
 
+    /**
+     * Get the recorded price ticks of a stock between two times.
+     * 
+     * HTTP GET /api/stocks/symbol/{symbol}/ticks?from=2024-01-01T09:30:00&to=2024-01-01T16:00:00
+     * 
+     * The ticks are read from the memory-mapped tick history and streamed as a JSON array
+     * while the response is written (StreamingResponseBody), so large ranges are served
+     * without going through JPA or holding the whole result in memory.
+     */
+    @GetMapping("/symbol/{symbol}/ticks")
+    @Operation(summary = "Get the price tick history of a stock")
+    public ResponseEntity<StreamingResponseBody> getTicks(
+            @PathVariable String symbol,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long limit
+    ) {
+        log.info("REST request to get ticks for {} from {} to {}", symbol, from, to);
+        LocalDateTime start = from != null ? from : LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        long maxTicks = limit != null ? limit : Long.MAX_VALUE;
+        // Validate before streaming starts, while a 400 can still be returned
+        String key = TickHistoryStore.normalize(symbol);
+        StreamingResponseBody body = out -> tickHistoryStore.writeTicksAsJson(key, start, end, maxTicks, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Get OHLCV candles of a stock for charting.
+     * 
+     * HTTP GET /api/stocks/symbol/{symbol}/candles?interval=5m&limit=100
+     * 
+     * The bars are built incrementally from the price updates, so this is a lookup
+     * and never recomputes bars from the raw ticks. The last bar may still be open.
+     */
+    @GetMapping("/symbol/{symbol}/candles")
+    @Operation(summary = "Get OHLCV candles of a stock (interval 1m, 5m, 1h or 1d)")
+    public ResponseEntity<List<CandleDTO>> getCandles(
+            @PathVariable String symbol,
+            @RequestParam(defaultValue = "1m") String interval,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        log.info("REST request to get {} candles for {}", interval, symbol);
+        List<CandleDTO> candles = candleAggregator.getCandles(symbol, CandleInterval.fromCode(interval), limit);
+        return ResponseEntity.ok(candles);
+    }
+
+    /**
+     * Get the market depth of a stock from its order book.
+     * 
+     * HTTP GET /api/stocks/symbol/{symbol}/depth?levels=10
+     * 
+     * Returns the best bid and ask levels with the open quantity and number of orders at
+     * each price, and the sequence number of the book to line it up with the delta stream.
+     */
+    @GetMapping("/symbol/{symbol}/depth")
+    @Operation(summary = "Get the order book depth of a stock")
+    public ResponseEntity<OrderBookDepthDTO> getDepth(
+            @PathVariable String symbol,
+            @RequestParam(defaultValue = "10") int levels
+    ) {
+        log.info("REST request to get {} depth levels for {}", levels, symbol);
+        String bookSymbol = stockService.getStockBySymbol(symbol).getSymbol();
+        return ResponseEntity.ok(matchingEngine.depth(bookSymbol, levels).join());
+    }
+
+    /**
+     * Subscribe to the order book changes of a stock with Server-Sent Events.
+     * 
+     * HTTP GET /api/stocks/symbol/{symbol}/depth/stream
+     * 
+     * Each change arrives as a "delta" event holding an OrderBookDeltaDTO with the new
+     * quantity of every changed level. Open the stream first, then get the depth snapshot
+     * and apply the deltas with a higher sequence to it. Returns 503 when the subscriber
+     * limit is reached.
+     */
+    @GetMapping(value = "/symbol/{symbol}/depth/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream order book depth changes (Server-Sent Events)")
+    public ResponseEntity<SseEmitter> streamDepth(@PathVariable String symbol) {
+        log.info("REST request to stream depth changes for {}", symbol);
+        String bookSymbol = stockService.getStockBySymbol(symbol).getSymbol();
+        return depthStreamService.subscribe(bookSymbol)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    /**
+     * Subscribe to live price updates with Server-Sent Events.
+     * 
+     * HTTP GET /api/stocks/stream?symbols=AAPL,MSFT
+     * 
+     * Each update arrives as a "price" event holding a StockPriceUpdateDTO. Without the
+     * symbols parameter every symbol is streamed. A client that reads slowly only gets
+     * the latest price of each symbol. Returns 503 when the subscriber limit is reached.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream live price updates (Server-Sent Events)")
+    public ResponseEntity<SseEmitter> streamPrices(@RequestParam(required = false) List<String> symbols) {
+        log.info("REST request to stream prices for {}", symbols == null ? "all symbols" : symbols);
+        return priceStreamService.subscribe(symbols == null ? List.of() : symbols)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
     /**
      * Get all stocks.
      * 
      * HTTP GET /api/stocks
+     * 
+     * The response carries the catalogue version as its ETag. A client that sends it back
+     * in If-None-Match gets 304 Not Modified (and no body) while nothing has changed.
      */
     @GetMapping
     @Operation(summary = "Get all stocks")
-    public ResponseEntity<List<StockDTO>> getAllStocks() {
+    public ResponseEntity<List<StockDTO>> getAllStocks(WebRequest webRequest) {
         log.info("REST request to get all stocks");
+        String etag = "\"" + stockService.getCatalogVersion() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            // Spring has already set the 304 status and the ETag header
+            return null;
+        }
         List<StockDTO> stocks = stockService.getAllStocks();
-        return ResponseEntity.ok(stocks);
+        return ResponseEntity.ok().eTag(etag).body(stocks);
+    }
+
+    /**
+     * Get the stocks that changed since a catalogue version.
+     * 
+     * HTTP GET /api/stocks/changes?since={version}
+     * 
+     * Pass the version from the previous response (or the ETag of GET /api/stocks) as since.
+     * If the version is unknown, for example after a restart or when it came from another
+     * instance, every stock is returned with full=true.
+     */
+    @GetMapping("/changes")
+    @Operation(summary = "Get the stocks that changed since a catalogue version")
+    public ResponseEntity<StockChangesDTO> getChanges(@RequestParam String since) {
+        log.info("REST request to get stock changes since version {}", since);
+        return ResponseEntity.ok(stockService.getChangesSince(since));
     }
 
     /**
@@ -1,7 +1,7 @@
 package com.stockmarket.app.controller;
 
 import com.stockmarket.app.dto.StockSummaryDTO;
-import com.stockmarket.app.repository.StockSummaryRepository;
+import com.stockmarket.app.service.summary.StockSummaryAggregate;
 import javax.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -13,7 +13,7 @@ import java.util.List;
  * REST Controller for stock summary operations.
  * 
  * Demonstrates:
- * 1. Using a custom repository directly in a controller (without a service layer)
+ * 1. Serving aggregates that are maintained in memory instead of queried per request
  * 2. Returning DTOs instead of entities
  * 3. Exception handling
  */
@@ -21,11 +21,11 @@ import java.util.List;
 @RequestMapping("/api/stock-summaries")
 public class StockSummaryController {
 
-    private final StockSummaryRepository stockSummaryRepository;
+    private final StockSummaryAggregate stockSummaryAggregate;
 
     @Autowired
-    public StockSummaryController(StockSummaryRepository stockSummaryRepository) {
-        this.stockSummaryRepository = stockSummaryRepository;
+    public StockSummaryController(StockSummaryAggregate stockSummaryAggregate) {
+        this.stockSummaryAggregate = stockSummaryAggregate;
     }
 
     /**
@@ -35,7 +35,7 @@ public class StockSummaryController {
      */
     @GetMapping
     public ResponseEntity<List<StockSummaryDTO>> getAllStockSummaries() {
-        List<StockSummaryDTO> summaries = stockSummaryRepository.getStockSummaries();
+        List<StockSummaryDTO> summaries = stockSummaryAggregate.getSummaries();
         return ResponseEntity.ok(summaries);
     }
 
@@ -47,11 +47,20 @@ public class StockSummaryController {
      */
     @GetMapping("/{symbol}")
     public ResponseEntity<StockSummaryDTO> getStockSummary(@PathVariable String symbol) {
-        try {
-            StockSummaryDTO summary = stockSummaryRepository.getStockSummaryBySymbol(symbol);
-            return ResponseEntity.ok(summary);
-        } catch (Exception e) {
-            throw new EntityNotFoundException("No summary found for stock symbol: " + symbol);
-        }
+        StockSummaryDTO summary = stockSummaryAggregate.getSummary(symbol)
+                .orElseThrow(() -> new EntityNotFoundException("No summary found for stock symbol: " + symbol));
+        return ResponseEntity.ok(summary);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Rebuild all summaries from the transactions table, e.g. after transactions
+     * were changed directly in the database
+     * 
+     * @return the rebuilt summaries with HTTP 200 status
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<List<StockSummaryDTO>> rebuildStockSummaries() {
+        stockSummaryAggregate.rebuild();
+        return ResponseEntity.ok(stockSummaryAggregate.getSummaries());
+    }
+}
@@ -1,10 +1,13 @@
 package com.stockmarket.app.controller;
 
+import com.stockmarket.app.dto.TransactionBatchResultDTO;
 import com.stockmarket.app.dto.TransactionCreateRequest;
 import com.stockmarket.app.dto.TransactionDTO;
 import com.stockmarket.app.dto.TransactionUpdateRequest;
+import com.stockmarket.app.enums.ExportFormat;
 import com.stockmarket.app.enums.TransactionType;
 import com.stockmarket.app.service.TransactionService;
+import com.stockmarket.app.service.ingest.TransactionBatchImporter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,10 +17,17 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -31,10 +41,12 @@ import java.util.List;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final TransactionBatchImporter batchImporter;
 
     @Autowired
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, TransactionBatchImporter batchImporter) {
         this.transactionService = transactionService;
+        this.batchImporter = batchImporter;
     }
 
     /**
@@ -55,6 +67,24 @@ public class TransactionController {
         return new ResponseEntity<>(createdTransaction, HttpStatus.CREATED);
     }
 
+    /**
+     * Create many transactions at once
+     * 
+     * The body is read as a stream and stored in JDBC batches (COPY on PostgreSQL).
+     * Invalid rows are reported by row number and do not stop the valid ones.
+     * A row may also carry the timestamp and counterLeg of a transaction recorded earlier,
+     * as the rows of the matching engine's dead-letter file do.
+     * 
+     * @param body a JSON array of transactions, or one transaction per line (NDJSON)
+     * @return the number of inserted and rejected rows with HTTP 200 status
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    @Operation(summary = "Create transactions in bulk", description = "Imports a JSON array or NDJSON stream of transactions and reports the rows that were rejected")
+    @ApiResponse(responseCode = "200", description = "Import finished", content = @Content(schema = @Schema(implementation = TransactionBatchResultDTO.class)))
+    public ResponseEntity<TransactionBatchResultDTO> createTransactions(InputStream body) throws IOException {
+        return ResponseEntity.ok(batchImporter.importTransactions(body));
+    }
+
     /**
      * Get a transaction by its ID
      * 
@@ -86,6 +116,28 @@ public class TransactionController {
         return ResponseEntity.ok(transactions);
     }
 
+    /**
+     * Export all transactions
+     *
+     * The rows are streamed from the database into the response while it is written,
+     * so exporting millions of transactions does not need them all in memory.
+     *
+     * @param format json (a single array) or ndjson (one transaction per line)
+     * @return the streamed transactions
+     */
+    @GetMapping("/export")
+    @Operation(summary = "Export all transactions", description = "Streams all transactions as a JSON array or as newline-delimited JSON")
+    @ApiResponse(responseCode = "200", description = "Transactions streamed successfully")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @Parameter(description = "Output format (json or ndjson)") @RequestParam(defaultValue = "json") String format) {
+        // Parse before streaming starts, while a 400 can still be returned
+        ExportFormat exportFormat = ExportFormat.fromName(format);
+        StreamingResponseBody body = out -> transactionService.exportTransactions(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .body(body);
+    }
+
     /**
      * Get transactions by stock symbol
      * 
@@ -101,6 +153,34 @@ public class TransactionController {
         return ResponseEntity.ok(transactions);
     }
 
+    /**
+     * Get the transactions of a stock above a total value within a time range
+     * 
+     * HTTP GET /api/transactions/stock/range?stockSymbol=AAPL&minAmount=10000&from=2024-01-01T00:00:00&to=2024-02-01T00:00:00
+     * 
+     * The range is required, so on PostgreSQL only the monthly partitions it covers are read.
+     * 
+     * @param stockSymbol the stock symbol from request parameter
+     * @param minAmount   the total value a transaction must exceed
+     * @param from        the start of the range (inclusive)
+     * @param to          the end of the range (exclusive)
+     * @return list of matching transactions, the newest first
+     */
+    @GetMapping("/stock/range")
+    @Operation(summary = "Get transactions of a stock in a time range", description = "Retrieves the transactions of a stock above a total value between two times")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "List of transactions retrieved successfully", content = @Content(schema = @Schema(implementation = TransactionDTO.class))),
+            @ApiResponse(responseCode = "400", description = "'to' is before 'from'")
+    })
+    public ResponseEntity<List<TransactionDTO>> getTransactionsBySymbolAndMinAmount(
+            @Parameter(description = "Stock symbol (e.g., AAPL, MSFT)", required = true) @RequestParam String stockSymbol,
+            @Parameter(description = "Minimum total value (exclusive)") @RequestParam(defaultValue = "0") BigDecimal minAmount,
+            @Parameter(description = "Start of the range (inclusive)", required = true) @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "End of the range (exclusive)", required = true) @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        List<TransactionDTO> transactions = transactionService.getTransactionsBySymbolAndMinAmount(stockSymbol, minAmount, from, to);
+        return ResponseEntity.ok(transactions);
+    }
+
     /**
      * Get transactions by type (BUY or SELL)
      * 
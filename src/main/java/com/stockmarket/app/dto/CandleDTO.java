@@ -0,0 +1,33 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object for one OHLCV (open, high, low, close, volume) price bar.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandleDTO {
+    private String symbol;
+    // Bar resolution, e.g. "1m", "5m", "1h" or "1d"
+    private String interval;
+    private LocalDateTime openTime;
+    private BigDecimal open;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal close;
+    // Number of shares traded in the bar
+    private long volume;
+    // Number of price updates in the bar
+    private long ticks;
+    // False while the bar is still being built
+    private boolean complete;
+}
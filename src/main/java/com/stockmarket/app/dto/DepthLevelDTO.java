@@ -0,0 +1,22 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO for one price level of an order book: the open quantity and number of orders
+ * resting at a price. In a delta a quantity of 0 means the level is gone.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepthLevelDTO {
+    private BigDecimal price;
+    private Long quantity;
+    private Integer orders;
+}
@@ -0,0 +1,28 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for the price levels of an order book that changed, with their new absolute
+ * quantity (0 when the level is gone).
+ *
+ * The delta covers the book changes after previousSequence up to and including sequence.
+ * A client holding the book at sequence S applies it when previousSequence <= S < sequence,
+ * skips it when sequence <= S, and takes a new snapshot when previousSequence > S.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBookDeltaDTO {
+    private String symbol;
+    private Long previousSequence;
+    private Long sequence;
+    private List<DepthLevelDTO> bids;
+    private List<DepthLevelDTO> asks;
+}
@@ -0,0 +1,24 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for a snapshot of the best price levels of an order book.
+ * Bids are sorted from the highest price down, asks from the lowest price up.
+ * The sequence is that of the last OrderBookDeltaDTO included in the snapshot.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBookDepthDTO {
+    private String symbol;
+    private Long sequence;
+    private List<DepthLevelDTO> bids;
+    private List<DepthLevelDTO> asks;
+}
@@ -0,0 +1,43 @@
+package com.stockmarket.app.dto;
+
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.math.BigDecimal;
+
+/**
+ * DTO for submitting an order to the matching engine.
+ * The limit price is required for LIMIT orders and ignored for MARKET orders.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderRequest {
+    @NotNull
+    private TransactionType side;
+
+    @NotNull
+    private OrderType type;
+
+    @NotBlank
+    private String stockSymbol;
+
+    @NotNull
+    @Positive
+    private Integer quantity;
+
+    @Positive
+    private BigDecimal limitPrice;
+
+    private String userId;
+
+    private Long portfolioId;
+}
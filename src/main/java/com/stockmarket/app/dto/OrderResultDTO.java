@@ -0,0 +1,33 @@
+package com.stockmarket.app.dto;
+
+import com.stockmarket.app.enums.OrderStatus;
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO describing an order once the matching engine has handled it.
+ * The average price is empty when nothing traded.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderResultDTO {
+    private Long orderId;
+    private String stockSymbol;
+    private TransactionType side;
+    private OrderType type;
+    private OrderStatus status;
+    private BigDecimal limitPrice;
+    private Integer quantity;
+    private Integer filledQuantity;
+    private Integer remainingQuantity;
+    private BigDecimal averagePrice;
+    private Integer trades;
+}
@@ -0,0 +1,40 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO for the performance of a portfolio over a window of days.
+ * Returns are fractions (0.05 is 5%); a measure that is undefined for the window is null.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioPerformanceDTO {
+    private Long portfolioId;
+    private LocalDate from;
+    private LocalDate to;
+    private Integer days;
+    // Market value at the end of the day before the window and of its last day
+    private BigDecimal startValue;
+    private BigDecimal endValue;
+    // Buys minus sells during the window
+    private BigDecimal netInflow;
+    private BigDecimal timeWeightedReturn;
+    // Only for windows of a year or more
+    private BigDecimal annualizedTimeWeightedReturn;
+    // Internal rate of return of the start value and the flows over the window
+    private BigDecimal moneyWeightedReturn;
+    // Only for windows of a year or more
+    private BigDecimal annualizedMoneyWeightedReturn;
+    // Annualized standard deviation of the daily returns
+    private BigDecimal volatility;
+    // Largest fall from a peak of the time-weighted growth, as a negative fraction
+    private BigDecimal maxDrawdown;
+}
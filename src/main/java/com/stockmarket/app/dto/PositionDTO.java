@@ -0,0 +1,28 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO for the position of a portfolio in one stock, derived from its transactions.
+ * The cost basis is what the open quantity cost at average cost; a sale realizes the
+ * difference between its price and that average.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PositionDTO {
+    private Long portfolioId;
+    private String stockSymbol;
+    private Long quantity;
+    private BigDecimal averageCost;
+    private BigDecimal costBasis;
+    private BigDecimal realizedProfit;
+    // Id of the last transaction folded into the position
+    private Long version;
+}
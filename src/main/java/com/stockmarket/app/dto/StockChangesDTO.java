@@ -0,0 +1,26 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the stocks that changed since a catalogue version.
+ *
+ * Clients pass the returned version token as "since" on their next request.
+ * When full is true the client's token was unknown (e.g. the server restarted),
+ * and changed holds every stock instead of a delta.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockChangesDTO {
+    private String version;
+    private boolean full;
+    private List<StockDTO> changed;
+    private List<String> removed;
+}
@@ -1,5 +1,6 @@
 package com.stockmarket.app.dto;
 
+import com.stockmarket.app.model.Stock;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -26,7 +27,7 @@ import java.time.LocalDateTime;
  * @AllArgsConstructor - Generates a constructor with parameters for all fields
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class StockDTO {
@@ -62,4 +63,29 @@ public class StockDTO {
     
     // Industry within sector (e.g., Software, Pharmaceuticals)
     private String industry;
-} 
\ No newline at end of file
+
+    /**
+     * Creates a DTO snapshot of a Stock entity.
+     * 
+     * The returned object is detached from the persistence context, so it can be
+     * safely shared (e.g. by the quote cache) after the transaction has ended.
+     * 
+     * @param stock the entity to copy
+     * @return a new StockDTO with the entity's current values
+     */
+    public static StockDTO fromEntity(Stock stock) {
+        return StockDTO.builder()
+                .id(stock.getId())
+                .symbol(stock.getSymbol())
+                .companyName(stock.getCompanyName())
+                .currentPrice(stock.getCurrentPrice())
+                .previousClose(stock.getPreviousClose())
+                .change(stock.getChange())
+                .changePercent(stock.getChangePercent())
+                .volume(stock.getVolume())
+                .lastUpdated(stock.getLastUpdated())
+                .sector(stock.getSector())
+                .industry(stock.getIndustry())
+                .build();
+    }
+}
@@ -21,14 +21,5 @@ public class StockSummaryDTO {
     private Long totalTransactions;
     private BigDecimal averagePrice;
     private BigDecimal totalVolume;
-    
-    /**
-     * Constructor for creating a DTO from native query results
-     */
-    public StockSummaryDTO(String symbol, Long totalTransactions, Double averagePrice, Long totalVolume) {
-        this.symbol = symbol;
-        this.totalTransactions = totalTransactions;
-        this.averagePrice = averagePrice != null ? new BigDecimal(averagePrice) : BigDecimal.ZERO;
-        this.totalVolume = totalVolume != null ? new BigDecimal(totalVolume) : BigDecimal.ZERO;
-    }
-} 
\ No newline at end of file
+    private BigDecimal totalNotional;
+}
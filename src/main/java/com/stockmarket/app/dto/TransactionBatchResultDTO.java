@@ -0,0 +1,35 @@
+package com.stockmarket.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the outcome of a batch transaction import.
+ *
+ * Rows are numbered from 1 in the order they appear in the request. Rejected rows do
+ * not stop the import; every valid row is stored. Only the first errors are listed,
+ * errorsTruncated tells whether more rows failed than are listed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBatchResultDTO {
+    private long received;
+    private long inserted;
+    private long failed;
+    private List<RowError> errors;
+    private boolean errorsTruncated;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long row;
+        private String message;
+    }
+}
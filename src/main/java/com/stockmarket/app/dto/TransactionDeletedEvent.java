@@ -0,0 +1,27 @@
+package com.stockmarket.app.dto;
+
+import com.stockmarket.app.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object for a deleted transaction.
+ * This class is sent to the transactions topic, keyed by symbol like the transactions,
+ * so consumers see the delete after the create and updates of the same stock.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionDeletedEvent {
+    private Long transactionId;
+    private Long portfolioId;
+    private String stockSymbol;
+    private TransactionType type;
+    private Integer quantity;
+    private LocalDateTime deletedAt;
+}
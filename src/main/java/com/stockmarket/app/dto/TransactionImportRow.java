@@ -0,0 +1,28 @@
+package com.stockmarket.app.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of a bulk import (POST /api/transactions/batch).
+ *
+ * The same fields as a TransactionCreateRequest, plus two optional ones that let a row
+ * replay a transaction recorded earlier, such as a trade from the matching engine's
+ * dead-letter file:
+ * - timestamp: when the transaction happened; rows without one are stamped with the import time
+ * - counterLeg: true for the SELL side of a matched trade, so its shares are not counted twice
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class TransactionImportRow extends TransactionCreateRequest {
+
+    private LocalDateTime timestamp;
+
+    private boolean counterLeg;
+}
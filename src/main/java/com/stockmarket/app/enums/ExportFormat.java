@@ -0,0 +1,36 @@
+package com.stockmarket.app.enums;
+
+/**
+ * Output formats of the transaction export.
+ *
+ * JSON writes a single array; NDJSON writes one JSON object per line, which clients
+ * can process line by line without parsing the whole response.
+ */
+public enum ExportFormat {
+    JSON("application/json"),
+    NDJSON("application/x-ndjson");
+
+    private final String mediaType;
+
+    ExportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Parse a format name, ignoring case.
+     *
+     * @throws IllegalArgumentException for an unknown format
+     */
+    public static ExportFormat fromName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format: " + name + " (expected json or ndjson)");
+    }
+}
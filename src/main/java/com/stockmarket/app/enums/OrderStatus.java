@@ -0,0 +1,16 @@
+package com.stockmarket.app.enums;
+
+/**
+ * Enum representing the state of an order after the matching engine handled it.
+ * 
+ * NEW - Nothing traded yet; the order waits in the order book
+ * PARTIALLY_FILLED - Part of the order traded; the rest waits in the order book
+ * FILLED - The whole order traded
+ * CANCELLED - The rest of the order was removed (a market order without liquidity, or a cancel)
+ */
+public enum OrderStatus {
+    NEW,
+    PARTIALLY_FILLED,
+    FILLED,
+    CANCELLED
+}
@@ -0,0 +1,12 @@
+package com.stockmarket.app.enums;
+
+/**
+ * Enum representing the types of orders accepted by the matching engine.
+ * 
+ * LIMIT - Trades at the limit price or better; the rest waits in the order book
+ * MARKET - Trades at the best prices available; the rest is cancelled
+ */
+public enum OrderType {
+    LIMIT,
+    MARKET
+}
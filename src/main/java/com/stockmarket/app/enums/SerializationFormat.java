@@ -0,0 +1,27 @@
+package com.stockmarket.app.enums;
+
+/**
+ * Encodings of the events written to Kafka, selected with kafka.serialization.format.
+ *
+ * JSON is readable by any consumer. BINARY is the compact encoding of BinaryEventCodec
+ * for price updates and transactions; other events are still written as JSON.
+ * Consumers read both, so producers can be switched one at a time.
+ */
+public enum SerializationFormat {
+    JSON,
+    BINARY;
+
+    /**
+     * Parse a format name, ignoring case.
+     *
+     * @throws IllegalArgumentException for an unknown format
+     */
+    public static SerializationFormat fromName(String name) {
+        for (SerializationFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown serialization format: " + name + " (expected json or binary)");
+    }
+}
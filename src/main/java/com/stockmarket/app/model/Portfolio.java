@@ -4,6 +4,7 @@ import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -58,6 +59,13 @@ public class Portfolio implements Serializable {
      * The timestamp when the portfolio was last updated.
      */
     private LocalDateTime updatedAt;
+
+    /**
+     * The market value of all holdings, kept up to date by the PortfolioValuationService.
+     */
+    @NotNull
+    @Builder.Default
+    private BigDecimal totalValue = BigDecimal.ZERO;
     
     /**
      * The list of portfolio items (stock holdings) in this portfolio.
@@ -3,6 +3,7 @@ package com.stockmarket.app.model;
 import com.stockmarket.app.enums.TransactionType;
 import lombok.*;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -15,6 +16,7 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 
 /**
@@ -35,6 +37,11 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Transaction {
 
+    /**
+     * Decimal places of pricePerShare and totalValue, the scale of their NUMERIC(19, 2) columns
+     */
+    public static final int MONEY_SCALE = 2;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -94,4 +101,19 @@ public class Transaction {
      * Optional notes about the transaction
      */
     private String notes;
+
+    /**
+     * True for the SELL transaction of a matched trade, which mirrors the buyer's BUY.
+     * The two are one trade, so only the BUY counts towards volume.
+     */
+    @Column(nullable = false)
+    private boolean counterLeg;
+
+    /**
+     * Round a price or total to the column scale (HALF_UP, like the database), so the
+     * in-memory aggregates built from an entity before it is saved see the stored values.
+     */
+    public static BigDecimal toMoneyScale(BigDecimal value) {
+        return value.setScale(MONEY_SCALE, RoundingMode.HALF_UP);
+    }
 } 
\ No newline at end of file
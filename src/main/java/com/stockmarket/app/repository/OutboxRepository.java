@@ -0,0 +1,94 @@
+package com.stockmarket.app.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JDBC access to the outbox_events table (see V4__outbox_events.sql).
+ *
+ * Writes join the surrounding Spring transaction, so an event is only stored if the
+ * change it describes commits. Events are read back and deleted by the OutboxRelay.
+ */
+@Repository
+public class OutboxRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO outbox_events (topic, message_key, payload_type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SELECT_OLDEST_SQL =
+            "SELECT id, topic, message_key, payload_type, payload, created_at FROM outbox_events ORDER BY id LIMIT ?";
+
+    private static final String DELETE_SQL = "DELETE FROM outbox_events WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Store events with one JDBC batch, in the caller's transaction.
+     */
+    public void append(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getTopic());
+            ps.setString(2, event.getKey());
+            ps.setString(3, event.getPayloadType());
+            ps.setString(4, event.getPayload());
+            ps.setTimestamp(5, Timestamp.valueOf(event.getCreatedAt()));
+        });
+    }
+
+    /**
+     * The oldest events, in the order they were written.
+     */
+    public List<OutboxEvent> findOldest(int limit) {
+        return jdbcTemplate.query(SELECT_OLDEST_SQL, (rs, rowNum) -> new OutboxEvent(
+                rs.getLong("id"),
+                rs.getString("topic"),
+                rs.getString("message_key"),
+                rs.getString("payload_type"),
+                rs.getString("payload"),
+                rs.getTimestamp("created_at").toLocalDateTime()), limit);
+    }
+
+    /**
+     * Remove published events with one JDBC batch.
+     */
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DELETE_SQL, ids, ids.size(), (ps, id) -> ps.setLong(1, id));
+    }
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * One row of the outbox: a Kafka record waiting to be published.
+     * The payload is the JSON form of an instance of payloadType.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class OutboxEvent {
+        private Long id;
+        private String topic;
+        private String key;
+        private String payloadType;
+        private String payload;
+        private LocalDateTime createdAt;
+    }
+}
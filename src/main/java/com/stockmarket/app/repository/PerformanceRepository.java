@@ -0,0 +1,70 @@
+package com.stockmarket.app.repository;
+
+import com.stockmarket.app.enums.TransactionType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom repository for portfolio performance: streams the trades of portfolios in time order.
+ *
+ * The rows are handed to a visitor one at a time, so the service can build its primitive
+ * series without loading Transaction entities.
+ */
+@Repository
+public class PerformanceRepository {
+
+    // Portfolio ids per query, to keep the IN list small
+    private static final int IDS_PER_QUERY = 500;
+
+    private static final String SELECT_TRADES_SQL =
+            "SELECT t.portfolio_id, t.timestamp, t.stock_symbol, t.type, t.quantity, t.price_per_share "
+                    + "FROM transactions t "
+                    + "WHERE t.portfolio_id IN (:portfolioIds) AND t.timestamp < :before "
+                    + "AND t.stock_symbol IS NOT NULL "
+                    + "ORDER BY t.portfolio_id, t.timestamp, t.id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public PerformanceRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Visit the trades of the given portfolios made before a time, ordered by portfolio and time.
+     */
+    public void forEachTrade(Collection<Long> portfolioIds, LocalDateTime before, TradeVisitor visitor) {
+        List<Long> ids = new ArrayList<>(portfolioIds);
+        RowCallbackHandler handler = rs -> visitor.visit(
+                rs.getLong("portfolio_id"),
+                rs.getTimestamp("timestamp").toLocalDateTime(),
+                rs.getString("stock_symbol"),
+                TransactionType.valueOf(rs.getString("type")),
+                rs.getInt("quantity"),
+                rs.getBigDecimal("price_per_share"));
+        for (int start = 0; start < ids.size(); start += IDS_PER_QUERY) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("portfolioIds", ids.subList(start, Math.min(ids.size(), start + IDS_PER_QUERY)))
+                    .addValue("before", Timestamp.valueOf(before));
+            jdbcTemplate.query(SELECT_TRADES_SQL, params, handler);
+        }
+    }
+
+    /**
+     * Receives one trade of a portfolio.
+     */
+    @FunctionalInterface
+    public interface TradeVisitor {
+        void visit(long portfolioId, LocalDateTime timestamp, String stockSymbol, TransactionType type,
+                   int quantity, BigDecimal pricePerShare);
+    }
+}
@@ -0,0 +1,115 @@
+package com.stockmarket.app.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Custom repository for the market values of portfolio holdings.
+ *
+ * Reads every holding once to build the valuation index, and writes revalued holdings and
+ * portfolio totals back with JDBC batching, like the StockPriceBatchRepository, so a
+ * write-back of thousands of values is a few round trips and no entity loading.
+ */
+@Repository
+@Slf4j
+public class PortfolioValuationRepository {
+
+    // Holdings are linked to their portfolio by the item's column or by the join table of Portfolio.items
+    private static final String SELECT_HOLDINGS_SQL =
+            "SELECT i.id, COALESCE(i.portfolio_id, pi.portfolio_id) AS portfolio_id, i.stock_symbol, "
+                    + "i.quantity, i.current_value "
+                    + "FROM portfolio_items i LEFT JOIN portfolios_items pi ON pi.items_id = i.id";
+
+    private static final String SELECT_TOTALS_SQL = "SELECT id, total_value FROM portfolios";
+
+    private static final String UPDATE_ITEM_SQL = "UPDATE portfolio_items SET current_value = ? WHERE id = ?";
+
+    private static final String UPDATE_TOTAL_SQL =
+            "UPDATE portfolios SET total_value = ?, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public PortfolioValuationRepository(JdbcTemplate jdbcTemplate,
+                                        @Value("${valuation.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * All holdings with their portfolio and stored value.
+     */
+    public List<Holding> findAllHoldings() {
+        return jdbcTemplate.query(SELECT_HOLDINGS_SQL, (rs, rowNum) -> new Holding(
+                rs.getLong("id"),
+                rs.getObject("portfolio_id", Long.class),
+                rs.getString("stock_symbol"),
+                rs.getInt("quantity"),
+                rs.getBigDecimal("current_value")));
+    }
+
+    /**
+     * The stored total value of every portfolio, by portfolio id.
+     */
+    public Map<Long, BigDecimal> findPortfolioTotals() {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        jdbcTemplate.query(SELECT_TOTALS_SQL, rs -> {
+            totals.put(rs.getLong("id"), rs.getBigDecimal("total_value"));
+        });
+        return totals;
+    }
+
+    /**
+     * Write revalued holdings and portfolio totals in one transaction.
+     *
+     * @param itemValues      new current value by portfolio item id
+     * @param portfolioTotals new total value by portfolio id
+     * @param updatedAt       the updated-at time of the portfolios
+     */
+    @Transactional
+    public void updateValues(Map<Long, BigDecimal> itemValues, Map<Long, BigDecimal> portfolioTotals,
+                             LocalDateTime updatedAt) {
+        long start = System.nanoTime();
+        if (!itemValues.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_ITEM_SQL, itemValues.entrySet(), batchSize, (ps, entry) -> {
+                ps.setBigDecimal(1, entry.getValue());
+                ps.setLong(2, entry.getKey());
+            });
+        }
+        if (!portfolioTotals.isEmpty()) {
+            Timestamp timestamp = Timestamp.valueOf(updatedAt);
+            jdbcTemplate.batchUpdate(UPDATE_TOTAL_SQL, portfolioTotals.entrySet(), batchSize, (ps, entry) -> {
+                ps.setBigDecimal(1, entry.getValue());
+                ps.setTimestamp(2, timestamp);
+                ps.setLong(3, entry.getKey());
+            });
+        }
+        log.debug("Wrote {} holding values and {} portfolio totals ({} ms)", itemValues.size(),
+                portfolioTotals.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * One portfolio item as needed for valuation.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Holding {
+        private long itemId;
+        private Long portfolioId;
+        private String stockSymbol;
+        private int quantity;
+        private BigDecimal currentValue;
+    }
+}
@@ -0,0 +1,211 @@
+package com.stockmarket.app.repository;
+
+import com.stockmarket.app.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Custom repository for the position projection: reads the transactions ledger as a stream
+ * of events in id order and stores the projection's snapshots.
+ *
+ * The ledger is read with JdbcTemplate and row callbacks, so a replay never loads Transaction
+ * entities or holds more than one row at a time.
+ */
+@Repository
+public class PositionRepository {
+
+    private static final String EVENT_COLUMNS =
+            "t.id, t.portfolio_id, t.stock_symbol, t.type, t.quantity, t.price_per_share";
+
+    private static final String SELECT_EVENTS_AFTER_SQL =
+            "SELECT " + EVENT_COLUMNS + " FROM transactions t WHERE t.id > ? ORDER BY t.id LIMIT ?";
+
+    private static final String SELECT_PORTFOLIO_EVENTS_SQL =
+            "SELECT " + EVENT_COLUMNS + " FROM transactions t "
+                    + "WHERE t.portfolio_id = ? AND t.id > ? AND t.id <= ? ORDER BY t.id";
+
+    private static final String SELECT_EVENTS_BY_IDS_SQL =
+            "SELECT " + EVENT_COLUMNS + " FROM transactions t WHERE t.id IN (%s) ORDER BY t.id";
+
+    // The transactions of every portfolio after its latest snapshot, or all of them without one, up to an id
+    private static final String SELECT_EVENTS_SINCE_SNAPSHOTS_SQL =
+            "SELECT " + EVENT_COLUMNS + " FROM transactions t "
+                    + "LEFT JOIN (SELECT portfolio_id, MAX(version) AS version FROM position_snapshots "
+                    + "GROUP BY portfolio_id) s ON s.portfolio_id = t.portfolio_id "
+                    + "WHERE t.portfolio_id IS NOT NULL AND t.id > COALESCE(s.version, 0) AND t.id <= ? ORDER BY t.id";
+
+    private static final String SELECT_MAX_EVENT_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM transactions";
+
+    private static final String SNAPSHOT_COLUMNS = "s.portfolio_id, s.version, s.event_count, s.positions, s.created_at";
+
+    private static final String SELECT_LATEST_SNAPSHOTS_SQL =
+            "SELECT " + SNAPSHOT_COLUMNS + " FROM position_snapshots s "
+                    + "JOIN (SELECT portfolio_id, MAX(version) AS version FROM position_snapshots "
+                    + "GROUP BY portfolio_id) l ON l.portfolio_id = s.portfolio_id AND l.version = s.version";
+
+    private static final String SELECT_LATEST_SNAPSHOT_SQL =
+            "SELECT " + SNAPSHOT_COLUMNS + " FROM position_snapshots s "
+                    + "WHERE s.portfolio_id = ? ORDER BY s.version DESC LIMIT 1";
+
+    private static final String INSERT_SNAPSHOT_SQL =
+            "INSERT INTO position_snapshots (portfolio_id, version, event_count, positions, created_at) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+
+    // Keeps the newest ? snapshots of a portfolio
+    private static final String PRUNE_SNAPSHOTS_SQL =
+            "DELETE FROM position_snapshots WHERE portfolio_id = ? AND version < ("
+                    + "SELECT MIN(version) FROM (SELECT version FROM position_snapshots "
+                    + "WHERE portfolio_id = ? ORDER BY version DESC LIMIT ?) newest)";
+
+    private static final String DELETE_SNAPSHOTS_SQL = "DELETE FROM position_snapshots WHERE portfolio_id = ?";
+
+    // Bound parameters per IN list
+    private static final int IDS_PER_QUERY = 500;
+
+    private static final RowMapper<LedgerEvent> EVENT_MAPPER = (rs, rowNum) -> new LedgerEvent(
+            rs.getLong("id"),
+            rs.getObject("portfolio_id", Long.class),
+            rs.getString("stock_symbol"),
+            TransactionType.valueOf(rs.getString("type")),
+            rs.getInt("quantity"),
+            rs.getBigDecimal("price_per_share"));
+
+    private static final RowMapper<PositionSnapshot> SNAPSHOT_MAPPER = (rs, rowNum) -> new PositionSnapshot(
+            rs.getLong("portfolio_id"),
+            rs.getLong("version"),
+            rs.getLong("event_count"),
+            rs.getString("positions"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PositionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The next transactions after an id, with or without a portfolio, in id order.
+     */
+    public List<LedgerEvent> findEventsAfter(long afterId, int limit) {
+        return jdbcTemplate.query(SELECT_EVENTS_AFTER_SQL, EVENT_MAPPER, afterId, limit);
+    }
+
+    /**
+     * The transactions with the given ids that exist, in id order within each query of up to 500 ids.
+     */
+    public List<LedgerEvent> findEventsByIds(Collection<Long> ids) {
+        List<Long> remaining = new ArrayList<>(ids);
+        List<LedgerEvent> events = new ArrayList<>();
+        for (int from = 0; from < remaining.size(); from += IDS_PER_QUERY) {
+            List<Long> chunk = remaining.subList(from, Math.min(from + IDS_PER_QUERY, remaining.size()));
+            String sql = String.format(SELECT_EVENTS_BY_IDS_SQL, String.join(", ", Collections.nCopies(chunk.size(), "?")));
+            events.addAll(jdbcTemplate.query(sql, EVENT_MAPPER, chunk.toArray()));
+        }
+        return events;
+    }
+
+    /**
+     * Stream the transactions of one portfolio after an id and up to another, in id order.
+     */
+    public void forEachEventOfPortfolio(long portfolioId, long afterId, long upToId, Consumer<LedgerEvent> action) {
+        RowCallbackHandler handler = rs -> action.accept(EVENT_MAPPER.mapRow(rs, 0));
+        jdbcTemplate.query(SELECT_PORTFOLIO_EVENTS_SQL, handler, portfolioId, afterId, upToId);
+    }
+
+    /**
+     * Stream the transactions of every portfolio that are newer than its latest snapshot,
+     * up to an id, in id order.
+     */
+    public void forEachEventSinceSnapshots(long upToId, Consumer<LedgerEvent> action) {
+        RowCallbackHandler handler = rs -> action.accept(EVENT_MAPPER.mapRow(rs, 0));
+        jdbcTemplate.query(SELECT_EVENTS_SINCE_SNAPSHOTS_SQL, handler, upToId);
+    }
+
+    /**
+     * The highest transaction id, or 0 if there are none.
+     */
+    public long findMaxEventId() {
+        Long max = jdbcTemplate.queryForObject(SELECT_MAX_EVENT_ID_SQL, Long.class);
+        return max != null ? max : 0;
+    }
+
+    /**
+     * The latest snapshot of every portfolio that has one.
+     */
+    public List<PositionSnapshot> findLatestSnapshots() {
+        return jdbcTemplate.query(SELECT_LATEST_SNAPSHOTS_SQL, SNAPSHOT_MAPPER);
+    }
+
+    public Optional<PositionSnapshot> findLatestSnapshot(long portfolioId) {
+        return jdbcTemplate.query(SELECT_LATEST_SNAPSHOT_SQL, SNAPSHOT_MAPPER, portfolioId).stream().findFirst();
+    }
+
+    /**
+     * Store snapshots and drop all but the newest retained snapshots of their portfolios.
+     */
+    @Transactional
+    public void saveSnapshots(List<PositionSnapshot> snapshots, int retained) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, snapshots, snapshots.size(), (ps, snapshot) -> {
+            ps.setLong(1, snapshot.getPortfolioId());
+            ps.setLong(2, snapshot.getVersion());
+            ps.setLong(3, snapshot.getEventCount());
+            ps.setString(4, snapshot.getPositions());
+            ps.setTimestamp(5, Timestamp.valueOf(snapshot.getCreatedAt()));
+        });
+        jdbcTemplate.batchUpdate(PRUNE_SNAPSHOTS_SQL, snapshots, snapshots.size(), (ps, snapshot) -> {
+            ps.setLong(1, snapshot.getPortfolioId());
+            ps.setLong(2, snapshot.getPortfolioId());
+            ps.setInt(3, retained);
+        });
+    }
+
+    @Transactional
+    public void deleteSnapshots(long portfolioId) {
+        jdbcTemplate.update(DELETE_SNAPSHOTS_SQL, portfolioId);
+    }
+
+    /**
+     * One transaction as an event of the ledger.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class LedgerEvent {
+        private long id;
+        private Long portfolioId;
+        private String stockSymbol;
+        private TransactionType type;
+        private int quantity;
+        private BigDecimal pricePerShare;
+    }
+
+    /**
+     * One stored snapshot; positions is the JSON form of the positions of the portfolio.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class PositionSnapshot {
+        private long portfolioId;
+        private long version;
+        private long eventCount;
+        private String positions;
+        private LocalDateTime createdAt;
+    }
+}
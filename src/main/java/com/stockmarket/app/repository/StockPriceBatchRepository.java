@@ -0,0 +1,109 @@
+package com.stockmarket.app.repository;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.model.Stock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom repository that writes a whole simulator cycle of price changes at once.
+ *
+ * This demonstrates:
+ * 1. Using JdbcTemplate next to Spring Data JPA for bulk writes
+ * 2. JDBC batching - many UPDATE statements are sent to the database in one round trip
+ * 3. Bypassing the persistence context, so there is no per-entity flush or dirty checking
+ */
+@Repository
+@Slf4j
+public class StockPriceBatchRepository {
+
+    private static final String UPDATE_PRICE_SQL =
+            "UPDATE stocks SET current_price = ?, last_updated = ? WHERE id = ?";
+
+    // Updates older than the stored price (e.g. a redelivered batch) do not overwrite it
+    private static final String APPLY_UPDATE_SQL =
+            "UPDATE stocks SET current_price = ?, last_updated = ? "
+                    + "WHERE symbol = ? AND (last_updated IS NULL OR last_updated <= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public StockPriceBatchRepository(JdbcTemplate jdbcTemplate,
+                                     @Value("${stocksimulator.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Persist the current price and last-updated time of every given stock in one transaction.
+     *
+     * The stocks only need an id, a currentPrice and a lastUpdated value; they are typically
+     * detached entities returned by findAll() and modified by the simulator.
+     *
+     * @param stocks the stocks whose new prices should be written
+     * @return the number of statements executed
+     */
+    @Transactional
+    public int updatePrices(Collection<Stock> stocks) {
+        if (stocks.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int[][] results = jdbcTemplate.batchUpdate(UPDATE_PRICE_SQL, stocks, batchSize, (ps, stock) -> {
+            ps.setBigDecimal(1, stock.getCurrentPrice());
+            ps.setTimestamp(2, Timestamp.valueOf(stock.getLastUpdated()));
+            ps.setLong(3, stock.getId());
+        });
+        log.debug("Batch-updated {} stock prices in {} batches ({} ms)", stocks.size(), results.length,
+                (System.nanoTime() - start) / 1_000_000);
+        return stocks.size();
+    }
+
+    /**
+     * Apply price updates received from Kafka to the stocks table in one transaction.
+     *
+     * Every update is an UPDATE by symbol in the same JDBC batch. An update is skipped
+     * when the stored price is newer than the update, so replaying a batch is harmless.
+     *
+     * @param updates at most one update per symbol, each with a timestamp
+     * @return the updates that changed a row
+     */
+    @Transactional
+    public List<StockPriceUpdateDTO> applyPriceUpdates(List<StockPriceUpdateDTO> updates) {
+        if (updates.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        int[][] results = jdbcTemplate.batchUpdate(APPLY_UPDATE_SQL, updates, batchSize, (ps, update) -> {
+            Timestamp timestamp = Timestamp.valueOf(update.getTimestamp());
+            ps.setBigDecimal(1, update.getPrice());
+            ps.setTimestamp(2, timestamp);
+            ps.setString(3, update.getSymbol());
+            ps.setTimestamp(4, timestamp);
+        });
+
+        List<StockPriceUpdateDTO> applied = new ArrayList<>(updates.size());
+        int index = 0;
+        for (int[] batch : results) {
+            for (int count : batch) {
+                // Some drivers only report that the statement succeeded
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    applied.add(updates.get(index));
+                }
+                index++;
+            }
+        }
+        log.debug("Applied {} of {} price updates in {} batches ({} ms)", applied.size(), updates.size(),
+                results.length, (System.nanoTime() - start) / 1_000_000);
+        return applied;
+    }
+}
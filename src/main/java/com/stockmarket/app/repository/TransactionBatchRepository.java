@@ -0,0 +1,134 @@
+package com.stockmarket.app.repository;
+
+import com.stockmarket.app.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Custom repository that inserts many transactions at once.
+ *
+ * Transaction ids are generated by the database (GenerationType.IDENTITY), so Hibernate
+ * has to run one INSERT per entity to read the key back and cannot batch them.
+ * This repository bypasses JPA and does not read the ids back:
+ * 1. On PostgreSQL the rows are streamed with COPY ... FROM STDIN, the fastest bulk load path
+ * 2. On other databases (H2) they are sent as one JDBC batch of INSERT statements
+ */
+@Repository
+@Slf4j
+public class TransactionBatchRepository {
+
+    private static final String COLUMNS =
+            "type, stock_symbol, quantity, price_per_share, total_value, timestamp, user_id, portfolio_id, notes, counter_leg";
+    private static final String INSERT_SQL =
+            "INSERT INTO transactions (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String COPY_SQL =
+            "COPY transactions (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean copySupported;
+
+    public TransactionBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert all given transactions in one database transaction; either all or none are stored.
+     *
+     * @param transactions the transactions to insert; their ids are not set
+     * @return the number of rows inserted
+     */
+    @Transactional
+    public long insertAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return 0;
+        }
+        if (isCopySupported()) {
+            return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> copyIn(connection.unwrap(PGConnection.class), transactions));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, transactions, transactions.size(), this::setValues);
+        return transactions.size();
+    }
+
+    /**
+     * Insert a single transaction, e.g. to find out which row of a failed batch was rejected.
+     */
+    @Transactional
+    public void insert(Transaction transaction) {
+        jdbcTemplate.update(INSERT_SQL, ps -> setValues(ps, transaction));
+    }
+
+    private boolean isCopySupported() {
+        if (copySupported == null) {
+            copySupported = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.isWrapperFor(PGConnection.class));
+            log.info("Batch transaction inserts use {}", copySupported ? "COPY" : "JDBC batches");
+        }
+        return copySupported;
+    }
+
+    private long copyIn(PGConnection connection, List<Transaction> transactions) throws SQLException {
+        StringBuilder csv = new StringBuilder(transactions.size() * 96);
+        for (Transaction transaction : transactions) {
+            csv.append(transaction.getType().name()).append(',');
+            appendQuoted(csv, transaction.getStockSymbol()).append(',');
+            csv.append(transaction.getQuantity()).append(',');
+            csv.append(transaction.getPricePerShare().toPlainString()).append(',');
+            csv.append(transaction.getTotalValue().toPlainString()).append(',');
+            csv.append(Timestamp.valueOf(transaction.getTimestamp())).append(',');
+            appendQuoted(csv, transaction.getUserId()).append(',');
+            if (transaction.getPortfolioId() != null) {
+                csv.append(transaction.getPortfolioId());
+            }
+            csv.append(',');
+            appendQuoted(csv, transaction.getNotes()).append(',');
+            csv.append(transaction.isCounterLeg()).append('\n');
+        }
+        try {
+            CopyManager copyManager = connection.getCopyAPI();
+            return copyManager.copyIn(COPY_SQL, new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new SQLException("COPY into transactions failed", e);
+        }
+    }
+
+    /**
+     * Append a CSV field. In COPY's CSV format an unquoted empty field is NULL,
+     * while a quoted one is an empty string.
+     */
+    private static StringBuilder appendQuoted(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private void setValues(PreparedStatement ps, Transaction transaction) throws SQLException {
+        ps.setString(1, transaction.getType().name());
+        ps.setString(2, transaction.getStockSymbol());
+        ps.setInt(3, transaction.getQuantity());
+        ps.setBigDecimal(4, transaction.getPricePerShare());
+        ps.setBigDecimal(5, transaction.getTotalValue());
+        ps.setTimestamp(6, Timestamp.valueOf(transaction.getTimestamp()));
+        ps.setString(7, transaction.getUserId());
+        if (transaction.getPortfolioId() != null) {
+            ps.setLong(8, transaction.getPortfolioId());
+        } else {
+            ps.setNull(8, Types.BIGINT);
+        }
+        ps.setString(9, transaction.getNotes());
+        ps.setBoolean(10, transaction.isCounterLeg());
+    }
+}
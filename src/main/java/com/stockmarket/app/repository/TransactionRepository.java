@@ -4,12 +4,19 @@ import com.stockmarket.app.model.Transaction;
 import com.stockmarket.app.enums.TransactionType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * Repository interface for Transaction entity.
@@ -38,12 +45,30 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     
     /**
      * Find all transactions that occurred between two timestamps
+     * On PostgreSQL only the monthly partitions overlapping the period are read.
      * 
      * @param startDate the start date/time
      * @param endDate the end date/time
      * @return a list of transactions that occurred in the given time period
      */
     List<Transaction> findByTimestampBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Stream all transactions in ID order without loading them all into memory.
+     *
+     * The rows are read from an open JDBC cursor in batches of the fetch size, and the
+     * entities are read-only, so Hibernate keeps no snapshots for dirty checking.
+     * Must be called inside a transaction and the stream must be closed after use.
+     *
+     * @return a stream of all transactions
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT t FROM Transaction t ORDER BY t.id")
+    Stream<Transaction> streamAll();
     
     /**
      * Example of a custom JPQL query (JPA Query Language)
@@ -84,4 +109,28 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     List<Transaction> findTransactionsBySymbolAndMinAmount(
             @Param("symbol") String symbol, 
             @Param("minAmount") BigDecimal minAmount);
+
+    /**
+     * Same as findTransactionsBySymbolAndMinAmount, limited to a time range.
+     * 
+     * On PostgreSQL the transactions table is partitioned by month, and the range on
+     * timestamp lets the planner skip every partition outside [from, to).
+     * 
+     * @param symbol the stock symbol to search for
+     * @param minAmount the minimum total value
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     * @return list of matching transactions, the newest first
+     */
+    @Query(value = "SELECT * FROM transactions " +
+                  "WHERE stock_symbol = :symbol " +
+                  "AND total_value > :minAmount " +
+                  "AND timestamp >= :from AND timestamp < :to " +
+                  "ORDER BY timestamp DESC", 
+           nativeQuery = true)
+    List<Transaction> findTransactionsBySymbolAndMinAmountBetween(
+            @Param("symbol") String symbol, 
+            @Param("minAmount") BigDecimal minAmount,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
 } 
\ No newline at end of file
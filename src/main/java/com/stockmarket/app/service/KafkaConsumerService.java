@@ -1,12 +1,25 @@
 package com.stockmarket.app.service;
 
 import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.dto.TransactionDeletedEvent;
 import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.StockPriceBatchRepository;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.service.dispatch.SymbolLaneDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * >>>>>>>>>>>
  * QUIZ 10: Kafka Consumer
@@ -83,32 +96,117 @@ import org.springframework.stereotype.Service;
 public class KafkaConsumerService {
     
     private static final Logger logger = LoggerFactory.getLogger(KafkaConsumerService.class);
+
+    private final StockPriceBatchRepository stockPriceBatchRepository;
+    private final StockQuoteCache quoteCache;
+    private final SymbolLaneDispatcher dispatcher;
+    private final Counter receivedUpdates;
+    private final Counter appliedUpdates;
+
+    public KafkaConsumerService(StockPriceBatchRepository stockPriceBatchRepository,
+                                StockQuoteCache quoteCache,
+                                SymbolLaneDispatcher dispatcher,
+                                MeterRegistry meterRegistry) {
+        this.stockPriceBatchRepository = stockPriceBatchRepository;
+        this.quoteCache = quoteCache;
+        this.dispatcher = dispatcher;
+        this.receivedUpdates = Counter.builder("kafka.consumer.price-updates")
+                .tag("result", "received")
+                .description("Price updates received from Kafka")
+                .register(meterRegistry);
+        this.appliedUpdates = Counter.builder("kafka.consumer.price-updates")
+                .tag("result", "applied")
+                .description("Price updates written to the stocks table after conflation")
+                .register(meterRegistry);
+    }
     
     /**
-     * Consume stock price updates from Kafka
+     * Consume a poll's worth of stock price updates from Kafka.
+     *
+     * Only the newest update of every symbol in the batch is kept, and the survivors are
+     * written with one JDBC batch per symbol lane, so the cost grows with the number of
+     * distinct symbols rather than the number of records. The lanes write in parallel.
+     * The offsets of the batch are committed after this method returns; if a write fails
+     * the batch is redelivered, and updates older than the stored price are skipped.
      * 
-     * @param update the price update data
+     * @param updates the price updates of one poll
      */
-    @KafkaListener(topics = "${kafka.topics.stock-price-updates}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeStockPriceUpdate(StockPriceUpdateDTO update) {
-        logger.info("Received stock price update for symbol: {}, price: {}", 
-            update.getSymbol(), update.getPrice());
-        
-        // Here you would handle the stock price update
-        // For example, update the database, notify users, etc.
+    @KafkaListener(topics = "${kafka.topics.stock-price-updates}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchListenerContainerFactory")
+    public void consumeStockPriceUpdates(List<StockPriceUpdateDTO> updates) {
+        receivedUpdates.increment(updates.size());
+        List<StockPriceUpdateDTO> latest = conflate(updates, LocalDateTime.now());
+        AtomicInteger appliedCount = new AtomicInteger();
+        dispatcher.dispatchAndWait(latest, StockPriceUpdateDTO::getSymbol, laneUpdates -> {
+            List<StockPriceUpdateDTO> applied = stockPriceBatchRepository.applyPriceUpdates(laneUpdates);
+            applied.forEach(quoteCache::applyPriceUpdate);
+            appliedUpdates.increment(applied.size());
+            appliedCount.addAndGet(applied.size());
+        });
+
+        logger.debug("Received {} stock price updates, applied {} of {} symbols",
+                updates.size(), appliedCount.get(), latest.size());
     }
     
     /**
-     * Consume transactions from Kafka
+     * Consume a poll's worth of transactions from Kafka.
+     *
+     * The topic carries created and updated transactions as well as TransactionDeletedEvents.
+     * They are handled on the symbol lanes, in order per symbol.
      * 
-     * @param transaction the transaction data
+     * @param events the transactions and deletions of one poll
+     */
+    @KafkaListener(topics = "${kafka.topics.stock-transactions}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchListenerContainerFactory")
+    public void consumeTransactions(List<Object> events) {
+        dispatcher.dispatchAndWait(events, KafkaConsumerService::symbolOf, laneEvents -> {
+            for (Object event : laneEvents) {
+                if (event instanceof TransactionDeletedEvent) {
+                    TransactionDeletedEvent deleted = (TransactionDeletedEvent) event;
+                    logger.info("Received deletion of transaction {} for symbol: {}",
+                            deleted.getTransactionId(), deleted.getStockSymbol());
+                    continue;
+                }
+                Transaction transaction = (Transaction) event;
+                logger.info("Received transaction for symbol: {}, quantity: {}, type: {}",
+                        transaction.getStockSymbol(), transaction.getQuantity(), transaction.getType());
+
+                // Here you would handle the transaction
+                // For example, update portfolio balances, update statistics, etc.
+            }
+        });
+    }
+
+    private static String symbolOf(Object event) {
+        return event instanceof TransactionDeletedEvent
+                ? ((TransactionDeletedEvent) event).getStockSymbol()
+                : ((Transaction) event).getStockSymbol();
+    }
+
+    /**
+     * Keep the newest update of every symbol, in order of first appearance.
+     *
+     * Records of one symbol share a partition and arrive in order, so the last one usually
+     * wins; the timestamps decide when a batch holds an older update after a newer one.
+     * Updates without a timestamp get the time they were received.
      */
-    @KafkaListener(topics = "${kafka.topics.stock-transactions}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeTransaction(Transaction transaction) {
-        logger.info("Received transaction for symbol: {}, quantity: {}, type: {}", 
-            transaction.getStockSymbol(), transaction.getQuantity(), transaction.getType());
-        
-        // Here you would handle the transaction
-        // For example, update portfolio balances, update statistics, etc.
+    static List<StockPriceUpdateDTO> conflate(List<StockPriceUpdateDTO> updates, LocalDateTime receivedAt) {
+        Map<String, Integer> positions = new HashMap<>();
+        List<StockPriceUpdateDTO> latest = new ArrayList<>();
+        for (StockPriceUpdateDTO update : updates) {
+            if (update == null || update.getSymbol() == null || update.getPrice() == null) {
+                continue;
+            }
+            if (update.getTimestamp() == null) {
+                update.setTimestamp(receivedAt);
+            }
+            Integer position = positions.putIfAbsent(update.getSymbol(), latest.size());
+            if (position == null) {
+                latest.add(update);
+            } else if (!update.getTimestamp().isBefore(latest.get(position).getTimestamp())) {
+                latest.set(position, update);
+            }
+        }
+        return latest;
     }
-} 
\ No newline at end of file
+}
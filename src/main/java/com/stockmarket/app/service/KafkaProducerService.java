@@ -1,83 +1,207 @@
 package com.stockmarket.app.service;
 
 import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.dto.TransactionDeletedEvent;
 import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.service.outbox.OutboxService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.env.Environment;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
 
-import java.util.Arrays;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for producing Kafka messages.
  * This service handles all communications with Kafka topics for the application.
+ *
+ * Every price update is also published as a Spring application event, so in-process
+ * consumers (such as the tick history) see the same stream without reading it back from Kafka.
+ *
+ * The send methods do not talk to Kafka: they write the record to the transactional outbox,
+ * in the caller's transaction, and the OutboxRelay publishes it with send() after the commit.
+ *
+ * send() is asynchronous: the producer batches records in the background and a callback
+ * records the delivery latency or the failure once the broker has answered. At most
+ * kafka.producer.max-in-flight records may be waiting for an answer. When the window is
+ * full the caller blocks (up to kafka.producer.acquire-timeout-ms), which slows the relay
+ * down to what the broker can take instead of filling the producer buffer.
  */
 @Service
 public class KafkaProducerService {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(KafkaProducerService.class);
-    
+
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final boolean isDevProfile;
-    
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxService outboxService;
+    private final MeterRegistry meterRegistry;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long acquireTimeoutMillis;
+
     @Value("${kafka.topics.stock-price-updates:stock-price-updates}")
     private String stockPriceUpdatesTopic;
-    
+
     @Value("${kafka.topics.stock-transactions:stock-transactions}")
     private String stockTransactionsTopic;
-    
-    public KafkaProducerService(KafkaTemplate<String, Object> kafkaTemplate, Environment environment) {
+
+    public KafkaProducerService(KafkaTemplate<String, Object> kafkaTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                OutboxService outboxService,
+                                MeterRegistry meterRegistry,
+                                @Value("${kafka.producer.max-in-flight:10000}") int maxInFlight,
+                                @Value("${kafka.producer.acquire-timeout-ms:5000}") long acquireTimeoutMillis) {
         this.kafkaTemplate = kafkaTemplate;
-        this.isDevProfile = Arrays.asList(environment.getActiveProfiles()).contains("dev");
-        
-        if (isDevProfile) {
-            logger.info("Running in dev profile - using mock Kafka implementation");
-        }
+        this.eventPublisher = eventPublisher;
+        this.outboxService = outboxService;
+        this.meterRegistry = meterRegistry;
+        this.maxInFlight = maxInFlight;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.inFlight = new Semaphore(maxInFlight);
+        Gauge.builder("kafka.producer.in-flight", this, KafkaProducerService::getInFlightCount)
+                .description("Records sent to Kafka that are still waiting for an answer from the broker")
+                .register(meterRegistry);
     }
-    
+
     /**
-     * Send a stock price update to Kafka
-     * 
+     * Send a stock price update to Kafka once the current transaction commits
+     *
      * @param update the price update data
      */
     public void sendStockPriceUpdate(StockPriceUpdateDTO update) {
-        logger.info("Sending stock price update for symbol: {}, price: {}", 
+        logger.debug("Sending stock price update for symbol: {}, price: {}",
                 update.getSymbol(), update.getPrice());
-        
-        try {
-            kafkaTemplate.send(stockPriceUpdatesTopic, update.getSymbol(), update);
-            logger.debug("Successfully sent stock price update to Kafka");
-        } catch (Exception e) {
-            if (!isDevProfile) {
-                // Only log as error in non-dev environments
-                logger.error("Failed to send stock price update to Kafka: {}", e.getMessage(), e);
-            } else {
-                logger.info("[DEV MODE] Simulated sending price update for: {}", update.getSymbol());
-            }
-        }
+
+        eventPublisher.publishEvent(update);
+
+        outboxService.enqueue(stockPriceUpdatesTopic, update.getSymbol(), update);
     }
-    
+
     /**
-     * Send a transaction to Kafka
-     * 
+     * Send a transaction to Kafka once the current transaction commits
+     *
      * @param transaction the transaction data
      */
     public void sendTransaction(Transaction transaction) {
-        logger.info("Sending transaction for symbol: {}", transaction.getStockSymbol());
-        
+        logger.debug("Sending transaction for symbol: {}", transaction.getStockSymbol());
+
+        outboxService.enqueue(stockTransactionsTopic, transaction.getStockSymbol(), transaction);
+    }
+
+    /**
+     * Send the deletion of a transaction to Kafka once the current transaction commits
+     *
+     * @param transaction the deleted transaction
+     */
+    public void sendTransactionDeleted(Transaction transaction) {
+        logger.debug("Sending deletion of transaction {} for symbol: {}", transaction.getId(), transaction.getStockSymbol());
+
+        TransactionDeletedEvent event = TransactionDeletedEvent.builder()
+                .transactionId(transaction.getId())
+                .portfolioId(transaction.getPortfolioId())
+                .stockSymbol(transaction.getStockSymbol())
+                .type(transaction.getType())
+                .quantity(transaction.getQuantity())
+                .deletedAt(LocalDateTime.now())
+                .build();
+        outboxService.enqueue(stockTransactionsTopic, transaction.getStockSymbol(), event);
+    }
+
+    /**
+     * Number of records waiting for an answer from the broker.
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Send one record to Kafka now, without waiting for the broker. Used by the OutboxRelay.
+     *
+     * A permit of the in-flight window is taken before the send and given back by the
+     * completion callback, or straight away if the send fails synchronously.
+     *
+     * @return completes when the broker has acknowledged the record, or fails if it did not
+     */
+    public CompletableFuture<Void> send(String topic, String key, Object value) {
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        if (!acquirePermit(topic, key)) {
+            delivery.completeExceptionally(new RejectedExecutionException(
+                    maxInFlight + " records are still in flight to Kafka"));
+            return delivery;
+        }
+        long start = System.nanoTime();
+        ListenableFuture<SendResult<String, Object>> future;
         try {
-            kafkaTemplate.send(stockTransactionsTopic, transaction.getStockSymbol(), transaction);
-            logger.debug("Successfully sent transaction to Kafka");
+            future = kafkaTemplate.send(topic, key, value);
         } catch (Exception e) {
-            if (!isDevProfile) {
-                // Only log as error in non-dev environments
-                logger.error("Failed to send transaction to Kafka: {}", e.getMessage(), e);
-            } else {
-                logger.info("[DEV MODE] Simulated sending transaction for: {}", transaction.getStockSymbol());
+            inFlight.release();
+            failureCounter(topic, "send").increment();
+            logger.error("Failed to send to Kafka topic {}: {}", topic, e.getMessage(), e);
+            delivery.completeExceptionally(e);
+            return delivery;
+        }
+        future.addCallback(
+                result -> {
+                    inFlight.release();
+                    latencyTimer(topic, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    delivery.complete(null);
+                },
+                e -> {
+                    inFlight.release();
+                    latencyTimer(topic, "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    failureCounter(topic, "delivery").increment();
+                    logger.error("Kafka did not accept the record for {} on {}: {}", key, topic, e.getMessage());
+                    delivery.completeExceptionally(e);
+                });
+        return delivery;
+    }
+
+    /**
+     * Take a permit of the in-flight window, blocking while the window is full.
+     *
+     * @return false if no permit became free within the timeout; the record is not sent
+     */
+    private boolean acquirePermit(String topic, String key) {
+        try {
+            if (inFlight.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
             }
+            logger.warn("Not sending record for {} on {}: {} records are still in flight after {} ms",
+                    key, topic, maxInFlight, acquireTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting to send the record for {} on {}", key, topic);
         }
+        failureCounter(topic, "backpressure").increment();
+        return false;
+    }
+
+    private Timer latencyTimer(String topic, String result) {
+        return Timer.builder("kafka.producer.send.latency")
+                .description("Time from handing a record to the producer until the broker answered")
+                .tag("topic", topic)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter failureCounter(String topic, String reason) {
+        return Counter.builder("kafka.producer.send.failures")
+                .description("Records that were not delivered to Kafka")
+                .tag("topic", topic)
+                .tag("reason", reason)
+                .register(meterRegistry);
     }
-} 
\ No newline at end of file
+}
@@ -1,24 +1,36 @@
 package com.stockmarket.app.service;
 
+import com.stockmarket.app.dto.PortfolioPerformanceDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
 /**
- * >>>>>>>>>>>
- * QUIZ 10: Advanced Features (Part 2)
- * 
- * Your task:
- * 1. Design a service interface for calculating portfolio performance:
- *    - Method to calculate current value of a portfolio
- *    - Method to calculate gains/losses over different time periods
- *    - Method to analyze portfolio diversity by sector
- * 
- * 2. Then implement this interface in a class called PortfolioPerformanceServiceImpl
- *    - Use the StockService to get current stock prices
- *    - Use the PortfolioService to get portfolio information
- *    - Calculate meaningful performance metrics
- * 
- * >>>>>>>>>>>
+ * Service interface for portfolio performance: time- and money-weighted returns,
+ * volatility and drawdown over a window of days.
  */
 public interface PortfolioPerformanceService {
-    
-    // TODO: Implement your solution here
-    
-} 
\ No newline at end of file
+
+    /**
+     * Calculates the performance of a portfolio.
+     *
+     * @param portfolioId the portfolio ID
+     * @param from the first day of the window, or null for the day of the portfolio's first trade
+     * @param to the last day of the window, or null for today
+     * @return the performance, or empty if the portfolio has no trades up to the end of the window
+     * @throws IllegalArgumentException if the window is empty or longer than allowed
+     */
+    Optional<PortfolioPerformanceDTO> getPerformance(Long portfolioId, LocalDate from, LocalDate to);
+
+    /**
+     * Calculates the performance of many portfolios over the same window, in parallel.
+     *
+     * @param portfolioIds the portfolio IDs
+     * @param from the first day of the window, or null for the day of each portfolio's first trade
+     * @param to the last day of the window, or null for today
+     * @return the performance of each portfolio that has trades, in the order of the IDs
+     * @throws IllegalArgumentException if the window is empty or longer than allowed
+     */
+    List<PortfolioPerformanceDTO> getPerformance(List<Long> portfolioIds, LocalDate from, LocalDate to);
+}
@@ -1,115 +1,405 @@
 package com.stockmarket.app.service;
 
+import com.stockmarket.app.dto.StockDTO;
 import com.stockmarket.app.dto.StockPriceUpdateDTO;
 import com.stockmarket.app.model.Stock;
+import com.stockmarket.app.repository.StockPriceBatchRepository;
 import com.stockmarket.app.repository.StockRepository;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.service.outbox.OutboxService;
+import com.stockmarket.app.service.pricemodel.PriceModel;
+import com.stockmarket.app.service.pricemodel.TickRandom;
+import com.stockmarket.app.util.FixedPoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Service that simulates stock price changes and publishes updates to Kafka.
+ *
+ * The stock universe is split into contiguous shards that are simulated in parallel
+ * on a fixed worker pool (stocksimulator.workers). Each shard computes its prices,
+ * then persists them and writes its updates to the outbox in one transaction. Only one
+ * cycle can run at a time, whether it was started by the scheduler or through the
+ * SimulatorController. While the outbox backlog is over outbox.max-backlog (Kafka is down
+ * or the relay is behind) cycles are skipped, so the simulator slows down to what Kafka takes.
+ *
+ * How a price moves is decided by the PriceModel selected with stocksimulator.model
+ * (uniform, gbm or mean-reverting). Every stock gets its own random stream derived from
+ * stocksimulator.seed, the cycle number and the stock id, so two runs started from the
+ * same data with the same seed publish identical ticks, whatever the number of workers.
+ * Without a configured seed a random one is chosen and logged at startup.
  */
 @Service
 public class StockPriceSimulatorService {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(StockPriceSimulatorService.class);
-    private static final Random random = new Random();
-    
+
+    // Prices and percentages are published with two decimals
+    private static final int DECIMALS = 2;
+    private static final long MIN_PRICE = FixedPoint.of(new BigDecimal("0.01"));
+
+    // Below this many stocks per shard the coordination costs more than it saves
+    private static final int MIN_STOCKS_PER_SHARD = 256;
+
     private final StockRepository stockRepository;
+    private final StockPriceBatchRepository stockPriceBatchRepository;
     private final KafkaProducerService kafkaProducerService;
-    
+    private final OutboxService outboxService;
+    private final StockQuoteCache quoteCache;
+    private final MeterRegistry meterRegistry;
+    private final List<PriceModel> priceModels;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean cycleInProgress = new AtomicBoolean(false);
+
+    private PriceModel priceModel;
+    private long seed;
+    // Only changed by the thread holding cycleInProgress
+    private long cycle;
+    private ExecutorService workerPool;
+    private Timer[] shardTimers = new Timer[0];
+    private final Timer cycleTimer;
+
     @Value("${stocksimulator.enabled:true}")
     private boolean enabled;
-    
-    @Value("${stocksimulator.price-change.min-percent:-5.0}")
-    private double minChangePercent;
-    
-    @Value("${stocksimulator.price-change.max-percent:5.0}")
-    private double maxChangePercent;
-    
+
+    @Value("${stocksimulator.model:uniform}")
+    private String modelName;
+
+    @Value("${stocksimulator.seed:#{null}}")
+    private Long configuredSeed;
+
+    @Value("${stocksimulator.workers:4}")
+    private int workers;
+
     @Autowired
     public StockPriceSimulatorService(
             StockRepository stockRepository,
-            KafkaProducerService kafkaProducerService) {
+            StockPriceBatchRepository stockPriceBatchRepository,
+            KafkaProducerService kafkaProducerService,
+            OutboxService outboxService,
+            StockQuoteCache quoteCache,
+            MeterRegistry meterRegistry,
+            List<PriceModel> priceModels,
+            TransactionTemplate transactionTemplate) {
         this.stockRepository = stockRepository;
+        this.stockPriceBatchRepository = stockPriceBatchRepository;
         this.kafkaProducerService = kafkaProducerService;
+        this.outboxService = outboxService;
+        this.quoteCache = quoteCache;
+        this.meterRegistry = meterRegistry;
+        this.priceModels = priceModels;
+        this.transactionTemplate = transactionTemplate;
+        this.cycleTimer = Timer.builder("stocksimulator.cycle.duration")
+                .description("Wall-clock time of a whole simulation cycle")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Selects the price model and seed, and creates the worker pool and one timer per shard.
+     * With a single worker every cycle runs on the calling thread.
+     */
+    @PostConstruct
+    public void start() {
+        priceModel = priceModels.stream()
+                .filter(model -> model.getName().equalsIgnoreCase(modelName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown stocksimulator.model '" + modelName
+                        + "', expected one of " + priceModels.stream().map(PriceModel::getName)
+                        .collect(Collectors.joining(", "))));
+        seed = configuredSeed != null ? configuredSeed : new SplittableRandom().nextLong();
+        cycle = 0;
+        logger.info("Stock price simulator using the {} price model with seed {}{}", priceModel.getName(), seed,
+                configuredSeed != null ? "" : " (set stocksimulator.seed to reproduce this run)");
+
+        int poolSize = Math.max(1, workers);
+        shardTimers = new Timer[poolSize];
+        for (int shard = 0; shard < poolSize; shard++) {
+            shardTimers[shard] = Timer.builder("stocksimulator.shard.duration")
+                    .description("Time to simulate, persist and publish one shard of the stock universe")
+                    .tag("shard", String.valueOf(shard))
+                    .register(meterRegistry);
+        }
+        if (poolSize > 1) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            workerPool = Executors.newFixedThreadPool(poolSize, runnable -> {
+                Thread thread = new Thread(runnable, "simulator-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.info("Stock price simulator using {} worker threads", poolSize);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (workerPool != null) {
+            // Cancel the shards that never started, so a cycle waiting for them does not hang
+            workerPool.shutdownNow().forEach(task -> ((Future<?>) task).cancel(false));
+        }
     }
-    
+
     /**
      * Scheduled task that runs every 30 seconds to simulate stock price changes
      * and publish updates to Kafka.
+     *
+     * A shard has two phases: compute every new price in memory, then write all of them
+     * with one JDBC batch and queue the updates in the outbox, in one transaction. The
+     * quote cache sees the new prices once that transaction has committed.
+     * The stocks returned by findAll() are detached here (no surrounding transaction),
+     * so changing them does not trigger JPA dirty checking.
+     *
+     * @return false if the cycle was skipped because another cycle is still running
+     *         or the outbox backlog is over its limit
      */
     @Scheduled(fixedRateString = "${stocksimulator.interval:30000}")
-    public void simulateStockPriceChanges() {
+    public boolean simulateStockPriceChanges() {
         if (!enabled) {
             logger.debug("Stock price simulation is disabled");
-            return;
+            return true;
+        }
+
+        if (!cycleInProgress.compareAndSet(false, true)) {
+            logger.warn("Previous simulation cycle is still running. Skipping this one.");
+            return false;
         }
-        
+
+        if (outboxService.isBacklogged()) {
+            cycleInProgress.set(false);
+            logger.warn("The outbox backlog is over its limit. Skipping this simulation cycle.");
+            return false;
+        }
+
+        try {
+            runCycle();
+            return true;
+        } finally {
+            cycleInProgress.set(false);
+        }
+    }
+
+    private void runCycle() {
+        long cycleStart = System.nanoTime();
         List<Stock> stocks = stockRepository.findAll();
-        
+
         if (stocks.isEmpty()) {
             logger.info("No stocks found in database. Skipping price simulation.");
             return;
         }
-        
-        logger.info("Simulating price changes for {} stocks", stocks.size());
-        
+
+        int shardCount = shardCount(stocks.size());
+        logger.info("Simulating price changes for {} stocks in {} shard(s)", stocks.size(), shardCount);
+
+        LocalDateTime now = LocalDateTime.now();
+        long cycleNumber = ++cycle;
+        long slowestShard;
+
+        if (shardCount == 1 || workerPool == null) {
+            slowestShard = simulateShard(0, stocks, cycleNumber, now);
+        } else {
+            List<ShardTask> tasks = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                int from = (int) ((long) stocks.size() * shard / shardCount);
+                int to = (int) ((long) stocks.size() * (shard + 1) / shardCount);
+                ShardTask task = new ShardTask(shard, stocks.subList(from, to), cycleNumber, now);
+                task.future = workerPool.submit(task);
+                tasks.add(task);
+            }
+            slowestShard = awaitShards(tasks);
+        }
+
+        long cycleNanos = System.nanoTime() - cycleStart;
+        cycleTimer.record(cycleNanos, TimeUnit.NANOSECONDS);
+        logger.info("Simulation cycle for {} stocks finished in {} ms (slowest shard {} ms)",
+                stocks.size(), cycleNanos / 1_000_000, slowestShard / 1_000_000);
+    }
+
+    /**
+     * Simulate, persist and publish one shard.
+     *
+     * @return the time the shard took in nanoseconds
+     */
+    private long simulateShard(int shard, List<Stock> stocks, long cycleNumber, LocalDateTime now) {
+        long start = System.nanoTime();
+        List<StockPriceUpdateDTO> updates = new ArrayList<>(stocks.size());
+
         for (Stock stock : stocks) {
-            // Calculate a random price change between configured min and max
-            double range = maxChangePercent - minChangePercent;
-            BigDecimal changePercent = new BigDecimal(random.nextDouble() * range + minChangePercent)
-                    .setScale(2, RoundingMode.HALF_UP);
-            
-            // Calculate the actual change amount
-            BigDecimal change = stock.getCurrentPrice()
-                    .multiply(changePercent)
-                    .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
-            
-            // Calculate new price
-            BigDecimal newPrice = stock.getCurrentPrice().add(change)
-                    .setScale(2, RoundingMode.HALF_UP);
-            
+            // All arithmetic is done on fixed-point longs; BigDecimal is only used at the entity boundary
+            long currentPrice = FixedPoint.of(stock.getCurrentPrice());
+
+            // Let the price model move the price, using this stock's random stream for this cycle
+            long stockKey = stock.getId() != null ? stock.getId() : stock.getSymbol().hashCode();
+            SplittableRandom random = TickRandom.forStock(seed, cycleNumber, stockKey);
+            long newPrice = FixedPoint.round(priceModel.nextPrice(stock, currentPrice, random), DECIMALS);
+
             // Ensure price doesn't go below 0.01
-            if (newPrice.compareTo(new BigDecimal("0.01")) < 0) {
-                newPrice = new BigDecimal("0.01");
-                change = newPrice.subtract(stock.getCurrentPrice());
-                changePercent = change.divide(stock.getCurrentPrice(), 4, RoundingMode.HALF_UP)
-                        .multiply(new BigDecimal("100"))
-                        .setScale(2, RoundingMode.HALF_UP);
+            if (newPrice < MIN_PRICE) {
+                newPrice = MIN_PRICE;
             }
-            
-            // Update stock price in database
-            stock.setCurrentPrice(newPrice);
-            stockRepository.save(stock);
-            
-            // Create and send price update
-            StockPriceUpdateDTO update = StockPriceUpdateDTO.builder()
+
+            // Calculate the actual change amount and percentage
+            long change = newPrice - currentPrice;
+            long changePercent = FixedPoint.round(FixedPoint.divide(change, currentPrice) * 100, DECIMALS);
+
+            BigDecimal newPriceValue = FixedPoint.toBigDecimal(newPrice, DECIMALS);
+
+            // Apply the new price to the (detached) entity
+            stock.setCurrentPrice(newPriceValue);
+            stock.setLastUpdated(now);
+
+            // Create the price update to publish once the shard is persisted
+            updates.add(StockPriceUpdateDTO.builder()
                     .symbol(stock.getSymbol())
-                    .price(newPrice)
-                    .change(change)
-                    .changePercent(changePercent)
-                    .timestamp(LocalDateTime.now())
-                    .build();
-            
-            kafkaProducerService.sendStockPriceUpdate(update);
-            
-            logger.info("Updated price for {}: {} ({}{} / {}%)", 
-                    stock.getSymbol(), 
-                    newPrice, 
-                    change.compareTo(BigDecimal.ZERO) >= 0 ? "+" : "", 
-                    change, 
-                    changePercent);
+                    .price(newPriceValue)
+                    .change(FixedPoint.toBigDecimal(change, DECIMALS))
+                    .changePercent(FixedPoint.toBigDecimal(changePercent, DECIMALS))
+                    .timestamp(now)
+                    .build());
+        }
+
+        // Persist the whole shard using JDBC batching, in the same transaction as its outbox events
+        transactionTemplate.executeWithoutResult(status -> {
+            stockPriceBatchRepository.updatePrices(stocks);
+
+            for (int i = 0; i < stocks.size(); i++) {
+                StockPriceUpdateDTO update = updates.get(i);
+
+                quoteCache.put(StockDTO.fromEntity(stocks.get(i)));
+                kafkaProducerService.sendStockPriceUpdate(update);
+
+                logger.debug("Updated price for {}: {} ({}{} / {}%)",
+                        update.getSymbol(),
+                        update.getPrice(),
+                        update.getChange().signum() >= 0 ? "+" : "",
+                        update.getChange(),
+                        update.getChangePercent());
+            }
+        });
+
+        long elapsed = System.nanoTime() - start;
+        shardTimers[Math.min(shard, shardTimers.length - 1)].record(elapsed, TimeUnit.NANOSECONDS);
+        logger.debug("Shard {} simulated {} stocks in {} ms", shard, stocks.size(), elapsed / 1_000_000);
+        return elapsed;
+    }
+
+    /**
+     * Wait for every shard of the cycle. When interrupted, the shards that have not started
+     * are abandoned and the running ones are still waited for, so the cycle never ends (and
+     * releases cycleInProgress) while a shard is writing; the interrupt flag is then restored.
+     *
+     * @return the time the slowest shard took in nanoseconds
+     */
+    private long awaitShards(List<ShardTask> tasks) {
+        long slowest = 0;
+        for (int shard = 0; shard < tasks.size(); shard++) {
+            try {
+                slowest = Math.max(slowest, tasks.get(shard).future.get());
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted while waiting for simulation shards; waiting for the running ones to finish");
+                for (ShardTask task : tasks.subList(shard, tasks.size())) {
+                    if (!task.abandon()) {
+                        task.awaitFinished();
+                    }
+                }
+                Thread.currentThread().interrupt();
+                return slowest;
+            } catch (ExecutionException e) {
+                logger.error("Simulation shard {} failed: {}", shard, e.getCause().getMessage(), e.getCause());
+            } catch (CancellationException e) {
+                logger.warn("Simulation shard {} was cancelled before it started", shard);
+            }
+        }
+        return slowest;
+    }
+
+    private int shardCount(int stockCount) {
+        if (workerPool == null) {
+            return 1;
+        }
+        int wanted = (stockCount + MIN_STOCKS_PER_SHARD - 1) / MIN_STOCKS_PER_SHARD;
+        return Math.max(1, Math.min(workers, wanted));
+    }
+
+    /**
+     * One shard of a cycle on the worker pool. It only runs if it has not been abandoned
+     * first, and signals when it has finished, so an interrupted cycle can tell the shards
+     * that never started from the ones it has to wait for.
+     */
+    private final class ShardTask implements Callable<Long> {
+        private final int shard;
+        private final List<Stock> stocks;
+        private final long cycleNumber;
+        private final LocalDateTime now;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Future<Long> future;
+
+        private ShardTask(int shard, List<Stock> stocks, long cycleNumber, LocalDateTime now) {
+            this.shard = shard;
+            this.stocks = stocks;
+            this.cycleNumber = cycleNumber;
+            this.now = now;
+        }
+
+        @Override
+        public Long call() {
+            if (!claimed.compareAndSet(false, true)) {
+                return 0L;
+            }
+            try {
+                return simulateShard(shard, stocks, cycleNumber, now);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Keep the shard from starting.
+         *
+         * @return false if it has already started
+         */
+        private boolean abandon() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * Wait for a started shard to finish, ignoring interrupts; the caller restores the flag.
+         */
+        private void awaitFinished() {
+            while (true) {
+                try {
+                    finished.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // Keep waiting: the shard is still writing
+                }
+            }
         }
     }
-} 
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.stockmarket.app.service;
 
+import com.stockmarket.app.dto.StockChangesDTO;
 import com.stockmarket.app.dto.StockCreateRequest;
 import com.stockmarket.app.dto.StockDTO;
 import com.stockmarket.app.dto.StockUpdateRequest;
@@ -56,6 +57,22 @@ public interface StockService {
      */
     List<StockDTO> getAllStocks();
     
+    /**
+     * Get the current version of the stock catalogue.
+     * The version changes on every price or metadata change, and on every restart.
+     * 
+     * @return the catalogue version token
+     */
+    String getCatalogVersion();
+    
+    /**
+     * Get the stocks that changed or were removed after a catalogue version.
+     * 
+     * @param since the catalogue version token the client already has
+     * @return the changes and the version they bring the client to
+     */
+    StockChangesDTO getChangesSince(String since);
+    
     /**
      * Get all stocks in a specific sector.
      * 
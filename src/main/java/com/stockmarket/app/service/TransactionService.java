@@ -3,8 +3,13 @@ package com.stockmarket.app.service;
 import com.stockmarket.app.dto.TransactionCreateRequest;
 import com.stockmarket.app.dto.TransactionDTO;
 import com.stockmarket.app.dto.TransactionUpdateRequest;
+import com.stockmarket.app.enums.ExportFormat;
 import com.stockmarket.app.enums.TransactionType;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -36,6 +41,17 @@ public interface TransactionService {
      */
     List<TransactionDTO> getAllTransactions();
 
+    /**
+     * Writes all transactions to the output stream, one row at a time.
+     * Memory use does not grow with the number of transactions.
+     *
+     * @param format the output format
+     * @param out the stream to write to; it is flushed but not closed
+     * @return the number of transactions written
+     * @throws IOException if writing to the stream fails
+     */
+    long exportTransactions(ExportFormat format, OutputStream out) throws IOException;
+
     /**
      * Retrieves transactions for a specific stock.
      *
@@ -44,6 +60,20 @@ public interface TransactionService {
      */
     List<TransactionDTO> getTransactionsByStockSymbol(String stockSymbol);
 
+    /**
+     * Retrieves the transactions of a stock above a total value within a time range.
+     * The time range keeps the query to the monthly partitions it covers on PostgreSQL.
+     *
+     * @param stockSymbol the stock symbol
+     * @param minAmount the total value a transaction must exceed
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     * @return a list of transactions as DTOs, the newest first
+     * @throws IllegalArgumentException if to is before from
+     */
+    List<TransactionDTO> getTransactionsBySymbolAndMinAmount(String stockSymbol, BigDecimal minAmount,
+                                                             LocalDateTime from, LocalDateTime to);
+
     /**
      * Retrieves transactions of a specific type.
      *
@@ -0,0 +1,298 @@
+package com.stockmarket.app.service.broker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * An in-process stand-in for the Kafka cluster, used by the dev profile and load tests.
+ *
+ * Every topic has the same number of partitions. A record with a key goes to the partition
+ * Kafka's default partitioner picks (murmur2 of the key bytes), so the records of one stock
+ * stay in order on one partition; records without a key are spread round robin.
+ *
+ * Each subscription (a consumer group on a topic) has a bounded queue per partition and its
+ * own listener threads, which share the partitions like the consumers of a group do. A
+ * listener thread hands the records of its partitions to the listener in lists of up to
+ * maxPollRecords, in partition order. While a queue is full the producer blocks, and after
+ * maxBlockMillis the send fails with the TimeoutException of a full Kafka producer buffer.
+ *
+ * When the listener throws, the thread keeps its place like the Kafka listener container's
+ * default error handler: the same records are delivered again after retryBackoffMillis, and
+ * nothing behind them on those partitions is read in the meantime. Only after maxAttempts
+ * failed deliveries is the batch logged and skipped.
+ *
+ * Records only live in memory. A topic nobody subscribes to accepts and discards its records.
+ */
+public class InMemoryKafkaBroker {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryKafkaBroker.class);
+
+    // How long an idle listener thread sleeps when nobody wakes it up
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int partitions;
+    private final int partitionCapacity;
+    private final long maxBlockMillis;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * @param maxAttempts        deliveries of a failing batch before it is skipped
+     * @param retryBackoffMillis pause before a failed batch is delivered again
+     */
+    public InMemoryKafkaBroker(MeterRegistry meterRegistry, int partitions, int partitionCapacity, long maxBlockMillis,
+                               int maxAttempts, long retryBackoffMillis) {
+        if (partitions < 1 || partitionCapacity < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("partitions, partitionCapacity and maxAttempts must be positive");
+        }
+        this.meterRegistry = meterRegistry;
+        this.partitions = partitions;
+        this.partitionCapacity = partitionCapacity;
+        this.maxBlockMillis = maxBlockMillis;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * The partition a record goes to, the same way Kafka's default partitioner chooses it.
+     */
+    public int partitionFor(String key) {
+        if (key == null) {
+            return Utils.toPositive(roundRobin.getAndIncrement()) % partitions;
+        }
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % partitions;
+    }
+
+    /**
+     * Append a record to one partition of a topic and hand it to every subscription.
+     *
+     * @return the offset of the record in its partition
+     * @throws TimeoutException if a subscription's queue stayed full for maxBlockMillis
+     */
+    public long append(String topic, int partition, Object value) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("The in-memory Kafka broker has been shut down");
+        }
+        if (partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException("Partition " + partition + " does not exist on " + topic);
+        }
+        return topic(topic).append(partition, value);
+    }
+
+    /**
+     * Start the listener threads of a consumer group on a topic.
+     *
+     * @param concurrency    listener threads; more than one per partition would sit idle
+     * @param maxPollRecords the most records handed to the listener at once
+     * @param listener       called with the records of one or more partitions of one thread
+     */
+    public <T> void subscribe(String topic, String groupId, int concurrency, int maxPollRecords,
+                              Consumer<List<T>> listener) {
+        Subscription<T> subscription = new Subscription<>(topic, groupId,
+                Math.max(1, Math.min(concurrency, partitions)), maxPollRecords, listener);
+        topic(topic).subscriptions.add(subscription);
+        subscription.start();
+        logger.info("In-memory Kafka broker: group {} listening to {} ({} partitions, {} threads)",
+                groupId, topic, partitions, subscription.threads.length);
+    }
+
+    /**
+     * Stop every listener thread. Records still queued are discarded.
+     */
+    public void shutdown() {
+        running = false;
+        for (Topic topic : topics.values()) {
+            for (Subscription<?> subscription : topic.subscriptions) {
+                for (Thread thread : subscription.threads) {
+                    thread.interrupt();
+                }
+            }
+        }
+    }
+
+    private Topic topic(String name) {
+        return topics.computeIfAbsent(name, Topic::new);
+    }
+
+    /**
+     * The partitions of one topic: an offset counter each, and the subscriptions reading them.
+     */
+    private class Topic {
+
+        private final String name;
+        private final long[] nextOffsets = new long[partitions];
+        private final Object[] partitionLocks = new Object[partitions];
+        private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+
+        Topic(String name) {
+            this.name = name;
+            for (int partition = 0; partition < partitions; partition++) {
+                partitionLocks[partition] = new Object();
+            }
+        }
+
+        long append(int partition, Object value) throws InterruptedException {
+            // Appends to one partition are serialized, so the queues hold the records in offset order
+            synchronized (partitionLocks[partition]) {
+                for (Subscription<?> subscription : subscriptions) {
+                    if (!subscription.queues[partition].offer(value, maxBlockMillis, TimeUnit.MILLISECONDS)) {
+                        throw new TimeoutException("Partition " + name + "-" + partition + " of group "
+                                + subscription.groupId + " is still full after " + maxBlockMillis + " ms");
+                    }
+                    subscription.wakeUp(partition);
+                }
+                return nextOffsets[partition]++;
+            }
+        }
+    }
+
+    /**
+     * One consumer group on one topic: a queue per partition and the threads draining them.
+     * Thread i owns the partitions p with p % threads == i.
+     */
+    private class Subscription<T> {
+
+        private final String topic;
+        private final String groupId;
+        private final int maxPollRecords;
+        private final Consumer<List<T>> listener;
+        private final BlockingQueue<Object>[] queues;
+        private final Thread[] threads;
+        private final Counter failures;
+        private final Counter redeliveries;
+
+        @SuppressWarnings("unchecked")
+        Subscription(String topic, String groupId, int threadCount, int maxPollRecords, Consumer<List<T>> listener) {
+            this.topic = topic;
+            this.groupId = groupId;
+            this.maxPollRecords = Math.max(1, maxPollRecords);
+            this.listener = listener;
+            this.queues = new BlockingQueue[partitions];
+            for (int partition = 0; partition < partitions; partition++) {
+                queues[partition] = new ArrayBlockingQueue<>(partitionCapacity);
+            }
+            this.threads = new Thread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                int owner = i;
+                threads[i] = new Thread(() -> listen(owner), "in-memory-kafka-" + topic + "-" + i);
+                threads[i].setDaemon(true);
+            }
+            this.failures = Counter.builder("kafka.in-memory.listener.failures")
+                    .tag("topic", topic)
+                    .tag("group", groupId)
+                    .description("Batches the listener still failed on after every attempt; their records were skipped")
+                    .register(meterRegistry);
+            this.redeliveries = Counter.builder("kafka.in-memory.listener.redeliveries")
+                    .tag("topic", topic)
+                    .tag("group", groupId)
+                    .description("Failed batches delivered to the listener again")
+                    .register(meterRegistry);
+            Gauge.builder("kafka.in-memory.queued", this, Subscription::queued)
+                    .tag("topic", topic)
+                    .tag("group", groupId)
+                    .description("Records waiting for the listener of the in-memory Kafka broker")
+                    .register(meterRegistry);
+        }
+
+        void start() {
+            for (Thread thread : threads) {
+                thread.start();
+            }
+        }
+
+        void wakeUp(int partition) {
+            LockSupport.unpark(threads[partition % threads.length]);
+        }
+
+        int queued() {
+            int queued = 0;
+            for (BlockingQueue<Object> queue : queues) {
+                queued += queue.size();
+            }
+            return queued;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void listen(int owner) {
+            int[] owned = ownedPartitions(owner);
+            int start = 0;
+            while (running && !Thread.currentThread().isInterrupted()) {
+                List<Object> batch = new ArrayList<>();
+                // Start at the next partition every time, so a busy partition cannot starve the others
+                for (int i = 0; i < owned.length && batch.size() < maxPollRecords; i++) {
+                    queues[owned[(start + i) % owned.length]].drainTo(batch, maxPollRecords - batch.size());
+                }
+                start++;
+                if (batch.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                deliver((List<T>) batch);
+            }
+        }
+
+        /**
+         * Hand a batch to the listener until it succeeds or maxAttempts is reached. The thread
+         * reads nothing else meanwhile, so the records behind the batch keep their order.
+         */
+        private void deliver(List<T> batch) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    listener.accept(batch);
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt >= maxAttempts) {
+                        failures.increment();
+                        logger.error("Listener of group {} failed on {} records from {} after {} attempts, skipping them: {}",
+                                groupId, batch.size(), topic, attempt, e.getMessage(), e);
+                        return;
+                    }
+                    logger.warn("Listener of group {} failed on {} records from {} (attempt {} of {}), redelivering in {} ms: {}",
+                            groupId, batch.size(), topic, attempt, maxAttempts, retryBackoffMillis, e.getMessage());
+                }
+                try {
+                    Thread.sleep(retryBackoffMillis);
+                } catch (InterruptedException e) {
+                    // Shutting down; the batch is discarded like the records still queued
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                redeliveries.increment();
+            }
+        }
+
+        private int[] ownedPartitions(int owner) {
+            int[] owned = new int[(partitions - owner + threads.length - 1) / threads.length];
+            for (int i = 0; i < owned.length; i++) {
+                owned[i] = owner + i * threads.length;
+            }
+            return owned;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.stockmarket.app.service.broker;
+
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * A Kafka Producer that appends to an InMemoryKafkaBroker, so a KafkaTemplate can be used
+ * without a broker.
+ *
+ * Values are handed over as they are, without serializing them. A record is appended
+ * before send() returns, and its callback has run by then, so flush() has nothing to do.
+ * Transactions are not supported.
+ */
+public class InMemoryProducer implements Producer<String, Object> {
+
+    private static final int UNKNOWN_SIZE = -1;
+
+    private final InMemoryKafkaBroker broker;
+
+    public InMemoryProducer(InMemoryKafkaBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<String, Object> record) {
+        return send(record, null);
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<String, Object> record, Callback callback) {
+        int partition = record.partition() != null ? record.partition() : broker.partitionFor(record.key());
+        long timestamp = record.timestamp() != null ? record.timestamp() : System.currentTimeMillis();
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        try {
+            long offset = broker.append(record.topic(), partition, record.value());
+            RecordMetadata metadata = new RecordMetadata(new TopicPartition(record.topic(), partition),
+                    offset, 0, timestamp, UNKNOWN_SIZE, UNKNOWN_SIZE);
+            future.complete(metadata);
+            if (callback != null) {
+                callback.onCompletion(metadata, null);
+            }
+        } catch (InterruptedException e) {
+            // Like the Kafka producer, an interrupted send throws instead of failing the future
+            Thread.currentThread().interrupt();
+            throw new InterruptException(e);
+        } catch (KafkaException e) {
+            future.completeExceptionally(e);
+            if (callback != null) {
+                callback.onCompletion(null, e);
+            }
+        }
+        return future;
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic) {
+        List<PartitionInfo> infos = new ArrayList<>(broker.getPartitions());
+        for (int partition = 0; partition < broker.getPartitions(); partition++) {
+            infos.add(new PartitionInfo(topic, partition, Node.noNode(), new Node[0], new Node[0]));
+        }
+        return infos;
+    }
+
+    @Override
+    public void flush() {
+        // Every record is in the broker once send() has returned
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return Map.of();
+    }
+
+    /**
+     * Does nothing: the KafkaTemplate closes its producer after every send, and the
+     * broker outlives it.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void close(Duration timeout) {
+    }
+
+    @Override
+    public void initTransactions() {
+        throw new UnsupportedOperationException("The in-memory Kafka broker does not support transactions");
+    }
+
+    @Override
+    public void beginTransaction() {
+        throw new UnsupportedOperationException("The in-memory Kafka broker does not support transactions");
+    }
+
+    @Override
+    @Deprecated
+    public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets, String consumerGroupId) {
+        throw new UnsupportedOperationException("The in-memory Kafka broker does not support transactions");
+    }
+
+    @Override
+    public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets,
+                                         ConsumerGroupMetadata groupMetadata) {
+        throw new UnsupportedOperationException("The in-memory Kafka broker does not support transactions");
+    }
+
+    @Override
+    public void commitTransaction() {
+        throw new UnsupportedOperationException("The in-memory Kafka broker does not support transactions");
+    }
+
+    @Override
+    public void abortTransaction() {
+        throw new UnsupportedOperationException("The in-memory Kafka broker does not support transactions");
+    }
+}
@@ -0,0 +1,152 @@
+package com.stockmarket.app.service.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Monotonically increasing version of the stock catalogue.
+ *
+ * Every change to a stock (price tick, metadata update, create or delete) bumps the
+ * version by one and remembers the version at which each symbol last changed. This
+ * lets GET /api/stocks answer If-None-Match with 304 Not Modified, and lets pollers
+ * ask only for the symbols that changed since the version they last saw.
+ *
+ * Clients never see the bare number. They get a token "<runId>-<version>", where runId
+ * is random per run of the application. A token from an earlier run (or from another
+ * instance behind the same load balancer) carries a different runId and is rejected,
+ * so it can never match an ETag or produce an incomplete delta.
+ * StockQuoteCache calls markChanged/markRemoved from its write-through, after commit.
+ */
+@Component
+public class StockCatalogVersion {
+
+    private final String runId;
+    private final Map<String, Change> changes = new ConcurrentHashMap<>();
+    // Guarded by this; only written while holding the lock so readers see complete changes
+    private long version;
+
+    public StockCatalogVersion() {
+        this.runId = Long.toHexString(new SecureRandom().nextLong());
+    }
+
+    /**
+     * The current catalogue version.
+     */
+    public synchronized long current() {
+        return version;
+    }
+
+    /**
+     * The current catalogue version as a token for clients (ETag and delta requests).
+     */
+    public String currentToken() {
+        return token(current());
+    }
+
+    /**
+     * The client token for a version of this run.
+     */
+    public String token(long version) {
+        return runId + "-" + version;
+    }
+
+    /**
+     * Record that a stock was created or changed.
+     */
+    public synchronized void markChanged(String symbol) {
+        changes.put(symbol, new Change(++version, false));
+    }
+
+    /**
+     * Record that a stock was deleted.
+     */
+    public synchronized void markRemoved(String symbol) {
+        changes.put(symbol, new Change(++version, true));
+    }
+
+    /**
+     * Whether a stock was changed or removed after the given version.
+     */
+    public synchronized boolean changedSince(String symbol, long since) {
+        Change change = changes.get(symbol);
+        return change != null && change.version > since;
+    }
+
+    /**
+     * The symbols that changed or were removed after the given version.
+     *
+     * If the token is not from this run of the application (e.g. after a restart, or from
+     * another instance), the result is marked as full and the caller should send a full snapshot.
+     *
+     * @param sinceToken the version token the client already has
+     * @return the changes, tagged with the token of the version they bring the client to
+     */
+    public CatalogChanges changesSince(String sinceToken) {
+        // Reading the version under the lock guarantees every change up to it is visible
+        long now = current();
+        long since = parseToken(sinceToken);
+        if (since < 0 || since > now) {
+            return new CatalogChanges(token(now), true, List.of(), List.of());
+        }
+        List<String> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        changes.forEach((symbol, change) -> {
+            if (change.version > since) {
+                (change.removed ? removed : changed).add(symbol);
+            }
+        });
+        return new CatalogChanges(token(now), false, changed, removed);
+    }
+
+    /**
+     * The version in a token of this run, or -1 if the token is malformed or from another run.
+     * Surrounding quotes are ignored, so an ETag can be passed back as is.
+     */
+    private long parseToken(String token) {
+        if (token == null) {
+            return -1;
+        }
+        String value = token.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        String prefix = runId + "-";
+        if (!value.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Result of changesSince.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class CatalogChanges {
+        private String version;
+        private boolean full;
+        private List<String> changedSymbols;
+        private List<String> removedSymbols;
+    }
+
+    private static final class Change {
+        private final long version;
+        private final boolean removed;
+
+        private Change(long version, boolean removed) {
+            this.version = version;
+            this.removed = removed;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.stockmarket.app.service.cache;
+
+import com.stockmarket.app.dto.StockDTO;
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.util.AfterCommit;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory, symbol-keyed cache of stock quotes that sits in front of the StockRepository.
+ *
+ * Every code path that changes a stock (create, update, delete and the price simulator)
+ * writes through to this cache, so symbol lookups can be answered without a database
+ * round trip. Writes made inside a transaction are only applied after the transaction
+ * commits, which keeps rolled-back changes out of the cache. Each write-through also
+ * bumps the StockCatalogVersion, so the catalogue version moves with the cached data.
+ *
+ * A quote loaded after a miss is only cached if its stock has not changed since the load
+ * started (see populate), so a load that raced with a delete cannot bring the deleted
+ * stock back into the cache.
+ *
+ * Hit, miss and eviction counters are registered with Micrometer and are available
+ * through the actuator metrics endpoint:
+ * - stock.quote.cache.requests (tag result=hit|miss)
+ * - stock.quote.cache.evictions
+ * - stock.quote.cache.size
+ */
+@Component
+@Slf4j
+public class StockQuoteCache {
+
+    private final Map<String, StockDTO> quotes = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final StockCatalogVersion catalogVersion;
+    private final int maxEntries;
+
+    public StockQuoteCache(MeterRegistry meterRegistry,
+                           StockCatalogVersion catalogVersion,
+                           @Value("${stockcache.max-entries:100000}") int maxEntries) {
+        this.catalogVersion = catalogVersion;
+        this.maxEntries = maxEntries;
+
+        FunctionCounter.builder("stock.quote.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Quote lookups answered from the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("stock.quote.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Quote lookups that had to go to the database")
+                .register(meterRegistry);
+        FunctionCounter.builder("stock.quote.cache.evictions", evictions, LongAdder::sum)
+                .description("Quotes removed because of deletes or the size limit")
+                .register(meterRegistry);
+        Gauge.builder("stock.quote.cache.size", quotes, Map::size)
+                .description("Number of cached quotes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Look up a cached quote and record a hit or a miss.
+     *
+     * @param symbol the stock symbol
+     * @return the cached quote, or empty if the caller has to load it
+     */
+    public Optional<StockDTO> get(String symbol) {
+        StockDTO quote = quotes.get(symbol);
+        if (quote != null) {
+            hits.increment();
+            return Optional.of(quote);
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * The catalogue version to read before loading a quote for populate().
+     */
+    public long currentVersion() {
+        return catalogVersion.current();
+    }
+
+    /**
+     * Store a quote that was just loaded from the database after a miss.
+     *
+     * A concurrent write-through is never overwritten by an older value read before that
+     * write committed, and the quote is dropped if its stock was changed or deleted after
+     * loadVersion, since the load may have read the state from before that change.
+     *
+     * @param quote       the loaded quote
+     * @param loadVersion the currentVersion() read before the quote was loaded
+     */
+    public void populate(StockDTO quote, long loadVersion) {
+        String symbol = quote.getSymbol();
+        boolean[] inserted = new boolean[1];
+        // The check runs under the entry's lock, so an evict cannot slip in between check and insert
+        quotes.compute(symbol, (key, cached) -> {
+            if (cached != null || catalogVersion.changedSince(symbol, loadVersion)) {
+                return cached;
+            }
+            inserted[0] = true;
+            return quote;
+        });
+        if (inserted[0]) {
+            enforceLimit(symbol);
+        }
+    }
+
+    /**
+     * Write-through of a changed stock. Applied after commit when called inside a transaction.
+     *
+     * @param quote the new state of the stock
+     */
+    public void put(StockDTO quote) {
+        AfterCommit.run(() -> {
+            if (quotes.put(quote.getSymbol(), quote) == null) {
+                enforceLimit(quote.getSymbol());
+            }
+            catalogVersion.markChanged(quote.getSymbol());
+        });
+    }
+
+    /**
+     * Apply a price update from the Kafka price stream to the cached quote, if there is one.
+     * Applied after commit when called inside a transaction.
+     *
+     * @param update the new price of the stock
+     */
+    public void applyPriceUpdate(StockPriceUpdateDTO update) {
+        AfterCommit.run(() -> {
+            quotes.computeIfPresent(update.getSymbol(), (symbol, quote) -> isOlder(update, quote) ? quote
+                    : quote.toBuilder()
+                    .currentPrice(update.getPrice())
+                    .lastUpdated(update.getTimestamp())
+                    .build());
+            catalogVersion.markChanged(update.getSymbol());
+        });
+    }
+
+    /**
+     * Remove a deleted stock. Applied after commit when called inside a transaction.
+     *
+     * @param symbol the stock symbol
+     */
+    public void evict(String symbol) {
+        AfterCommit.run(() -> {
+            // Marked first: a populate that runs after the mark drops its quote, one that ran before is removed here
+            catalogVersion.markRemoved(symbol);
+            if (quotes.remove(symbol) != null) {
+                evictions.increment();
+            }
+        });
+    }
+
+    /**
+     * Drop every cached quote, e.g. after bulk changes made outside the service layer.
+     */
+    public void clear() {
+        int size = quotes.size();
+        quotes.clear();
+        evictions.add(size);
+        log.info("Cleared {} quotes from the cache", size);
+    }
+
+    public int size() {
+        return quotes.size();
+    }
+
+    /**
+     * Keeps the cache within its configured size by evicting arbitrary entries
+     * other than the one that was just inserted.
+     */
+    private void enforceLimit(String justInserted) {
+        if (quotes.size() <= maxEntries) {
+            return;
+        }
+        Iterator<String> keys = quotes.keySet().iterator();
+        while (quotes.size() > maxEntries && keys.hasNext()) {
+            String key = keys.next();
+            if (!key.equals(justInserted) && quotes.remove(key) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static boolean isOlder(StockPriceUpdateDTO update, StockDTO quote) {
+        return update.getTimestamp() == null
+                || (quote.getLastUpdated() != null && update.getTimestamp().isBefore(quote.getLastUpdated()));
+    }
+}
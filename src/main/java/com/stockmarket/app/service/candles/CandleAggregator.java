@@ -0,0 +1,302 @@
+package com.stockmarket.app.service.candles;
+
+import com.stockmarket.app.dto.CandleDTO;
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.service.ingest.TransactionsImportedEvent;
+import com.stockmarket.app.util.FixedPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Builds OHLCV candles at 1m, 5m, 1h and 1d resolutions from the stream of price updates.
+ *
+ * Each price update touches only the open bar of each resolution, so the work per tick
+ * is constant. Trade volume comes from the Transaction events published when
+ * transactions are created. Those only ever add volume: prices and bar boundaries come from
+ * the ticks alone, and volume that finds no open bar for its time (the bar has been closed
+ * already, or its ticks have not arrived yet) is kept aside for the bar of the next tick.
+ *
+ * Completed bars are handed to a queue, and a scheduled flush moves them into a bounded
+ * in-memory history per symbol and resolution (candles.max-history bars). The flush also
+ * closes bars whose time is over when a symbol has stopped ticking. Charts read from this
+ * history instead of recomputing bars from raw ticks.
+ */
+@Component
+@Slf4j
+public class CandleAggregator {
+
+    private static final CandleInterval[] INTERVALS = CandleInterval.values();
+
+    private final Map<String, SymbolCandles> symbols = new ConcurrentHashMap<>();
+    private final Queue<Bar> completed = new ConcurrentLinkedQueue<>();
+    private final int maxHistory;
+    private final ZoneId zone;
+
+    @Autowired
+    public CandleAggregator(@Value("${candles.max-history:1440}") int maxHistory) {
+        this(maxHistory, ZoneId.systemDefault());
+    }
+
+    CandleAggregator(int maxHistory, ZoneId zone) {
+        this.maxHistory = maxHistory;
+        this.zone = zone;
+    }
+
+    /**
+     * Add a published price update to the open bars of its symbol.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceUpdate(StockPriceUpdateDTO update) {
+        if (update.getPrice() == null) {
+            return;
+        }
+        LocalDateTime timestamp = update.getTimestamp() != null ? update.getTimestamp() : LocalDateTime.now();
+        onTick(update.getSymbol(), toEpochMillis(timestamp), FixedPoint.of(update.getPrice()), 0);
+    }
+
+    /**
+     * Add the quantity of a new transaction to the volume of the open bars of its symbol.
+     * The counter leg of a matched trade is skipped, since its BUY already adds the shares.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransaction(Transaction transaction) {
+        if (transaction.getQuantity() == null || transaction.isCounterLeg()) {
+            return;
+        }
+        LocalDateTime timestamp = transaction.getTimestamp() != null ? transaction.getTimestamp() : LocalDateTime.now();
+        symbolCandles(transaction.getStockSymbol()).addVolume(toEpochMillis(timestamp), transaction.getQuantity());
+    }
+
+    /**
+     * Add the volume of a chunk of imported transactions.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransactionsImported(TransactionsImportedEvent event) {
+        event.getTransactions().forEach(this::onTransaction);
+    }
+
+    /**
+     * Apply one tick. Prices are FixedPoint values.
+     */
+    void onTick(String symbol, long epochMillis, long price, long volume) {
+        symbolCandles(symbol).tick(epochMillis, price, volume);
+    }
+
+    /**
+     * Move completed bars into the history and close bars whose time is over.
+     */
+    @Scheduled(fixedDelayString = "${candles.flush-interval:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        symbols.values().forEach(candles -> candles.closeExpired(now));
+
+        int flushed = 0;
+        Bar bar;
+        while ((bar = completed.poll()) != null) {
+            symbols.get(bar.symbol).addToHistory(bar);
+            flushed++;
+        }
+        if (flushed > 0) {
+            log.debug("Flushed {} completed candles", flushed);
+        }
+    }
+
+    /**
+     * The most recent bars of a symbol, oldest first, including the bar still being built.
+     *
+     * @param symbol   the stock symbol
+     * @param interval the bar resolution
+     * @param limit    the maximum number of bars to return
+     */
+    public List<CandleDTO> getCandles(String symbol, CandleInterval interval, int limit) {
+        SymbolCandles candles = symbols.get(symbol.toUpperCase(Locale.ROOT));
+        if (candles == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        return candles.snapshot(interval, limit);
+    }
+
+    private SymbolCandles symbolCandles(String symbol) {
+        return symbols.computeIfAbsent(symbol.toUpperCase(Locale.ROOT), SymbolCandles::new);
+    }
+
+    private long toEpochMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * One OHLCV bar in FixedPoint values. Open bars are only changed while holding the
+     * SymbolCandles lock; once completed, a bar is never changed again.
+     */
+    private static final class Bar {
+        private final String symbol;
+        private final CandleInterval interval;
+        private long start;
+        private long open;
+        private long high;
+        private long low;
+        private long close;
+        private long volume;
+        private long ticks;
+        private boolean active;
+
+        private Bar(String symbol, CandleInterval interval) {
+            this.symbol = symbol;
+            this.interval = interval;
+        }
+
+        private void reset(long start, long price) {
+            this.start = start;
+            this.open = price;
+            this.high = price;
+            this.low = price;
+            this.close = price;
+            this.volume = 0;
+            this.ticks = 0;
+            this.active = true;
+        }
+
+        private Bar copy() {
+            Bar copy = new Bar(symbol, interval);
+            copy.start = start;
+            copy.open = open;
+            copy.high = high;
+            copy.low = low;
+            copy.close = close;
+            copy.volume = volume;
+            copy.ticks = ticks;
+            return copy;
+        }
+
+        private CandleDTO toDTO(ZoneId zone, boolean complete) {
+            return CandleDTO.builder()
+                    .symbol(symbol)
+                    .interval(interval.getCode())
+                    .openTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(start), zone))
+                    .open(FixedPoint.toBigDecimalAtLeast(open, 2))
+                    .high(FixedPoint.toBigDecimalAtLeast(high, 2))
+                    .low(FixedPoint.toBigDecimalAtLeast(low, 2))
+                    .close(FixedPoint.toBigDecimalAtLeast(close, 2))
+                    .volume(volume)
+                    .ticks(ticks)
+                    .complete(complete)
+                    .build();
+        }
+    }
+
+    /**
+     * The open bar and the completed history of every resolution for one symbol.
+     */
+    private final class SymbolCandles {
+        private final Bar[] open = new Bar[INTERVALS.length];
+        private final List<ArrayDeque<Bar>> history = new ArrayList<>(INTERVALS.length);
+        // Volume without an open bar for its time, added to the bar of the next tick
+        private final long[] pendingVolume = new long[INTERVALS.length];
+
+        private SymbolCandles(String symbol) {
+            for (CandleInterval interval : INTERVALS) {
+                open[interval.ordinal()] = new Bar(symbol, interval);
+                history.add(new ArrayDeque<>());
+            }
+        }
+
+        private synchronized void tick(long epochMillis, long price, long volume) {
+            for (int i = 0; i < INTERVALS.length; i++) {
+                Bar bar = roll(i, epochMillis, price);
+                bar.high = Math.max(bar.high, price);
+                bar.low = Math.min(bar.low, price);
+                bar.close = price;
+                bar.volume += volume + pendingVolume[i];
+                pendingVolume[i] = 0;
+                bar.ticks++;
+            }
+        }
+
+        /**
+         * Add volume to the open bar of each resolution. Never opens, completes or prices a
+         * bar: without an open bar covering the time, the volume waits for the next tick.
+         * Late volume for an already completed bar goes to the current bar, like late ticks.
+         */
+        private synchronized void addVolume(long epochMillis, long volume) {
+            for (int i = 0; i < INTERVALS.length; i++) {
+                Bar bar = open[i];
+                if (bar.active && INTERVALS[i].bucketStart(epochMillis, zone) <= bar.start) {
+                    bar.volume += volume;
+                } else {
+                    pendingVolume[i] += volume;
+                }
+            }
+        }
+
+        /**
+         * Return the open bar for the time, completing the previous bar if the time is past it.
+         * Late ticks for an already completed bar are added to the current bar.
+         */
+        private Bar roll(int index, long epochMillis, long price) {
+            Bar bar = open[index];
+            long bucket = INTERVALS[index].bucketStart(epochMillis, zone);
+            if (!bar.active) {
+                bar.reset(bucket, price);
+            } else if (bucket > bar.start) {
+                completed.add(bar.copy());
+                bar.reset(bucket, price);
+            }
+            return bar;
+        }
+
+        private synchronized void closeExpired(long now) {
+            for (int i = 0; i < INTERVALS.length; i++) {
+                Bar bar = open[i];
+                if (bar.active && INTERVALS[i].bucketStart(now, zone) > bar.start) {
+                    completed.add(bar.copy());
+                    bar.active = false;
+                }
+            }
+        }
+
+        private synchronized void addToHistory(Bar bar) {
+            ArrayDeque<Bar> bars = history.get(bar.interval.ordinal());
+            bars.addLast(bar);
+            while (bars.size() > maxHistory) {
+                bars.removeFirst();
+            }
+        }
+
+        private synchronized List<CandleDTO> snapshot(CandleInterval interval, int limit) {
+            ArrayDeque<Bar> bars = history.get(interval.ordinal());
+            Bar current = open[interval.ordinal()];
+            int completedCount = Math.min(bars.size(), current.active ? limit - 1 : limit);
+
+            List<CandleDTO> result = new ArrayList<>(completedCount + 1);
+            int skip = bars.size() - completedCount;
+            for (Bar bar : bars) {
+                if (skip-- > 0) {
+                    continue;
+                }
+                result.add(bar.toDTO(zone, true));
+            }
+            if (current.active) {
+                result.add(current.toDTO(zone, false));
+            }
+            return result;
+        }
+    }
+}
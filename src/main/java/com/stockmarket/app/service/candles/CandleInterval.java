@@ -0,0 +1,50 @@
+package com.stockmarket.app.service.candles;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bar resolutions kept by the CandleAggregator.
+ */
+public enum CandleInterval {
+    ONE_MINUTE("1m", TimeUnit.MINUTES.toMillis(1)),
+    FIVE_MINUTES("5m", TimeUnit.MINUTES.toMillis(5)),
+    ONE_HOUR("1h", TimeUnit.HOURS.toMillis(1)),
+    ONE_DAY("1d", TimeUnit.DAYS.toMillis(1));
+
+    private final String code;
+    private final long millis;
+
+    CandleInterval(String code, long millis) {
+        this.code = code;
+        this.millis = millis;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Start of the bar that contains the given time. Bars are aligned to the
+     * local time zone, so daily bars start at local midnight.
+     */
+    public long bucketStart(long epochMillis, ZoneId zone) {
+        long offset = zone.getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+        return epochMillis - Math.floorMod(epochMillis + offset, millis);
+    }
+
+    /**
+     * Look up an interval by its code (e.g. "5m").
+     *
+     * @throws IllegalArgumentException for an unknown code
+     */
+    public static CandleInterval fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(interval -> interval.code.equalsIgnoreCase(code))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown candle interval: " + code
+                        + " (expected 1m, 5m, 1h or 1d)"));
+    }
+}
@@ -0,0 +1,135 @@
+package com.stockmarket.app.service.dispatch;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fans work out to a fixed set of single-threaded lanes by symbol.
+ *
+ * A symbol always hashes to the same lane and every lane runs one task at a time, so the
+ * records of a symbol are handled in the order they were dispatched while different
+ * symbols are handled in parallel on all lanes (kafka.consumer.lanes, by default one per core).
+ *
+ * The Kafka listeners call dispatchAndWait with a whole poll and only return when every
+ * lane has finished its part, so the offsets are still committed after the work is done.
+ * A lane queue holds at most kafka.consumer.lane-queue-capacity tasks; when it is full the
+ * dispatching thread waits, which slows the consumer down instead of buffering without limit.
+ */
+@Component
+@Slf4j
+public class SymbolLaneDispatcher {
+
+    private final List<ThreadPoolExecutor> lanes;
+
+    public SymbolLaneDispatcher(MeterRegistry meterRegistry,
+                                @Value("${kafka.consumer.lanes:0}") int laneCount,
+                                @Value("${kafka.consumer.lane-queue-capacity:64}") int queueCapacity) {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ArrayList<>(count);
+        for (int lane = 0; lane < count; lane++) {
+            String threadName = "symbol-lane-" + lane;
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, SymbolLaneDispatcher::waitForSpace);
+            lanes.add(executor);
+        }
+        Gauge.builder("kafka.consumer.lanes.queued", lanes,
+                        executors -> executors.stream().mapToInt(executor -> executor.getQueue().size()).sum())
+                .description("Tasks waiting in the symbol lanes")
+                .register(meterRegistry);
+        log.info("Symbol lane dispatcher using {} lanes", count);
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * The lane of a symbol.
+     */
+    public int laneOf(String symbol) {
+        int hash = symbol.hashCode();
+        // Spread the bits so symbols that differ only in the last character still spread out
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash * 0x9E3779B9, lanes.size());
+    }
+
+    /**
+     * Split the items by the lane of their symbol, handle every lane's items on that lane
+     * and wait until all of them are done.
+     *
+     * The items of one lane keep their relative order and are passed to the handler as one list.
+     *
+     * @param items    the items to handle
+     * @param symbolOf extracts the symbol of an item
+     * @param handler  called once per non-empty lane, on the lane thread
+     * @throws RuntimeException the first failure of a handler, after all lanes have finished
+     */
+    public <T> void dispatchAndWait(List<T> items, Function<T, String> symbolOf, Consumer<List<T>> handler) {
+        if (items.isEmpty()) {
+            return;
+        }
+        List<List<T>> perLane = new ArrayList<>(lanes.size());
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            perLane.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            perLane.get(laneOf(symbolOf.apply(item))).add(item);
+        }
+
+        List<CompletableFuture<Void>> results = new ArrayList<>(lanes.size());
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            List<T> laneItems = perLane.get(lane);
+            if (!laneItems.isEmpty()) {
+                results.add(CompletableFuture.runAsync(() -> handler.accept(laneItems), lanes.get(lane)));
+            }
+        }
+        try {
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Rejection handler that blocks the dispatching thread until the lane queue has room.
+     */
+    private static void waitForSpace(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Symbol lane is shut down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a symbol lane", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.stockmarket.app.service.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The append-only tick log of one symbol: a directory of time-ordered segments.
+ *
+ * Appends are serialized per symbol; reads never block and only see fully written
+ * records. Timestamps are kept non-decreasing (a tick older than the last one is
+ * stored with the last timestamp) so a time range can be found with a binary search.
+ */
+class SymbolTickLog {
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final List<TickSegment> segments = new CopyOnWriteArrayList<>();
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    SymbolTickLog(Path directory, int segmentRecords) {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                List<Path> segmentFiles = files.filter(TickSegment::isSegmentFile).sorted().collect(Collectors.toList());
+                for (Path file : segmentFiles) {
+                    segments.add(TickSegment.open(file));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open tick log " + directory, e);
+        }
+        if (!segments.isEmpty()) {
+            lastTimestamp = segments.get(segments.size() - 1).lastTimestamp();
+        }
+    }
+
+    synchronized void append(long epochMillis, long price, long change, long changePercent) {
+        long timestamp = Math.max(epochMillis, lastTimestamp);
+        TickSegment current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (current == null || current.isFull()) {
+            // Roll to a new segment once the current one is full
+            current = TickSegment.create(directory, segments.size(), timestamp, segmentRecords);
+            segments.add(current);
+        }
+        current.append(timestamp, price, change, changePercent);
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Visit the ticks with from <= timestamp <= to in time order, up to limit ticks.
+     *
+     * @return the number of ticks visited
+     */
+    long read(long from, long to, long limit, TickVisitor visitor) throws IOException {
+        List<TickSegment> snapshot = segments;
+        long visited = 0;
+        for (int i = 0; i < snapshot.size() && visited < limit; i++) {
+            TickSegment segment = snapshot.get(i);
+            if (segment.firstTimestamp() > to) {
+                break;
+            }
+            // Skip segments that end before the range starts
+            boolean hasNext = i + 1 < snapshot.size();
+            if (hasNext && snapshot.get(i + 1).firstTimestamp() < from) {
+                continue;
+            }
+            visited += segment.read(from, to, limit - visited, visitor);
+        }
+        return visited;
+    }
+
+    /**
+     * The price of the last tick at or before a time, or noPrice if there is none.
+     */
+    long priceAtOrBefore(long epochMillis, long noPrice) {
+        List<TickSegment> snapshot = segments;
+        // The last segment that starts at or before the time
+        int low = 0;
+        int high = snapshot.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (snapshot.get(middle).firstTimestamp() <= epochMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low - 1; i >= 0; i--) {
+            TickSegment segment = snapshot.get(i);
+            int index = segment.lowerBound(epochMillis + 1, segment.count()) - 1;
+            if (index >= 0) {
+                return segment.priceAt(index);
+            }
+        }
+        return noPrice;
+    }
+
+    long size() {
+        return segments.stream().mapToLong(TickSegment::count).sum();
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    void flush() {
+        segments.forEach(TickSegment::flush);
+    }
+}
@@ -0,0 +1,222 @@
+package com.stockmarket.app.service.history;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.util.FixedPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Durable, append-only history of every published stock price update.
+ *
+ * Each symbol has its own directory of memory-mapped segment files holding fixed-size
+ * binary records (see TickSegment). Appends go straight into the mapped memory, and
+ * a full segment is rolled over to a new file. Range reads binary-search the records
+ * by time and hand them to a TickVisitor, so millions of ticks can be streamed without
+ * JPA or an object per tick.
+ *
+ * Ticks are recorded from the StockPriceUpdateDTO events that KafkaProducerService
+ * publishes. Every update is sent inside a transaction (updateStock, or the transaction
+ * of a simulator shard), so it is only recorded once that transaction commits. An update
+ * published outside a transaction would be recorded right away.
+ */
+@Component
+@Slf4j
+public class TickHistoryStore {
+
+    // Symbols become directory names, so only allow characters that are safe in a path
+    private static final Pattern SYMBOL_PATTERN = Pattern.compile("[A-Z0-9._-]{1,20}");
+
+    // Returned by dailyCloses() for days before the first tick
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final boolean enabled;
+    private final Map<String, SymbolTickLog> logs = new ConcurrentHashMap<>();
+
+    public TickHistoryStore(@Value("${tickhistory.directory:./data/ticks}") String directory,
+                            @Value("${tickhistory.segment-records:65536}") int segmentRecords,
+                            @Value("${tickhistory.enabled:true}") boolean enabled) {
+        if (segmentRecords <= 0 || segmentRecords > (Integer.MAX_VALUE - TickSegment.HEADER_SIZE) / TickSegment.RECORD_SIZE) {
+            throw new IllegalArgumentException("tickhistory.segment-records is out of range: " + segmentRecords);
+        }
+        this.directory = Paths.get(directory);
+        this.segmentRecords = segmentRecords;
+        this.enabled = enabled;
+        if (enabled) {
+            log.info("Recording tick history in {} ({} ticks per segment)", this.directory.toAbsolutePath(), segmentRecords);
+        }
+    }
+
+    /**
+     * Record a published price update.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceUpdate(StockPriceUpdateDTO update) {
+        if (!enabled || update.getPrice() == null) {
+            return;
+        }
+        try {
+            LocalDateTime timestamp = update.getTimestamp() != null ? update.getTimestamp() : LocalDateTime.now();
+            append(update.getSymbol(), toEpochMillis(timestamp), FixedPoint.of(update.getPrice()),
+                    toFixedPoint(update.getChange()), toFixedPoint(update.getChangePercent()));
+        } catch (RuntimeException e) {
+            // History must never break price publishing
+            log.error("Failed to record tick for {}: {}", update.getSymbol(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append one tick to a symbol's log. Prices and changes are FixedPoint values.
+     */
+    public void append(String symbol, long epochMillis, long price, long change, long changePercent) {
+        logFor(symbol).append(epochMillis, price, change, changePercent);
+    }
+
+    /**
+     * Visit a symbol's ticks between two times (both inclusive) in time order.
+     *
+     * @param symbol  the stock symbol
+     * @param from    the first time to include
+     * @param to      the last time to include
+     * @param limit   the maximum number of ticks to visit
+     * @param visitor receives every tick
+     * @return the number of ticks visited
+     */
+    public long readTicks(String symbol, LocalDateTime from, LocalDateTime to, long limit, TickVisitor visitor)
+            throws IOException {
+        SymbolTickLog tickLog = existingLog(symbol);
+        return tickLog == null ? 0 : tickLog.read(toEpochMillis(from), toEpochMillis(to), limit, visitor);
+    }
+
+    /**
+     * The closing price of a symbol on each of a number of days: the last tick up to the end
+     * of the day, so a day without ticks keeps the previous close. One binary search per day.
+     *
+     * @param symbol the stock symbol
+     * @param from   the first day
+     * @param days   the number of days
+     * @return FixedPoint closes, NO_PRICE for days before the first tick
+     */
+    public long[] dailyCloses(String symbol, LocalDate from, int days) {
+        long[] closes = new long[days];
+        Arrays.fill(closes, NO_PRICE);
+        SymbolTickLog tickLog = existingLog(symbol);
+        if (tickLog == null) {
+            return closes;
+        }
+        for (int d = 0; d < days; d++) {
+            long endOfDay = toEpochMillis(from.plusDays(d + 1L).atStartOfDay()) - 1;
+            closes[d] = tickLog.priceAtOrBefore(endOfDay, NO_PRICE);
+        }
+        return closes;
+    }
+
+    /**
+     * Write a symbol's ticks between two times as a JSON array, one tick at a time.
+     *
+     * @return the number of ticks written
+     */
+    public long writeTicksAsJson(String symbol, LocalDateTime from, LocalDateTime to, long limit, OutputStream out)
+            throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write('[');
+        boolean[] first = {true};
+        long written = readTicks(symbol, from, to, limit, (epochMillis, price, change, changePercent) -> {
+            if (!first[0]) {
+                writer.write(',');
+            }
+            first[0] = false;
+            writer.write("{\"timestamp\":\"");
+            writer.write(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).toString());
+            writer.write("\",\"price\":");
+            writer.write(toJsonNumber(price));
+            writer.write(",\"change\":");
+            writer.write(toJsonNumber(change));
+            writer.write(",\"changePercent\":");
+            writer.write(toJsonNumber(changePercent));
+            writer.write('}');
+        });
+        writer.write(']');
+        writer.flush();
+        return written;
+    }
+
+    /**
+     * Number of ticks recorded for a symbol (only for symbols touched since startup).
+     */
+    public long size(String symbol) {
+        SymbolTickLog tickLog = logs.get(normalize(symbol));
+        return tickLog == null ? 0 : tickLog.size();
+    }
+
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Write all mapped segments back to disk.
+     */
+    @PreDestroy
+    public void flush() {
+        logs.values().forEach(SymbolTickLog::flush);
+    }
+
+    // The log of a symbol, opened from disk if it was not touched since startup, or null if there is none
+    private SymbolTickLog existingLog(String symbol) {
+        String key = normalize(symbol);
+        SymbolTickLog tickLog = logs.get(key);
+        if (tickLog == null && directory.resolve(key).toFile().isDirectory()) {
+            tickLog = logFor(key);
+        }
+        return tickLog;
+    }
+
+    private SymbolTickLog logFor(String symbol) {
+        String key = normalize(symbol);
+        return logs.computeIfAbsent(key, s -> new SymbolTickLog(directory.resolve(s), segmentRecords));
+    }
+
+    /**
+     * Upper-case a symbol and check that it can be used as a directory name.
+     *
+     * @throws IllegalArgumentException if the symbol contains anything but letters, digits, '.', '_' or '-'
+     */
+    public static String normalize(String symbol) {
+        String key = symbol == null ? "" : symbol.toUpperCase(Locale.ROOT);
+        if (!SYMBOL_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid stock symbol: " + symbol);
+        }
+        return key;
+    }
+
+    // Two decimals unless the value really has more
+    private static String toJsonNumber(long value) {
+        return FixedPoint.toBigDecimalAtLeast(value, 2).toPlainString();
+    }
+
+    private static long toFixedPoint(BigDecimal value) {
+        return value == null ? 0 : FixedPoint.of(value);
+    }
+}
@@ -0,0 +1,184 @@
+package com.stockmarket.app.service.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One fixed-size, memory-mapped segment file of a symbol's tick log.
+ *
+ * Layout: a 24 byte header (magic, version, record count, first timestamp) followed by fixed-size
+ * 32 byte records of four longs: epoch millis, price, change and change percent.
+ * The record is written before the count is bumped, so a crash can at most lose
+ * the tick that was being appended.
+ */
+class TickSegment {
+
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 32;
+
+    private static final int MAGIC = 0x5449434B; // "TICK"
+    private static final int VERSION = 1;
+    private static final int COUNT_OFFSET = 8;
+    private static final int FIRST_TIMESTAMP_OFFSET = 16;
+
+    private final Path file;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+    private final long firstTimestamp;
+    // Written by the single appending thread, read by any number of readers
+    private volatile int count;
+
+    private TickSegment(Path file, int capacity, MappedByteBuffer buffer, long firstTimestamp, int count) {
+        this.file = file;
+        this.capacity = capacity;
+        this.buffer = buffer;
+        this.firstTimestamp = firstTimestamp;
+        this.count = count;
+    }
+
+    /**
+     * Create a new, empty segment whose first tick will have the given timestamp.
+     *
+     * @param sequence the position of the segment in the symbol's log, used as its file name
+     */
+    static TickSegment create(Path directory, long sequence, long firstTimestamp, int capacity) {
+        Path file = directory.resolve(fileName(sequence));
+        MappedByteBuffer buffer = map(file, capacity);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(FIRST_TIMESTAMP_OFFSET, firstTimestamp);
+        buffer.putLong(COUNT_OFFSET, 0);
+        return new TickSegment(file, capacity, buffer, firstTimestamp, 0);
+    }
+
+    /**
+     * Open an existing segment file and recover its record count from the header.
+     */
+    static TickSegment open(Path file) {
+        try {
+            long size = Files.size(file);
+            int capacity = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+            MappedByteBuffer buffer = map(file, capacity);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalStateException("Not a tick segment file: " + file);
+            }
+            int count = (int) Math.min(buffer.getLong(COUNT_OFFSET), capacity);
+            long firstTimestamp = buffer.getLong(FIRST_TIMESTAMP_OFFSET);
+            return new TickSegment(file, capacity, buffer, firstTimestamp, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open tick segment " + file, e);
+        }
+    }
+
+    /**
+     * Segment files are numbered, zero padded so they sort in the order they were written.
+     */
+    static String fileName(long sequence) {
+        return String.format("%010d.ticks", sequence);
+    }
+
+    static boolean isSegmentFile(Path file) {
+        return file.getFileName().toString().endsWith(".ticks");
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity) {
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map tick segment " + file, e);
+        }
+    }
+
+    boolean isFull() {
+        return count >= capacity;
+    }
+
+    /**
+     * Append a record. Only one thread may append to a segment at a time.
+     */
+    void append(long epochMillis, long price, long change, long changePercent) {
+        int index = count;
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        buffer.putLong(offset, epochMillis);
+        buffer.putLong(offset + 8, price);
+        buffer.putLong(offset + 16, change);
+        buffer.putLong(offset + 24, changePercent);
+        buffer.putLong(COUNT_OFFSET, index + 1L);
+        count = index + 1;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long timestampAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * RECORD_SIZE);
+    }
+
+    long priceAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * RECORD_SIZE + 8);
+    }
+
+    long lastTimestamp() {
+        int size = count;
+        return size == 0 ? firstTimestamp : timestampAt(size - 1);
+    }
+
+    /**
+     * Index of the first record with a timestamp at or after the given time, or count() if there is none.
+     */
+    int lowerBound(long epochMillis, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestampAt(middle) < epochMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Visit every record with from <= timestamp <= to, stopping after limit records.
+     *
+     * @return the number of records visited
+     */
+    long read(long from, long to, long limit, TickVisitor visitor) throws IOException {
+        int size = count;
+        long visited = 0;
+        for (int index = lowerBound(from, size); index < size && visited < limit; index++) {
+            int offset = HEADER_SIZE + index * RECORD_SIZE;
+            long timestamp = buffer.getLong(offset);
+            if (timestamp > to) {
+                break;
+            }
+            visitor.visit(timestamp, buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+                    buffer.getLong(offset + 24));
+            visited++;
+        }
+        return visited;
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    Path file() {
+        return file;
+    }
+}
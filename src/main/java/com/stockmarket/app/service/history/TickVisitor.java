@@ -0,0 +1,13 @@
+package com.stockmarket.app.service.history;
+
+import java.io.IOException;
+
+/**
+ * Callback used to read ticks from the TickHistoryStore without creating an object per tick.
+ * Prices and changes are FixedPoint values.
+ */
+@FunctionalInterface
+public interface TickVisitor {
+
+    void visit(long epochMillis, long price, long change, long changePercent) throws IOException;
+}
@@ -0,0 +1,182 @@
+package com.stockmarket.app.service.impl;
+
+import com.stockmarket.app.dto.PortfolioPerformanceDTO;
+import com.stockmarket.app.repository.PerformanceRepository;
+import com.stockmarket.app.service.PortfolioPerformanceService;
+import com.stockmarket.app.service.history.TickHistoryStore;
+import com.stockmarket.app.service.performance.DailySeries;
+import com.stockmarket.app.service.performance.PerformanceMetrics;
+import com.stockmarket.app.service.performance.TradeLog;
+import com.stockmarket.app.util.FixedPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Implementation of the PortfolioPerformanceService interface.
+ *
+ * The trades of the requested portfolios are read with one streaming query into a
+ * TradeLog per portfolio, and the daily closes of their stocks are looked up in the
+ * persisted TickHistoryStore, so windows reaching back before the last restart are valued
+ * at market prices too. From there everything runs over primitive arrays: one pass builds
+ * the end-of-day values and flows, and one pass per measure computes the returns, so a
+ * five-year daily window is a few thousand array elements per stock.
+ *
+ * A batch request does the I/O once and then calculates the portfolios in parallel on a
+ * dedicated ForkJoinPool (performance.parallelism, all cores by default).
+ */
+@Service
+@Slf4j
+public class PortfolioPerformanceServiceImpl implements PortfolioPerformanceService {
+
+    private static final int MONEY_DECIMALS = 2;
+    private static final int RATIO_DECIMALS = 6;
+
+    private final PerformanceRepository performanceRepository;
+    private final TickHistoryStore tickHistoryStore;
+    private final int maxDays;
+    private final ForkJoinPool pool;
+
+    public PortfolioPerformanceServiceImpl(PerformanceRepository performanceRepository,
+                                           TickHistoryStore tickHistoryStore,
+                                           @Value("${performance.parallelism:0}") int parallelism,
+                                           @Value("${performance.max-days:3660}") int maxDays) {
+        this.performanceRepository = performanceRepository;
+        this.tickHistoryStore = tickHistoryStore;
+        this.maxDays = maxDays;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public Optional<PortfolioPerformanceDTO> getPerformance(Long portfolioId, LocalDate from, LocalDate to) {
+        LocalDate end = endOf(from, to);
+        TradeLog trades = loadTrades(List.of(portfolioId), end).get(portfolioId);
+        return Optional.ofNullable(trades).map(log -> calculate(portfolioId, log, from, end));
+    }
+
+    @Override
+    public List<PortfolioPerformanceDTO> getPerformance(List<Long> portfolioIds, LocalDate from, LocalDate to) {
+        LocalDate end = endOf(from, to);
+        Set<Long> ids = new LinkedHashSet<>(portfolioIds);
+        Map<Long, TradeLog> trades = loadTrades(ids, end);
+        List<ForkJoinTask<PortfolioPerformanceDTO>> tasks = new ArrayList<>(trades.size());
+        for (Long portfolioId : ids) {
+            TradeLog log = trades.get(portfolioId);
+            if (log != null) {
+                tasks.add(pool.submit(() -> calculate(portfolioId, log, from, end)));
+            }
+        }
+        List<PortfolioPerformanceDTO> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<PortfolioPerformanceDTO> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private LocalDate endOf(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        if (from != null) {
+            if (end.isBefore(from)) {
+                throw new IllegalArgumentException("'to' must not be before 'from'");
+            }
+            if (end.toEpochDay() - from.toEpochDay() >= maxDays) {
+                throw new IllegalArgumentException("The window must not be longer than " + maxDays + " days");
+            }
+        }
+        return end;
+    }
+
+    private Map<Long, TradeLog> loadTrades(Collection<Long> portfolioIds, LocalDate end) {
+        Map<Long, TradeLog> trades = new ConcurrentHashMap<>();
+        performanceRepository.forEachTrade(portfolioIds, end.plusDays(1).atStartOfDay(),
+                (portfolioId, timestamp, symbol, type, quantity, price) -> trades
+                        .computeIfAbsent(portfolioId, id -> new TradeLog())
+                        .add(timestamp.toLocalDate(), symbol, type, quantity, price));
+        return trades;
+    }
+
+    private PortfolioPerformanceDTO calculate(Long portfolioId, TradeLog trades, LocalDate from, LocalDate end) {
+        long start = System.nanoTime();
+        LocalDate first = from;
+        if (first == null) {
+            // From the first trade, but at most max-days back
+            LocalDate earliest = end.minusDays(maxDays - 1L);
+            first = trades.getFirstDay().isBefore(earliest) ? earliest : trades.getFirstDay();
+        }
+        LocalDate windowStart = first;
+        int length = (int) (end.toEpochDay() - windowStart.toEpochDay() + 1);
+        DailySeries series = trades.toDailySeries(windowStart, length, symbol -> closes(symbol, windowStart, length));
+
+        double[] returns = PerformanceMetrics.dailyReturns(series);
+        double timeWeighted = PerformanceMetrics.timeWeightedReturn(returns);
+        double moneyWeighted = PerformanceMetrics.moneyWeightedReturn(series);
+        PortfolioPerformanceDTO performance = PortfolioPerformanceDTO.builder()
+                .portfolioId(portfolioId)
+                .from(windowStart)
+                .to(end)
+                .days(length)
+                .startValue(toDecimal(series.getStartValue(), MONEY_DECIMALS))
+                .endValue(toDecimal(series.endValue(), MONEY_DECIMALS))
+                .netInflow(toDecimal(series.netFlow(), MONEY_DECIMALS))
+                .timeWeightedReturn(toDecimal(timeWeighted, RATIO_DECIMALS))
+                .annualizedTimeWeightedReturn(toDecimal(PerformanceMetrics.annualize(timeWeighted, length), RATIO_DECIMALS))
+                .moneyWeightedReturn(toDecimal(moneyWeighted, RATIO_DECIMALS))
+                .annualizedMoneyWeightedReturn(toDecimal(PerformanceMetrics.annualize(moneyWeighted, length), RATIO_DECIMALS))
+                .volatility(toDecimal(PerformanceMetrics.volatility(returns), RATIO_DECIMALS))
+                .maxDrawdown(toDecimal(PerformanceMetrics.maxDrawdown(returns), RATIO_DECIMALS))
+                .build();
+        log.debug("Calculated the performance of portfolio {} over {} days of {} stocks in {} µs",
+                portfolioId, length, trades.getSymbols().size(), (System.nanoTime() - start) / 1_000);
+        return performance;
+    }
+
+    /**
+     * The daily closes of a stock for the day before the window (index 0) and each day of it,
+     * NaN before its first recorded tick.
+     */
+    private double[] closes(String symbol, LocalDate windowStart, int length) {
+        double[] closes = new double[length + 1];
+        Arrays.fill(closes, Double.NaN);
+        long[] ticks;
+        try {
+            ticks = tickHistoryStore.dailyCloses(symbol, windowStart.minusDays(1), length + 1);
+        } catch (IllegalArgumentException e) {
+            // Not a symbol the tick history can hold; valued at its traded prices
+            return closes;
+        }
+        for (int i = 0; i < ticks.length; i++) {
+            if (ticks[i] != TickHistoryStore.NO_PRICE) {
+                closes[i] = (double) ticks[i] / FixedPoint.ONE;
+            }
+        }
+        return closes;
+    }
+
+    private static BigDecimal toDecimal(double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return null;
+        }
+        return BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP);
+    }
+}
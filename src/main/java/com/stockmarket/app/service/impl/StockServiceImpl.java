@@ -1,5 +1,6 @@
 package com.stockmarket.app.service.impl;
 
+import com.stockmarket.app.dto.StockChangesDTO;
 import com.stockmarket.app.dto.StockCreateRequest;
 import com.stockmarket.app.dto.StockDTO;
 import com.stockmarket.app.dto.StockPriceUpdateDTO;
@@ -8,6 +9,9 @@ import com.stockmarket.app.model.Stock;
 import com.stockmarket.app.repository.StockRepository;
 import com.stockmarket.app.service.KafkaProducerService;
 import com.stockmarket.app.service.StockService;
+import com.stockmarket.app.service.cache.StockCatalogVersion;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.util.FixedPoint;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -17,7 +21,9 @@ import javax.persistence.EntityNotFoundException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -48,6 +54,11 @@ public class StockServiceImpl implements StockService {
      */
     private final StockRepository stockRepository;
     private final KafkaProducerService kafkaProducerService;
+    private final StockQuoteCache quoteCache;
+    private final StockCatalogVersion catalogVersion;
+
+    // The last full catalogue and the version it was loaded at
+    private volatile CatalogSnapshot catalogSnapshot;
 
     /**
      * {@inheritDoc}
@@ -90,7 +101,9 @@ public class StockServiceImpl implements StockService {
         // Save the stock to the database and map to DTO
         Stock savedStock = stockRepository.save(stock);
         log.info("Stock created successfully with ID: {}", savedStock.getId());
-        return mapToDTO(savedStock);
+        StockDTO created = mapToDTO(savedStock);
+        quoteCache.put(created);
+        return created;
     }
 
     /**
@@ -113,16 +126,26 @@ public class StockServiceImpl implements StockService {
 
     /**
      * {@inheritDoc}
+     * 
+     * Served from the quote cache when possible. This method is deliberately not
+     * @Transactional: a cache hit must not open a transaction or borrow a connection,
+     * and on a miss the repository call runs in its own read-only transaction.
      */
     @Override
-    @Transactional(readOnly = true)
     public StockDTO getStockBySymbol(String symbol) {
         log.debug("Getting stock by symbol: {}", symbol);
-        return stockRepository.findBySymbol(symbol)
-                .map(this::mapToDTO)
-                .orElseThrow(() -> {
-                    log.warn("Stock not found with symbol: {}", symbol);
-                    return new EntityNotFoundException("Stock not found with symbol " + symbol);
+        return quoteCache.get(symbol)
+                .orElseGet(() -> {
+                    // Read before loading, so a change committed during the load keeps the quote out of the cache
+                    long loadVersion = quoteCache.currentVersion();
+                    StockDTO loaded = stockRepository.findBySymbol(symbol)
+                            .map(this::mapToDTO)
+                            .orElseThrow(() -> {
+                                log.warn("Stock not found with symbol: {}", symbol);
+                                return new EntityNotFoundException("Stock not found with symbol " + symbol);
+                            });
+                    quoteCache.populate(loaded, loadVersion);
+                    return loaded;
                 });
     }
 
@@ -135,9 +158,64 @@ public class StockServiceImpl implements StockService {
     @Transactional(readOnly = true)
     public List<StockDTO> getAllStocks() {
         log.debug("Getting all stocks");
-        return stockRepository.findAll().stream()  // Convert list to stream
+        // Read the version before loading: a change during the load leaves the snapshot stale
+        // under an older version, which the next call then reloads
+        long version = catalogVersion.current();
+        CatalogSnapshot snapshot = catalogSnapshot;
+        if (snapshot != null && snapshot.version == version) {
+            return snapshot.stocks;
+        }
+        List<StockDTO> stocks = stockRepository.findAll().stream()  // Convert list to stream
                 .map(this::mapToDTO)               // Transform each Stock to StockDTO
                 .collect(Collectors.toList());     // Collect results back to a list
+        catalogSnapshot = new CatalogSnapshot(version, Collections.unmodifiableList(stocks));
+        return catalogSnapshot.stocks;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCatalogVersion() {
+        return catalogVersion.currentToken();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Changed stocks are answered from the quote cache where possible.
+     */
+    @Override
+    public StockChangesDTO getChangesSince(String since) {
+        StockCatalogVersion.CatalogChanges changes = catalogVersion.changesSince(since);
+        if (changes.isFull()) {
+            log.debug("Catalogue version {} is unknown, sending all stocks", since);
+            return StockChangesDTO.builder()
+                    .version(changes.getVersion())
+                    .full(true)
+                    .changed(getAllStocks())
+                    .removed(List.of())
+                    .build();
+        }
+        List<StockDTO> changed = changes.getChangedSymbols().stream()
+                .map(this::findQuote)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+        log.debug("{} stocks changed since catalogue version {}", changed.size(), since);
+        return StockChangesDTO.builder()
+                .version(changes.getVersion())
+                .full(false)
+                .changed(changed)
+                .removed(changes.getRemovedSymbols())
+                .build();
+    }
+
+    private Optional<StockDTO> findQuote(String symbol) {
+        Optional<StockDTO> cached = quoteCache.get(symbol);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        return stockRepository.findBySymbol(symbol).map(this::mapToDTO);
     }
 
     /**
@@ -246,7 +324,9 @@ public class StockServiceImpl implements StockService {
         // Save updates and return the updated stock
         Stock updatedStock = stockRepository.save(stock);
         log.info("Stock updated successfully: {}", symbol);
-        return mapToDTO(updatedStock);
+        StockDTO updated = mapToDTO(updatedStock);
+        quoteCache.put(updated);
+        return updated;
     }
 
     /**
@@ -254,14 +334,19 @@ public class StockServiceImpl implements StockService {
      * Also sends a price update notification via Kafka.
      */
     private void updateChangeValues(Stock stock) {
+        // Work on fixed-point longs and convert back with the same scale as the input prices
+        long currentPrice = FixedPoint.of(stock.getCurrentPrice());
+        long previousClose = FixedPoint.of(stock.getPreviousClose());
+        int decimals = Math.max(FixedPoint.decimalsOf(stock.getCurrentPrice()),
+                FixedPoint.decimalsOf(stock.getPreviousClose()));
+        
         // Calculate change (difference between current price and previous close)
-        stock.setChange(stock.getCurrentPrice().subtract(stock.getPreviousClose()));
+        long change = currentPrice - previousClose;
+        stock.setChange(FixedPoint.toBigDecimal(change, decimals));
         
-        // Calculate change percent
-        stock.setChangePercent(
-                stock.getChange().divide(stock.getPreviousClose(), 4, RoundingMode.HALF_UP)
-                        .multiply(BigDecimal.valueOf(100))
-        );
+        // Calculate change percent (ratio rounded to 4 decimals, expressed in percent)
+        long changePercent = FixedPoint.divide(change, previousClose) * 100;
+        stock.setChangePercent(FixedPoint.toBigDecimal(changePercent));
         
         // Send price update to Kafka
         StockPriceUpdateDTO update = StockPriceUpdateDTO.builder()
@@ -291,6 +376,7 @@ public class StockServiceImpl implements StockService {
                 });
                 
         stockRepository.delete(stock);
+        quoteCache.evict(symbol);
         log.info("Stock deleted successfully: {}", symbol);
     }
 
@@ -301,18 +387,16 @@ public class StockServiceImpl implements StockService {
      * In larger applications, consider using mapping libraries like MapStruct.
      */
     private StockDTO mapToDTO(Stock stock) {
-        return StockDTO.builder()
-                .id(stock.getId())
-                .symbol(stock.getSymbol())
-                .companyName(stock.getCompanyName())
-                .currentPrice(stock.getCurrentPrice())
-                .previousClose(stock.getPreviousClose())
-                .change(stock.getChange())
-                .changePercent(stock.getChangePercent())
-                .volume(stock.getVolume())
-                .lastUpdated(stock.getLastUpdated())
-                .sector(stock.getSector())
-                .industry(stock.getIndustry())
-                .build();
+        return StockDTO.fromEntity(stock);
+    }
+
+    private static final class CatalogSnapshot {
+        private final long version;
+        private final List<StockDTO> stocks;
+
+        private CatalogSnapshot(long version, List<StockDTO> stocks) {
+            this.version = version;
+            this.stocks = stocks;
+        }
     }
-} 
\ No newline at end of file
+}
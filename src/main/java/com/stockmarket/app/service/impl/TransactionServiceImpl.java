@@ -1,25 +1,49 @@
 package com.stockmarket.app.service.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stockmarket.app.dto.TransactionCreateRequest;
 import com.stockmarket.app.dto.TransactionDTO;
 import com.stockmarket.app.dto.TransactionUpdateRequest;
+import com.stockmarket.app.enums.ExportFormat;
 import com.stockmarket.app.enums.TransactionType;
 import com.stockmarket.app.model.Transaction;
 import com.stockmarket.app.repository.TransactionRepository;
+import com.stockmarket.app.service.KafkaProducerService;
+import com.stockmarket.app.service.positions.PositionProjection;
 import com.stockmarket.app.service.TransactionService;
+import com.stockmarket.app.service.summary.StockSummaryAggregate;
+import com.stockmarket.app.service.summary.StockSummaryAggregate.Contribution;
+import com.stockmarket.app.util.FixedPoint;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Iterator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the TransactionService interface.
  * This service handles all business logic related to stock transactions.
+ *
+ * Newly created transactions are published as application events, so in-process
+ * consumers (such as the candle volume) can follow the trades without querying them.
+ * Creates, updates and deletes also adjust the per-symbol StockSummaryAggregate.
+ * Created, updated and deleted transactions are sent to Kafka through the outbox, in the
+ * same database transaction as the change (a delete as a TransactionDeletedEvent).
+ *
+ * The export streams rows from the database straight into the response and detaches
+ * each entity once it is written, so the persistence context never holds more than one.
  */
 @Service
 @RequiredArgsConstructor
@@ -27,21 +51,33 @@ import java.util.stream.Collectors;
 public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepository transactionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockSummaryAggregate stockSummaries;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final KafkaProducerService kafkaProducerService;
+    private final PositionProjection positionProjection;
+
+    // Flush the output after this many rows so the client receives data while the export runs
+    private static final int EXPORT_FLUSH_ROWS = 1000;
 
     /**
      * {@inheritDoc}
      */
     @Override
+    @Transactional
     public TransactionDTO createTransaction(TransactionCreateRequest request) {
         log.info("Creating transaction for stock {}", request.getStockSymbol());
         
-        BigDecimal totalValue = request.getPricePerShare().multiply(BigDecimal.valueOf(request.getQuantity()));
+        // Rounded to the column scale first, so the summary gets the values that are stored
+        BigDecimal pricePerShare = Transaction.toMoneyScale(request.getPricePerShare());
+        BigDecimal totalValue = calculateTotalValue(pricePerShare, request.getQuantity());
         
         Transaction transaction = Transaction.builder()
                 .type(request.getType())
                 .stockSymbol(request.getStockSymbol())
                 .quantity(request.getQuantity())
-                .pricePerShare(request.getPricePerShare())
+                .pricePerShare(pricePerShare)
                 .totalValue(totalValue)
                 .timestamp(LocalDateTime.now())
                 .userId(request.getUserId())
@@ -51,6 +87,9 @@ public class TransactionServiceImpl implements TransactionService {
         
         Transaction savedTransaction = transactionRepository.save(transaction);
         log.info("Transaction created with ID: {}", savedTransaction.getId());
+        stockSummaries.add(Contribution.of(savedTransaction));
+        eventPublisher.publishEvent(savedTransaction);
+        kafkaProducerService.sendTransaction(savedTransaction);
         
         return convertToDTO(savedTransaction);
     }
@@ -82,6 +121,46 @@ public class TransactionServiceImpl implements TransactionService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long exportTransactions(ExportFormat format, OutputStream out) throws IOException {
+        log.info("Exporting all transactions as {}", format);
+
+        long count = 0;
+        try (Stream<Transaction> rows = transactionRepository.streamAll();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // Closing the generator must not close the response stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // NDJSON lines are separated by the newline written below, not by Jackson's default space
+            generator.setRootValueSeparator(null);
+            if (format == ExportFormat.JSON) {
+                generator.writeStartArray();
+            }
+            Iterator<Transaction> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                objectMapper.writeValue(generator, convertToDTO(transaction));
+                if (format == ExportFormat.NDJSON) {
+                    generator.writeRaw('\n');
+                }
+                entityManager.detach(transaction);
+                if (++count % EXPORT_FLUSH_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+            if (format == ExportFormat.JSON) {
+                generator.writeEndArray();
+            }
+            generator.flush();
+        }
+
+        log.info("Exported {} transactions", count);
+        return count;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -94,6 +173,23 @@ public class TransactionServiceImpl implements TransactionService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TransactionDTO> getTransactionsBySymbolAndMinAmount(String stockSymbol, BigDecimal minAmount,
+                                                                    LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        log.info("Retrieving transactions for stock {} above {} from {} to {}", stockSymbol, minAmount, from, to);
+
+        return transactionRepository.findTransactionsBySymbolAndMinAmountBetween(stockSymbol, minAmount, from, to)
+                .stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -110,6 +206,7 @@ public class TransactionServiceImpl implements TransactionService {
      * {@inheritDoc}
      */
     @Override
+    @Transactional
     public TransactionDTO updateTransaction(Long id, TransactionUpdateRequest request) {
         log.info("Updating transaction with ID: {}", id);
         
@@ -118,6 +215,8 @@ public class TransactionServiceImpl implements TransactionService {
                     log.error("Transaction not found with ID: {}", id);
                     return new EntityNotFoundException("Transaction not found with ID: " + id);
                 });
+        // Captured before the fields change, so the old values can be taken out of the summary
+        Contribution before = Contribution.of(transaction);
         
         // Update fields if provided in the request
         if (request.getType() != null) {
@@ -130,12 +229,12 @@ public class TransactionServiceImpl implements TransactionService {
             transaction.setQuantity(request.getQuantity());
         }
         if (request.getPricePerShare() != null) {
-            transaction.setPricePerShare(request.getPricePerShare());
+            transaction.setPricePerShare(Transaction.toMoneyScale(request.getPricePerShare()));
         }
         
         // Recalculate total value if quantity or price changed
         if (request.getQuantity() != null || request.getPricePerShare() != null) {
-            BigDecimal totalValue = transaction.getPricePerShare().multiply(BigDecimal.valueOf(transaction.getQuantity()));
+            BigDecimal totalValue = calculateTotalValue(transaction.getPricePerShare(), transaction.getQuantity());
             transaction.setTotalValue(totalValue);
         }
         
@@ -145,6 +244,9 @@ public class TransactionServiceImpl implements TransactionService {
         
         Transaction updatedTransaction = transactionRepository.save(transaction);
         log.info("Transaction updated successfully");
+        stockSummaries.replace(before, Contribution.of(updatedTransaction));
+        resetPositions(updatedTransaction);
+        kafkaProducerService.sendTransaction(updatedTransaction);
         
         return convertToDTO(updatedTransaction);
     }
@@ -153,16 +255,44 @@ public class TransactionServiceImpl implements TransactionService {
      * {@inheritDoc}
      */
     @Override
+    @Transactional
     public void deleteTransaction(Long id) {
         log.info("Deleting transaction with ID: {}", id);
         
-        if (!transactionRepository.existsById(id)) {
-            log.error("Transaction not found with ID: {}", id);
-            throw new EntityNotFoundException("Transaction not found with ID: " + id);
-        }
+        // Loaded rather than checked with existsById, because the summary needs its values
+        Transaction transaction = transactionRepository.findById(id)
+                .orElseThrow(() -> {
+                    log.error("Transaction not found with ID: {}", id);
+                    return new EntityNotFoundException("Transaction not found with ID: " + id);
+                });
         
-        transactionRepository.deleteById(id);
+        transactionRepository.delete(transaction);
         log.info("Transaction deleted successfully");
+        stockSummaries.subtract(Contribution.of(transaction));
+        resetPositions(transaction);
+        kafkaProducerService.sendTransactionDeleted(transaction);
+    }
+
+    /**
+     * Positions are folded from the ledger in order, so a changed or removed transaction
+     * means refolding its portfolio.
+     */
+    private void resetPositions(Transaction transaction) {
+        if (transaction.getPortfolioId() != null) {
+            positionProjection.reset(transaction.getPortfolioId());
+        }
+    }
+
+    /**
+     * Calculates quantity * pricePerShare in fixed point, at the scale of the column.
+     *
+     * @param pricePerShare the price per share, already at the column scale
+     * @param quantity the number of shares
+     * @return the total value of the transaction
+     */
+    private BigDecimal calculateTotalValue(BigDecimal pricePerShare, int quantity) {
+        long total = FixedPoint.multiplyByQuantity(FixedPoint.of(pricePerShare), quantity);
+        return FixedPoint.toBigDecimal(total, Transaction.MONEY_SCALE);
     }
 
     /**
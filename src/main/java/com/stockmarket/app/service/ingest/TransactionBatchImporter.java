@@ -0,0 +1,328 @@
+package com.stockmarket.app.service.ingest;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.stockmarket.app.dto.TransactionBatchResultDTO;
+import com.stockmarket.app.dto.TransactionBatchResultDTO.RowError;
+import com.stockmarket.app.dto.TransactionImportRow;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.TransactionBatchRepository;
+import com.stockmarket.app.service.summary.StockSummaryAggregate;
+import com.stockmarket.app.util.FixedPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.TraversableResolver;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Imports many transactions from one request body.
+ *
+ * The body is either a JSON array or NDJSON (one transaction per line); both are read
+ * incrementally with a Jackson MappingIterator, so the request is never held in memory.
+ * Each row is validated like a single POST /api/transactions and may also carry the
+ * timestamp and counterLeg of a transaction recorded earlier (see TransactionImportRow),
+ * so the trades of the matching engine's dead-letter file keep their time and are not
+ * counted twice in volumes. The valid rows are
+ * inserted in chunks of transactions.batch.chunk-size through TransactionBatchRepository.
+ *
+ * A chunk is written on a writer thread while the request thread parses the next one,
+ * so reading and the database round trip overlap; each import has at most one chunk in
+ * flight. Every chunk is its own database transaction. If a chunk is rejected by the
+ * database, its rows are retried one by one so only the offending rows fail. Invalid
+ * rows are reported with their row number and never roll back the valid ones.
+ *
+ * Stored chunks are added to the stock summaries and published as one
+ * TransactionsImportedEvent each, instead of an event per row.
+ */
+@Service
+@Slf4j
+public class TransactionBatchImporter {
+
+    /**
+     * Hibernate Validator asks JPA whether every property is loaded before validating it,
+     * which dominates the cost of validating plain request DTOs in bulk.
+     */
+    private static final TraversableResolver TRAVERSE_ALL = new TraversableResolver() {
+        @Override
+        public boolean isReachable(Object bean, Path.Node node, Class<?> rootType, Path path, ElementType type) {
+            return true;
+        }
+
+        @Override
+        public boolean isCascadable(Object bean, Path.Node node, Class<?> rootType, Path path, ElementType type) {
+            return true;
+        }
+    };
+
+    private final ObjectReader reader;
+    private final Validator validator;
+    private final TransactionBatchRepository batchRepository;
+    private final StockSummaryAggregate stockSummaries;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService writers;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public TransactionBatchImporter(ObjectMapper objectMapper,
+                                    ValidatorFactory validatorFactory,
+                                    TransactionBatchRepository batchRepository,
+                                    StockSummaryAggregate stockSummaries,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${transactions.batch.chunk-size:5000}") int chunkSize,
+                                    @Value("${transactions.batch.max-errors:1000}") int maxErrors,
+                                    @Value("${transactions.batch.writer-threads:4}") int writerThreads) {
+        this.reader = objectMapper.readerFor(TransactionImportRow.class);
+        this.validator = validatorFactory.usingContext().traversableResolver(TRAVERSE_ALL).getValidator();
+        this.batchRepository = batchRepository;
+        this.stockSummaries = stockSummaries;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "transaction-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Read, validate and store all transactions of a JSON array or NDJSON stream.
+     *
+     * @param body the request body
+     * @return how many rows were received, inserted and rejected, with the first errors
+     * @throws IOException if reading the body fails
+     */
+    public TransactionBatchResultDTO importTransactions(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result(maxErrors);
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        CompletableFuture<ChunkResult> inFlight = CompletableFuture.completedFuture(ChunkResult.EMPTY);
+        long rowNumber = 0;
+
+        // readValues unwraps a top-level array, and otherwise reads a sequence of root values (NDJSON)
+        try (MappingIterator<TransactionImportRow> rows = reader.readValues(body)) {
+            while (true) {
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                } catch (JsonParseException e) {
+                    // The broken element counts as a received row, so received = inserted + failed
+                    rowNumber++;
+                    result.reject(rowNumber, "Malformed JSON, import stopped: " + e.getOriginalMessage());
+                    break;
+                }
+                rowNumber++;
+                TransactionImportRow request;
+                try {
+                    request = rows.nextValue();
+                } catch (JsonParseException e) {
+                    // Broken JSON syntax; the rest of the body cannot be read reliably
+                    result.reject(rowNumber, "Malformed JSON, import stopped: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    // Well-formed but wrong values (e.g. an unknown type); the iterator skips to the next row
+                    result.reject(rowNumber, "Invalid value: " + e.getOriginalMessage());
+                    continue;
+                }
+
+                String violations = validate(request);
+                if (violations != null) {
+                    result.reject(rowNumber, violations);
+                    continue;
+                }
+                chunk.add(new Row(rowNumber, toTransaction(request)));
+                if (chunk.size() == chunkSize) {
+                    result.add(await(inFlight));
+                    List<Row> full = chunk;
+                    inFlight = CompletableFuture.supplyAsync(() -> store(full), writers);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } finally {
+            // Rows already handed to a writer are stored even if reading the body failed
+            result.add(await(inFlight));
+        }
+        result.add(store(chunk));
+
+        log.info("Imported {} of {} transactions ({} rejected) in {} ms", result.inserted, rowNumber,
+                result.failed, (System.nanoTime() - start) / 1_000_000);
+        return result.toDTO(rowNumber);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+    }
+
+    private String validate(TransactionImportRow request) {
+        if (request == null) {
+            return "Transaction is null";
+        }
+        Set<ConstraintViolation<TransactionImportRow>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Insert one chunk, falling back to row-by-row inserts if the database rejects it.
+     */
+    private ChunkResult store(List<Row> chunk) {
+        if (chunk.isEmpty()) {
+            return ChunkResult.EMPTY;
+        }
+        List<Transaction> transactions = chunk.stream().map(row -> row.transaction).collect(Collectors.toList());
+        try {
+            batchRepository.insertAll(transactions);
+            stored(transactions);
+            return new ChunkResult(transactions.size(), List.of());
+        } catch (DataAccessException e) {
+            log.warn("Batch of {} transactions was rejected, retrying row by row: {}", chunk.size(), e.getMessage());
+        }
+
+        List<Transaction> inserted = new ArrayList<>();
+        List<RowError> errors = new ArrayList<>();
+        for (Row row : chunk) {
+            try {
+                batchRepository.insert(row.transaction);
+                inserted.add(row.transaction);
+            } catch (DataAccessException rowError) {
+                errors.add(new RowError(row.number, "Rejected by the database: "
+                        + rowError.getMostSpecificCause().getMessage()));
+            }
+        }
+        stored(inserted);
+        return new ChunkResult(inserted.size(), errors);
+    }
+
+    private void stored(List<Transaction> transactions) {
+        if (!transactions.isEmpty()) {
+            stockSummaries.addAll(transactions);
+            eventPublisher.publishEvent(new TransactionsImportedEvent(transactions));
+        }
+    }
+
+    private static ChunkResult await(CompletableFuture<ChunkResult> chunk) {
+        try {
+            return chunk.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Transaction toTransaction(TransactionImportRow request) {
+        // Rounded to the column scale, so the summary gets the values that are stored
+        BigDecimal price = Transaction.toMoneyScale(request.getPricePerShare());
+        long total = FixedPoint.multiplyByQuantity(FixedPoint.of(price), request.getQuantity());
+        return Transaction.builder()
+                .type(request.getType())
+                .stockSymbol(request.getStockSymbol())
+                .quantity(request.getQuantity())
+                .pricePerShare(price)
+                .totalValue(FixedPoint.toBigDecimal(total, Transaction.MONEY_SCALE))
+                .timestamp(request.getTimestamp() != null ? request.getTimestamp() : LocalDateTime.now())
+                .userId(request.getUserId())
+                .portfolioId(request.getPortfolioId())
+                .notes(request.getNotes())
+                .counterLeg(request.isCounterLeg())
+                .build();
+    }
+
+    private static final class Row {
+        private final long number;
+        private final Transaction transaction;
+
+        private Row(long number, Transaction transaction) {
+            this.number = number;
+            this.transaction = transaction;
+        }
+    }
+
+    /**
+     * Outcome of storing one chunk; built on a writer thread and merged on the request thread.
+     */
+    private static final class ChunkResult {
+        private static final ChunkResult EMPTY = new ChunkResult(0, List.of());
+
+        private final long inserted;
+        private final List<RowError> errors;
+
+        private ChunkResult(long inserted, List<RowError> errors) {
+            this.inserted = inserted;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * Counts of one import, keeping at most maxErrors row errors.
+     */
+    private static final class Result {
+        private final int maxErrors;
+        private final List<RowError> errors = new ArrayList<>();
+        private long inserted;
+        private long failed;
+
+        private Result(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        private void reject(long row, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(new RowError(row, message));
+            }
+        }
+
+        private void add(ChunkResult chunk) {
+            inserted += chunk.inserted;
+            chunk.errors.forEach(error -> reject(error.getRow(), error.getMessage()));
+        }
+
+        private TransactionBatchResultDTO toDTO(long received) {
+            // Database rejections are merged after the validation errors of later rows
+            errors.sort(Comparator.comparingLong(RowError::getRow));
+            return TransactionBatchResultDTO.builder()
+                    .received(received)
+                    .inserted(inserted)
+                    .failed(failed)
+                    .errors(errors)
+                    .errorsTruncated(failed > errors.size())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.stockmarket.app.service.ingest;
+
+import com.stockmarket.app.model.Transaction;
+
+import java.util.List;
+
+/**
+ * Published once per stored chunk of a batch import, or per stored batch of matched trades,
+ * instead of one event per transaction, so listeners of bulk inserts do not pay the event
+ * dispatch for every row.
+ */
+public class TransactionsImportedEvent {
+
+    private final List<Transaction> transactions;
+
+    public TransactionsImportedEvent(List<Transaction> transactions) {
+        this.transactions = transactions;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+}
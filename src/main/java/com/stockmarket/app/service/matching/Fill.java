@@ -0,0 +1,62 @@
+package com.stockmarket.app.service.matching;
+
+import com.stockmarket.app.enums.TransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * One trade between an incoming order and an order resting in the book.
+ *
+ * The trade happens at the price of the resting order. The price is a FixedPoint value.
+ */
+public final class Fill {
+
+    private final String symbol;
+    private final long price;
+    private final int quantity;
+    private final TransactionType aggressorSide;
+    private final Order buyOrder;
+    private final Order sellOrder;
+    private final LocalDateTime timestamp;
+
+    Fill(Order incoming, Order resting, long price, int quantity, LocalDateTime timestamp) {
+        this.symbol = incoming.getSymbol();
+        this.price = price;
+        this.quantity = quantity;
+        this.aggressorSide = incoming.getSide();
+        this.buyOrder = incoming.isBuy() ? incoming : resting;
+        this.sellOrder = incoming.isBuy() ? resting : incoming;
+        this.timestamp = timestamp;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * The side of the incoming order, which took the liquidity.
+     */
+    public TransactionType getAggressorSide() {
+        return aggressorSide;
+    }
+
+    public Order getBuyOrder() {
+        return buyOrder;
+    }
+
+    public Order getSellOrder() {
+        return sellOrder;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+}
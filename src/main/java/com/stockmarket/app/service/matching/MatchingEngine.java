@@ -0,0 +1,317 @@
+package com.stockmarket.app.service.matching;
+
+import com.stockmarket.app.dto.OrderBookDeltaDTO;
+import com.stockmarket.app.dto.OrderBookDepthDTO;
+import com.stockmarket.app.dto.OrderRequest;
+import com.stockmarket.app.dto.OrderResultDTO;
+import com.stockmarket.app.enums.OrderStatus;
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.util.FixedPoint;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matches buy and sell orders in one in-memory OrderBook per stock.
+ *
+ * The stocks are spread over matching.shards single-threaded shards (by default one per
+ * core). A symbol always belongs to the same shard and only that shard's thread touches
+ * its book, so the books need no locks and every symbol sees its orders in the order they
+ * were submitted, while different shards match in parallel.
+ *
+ * Trades are handed to the TradeRecorder, which stores them as Transactions and moves the
+ * stock price to the last trade price; matching never waits for the database unless the
+ * recorder has fallen behind by matching.recorder.queue-capacity trades.
+ *
+ * Every order or cancel that changes a book publishes the changed price levels as an
+ * OrderBookDeltaDTO application event, from the shard's thread and in sequence order.
+ * depth() takes a snapshot on the same thread, so a snapshot and the deltas of its book
+ * line up by sequence number.
+ *
+ * The books are not persisted: resting orders are gone after a restart.
+ */
+@Service
+@Slf4j
+public class MatchingEngine {
+
+    // Prices are traded in whole cents
+    private static final int DECIMALS = 2;
+
+    private final TradeRecorder tradeRecorder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final List<ThreadPoolExecutor> shards;
+    // Books of each shard; only read and written on the shard's thread
+    private final List<Map<String, OrderBook>> books;
+    private final AtomicLong orderIds = new AtomicLong();
+    private final Timer matchTimer;
+
+    public MatchingEngine(TradeRecorder tradeRecorder,
+                          ApplicationEventPublisher eventPublisher,
+                          MeterRegistry meterRegistry,
+                          @Value("${matching.shards:0}") int shardCount,
+                          @Value("${matching.shard-queue-capacity:1024}") int queueCapacity) {
+        this.tradeRecorder = tradeRecorder;
+        this.eventPublisher = eventPublisher;
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new ArrayList<>(count);
+        this.books = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            String threadName = "matching-shard-" + shard;
+            shards.add(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, MatchingEngine::waitForSpace));
+            books.add(new HashMap<>());
+        }
+        this.matchTimer = Timer.builder("matching.order.duration")
+                .description("Time to match one order against its book, without queueing")
+                .register(meterRegistry);
+        Gauge.builder("matching.shards.queued", shards,
+                        executors -> executors.stream().mapToInt(executor -> executor.getQueue().size()).sum())
+                .description("Orders waiting for their matching shard")
+                .register(meterRegistry);
+        log.info("Matching engine using {} shards", count);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * The shard of a symbol.
+     */
+    public int shardOf(String symbol) {
+        int hash = symbol.hashCode();
+        // Spread the bits so symbols that differ only in the last character still spread out
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash * 0x9E3779B9, shards.size());
+    }
+
+    /**
+     * Submit one order; completes once it has been matched.
+     *
+     * @throws IllegalArgumentException if the order is not valid
+     */
+    public CompletableFuture<OrderResultDTO> submit(OrderRequest request) {
+        Order order = toOrder(request);
+        int shard = shardOf(order.getSymbol());
+        return CompletableFuture.supplyAsync(() -> match(shard, order), shards.get(shard));
+    }
+
+    /**
+     * Submit many orders at once with one task per shard, and wait for all of them.
+     * Orders of one symbol are matched in list order.
+     *
+     * @return the results in the order of the requests
+     * @throws IllegalArgumentException if any order is not valid; then none is submitted
+     */
+    public List<OrderResultDTO> submitAll(List<OrderRequest> requests) {
+        List<List<Order>> perShard = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            perShard.add(new ArrayList<>());
+        }
+        List<Order> orders = new ArrayList<>(requests.size());
+        for (OrderRequest request : requests) {
+            Order order = toOrder(request);
+            orders.add(order);
+            perShard.get(shardOf(order.getSymbol())).add(order);
+        }
+
+        Map<Long, OrderResultDTO> results = new HashMap<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Order> shardOrders = perShard.get(shard);
+            if (shardOrders.isEmpty()) {
+                continue;
+            }
+            int shardIndex = shard;
+            tasks.add(CompletableFuture.runAsync(() -> {
+                List<OrderResultDTO> shardResults = new ArrayList<>(shardOrders.size());
+                for (Order order : shardOrders) {
+                    shardResults.add(match(shardIndex, order));
+                }
+                synchronized (results) {
+                    shardResults.forEach(result -> results.put(result.getOrderId(), result));
+                }
+            }, shards.get(shard)));
+        }
+        join(tasks);
+
+        List<OrderResultDTO> ordered = new ArrayList<>(orders.size());
+        synchronized (results) {
+            for (Order order : orders) {
+                ordered.add(results.get(order.getId()));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Cancel a resting order.
+     *
+     * @return the cancelled order, or empty if it is not resting (unknown, filled or already cancelled)
+     */
+    public CompletableFuture<Optional<OrderResultDTO>> cancel(String symbol, long orderId) {
+        int shard = shardOf(symbol);
+        return CompletableFuture.supplyAsync(() -> {
+            OrderBook book = books.get(shard).get(symbol);
+            Order order = book != null ? book.cancel(orderId) : null;
+            if (order != null) {
+                publishDelta(book);
+            }
+            return Optional.ofNullable(order).map(cancelled -> toResult(cancelled, List.of(), true));
+        }, shards.get(shard));
+    }
+
+    /**
+     * A snapshot of the best price levels of a stock's book.
+     *
+     * @param levels the number of levels per side
+     * @return the snapshot; empty with sequence 0 if the stock has no orders yet
+     */
+    public CompletableFuture<OrderBookDepthDTO> depth(String symbol, int levels) {
+        if (levels <= 0) {
+            throw new IllegalArgumentException("The number of levels must be positive");
+        }
+        int shard = shardOf(symbol);
+        return CompletableFuture.supplyAsync(
+                () -> books.get(shard).computeIfAbsent(symbol, OrderBook::new).depth(levels), shards.get(shard));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shards.forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * Match one order on its shard's thread, hand the trades to the recorder and publish
+     * the changed levels.
+     */
+    private OrderResultDTO match(int shard, Order order) {
+        long start = System.nanoTime();
+        OrderBook book = books.get(shard).computeIfAbsent(order.getSymbol(), OrderBook::new);
+        List<Fill> fills = new ArrayList<>(2);
+        book.submit(order, LocalDateTime.now(), fills);
+        matchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!fills.isEmpty()) {
+            tradeRecorder.record(fills);
+        }
+        publishDelta(book);
+        return toResult(order, fills, false);
+    }
+
+    private void publishDelta(OrderBook book) {
+        OrderBookDeltaDTO delta = book.takeDelta();
+        if (delta != null) {
+            eventPublisher.publishEvent(delta);
+        }
+    }
+
+    private Order toOrder(OrderRequest request) {
+        if (request.getSide() == null || request.getType() == null) {
+            throw new IllegalArgumentException("An order needs a side and a type");
+        }
+        if (request.getStockSymbol() == null || request.getStockSymbol().isBlank()) {
+            throw new IllegalArgumentException("An order needs a stock symbol");
+        }
+        if (request.getQuantity() == null || request.getQuantity() <= 0) {
+            throw new IllegalArgumentException("An order needs a positive quantity");
+        }
+        long limitPrice = 0;
+        if (request.getType() == OrderType.LIMIT) {
+            BigDecimal price = request.getLimitPrice();
+            if (price == null || price.signum() <= 0) {
+                throw new IllegalArgumentException("A limit order needs a positive limit price");
+            }
+            if (price.stripTrailingZeros().scale() > DECIMALS) {
+                throw new IllegalArgumentException("Limit prices are in whole cents: " + price.toPlainString());
+            }
+            limitPrice = FixedPoint.of(price);
+        }
+        return new Order(orderIds.incrementAndGet(), request.getStockSymbol(), request.getSide(),
+                request.getType(), limitPrice, request.getQuantity(), request.getUserId(), request.getPortfolioId());
+    }
+
+    private static OrderResultDTO toResult(Order order, List<Fill> fills, boolean cancelled) {
+        int filled = order.getQuantity() - order.getRemaining();
+        long tradedValue = 0;
+        for (Fill fill : fills) {
+            tradedValue += FixedPoint.multiplyByQuantity(fill.getPrice(), fill.getQuantity());
+        }
+        int filledNow = fills.stream().mapToInt(Fill::getQuantity).sum();
+        return OrderResultDTO.builder()
+                .orderId(order.getId())
+                .stockSymbol(order.getSymbol())
+                .side(order.getSide())
+                .type(order.getType())
+                .status(statusOf(order, filled, cancelled))
+                .limitPrice(order.getType() == OrderType.LIMIT
+                        ? FixedPoint.toBigDecimal(order.getLimitPrice(), DECIMALS) : null)
+                .quantity(order.getQuantity())
+                .filledQuantity(filled)
+                .remainingQuantity(cancelled || order.getType() == OrderType.MARKET ? 0 : order.getRemaining())
+                .averagePrice(filledNow > 0
+                        ? FixedPoint.toBigDecimal(FixedPoint.round(tradedValue / filledNow, DECIMALS), DECIMALS) : null)
+                .trades(fills.size())
+                .build();
+    }
+
+    private static OrderStatus statusOf(Order order, int filled, boolean cancelled) {
+        if (order.getRemaining() == 0) {
+            return OrderStatus.FILLED;
+        }
+        if (cancelled || order.getType() == OrderType.MARKET) {
+            return OrderStatus.CANCELLED;
+        }
+        return filled > 0 ? OrderStatus.PARTIALLY_FILLED : OrderStatus.NEW;
+    }
+
+    private static void join(List<CompletableFuture<Void>> tasks) {
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Rejection handler that blocks the submitting thread until the shard queue has room.
+     */
+    private static void waitForSpace(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Matching shard is shut down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a matching shard", e);
+        }
+    }
+}
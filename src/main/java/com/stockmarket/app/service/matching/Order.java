@@ -0,0 +1,89 @@
+package com.stockmarket.app.service.matching;
+
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.enums.TransactionType;
+
+/**
+ * An order inside the matching engine.
+ *
+ * Prices are FixedPoint values. The remaining quantity is changed by the OrderBook that
+ * owns the order, on the thread of its shard only.
+ */
+public final class Order {
+
+    private final long id;
+    private final String symbol;
+    private final TransactionType side;
+    private final OrderType type;
+    private final long limitPrice;
+    private final int quantity;
+    private final String userId;
+    private final Long portfolioId;
+    int remaining;
+
+    public Order(long id, String symbol, TransactionType side, OrderType type, long limitPrice, int quantity,
+                 String userId, Long portfolioId) {
+        this.id = id;
+        this.symbol = symbol;
+        this.side = side;
+        this.type = type;
+        this.limitPrice = limitPrice;
+        this.quantity = quantity;
+        this.userId = userId;
+        this.portfolioId = portfolioId;
+        this.remaining = quantity;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public TransactionType getSide() {
+        return side;
+    }
+
+    public OrderType getType() {
+        return type;
+    }
+
+    /**
+     * The limit price in FixedPoint; 0 for a market order.
+     */
+    public long getLimitPrice() {
+        return limitPrice;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getRemaining() {
+        return remaining;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    boolean isBuy() {
+        return side == TransactionType.BUY;
+    }
+
+    /**
+     * Whether this order may trade with a resting order at the given price.
+     */
+    boolean crosses(long price) {
+        if (type == OrderType.MARKET) {
+            return true;
+        }
+        return isBuy() ? price <= limitPrice : price >= limitPrice;
+    }
+}
@@ -0,0 +1,225 @@
+package com.stockmarket.app.service.matching;
+
+import com.stockmarket.app.dto.DepthLevelDTO;
+import com.stockmarket.app.dto.OrderBookDeltaDTO;
+import com.stockmarket.app.dto.OrderBookDepthDTO;
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.util.FixedPoint;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The limit order book of one stock, matching with price-time priority.
+ *
+ * Each side keeps its price levels in a TreeMap, best price first. A level is a FIFO queue
+ * of resting orders, so at one price the oldest order trades first. An incoming order
+ * trades against the best levels of the other side for as long as its limit allows, at the
+ * price of the resting orders. What is left of a limit order is added to its own side;
+ * what is left of a market order is cancelled.
+ *
+ * Cancelled orders are only marked and are skipped when their level is matched, so a cancel
+ * does not have to search the queue of its level.
+ *
+ * Every level keeps its total open quantity and order count, so depth() reads the
+ * aggregated view straight from the best levels. The levels an order or cancel touched are
+ * remembered until takeDelta() turns them into one sequence-numbered L2 delta, so the size
+ * of a delta depends on what changed and not on how deep the book is.
+ *
+ * Not thread-safe: the MatchingEngine only touches a book from the thread of its shard.
+ */
+public class OrderBook {
+
+    // Prices are traded in whole cents
+    private static final int DECIMALS = 2;
+
+    private final String symbol;
+    private final TreeMap<Long, PriceLevel> bids = new TreeMap<>(Collections.reverseOrder());
+    private final TreeMap<Long, PriceLevel> asks = new TreeMap<>();
+    private final Map<Long, Order> restingOrders = new HashMap<>();
+    // Levels changed since the last delta, by price; a removed level has quantity 0
+    private final TreeMap<Long, PriceLevel> changedBids = new TreeMap<>(Collections.reverseOrder());
+    private final TreeMap<Long, PriceLevel> changedAsks = new TreeMap<>();
+    private long sequence;
+
+    public OrderBook(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Match an incoming order and rest what is left of it if it is a limit order.
+     *
+     * @param order     the incoming order, for this book's symbol
+     * @param timestamp the time of the resulting trades
+     * @param fills     receives the trades, in the order they happened
+     */
+    public void submit(Order order, LocalDateTime timestamp, List<Fill> fills) {
+        TreeMap<Long, PriceLevel> opposite = order.isBuy() ? asks : bids;
+        while (order.remaining > 0 && !opposite.isEmpty()) {
+            Map.Entry<Long, PriceLevel> best = opposite.firstEntry();
+            long price = best.getKey();
+            if (!order.crosses(price)) {
+                break;
+            }
+            PriceLevel level = best.getValue();
+            match(order, level, price, timestamp, fills);
+            (order.isBuy() ? changedAsks : changedBids).put(price, level);
+            if (level.quantity == 0) {
+                opposite.pollFirstEntry();
+            }
+        }
+        if (order.remaining > 0 && order.getType() == OrderType.LIMIT) {
+            TreeMap<Long, PriceLevel> own = order.isBuy() ? bids : asks;
+            PriceLevel level = own.computeIfAbsent(order.getLimitPrice(), price -> new PriceLevel());
+            level.add(order);
+            (order.isBuy() ? changedBids : changedAsks).put(order.getLimitPrice(), level);
+            restingOrders.put(order.getId(), order);
+        }
+    }
+
+    /**
+     * Remove a resting order.
+     *
+     * @return the cancelled order with the quantity it still had, or null if it is not resting
+     */
+    public Order cancel(long orderId) {
+        Order order = restingOrders.remove(orderId);
+        if (order == null) {
+            return null;
+        }
+        TreeMap<Long, PriceLevel> side = order.isBuy() ? bids : asks;
+        PriceLevel level = side.get(order.getLimitPrice());
+        level.quantity -= order.remaining;
+        level.orderCount--;
+        (order.isBuy() ? changedBids : changedAsks).put(order.getLimitPrice(), level);
+        if (level.quantity == 0) {
+            side.remove(order.getLimitPrice());
+        }
+        return order;
+    }
+
+    /**
+     * The best price levels of both sides, aggregated per price.
+     *
+     * @param levels the number of levels per side
+     */
+    public OrderBookDepthDTO depth(int levels) {
+        return OrderBookDepthDTO.builder()
+                .symbol(symbol)
+                .sequence(sequence)
+                .bids(toLevels(bids, levels))
+                .asks(toLevels(asks, levels))
+                .build();
+    }
+
+    /**
+     * The levels changed since the last call as the next delta of this book.
+     *
+     * @return the delta, or null if the book did not change
+     */
+    public OrderBookDeltaDTO takeDelta() {
+        if (changedBids.isEmpty() && changedAsks.isEmpty()) {
+            return null;
+        }
+        OrderBookDeltaDTO delta = OrderBookDeltaDTO.builder()
+                .symbol(symbol)
+                .previousSequence(sequence)
+                .sequence(++sequence)
+                .bids(toLevels(changedBids, Integer.MAX_VALUE))
+                .asks(toLevels(changedAsks, Integer.MAX_VALUE))
+                .build();
+        changedBids.clear();
+        changedAsks.clear();
+        return delta;
+    }
+
+    /**
+     * The sequence of the last delta taken, 0 before the first.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The highest bid in FixedPoint, or 0 if there is none.
+     */
+    public long bestBid() {
+        return bids.isEmpty() ? 0 : bids.firstKey();
+    }
+
+    /**
+     * The lowest ask in FixedPoint, or 0 if there is none.
+     */
+    public long bestAsk() {
+        return asks.isEmpty() ? 0 : asks.firstKey();
+    }
+
+    public int getRestingOrderCount() {
+        return restingOrders.size();
+    }
+
+    /**
+     * Trade the incoming order against one level, oldest resting order first.
+     */
+    private void match(Order incoming, PriceLevel level, long price, LocalDateTime timestamp, List<Fill> fills) {
+        while (incoming.remaining > 0 && level.quantity > 0) {
+            Order resting = level.orders.peekFirst();
+            if (!restingOrders.containsKey(resting.getId())) {
+                // Cancelled; its quantity was already taken off the level
+                level.orders.pollFirst();
+                continue;
+            }
+            int quantity = Math.min(incoming.remaining, resting.remaining);
+            incoming.remaining -= quantity;
+            resting.remaining -= quantity;
+            level.quantity -= quantity;
+            fills.add(new Fill(incoming, resting, price, quantity, timestamp));
+            if (resting.remaining == 0) {
+                level.orders.pollFirst();
+                level.orderCount--;
+                restingOrders.remove(resting.getId());
+            }
+        }
+    }
+
+    private static List<DepthLevelDTO> toLevels(TreeMap<Long, PriceLevel> side, int max) {
+        List<DepthLevelDTO> levels = new ArrayList<>(Math.min(side.size(), max));
+        for (Map.Entry<Long, PriceLevel> entry : side.entrySet()) {
+            if (levels.size() == max) {
+                break;
+            }
+            levels.add(DepthLevelDTO.builder()
+                    .price(FixedPoint.toBigDecimal(entry.getKey(), DECIMALS))
+                    .quantity(entry.getValue().quantity)
+                    .orders(entry.getValue().orderCount)
+                    .build());
+        }
+        return levels;
+    }
+
+    /**
+     * The resting orders at one price, oldest first, with their total open quantity and the
+     * number of them that are not cancelled. The queue may still hold cancelled orders.
+     */
+    private static final class PriceLevel {
+        private final ArrayDeque<Order> orders = new ArrayDeque<>();
+        private long quantity;
+        private int orderCount;
+
+        void add(Order order) {
+            orders.addLast(order);
+            quantity += order.remaining;
+            orderCount++;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.stockmarket.app.service.matching;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmarket.app.dto.StockDTO;
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.dto.TransactionImportRow;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.StockPriceBatchRepository;
+import com.stockmarket.app.repository.TransactionBatchRepository;
+import com.stockmarket.app.service.KafkaProducerService;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.service.ingest.TransactionsImportedEvent;
+import com.stockmarket.app.service.summary.StockSummaryAggregate;
+import com.stockmarket.app.util.FixedPoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the trades of the matching engine, off the matching threads.
+ *
+ * The shards hand their fills to a bounded queue and go on matching. One writer thread
+ * drains the queue in batches of up to matching.recorder.batch-size fills and, in one
+ * database transaction per batch:
+ * 1. inserts a BUY transaction for the buyer and a SELL transaction for the seller of every
+ *    fill, with TransactionBatchRepository; the SELL is marked as the counter leg, so the
+ *    shares of a fill count once in volumes
+ * 2. sets the current price of every traded stock to its last trade price and queues the
+ *    price update in the outbox, like a simulator tick
+ * After the commit the trades are added to the stock summaries and published as one
+ * TransactionsImportedEvent, as a bulk import does.
+ *
+ * When the queue is full the shards wait, so the database sets the pace instead of the
+ * queue growing without limit.
+ *
+ * The trades are already done in the order books, so none may be dropped. A batch the
+ * database rejects is retried matching.recorder.retries times with a doubling backoff, and
+ * then stored one fill at a time, so one bad row only costs its own fill. A fill that still
+ * fails is appended to the dead-letter file (matching.recorder.dead-letter-file) as NDJSON
+ * import rows, which POST /api/transactions/batch can import once the cause is fixed. The
+ * rows keep the trade time and mark the SELL as the counter leg, so the replayed trades are
+ * stored exactly as the recorder would have stored them.
+ */
+@Component
+@Slf4j
+public class TradeRecorder {
+
+    // Prices are stored with two decimals
+    private static final int DECIMALS = 2;
+
+    private final TransactionBatchRepository transactionBatchRepository;
+    private final StockPriceBatchRepository stockPriceBatchRepository;
+    private final StockQuoteCache quoteCache;
+    private final KafkaProducerService kafkaProducerService;
+    private final StockSummaryAggregate stockSummaries;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Fill> queue;
+    private final int batchSize;
+    private final int retries;
+    private final long retryBackoffMillis;
+    private final Path deadLetterFile;
+    private final Counter recorded;
+    private final Counter failed;
+    private Thread writer;
+    private volatile boolean running;
+
+    public TradeRecorder(TransactionBatchRepository transactionBatchRepository,
+                         StockPriceBatchRepository stockPriceBatchRepository,
+                         StockQuoteCache quoteCache,
+                         KafkaProducerService kafkaProducerService,
+                         StockSummaryAggregate stockSummaries,
+                         ApplicationEventPublisher eventPublisher,
+                         TransactionTemplate transactionTemplate,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${matching.recorder.queue-capacity:100000}") int queueCapacity,
+                         @Value("${matching.recorder.batch-size:5000}") int batchSize,
+                         @Value("${matching.recorder.retries:3}") int retries,
+                         @Value("${matching.recorder.retry-backoff:500}") long retryBackoffMillis,
+                         @Value("${matching.recorder.dead-letter-file:./data/trades-dead-letter.ndjson}") String deadLetterFile) {
+        this.transactionBatchRepository = transactionBatchRepository;
+        this.stockPriceBatchRepository = stockPriceBatchRepository;
+        this.quoteCache = quoteCache;
+        this.kafkaProducerService = kafkaProducerService;
+        this.stockSummaries = stockSummaries;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.retries = retries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.deadLetterFile = Paths.get(deadLetterFile);
+        this.recorded = Counter.builder("matching.trades")
+                .tag("result", "recorded")
+                .description("Trades stored as transactions")
+                .register(meterRegistry);
+        this.failed = Counter.builder("matching.trades")
+                .tag("result", "failed")
+                .description("Trades the database rejected, written to the dead-letter file")
+                .register(meterRegistry);
+        Gauge.builder("matching.trades.queued", queue, BlockingQueue::size)
+                .description("Trades waiting to be stored")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "trade-recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop taking batches and wait for the writer to store the trades already queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Queue fills to be stored, waiting while the queue is full.
+     */
+    public void record(List<Fill> fills) {
+        try {
+            for (Fill fill : fills) {
+                queue.put(fill);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing trades", e);
+        }
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<Fill> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Fill first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                deadLetter(batch, e);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Store one batch of fills, retrying it and then storing its fills one at a time.
+     * Fills that cannot be stored are dead-lettered.
+     */
+    void write(List<Fill> fills) throws InterruptedException {
+        long backoff = retryBackoffMillis;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                stored(store(fills));
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= retries) {
+                    log.warn("Batch of {} trades was rejected, storing them one at a time: {}", fills.size(), e.getMessage());
+                    break;
+                }
+                log.warn("Could not store {} trades, retrying in {} ms: {}", fills.size(), backoff, e.getMessage());
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+
+        List<Transaction> transactions = new ArrayList<>(fills.size() * 2);
+        for (Fill fill : fills) {
+            try {
+                transactions.addAll(store(List.of(fill)));
+            } catch (RuntimeException e) {
+                deadLetter(List.of(fill), e);
+            }
+        }
+        stored(transactions);
+    }
+
+    /**
+     * Store fills in one database transaction and move the traded stocks to their last trade price.
+     *
+     * @return the stored transactions
+     */
+    private List<Transaction> store(List<Fill> fills) {
+        List<Transaction> transactions = new ArrayList<>(fills.size() * 2);
+        Map<String, Fill> lastTrades = new LinkedHashMap<>();
+        for (Fill fill : fills) {
+            transactions.add(toTransaction(fill, TransactionType.BUY));
+            transactions.add(toTransaction(fill, TransactionType.SELL));
+            lastTrades.put(fill.getSymbol(), fill);
+        }
+        List<StockPriceUpdateDTO> updates = new ArrayList<>(lastTrades.size());
+        for (Fill fill : lastTrades.values()) {
+            updates.add(toPriceUpdate(fill));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionBatchRepository.insertAll(transactions);
+            for (StockPriceUpdateDTO update : stockPriceBatchRepository.applyPriceUpdates(updates)) {
+                quoteCache.applyPriceUpdate(update);
+                kafkaProducerService.sendStockPriceUpdate(update);
+            }
+        });
+        return transactions;
+    }
+
+    /**
+     * Add committed trades to the stock summaries and publish them. Runs once per batch,
+     * outside the retries, so nothing is counted twice.
+     */
+    private void stored(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        // Two transactions per fill
+        recorded.increment(transactions.size() / 2.0);
+        stockSummaries.addAll(transactions);
+        eventPublisher.publishEvent(new TransactionsImportedEvent(transactions));
+    }
+
+    /**
+     * Append the transactions of fills that could not be stored to the dead-letter file.
+     */
+    private void deadLetter(List<Fill> fills, Exception cause) {
+        if (fills.isEmpty()) {
+            return;
+        }
+        failed.increment(fills.size());
+        log.error("Could not store {} trades, writing them to {}: {}", fills.size(), deadLetterFile, cause.getMessage(), cause);
+        try {
+            Path parent = deadLetterFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(deadLetterFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Fill fill : fills) {
+                    for (TransactionType side : TransactionType.values()) {
+                        out.write(objectMapper.writeValueAsString(toImportRow(toTransaction(fill, side))));
+                        out.newLine();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not write {} trades to the dead-letter file {}: {}", fills.size(), deadLetterFile,
+                    e.getMessage(), e);
+        }
+    }
+
+    private Transaction toTransaction(Fill fill, TransactionType side) {
+        Order order = side == TransactionType.BUY ? fill.getBuyOrder() : fill.getSellOrder();
+        Order counterparty = side == TransactionType.BUY ? fill.getSellOrder() : fill.getBuyOrder();
+        return Transaction.builder()
+                .type(side)
+                .stockSymbol(fill.getSymbol())
+                .quantity(fill.getQuantity())
+                .pricePerShare(FixedPoint.toBigDecimal(fill.getPrice(), DECIMALS))
+                .totalValue(FixedPoint.toBigDecimal(
+                        FixedPoint.multiplyByQuantity(fill.getPrice(), fill.getQuantity()), DECIMALS))
+                .timestamp(fill.getTimestamp())
+                .userId(order.getUserId())
+                .portfolioId(order.getPortfolioId())
+                .notes("Order " + order.getId() + " matched order " + counterparty.getId())
+                .counterLeg(side == TransactionType.SELL)
+                .build();
+    }
+
+    /**
+     * A trade transaction as an import row, with its timestamp and counter-leg flag.
+     */
+    private static TransactionImportRow toImportRow(Transaction transaction) {
+        TransactionImportRow row = new TransactionImportRow();
+        row.setType(transaction.getType());
+        row.setStockSymbol(transaction.getStockSymbol());
+        row.setQuantity(transaction.getQuantity());
+        row.setPricePerShare(transaction.getPricePerShare());
+        row.setUserId(transaction.getUserId());
+        row.setPortfolioId(transaction.getPortfolioId());
+        row.setNotes(transaction.getNotes());
+        row.setTimestamp(transaction.getTimestamp());
+        row.setCounterLeg(transaction.isCounterLeg());
+        return row;
+    }
+
+    /**
+     * The last trade as a price update, with the change against the cached quote.
+     */
+    private StockPriceUpdateDTO toPriceUpdate(Fill fill) {
+        long price = fill.getPrice();
+        long previous = quoteCache.get(fill.getSymbol())
+                .map(StockDTO::getCurrentPrice)
+                .map(FixedPoint::of)
+                .orElse(price);
+        long change = price - previous;
+        long changePercent = previous == 0 ? 0
+                : FixedPoint.round(FixedPoint.divide(change, previous) * 100, DECIMALS);
+        return StockPriceUpdateDTO.builder()
+                .symbol(fill.getSymbol())
+                .price(FixedPoint.toBigDecimal(price, DECIMALS))
+                .change(FixedPoint.toBigDecimal(change, DECIMALS))
+                .changePercent(FixedPoint.toBigDecimal(changePercent, DECIMALS))
+                .timestamp(fill.getTimestamp())
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package com.stockmarket.app.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmarket.app.repository.OutboxRepository;
+import com.stockmarket.app.repository.OutboxRepository.OutboxEvent;
+import com.stockmarket.app.service.KafkaProducerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the events of the transactional outbox to Kafka.
+ *
+ * Every run reads the oldest events in batches of outbox.relay.batch-size, sends a whole
+ * batch without waiting in between (the producer batches them on the wire), waits for the
+ * broker to acknowledge them and deletes the acknowledged rows. Delivery is at least once:
+ * an event whose send failed stays in the outbox and is retried on the next run.
+ *
+ * Events are read in the order they were written. When an event fails, the later events
+ * with the same key are kept as well, even if they were delivered, so they are sent again
+ * after it and consumers still end with the newest state of that key.
+ *
+ * Run one relay per database; the application instances of a deployment share the outbox.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    // Only payloads of the application's own classes are read back from the outbox
+    private static final String TRUSTED_PACKAGE = "com.stockmarket.app.";
+
+    private final OutboxRepository outboxRepository;
+    private final KafkaProducerService kafkaProducerService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long sendTimeoutMillis;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Counter published;
+    private final Counter failed;
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       KafkaProducerService kafkaProducerService,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.send-timeout-ms:30000}") long sendTimeoutMillis) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaProducerService = kafkaProducerService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.published = Counter.builder("outbox.relay.events")
+                .tag("result", "published")
+                .description("Outbox events acknowledged by Kafka")
+                .register(meterRegistry);
+        this.failed = Counter.builder("outbox.relay.events")
+                .tag("result", "failed")
+                .description("Outbox events that could not be published and will be retried")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish everything in the outbox, batch by batch, until it is empty or a send fails.
+     *
+     * @return the number of events published
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.interval:200}")
+    public int relay() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            while (true) {
+                List<OutboxEvent> events = outboxRepository.findOldest(batchSize);
+                if (events.isEmpty()) {
+                    return total;
+                }
+                int publishedCount = publish(events);
+                total += publishedCount;
+                if (publishedCount < events.size() || events.size() < batchSize) {
+                    return total;
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Send one batch, wait for the acknowledgements and delete the events that may not be sent again.
+     *
+     * @return the number of deleted events
+     */
+    private int publish(List<OutboxEvent> events) {
+        List<CompletableFuture<Void>> sends = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            sends.add(send(event));
+        }
+
+        List<Long> done = new ArrayList<>(events.size());
+        Set<String> failedKeys = new HashSet<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            boolean delivered = await(sends.get(i), event, deadline);
+            if (delivered && !failedKeys.contains(event.getKey())) {
+                done.add(event.getId());
+            } else if (!delivered) {
+                failed.increment();
+                failedKeys.add(event.getKey());
+            }
+        }
+        outboxRepository.delete(done);
+        published.increment(done.size());
+        if (done.size() < events.size()) {
+            log.warn("Published {} of {} outbox events; the rest will be retried", done.size(), events.size());
+        } else {
+            log.debug("Published {} outbox events", done.size());
+        }
+        return done.size();
+    }
+
+    private CompletableFuture<Void> send(OutboxEvent event) {
+        Object payload;
+        try {
+            payload = read(event);
+        } catch (Exception e) {
+            // A payload that cannot be read would block the outbox forever; it is logged and dropped
+            log.error("Dropping unreadable outbox event {} ({}): {}", event.getId(), event.getPayloadType(), e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        return kafkaProducerService.send(event.getTopic(), event.getKey(), payload);
+    }
+
+    private Object read(OutboxEvent event) throws Exception {
+        if (!event.getPayloadType().startsWith(TRUSTED_PACKAGE)) {
+            throw new IllegalArgumentException("untrusted payload type");
+        }
+        return objectMapper.readValue(event.getPayload(), Class.forName(event.getPayloadType()));
+    }
+
+    private boolean await(CompletableFuture<Void> send, OutboxEvent event, long deadline) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Outbox event {} was not published: {}", event.getId(), e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
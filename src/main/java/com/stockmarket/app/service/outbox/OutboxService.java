@@ -0,0 +1,115 @@
+package com.stockmarket.app.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmarket.app.repository.OutboxRepository;
+import com.stockmarket.app.repository.OutboxRepository.OutboxEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes domain events to the transactional outbox instead of sending them to Kafka.
+ *
+ * Inside a transaction the events are collected and stored with one batch insert just
+ * before the transaction commits, so they are part of the same commit as the change they
+ * describe: a rolled-back change never publishes an event, and the request does not wait
+ * for the broker. Pending JPA changes are flushed first, so the row locks of the change are
+ * held before the events get their ids, and events of the same stock keep their commit order.
+ *
+ * Outside a transaction an event is stored on its own straight away.
+ * The OutboxRelay publishes the stored events to Kafka.
+ *
+ * The outbox itself has no limit. Producers that can choose to wait, like the price
+ * simulator, check isBacklogged() first: once outbox.max-backlog events are waiting (the
+ * relay is behind or Kafka is down) they skip their work instead of growing the table.
+ * The outbox.backlog gauge shows the number of waiting events.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final long maxBacklog;
+
+    public OutboxService(OutboxRepository outboxRepository, ObjectMapper objectMapper, EntityManager entityManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${outbox.max-backlog:100000}") long maxBacklog) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.maxBacklog = maxBacklog;
+        Gauge.builder("outbox.backlog", outboxRepository, OutboxRepository::count)
+                .description("Events in the outbox that the relay has not published yet")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether the outbox holds outbox.max-backlog or more unpublished events (0 disables the limit).
+     */
+    public boolean isBacklogged() {
+        return maxBacklog > 0 && outboxRepository.count() >= maxBacklog;
+    }
+
+    /**
+     * Store a Kafka record to be published once the current transaction commits.
+     *
+     * @param topic   the Kafka topic
+     * @param key     the record key; records of one key are published in order
+     * @param payload the record value
+     */
+    public void enqueue(String topic, String key, Object payload) {
+        OutboxEvent event = new OutboxEvent(null, topic, key, payload.getClass().getName(),
+                toJson(payload), LocalDateTime.now());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingEvents().add(event);
+        } else {
+            outboxRepository.append(List.of(event));
+        }
+    }
+
+    /**
+     * The events of the current transaction, registering the flush before commit on first use.
+     */
+    @SuppressWarnings("unchecked")
+    private List<OutboxEvent> pendingEvents() {
+        List<OutboxEvent> pending = (List<OutboxEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<OutboxEvent> events = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    if (entityManager.isJoinedToTransaction()) {
+                        entityManager.flush();
+                    }
+                    outboxRepository.append(events);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OutboxService.this);
+                }
+            });
+            pending = events;
+        }
+        return pending;
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot write " + payload.getClass().getSimpleName() + " to the outbox", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.stockmarket.app.service.performance;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * The daily values of one portfolio over a window. Index d is the day from + d.
+ */
+@Getter
+@AllArgsConstructor
+public final class DailySeries {
+    private final LocalDate from;
+    // Value at the end of the day before the window
+    private final double startValue;
+    // Value at the end of each day
+    private final double[] values;
+    // Net money put into the portfolio on each day (buys minus sells)
+    private final double[] flows;
+
+    public int length() {
+        return values.length;
+    }
+
+    public double endValue() {
+        return values.length == 0 ? startValue : values[values.length - 1];
+    }
+
+    public double netFlow() {
+        double sum = 0;
+        for (double flow : flows) {
+            sum += flow;
+        }
+        return sum;
+    }
+}
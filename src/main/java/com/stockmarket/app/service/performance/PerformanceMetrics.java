@@ -0,0 +1,131 @@
+package com.stockmarket.app.service.performance;
+
+/**
+ * Return and risk measures over the daily series of a portfolio.
+ *
+ * Every measure is a single pass (or, for the money-weighted return, a few passes) over
+ * primitive arrays. Flows are assumed to happen at the start of their day, and a year is
+ * 365 days since prices move on every calendar day.
+ */
+public final class PerformanceMetrics {
+
+    public static final int DAYS_PER_YEAR = 365;
+
+    private static final int MAX_ITERATIONS = 100;
+    private static final double TOLERANCE = 1e-12;
+
+    private PerformanceMetrics() {
+    }
+
+    /**
+     * The return of each day net of that day's flow, or NaN for a day that starts with
+     * nothing invested.
+     */
+    public static double[] dailyReturns(DailySeries series) {
+        double[] values = series.getValues();
+        double[] flows = series.getFlows();
+        double[] returns = new double[values.length];
+        double previous = series.getStartValue();
+        for (int d = 0; d < values.length; d++) {
+            double invested = previous + flows[d];
+            returns[d] = invested > 0 ? values[d] / invested - 1 : Double.NaN;
+            previous = values[d];
+        }
+        return returns;
+    }
+
+    /**
+     * The time-weighted return: the daily returns chained together, so flows do not count
+     * as gains or losses.
+     */
+    public static double timeWeightedReturn(double[] returns) {
+        double growth = 1;
+        for (double r : returns) {
+            if (!Double.isNaN(r)) {
+                growth *= 1 + r;
+            }
+        }
+        return growth - 1;
+    }
+
+    /**
+     * The annualized standard deviation of the daily returns, or NaN with fewer than two of them.
+     */
+    public static double volatility(double[] returns) {
+        int count = 0;
+        double mean = 0;
+        double squares = 0;
+        // Welford's online variance
+        for (double r : returns) {
+            if (Double.isNaN(r)) {
+                continue;
+            }
+            count++;
+            double delta = r - mean;
+            mean += delta / count;
+            squares += delta * (r - mean);
+        }
+        return count < 2 ? Double.NaN : Math.sqrt(squares / (count - 1) * DAYS_PER_YEAR);
+    }
+
+    /**
+     * The largest fall of the time-weighted growth from a previous peak, as a negative fraction (0 if none).
+     */
+    public static double maxDrawdown(double[] returns) {
+        double growth = 1;
+        double peak = 1;
+        double drawdown = 0;
+        for (double r : returns) {
+            if (Double.isNaN(r)) {
+                continue;
+            }
+            growth *= 1 + r;
+            peak = Math.max(peak, growth);
+            drawdown = Math.min(drawdown, growth / peak - 1);
+        }
+        return drawdown;
+    }
+
+    /**
+     * The money-weighted return over the window: the internal rate of return at which the
+     * start value and the flows grow into the end value, or NaN if there is none.
+     *
+     * Solved for the daily growth factor g with Newton's method, where
+     * startValue * g^n + sum(flows[d] * g^(n - d)) is evaluated with Horner's scheme.
+     */
+    public static double moneyWeightedReturn(DailySeries series) {
+        double[] flows = series.getFlows();
+        double startValue = series.getStartValue();
+        double endValue = series.endValue();
+        double g = 1;
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            double value = startValue;
+            double slope = 0;
+            for (double flow : flows) {
+                double invested = value + flow;
+                slope = slope * g + invested;
+                value = invested * g;
+            }
+            if (slope == 0) {
+                return Double.NaN;
+            }
+            double step = (value - endValue) / slope;
+            g -= step;
+            if (g <= 0 || Double.isNaN(g)) {
+                return Double.NaN;
+            }
+            if (Math.abs(step) < TOLERANCE) {
+                return Math.pow(g, flows.length) - 1;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Turn the return over a number of days into a yearly rate, or NaN for less than a year,
+     * where compounding a few days' return would only blow it up.
+     */
+    public static double annualize(double periodReturn, int days) {
+        return days < DAYS_PER_YEAR ? Double.NaN : Math.pow(1 + periodReturn, (double) DAYS_PER_YEAR / days) - 1;
+    }
+}
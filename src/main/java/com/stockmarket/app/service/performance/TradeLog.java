@@ -0,0 +1,126 @@
+package com.stockmarket.app.service.performance;
+
+import com.stockmarket.app.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The trades of one portfolio in time order, stored as primitive columns.
+ *
+ * Each trade is a day, a symbol index, a signed quantity (negative for a sale) and a price,
+ * so turning years of trades into daily series touches no objects per trade.
+ */
+public final class TradeLog {
+
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolIndex = new HashMap<>();
+    private int[] days = new int[16];
+    private int[] symbolOf = new int[16];
+    private int[] quantities = new int[16];
+    private double[] prices = new double[16];
+    private int size;
+
+    /**
+     * Add a trade. Trades must be added in time order.
+     */
+    public void add(LocalDate day, String symbol, TransactionType type, int quantity, BigDecimal price) {
+        if (size == days.length) {
+            int capacity = size * 2;
+            days = Arrays.copyOf(days, capacity);
+            symbolOf = Arrays.copyOf(symbolOf, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+        }
+        days[size] = (int) day.toEpochDay();
+        symbolOf[size] = symbolIndex.computeIfAbsent(symbol.toUpperCase(Locale.ROOT), key -> {
+            symbols.add(key);
+            return symbols.size() - 1;
+        });
+        quantities[size] = type == TransactionType.BUY ? quantity : -quantity;
+        prices[size] = price.doubleValue();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The upper-case symbols traded, in order of their first trade.
+     */
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    public LocalDate getFirstDay() {
+        return size == 0 ? null : LocalDate.ofEpochDay(days[0]);
+    }
+
+    /**
+     * Build the end-of-day values and the daily net flows of the portfolio over a window.
+     *
+     * The closes of a symbol are given for the day before the window (index 0) and every day
+     * of it (index 1 to days), with NaN for days without a close. A holding is valued at the
+     * close of the day, or else at the last known close or traded price. Buying counts as
+     * money flowing into the portfolio and selling as money flowing out, at the traded price.
+     *
+     * @param from   the first day of the window
+     * @param length the number of days in the window
+     * @param closes the closes of a symbol
+     */
+    public DailySeries toDailySeries(LocalDate from, int length, Function<String, double[]> closes) {
+        int symbolCount = symbols.size();
+        double[][] close = new double[symbolCount][];
+        for (int s = 0; s < symbolCount; s++) {
+            close[s] = closes.apply(symbols.get(s));
+        }
+        long[] held = new long[symbolCount];
+        double[] mark = new double[symbolCount];
+        int firstDay = (int) from.toEpochDay();
+
+        // Holdings at the start of the window
+        int t = 0;
+        for (; t < size && days[t] < firstDay; t++) {
+            held[symbolOf[t]] += quantities[t];
+            mark[symbolOf[t]] = prices[t];
+        }
+        double startValue = 0;
+        for (int s = 0; s < symbolCount; s++) {
+            if (!Double.isNaN(close[s][0])) {
+                mark[s] = close[s][0];
+            }
+            startValue += held[s] * mark[s];
+        }
+
+        double[] values = new double[length];
+        double[] flows = new double[length];
+        for (int d = 0; d < length; d++) {
+            int day = firstDay + d;
+            double flow = 0;
+            for (; t < size && days[t] == day; t++) {
+                held[symbolOf[t]] += quantities[t];
+                mark[symbolOf[t]] = prices[t];
+                flow += quantities[t] * prices[t];
+            }
+            double value = 0;
+            for (int s = 0; s < symbolCount; s++) {
+                double c = close[s][d + 1];
+                if (!Double.isNaN(c)) {
+                    mark[s] = c;
+                }
+                value += held[s] * mark[s];
+            }
+            values[d] = value;
+            flows[d] = flow;
+        }
+        return new DailySeries(from, startValue, values, flows);
+    }
+}
@@ -0,0 +1,414 @@
+package com.stockmarket.app.service.positions;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmarket.app.dto.PositionDTO;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.repository.PositionRepository;
+import com.stockmarket.app.repository.PositionRepository.LedgerEvent;
+import com.stockmarket.app.repository.PositionRepository.PositionSnapshot;
+import com.stockmarket.app.util.AfterCommit;
+import com.stockmarket.app.util.FixedPoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Derives the positions of every portfolio from the transactions ledger.
+ *
+ * The transactions table is read as an append-only event log in id order, and each
+ * transaction with a portfolio is folded into that portfolio's position in its stock at
+ * average cost. Every positions.snapshot-every transactions of a portfolio, its positions
+ * are stored as a snapshot versioned with the id of the last transaction folded in.
+ *
+ * After a restart the projection loads the latest snapshot of every portfolio and only
+ * replays the transactions after it, and rebuild() does the same for one portfolio, so
+ * recovery costs at most snapshot-every transactions per portfolio instead of the whole
+ * history.
+ *
+ * New transactions are picked up by polling the ledger (positions.poll-interval), which
+ * also sees bulk imports and matched trades, whose batch inserts do not return ids. Ids are
+ * assigned before commit, so a missing id may still be committed by a slower transaction:
+ * the projection waits up to positions.gap-timeout for it before moving on, as a rolled back
+ * insert leaves a gap forever. The ids it moved past are queried again on every poll for
+ * positions.gap-retention; one that turns up is folded in by refolding its portfolio in id
+ * order, and after that time the ids are taken as rolled back.
+ *
+ * The projection never reads past its checkpoint, not even when it restores or rebuilds a
+ * portfolio, so a transaction below a portfolio's version has always been folded in.
+ *
+ * The ledger is treated as append-only. When TransactionServiceImpl changes or deletes a
+ * transaction it calls reset(), and the next poll refolds that portfolio's whole history.
+ */
+@Service
+@Slf4j
+public class PositionProjection {
+
+    // Values are reported with two decimals
+    private static final int DECIMALS = 2;
+
+    private static final TypeReference<List<Position>> POSITION_LIST = new TypeReference<>() {
+    };
+
+    private final PositionRepository positionRepository;
+    private final ObjectMapper objectMapper;
+    private final int snapshotEvery;
+    private final int snapshotsRetained;
+    private final int batchSize;
+    private final long gapTimeoutMillis;
+    private final long gapRetentionMillis;
+    private final Map<Long, PortfolioPositions> portfolios = new ConcurrentHashMap<>();
+    private final Counter applied;
+    private final Counter snapshotsWritten;
+    // Portfolios to refold from scratch on the next poll
+    private final Set<Long> resetsPending = ConcurrentHashMap.newKeySet();
+
+    // The fields below are guarded by this
+    private final Set<Long> snapshotsDue = new LinkedHashSet<>();
+    // Id of the last transaction read from the ledger
+    private long checkpoint;
+    // The first missing id after the checkpoint and when it was first seen missing
+    private long gapId;
+    private long gapSince;
+    // Ids moved past after the gap timeout, with when they were skipped
+    private final Map<Long, Long> skippedIds = new TreeMap<>();
+    private boolean loaded;
+
+    public PositionProjection(PositionRepository positionRepository,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${positions.snapshot-every:100}") int snapshotEvery,
+                              @Value("${positions.snapshots-retained:2}") int snapshotsRetained,
+                              @Value("${positions.batch-size:5000}") int batchSize,
+                              @Value("${positions.gap-timeout:2000}") long gapTimeoutMillis,
+                              @Value("${positions.gap-retention:600000}") long gapRetentionMillis) {
+        this.positionRepository = positionRepository;
+        this.objectMapper = objectMapper;
+        this.snapshotEvery = snapshotEvery;
+        this.snapshotsRetained = snapshotsRetained;
+        this.batchSize = batchSize;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.gapRetentionMillis = gapRetentionMillis;
+        this.applied = Counter.builder("positions.events.applied")
+                .description("Transactions folded into portfolio positions")
+                .register(meterRegistry);
+        this.snapshotsWritten = Counter.builder("positions.snapshots.written")
+                .description("Position snapshots stored")
+                .register(meterRegistry);
+        Gauge.builder("positions.portfolios", portfolios, Map::size)
+                .description("Portfolios in the position projection")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Restore every portfolio from its latest snapshot and the transactions after it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        long start = System.nanoTime();
+        portfolios.clear();
+        snapshotsDue.clear();
+        skippedIds.clear();
+        // Transactions committed after this are read by catchUp()
+        long maxId = positionRepository.findMaxEventId();
+        List<PositionSnapshot> snapshots = positionRepository.findLatestSnapshots();
+        for (PositionSnapshot snapshot : snapshots) {
+            portfolios.put(snapshot.getPortfolioId(), restore(snapshot));
+        }
+        long[] replayed = {0};
+        positionRepository.forEachEventSinceSnapshots(maxId, event -> {
+            apply(event);
+            replayed[0]++;
+        });
+        checkpoint = maxId;
+        loaded = true;
+        writeDueSnapshots();
+        log.info("Position projection restored {} portfolios from {} snapshots and {} transactions in {} ms",
+                portfolios.size(), snapshots.size(), replayed[0], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Fold the transactions written since the last poll and store the snapshots that are due.
+     */
+    @Scheduled(fixedDelayString = "${positions.poll-interval:1000}")
+    public synchronized void catchUp() {
+        if (!loaded) {
+            return;
+        }
+        recheckSkippedIds();
+        for (Long portfolioId : resetsPending) {
+            resetsPending.remove(portfolioId);
+            positionRepository.deleteSnapshots(portfolioId);
+            snapshotsDue.remove(portfolioId);
+            portfolios.remove(portfolioId);
+            rebuild(portfolioId);
+        }
+        boolean more = true;
+        while (more) {
+            List<LedgerEvent> events = positionRepository.findEventsAfter(checkpoint, batchSize);
+            more = read(events) && events.size() == batchSize;
+        }
+        writeDueSnapshots();
+    }
+
+    /**
+     * Rebuild one portfolio from its latest snapshot and the transactions after it, up to the checkpoint.
+     *
+     * @return the rebuilt positions, or empty if the portfolio has no transactions
+     */
+    public synchronized Optional<List<PositionDTO>> rebuild(long portfolioId) {
+        PortfolioPositions state = positionRepository.findLatestSnapshot(portfolioId)
+                .map(this::restore)
+                .orElseGet(() -> new PortfolioPositions(portfolioId));
+        portfolios.put(portfolioId, state);
+        positionRepository.forEachEventOfPortfolio(portfolioId, state.version, checkpoint, this::apply);
+        if (state.eventCount == 0) {
+            portfolios.remove(portfolioId);
+            return Optional.empty();
+        }
+        writeDueSnapshots();
+        return getPositions(portfolioId);
+    }
+
+    /**
+     * Drop the snapshots of a portfolio and fold its whole history again on the next poll
+     * after the current database transaction commits. For changes to transactions that are
+     * already folded in.
+     */
+    public void reset(long portfolioId) {
+        AfterCommit.run(() -> resetsPending.add(portfolioId));
+    }
+
+    /**
+     * The positions of a portfolio, or empty if it has no transactions.
+     */
+    public Optional<List<PositionDTO>> getPositions(long portfolioId) {
+        PortfolioPositions state = portfolios.get(portfolioId);
+        return Optional.ofNullable(state).map(PortfolioPositions::toDTOs);
+    }
+
+    /**
+     * Fold the next events of the ledger, stopping at a missing id that may still be committed.
+     *
+     * @return false if it stopped at such a gap
+     */
+    private boolean read(List<LedgerEvent> events) {
+        for (LedgerEvent event : events) {
+            long expectedId = checkpoint + 1;
+            if (event.getId() != expectedId) {
+                if (!gapExpired(expectedId)) {
+                    return false;
+                }
+                long now = System.currentTimeMillis();
+                for (long id = expectedId; id < event.getId(); id++) {
+                    skippedIds.put(id, now);
+                }
+            }
+            apply(event);
+            checkpoint = event.getId();
+        }
+        return true;
+    }
+
+    private boolean gapExpired(long missingId) {
+        long now = System.currentTimeMillis();
+        if (gapId != missingId) {
+            gapId = missingId;
+            gapSince = now;
+        }
+        if (now - gapSince < gapTimeoutMillis) {
+            return false;
+        }
+        log.debug("Skipping transaction ids from {}: not committed after {} ms", missingId, gapTimeoutMillis);
+        return true;
+    }
+
+    /**
+     * Look for the skipped ids again. A transaction committed after the projection moved past
+     * it is behind later ones of its portfolio, so that portfolio is refolded in id order.
+     */
+    private void recheckSkippedIds() {
+        if (skippedIds.isEmpty()) {
+            return;
+        }
+        for (LedgerEvent event : positionRepository.findEventsByIds(skippedIds.keySet())) {
+            skippedIds.remove(event.getId());
+            if (event.getPortfolioId() != null && event.getStockSymbol() != null) {
+                log.info("Transaction {} was committed after its id was skipped, refolding portfolio {}",
+                        event.getId(), event.getPortfolioId());
+                resetsPending.add(event.getPortfolioId());
+            }
+        }
+        long expired = System.currentTimeMillis() - gapRetentionMillis;
+        skippedIds.values().removeIf(skippedAt -> skippedAt <= expired);
+    }
+
+    private void apply(LedgerEvent event) {
+        if (event.getPortfolioId() == null || event.getStockSymbol() == null) {
+            return;
+        }
+        PortfolioPositions state = portfolios.computeIfAbsent(event.getPortfolioId(), PortfolioPositions::new);
+        // Already part of the snapshot the state was restored from
+        if (event.getId() <= state.version) {
+            return;
+        }
+        if (state.apply(event) >= snapshotEvery) {
+            snapshotsDue.add(event.getPortfolioId());
+        }
+        applied.increment();
+    }
+
+    private void writeDueSnapshots() {
+        if (snapshotsDue.isEmpty()) {
+            return;
+        }
+        List<PositionSnapshot> snapshots = new ArrayList<>(snapshotsDue.size());
+        List<PortfolioPositions> states = new ArrayList<>(snapshotsDue.size());
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (Long portfolioId : snapshotsDue) {
+                PortfolioPositions state = portfolios.get(portfolioId);
+                if (state != null) {
+                    snapshots.add(state.toSnapshot(now));
+                    states.add(state);
+                }
+            }
+            positionRepository.saveSnapshots(snapshots, snapshotsRetained);
+        } catch (RuntimeException e) {
+            // Still due; tried again after the next poll
+            log.error("Could not store {} position snapshots: {}", snapshots.size(), e.getMessage(), e);
+            return;
+        }
+        snapshotsDue.clear();
+        states.forEach(state -> state.eventsSinceSnapshot = 0);
+        snapshotsWritten.increment(snapshots.size());
+    }
+
+    private PortfolioPositions restore(PositionSnapshot snapshot) {
+        PortfolioPositions state = new PortfolioPositions(snapshot.getPortfolioId());
+        state.version = snapshot.getVersion();
+        state.eventCount = snapshot.getEventCount();
+        try {
+            for (Position position : objectMapper.readValue(snapshot.getPositions(), POSITION_LIST)) {
+                state.positions.put(position.getSymbol(), position);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable position snapshot of portfolio "
+                    + snapshot.getPortfolioId() + " at version " + snapshot.getVersion(), e);
+        }
+        return state;
+    }
+
+    /**
+     * The positions of one portfolio. Written by the projection under its lock; read by
+     * getPositions() under the lock of this object.
+     */
+    private final class PortfolioPositions {
+        private final long portfolioId;
+        private final Map<String, Position> positions = new TreeMap<>();
+        // Id of the last transaction folded in
+        private long version;
+        private long eventCount;
+        private long eventsSinceSnapshot;
+
+        private PortfolioPositions(long portfolioId) {
+            this.portfolioId = portfolioId;
+        }
+
+        /**
+         * @return the number of transactions folded in since the last snapshot
+         */
+        synchronized long apply(LedgerEvent event) {
+            positions.computeIfAbsent(event.getStockSymbol(), Position::new)
+                    .apply(event.getType(), event.getQuantity(), FixedPoint.of(event.getPricePerShare()));
+            version = event.getId();
+            eventCount++;
+            return ++eventsSinceSnapshot;
+        }
+
+        synchronized PositionSnapshot toSnapshot(LocalDateTime createdAt) {
+            try {
+                String json = objectMapper.writeValueAsString(new ArrayList<>(positions.values()));
+                return new PositionSnapshot(portfolioId, version, eventCount, json, createdAt);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not serialize the positions of portfolio " + portfolioId, e);
+            }
+        }
+
+        synchronized List<PositionDTO> toDTOs() {
+            List<PositionDTO> dtos = new ArrayList<>(positions.size());
+            for (Position position : positions.values()) {
+                dtos.add(PositionDTO.builder()
+                        .portfolioId(portfolioId)
+                        .stockSymbol(position.getSymbol())
+                        .quantity(position.getQuantity())
+                        .averageCost(position.getQuantity() > 0
+                                ? FixedPoint.toBigDecimal(FixedPoint.round(
+                                        position.getCostBasis() / position.getQuantity(), DECIMALS), DECIMALS)
+                                : null)
+                        .costBasis(FixedPoint.toBigDecimal(position.getCostBasis(), DECIMALS))
+                        .realizedProfit(FixedPoint.toBigDecimal(position.getRealizedProfit(), DECIMALS))
+                        .version(version)
+                        .build());
+            }
+            return dtos;
+        }
+    }
+
+    /**
+     * The position in one stock at average cost, as stored in snapshots. Money is in FixedPoint.
+     * Selling more than is held opens a short position, which has no cost basis.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static final class Position {
+        private String symbol;
+        private long quantity;
+        private long costBasis;
+        private long realizedProfit;
+
+        Position(String symbol) {
+            this.symbol = symbol;
+        }
+
+        void apply(TransactionType type, int traded, long price) {
+            if (type == TransactionType.BUY) {
+                // Only the part that does not cover a short position has a cost
+                long opened = quantity < 0 ? Math.max(0, traded + quantity) : traded;
+                costBasis += FixedPoint.multiplyByQuantity(price, (int) opened);
+                quantity += traded;
+                return;
+            }
+            if (quantity > 0) {
+                int closed = (int) Math.min(traded, quantity);
+                long cost = closed == quantity
+                        ? costBasis
+                        : FixedPoint.multiplyByQuantity(costBasis / quantity, closed);
+                realizedProfit += FixedPoint.multiplyByQuantity(price, closed) - cost;
+                costBasis -= cost;
+            }
+            quantity -= traded;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.stockmarket.app.service.pricemodel;
+
+import com.stockmarket.app.model.Stock;
+import com.stockmarket.app.util.FixedPoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.SplittableRandom;
+
+/**
+ * Geometric Brownian motion, the textbook model behind Black-Scholes.
+ *
+ * Each tick multiplies the price by exp((mu - sigma^2 / 2) + sigma * Z), where Z is a
+ * standard normal draw and mu and sigma are the drift and volatility per tick. Prices
+ * stay positive and returns are normally distributed in log space.
+ */
+@Component
+public class GeometricBrownianMotionPriceModel implements PriceModel {
+
+    public static final String NAME = "gbm";
+
+    private final double drift;
+    private final double volatility;
+
+    public GeometricBrownianMotionPriceModel(
+            @Value("${stocksimulator.model.gbm.drift-percent:0.0}") double driftPercent,
+            @Value("${stocksimulator.model.gbm.volatility-percent:2.0}") double volatilityPercent) {
+        this.drift = driftPercent / 100.0;
+        this.volatility = volatilityPercent / 100.0;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long nextPrice(Stock stock, long currentPrice, SplittableRandom random) {
+        double z = TickRandom.nextGaussian(random);
+        double growth = Math.exp(drift - volatility * volatility / 2.0 + volatility * z);
+        return FixedPoint.of(currentPrice * growth / FixedPoint.ONE, FixedPoint.SCALE);
+    }
+}
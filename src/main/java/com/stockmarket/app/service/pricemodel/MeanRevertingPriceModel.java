@@ -0,0 +1,50 @@
+package com.stockmarket.app.service.pricemodel;
+
+import com.stockmarket.app.model.Stock;
+import com.stockmarket.app.util.FixedPoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.SplittableRandom;
+
+/**
+ * Mean-reverting (Ornstein-Uhlenbeck) model on the log price.
+ *
+ * Each tick pulls the log price towards the log of the stock's previous close by
+ * a fraction (the speed) of the distance, then adds normal noise:
+ * x' = x + speed * (ln(anchor) - x) + sigma * Z
+ * Stocks without a previous close revert towards their current price.
+ */
+@Component
+public class MeanRevertingPriceModel implements PriceModel {
+
+    public static final String NAME = "mean-reverting";
+
+    private final double speed;
+    private final double volatility;
+
+    public MeanRevertingPriceModel(
+            @Value("${stocksimulator.model.mean-reverting.speed:0.1}") double speed,
+            @Value("${stocksimulator.model.mean-reverting.volatility-percent:2.0}") double volatilityPercent) {
+        this.speed = speed;
+        this.volatility = volatilityPercent / 100.0;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long nextPrice(Stock stock, long currentPrice, SplittableRandom random) {
+        long anchor = stock.getPreviousClose() != null && stock.getPreviousClose().signum() > 0
+                ? FixedPoint.of(stock.getPreviousClose())
+                : currentPrice;
+
+        double logPrice = Math.log(currentPrice);
+        double logAnchor = Math.log(anchor);
+        double z = TickRandom.nextGaussian(random);
+        double next = logPrice + speed * (logAnchor - logPrice) + volatility * z;
+        return FixedPoint.of(Math.exp(next) / FixedPoint.ONE, FixedPoint.SCALE);
+    }
+}
@@ -0,0 +1,32 @@
+package com.stockmarket.app.service.pricemodel;
+
+import com.stockmarket.app.model.Stock;
+
+import java.util.SplittableRandom;
+
+/**
+ * Strategy interface for the way the simulator moves a stock price on each tick.
+ *
+ * Implementations are Spring beans; the simulator picks one by name with the
+ * stocksimulator.model property. A model must take all of its randomness from the
+ * given SplittableRandom, so that the same seed always produces the same ticks.
+ * The simulator calls models from several worker threads at once, so implementations
+ * must be stateless.
+ */
+public interface PriceModel {
+
+    /**
+     * The name used to select this model in stocksimulator.model (e.g. "uniform").
+     */
+    String getName();
+
+    /**
+     * Compute the next price of a stock.
+     *
+     * @param stock        the stock being simulated (read only, e.g. for its previous close)
+     * @param currentPrice the current price as a FixedPoint value
+     * @param random       the random stream for this stock and tick
+     * @return the new price as a FixedPoint value; the simulator rounds it and applies the minimum price
+     */
+    long nextPrice(Stock stock, long currentPrice, SplittableRandom random);
+}
@@ -0,0 +1,53 @@
+package com.stockmarket.app.service.pricemodel;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives the random stream used for one stock on one simulator tick.
+ *
+ * The stream only depends on the global seed, the cycle number and the stock id,
+ * so a seeded run produces the same ticks however the stocks are ordered or
+ * split across worker threads.
+ */
+public final class TickRandom {
+
+    private TickRandom() {
+    }
+
+    /**
+     * Create the random stream for a stock on a given cycle.
+     *
+     * @param seed    the global simulator seed
+     * @param cycle   the simulator cycle number, starting at 1
+     * @param stockId the stock id
+     * @return a new SplittableRandom owned by the caller
+     */
+    public static SplittableRandom forStock(long seed, long cycle, long stockId) {
+        return new SplittableRandom(mix64(mix64(seed ^ mix64(cycle)) + stockId));
+    }
+
+    /**
+     * Draw a standard normal value (mean 0, standard deviation 1) with the Marsaglia polar method.
+     * One of the two generated values is discarded to keep the stream stateless.
+     */
+    public static double nextGaussian(SplittableRandom random) {
+        double u;
+        double v;
+        double s;
+        do {
+            u = random.nextDouble() * 2.0 - 1.0;
+            v = random.nextDouble() * 2.0 - 1.0;
+            s = u * u + v * v;
+        } while (s >= 1.0 || s == 0.0);
+        return u * Math.sqrt(-2.0 * Math.log(s) / s);
+    }
+
+    /**
+     * The MurmurHash3 64-bit finalizer, used to spread nearby seeds, cycles and ids.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
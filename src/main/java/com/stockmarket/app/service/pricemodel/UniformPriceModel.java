@@ -0,0 +1,42 @@
+package com.stockmarket.app.service.pricemodel;
+
+import com.stockmarket.app.model.Stock;
+import com.stockmarket.app.util.FixedPoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.SplittableRandom;
+
+/**
+ * The original simulator behaviour: each tick moves the price by a percentage drawn
+ * uniformly between stocksimulator.price-change.min-percent and max-percent.
+ */
+@Component
+public class UniformPriceModel implements PriceModel {
+
+    public static final String NAME = "uniform";
+
+    private static final int DECIMALS = 2;
+
+    private final double minChangePercent;
+    private final double maxChangePercent;
+
+    public UniformPriceModel(@Value("${stocksimulator.price-change.min-percent:-5.0}") double minChangePercent,
+                             @Value("${stocksimulator.price-change.max-percent:5.0}") double maxChangePercent) {
+        this.minChangePercent = minChangePercent;
+        this.maxChangePercent = maxChangePercent;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long nextPrice(Stock stock, long currentPrice, SplittableRandom random) {
+        // Calculate a random price change between configured min and max
+        double range = maxChangePercent - minChangePercent;
+        long changePercent = FixedPoint.of(random.nextDouble() * range + minChangePercent, DECIMALS);
+        return currentPrice + FixedPoint.percentOf(currentPrice, changePercent, DECIMALS);
+    }
+}
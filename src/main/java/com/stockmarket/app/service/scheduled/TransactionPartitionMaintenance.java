@@ -0,0 +1,81 @@
+package com.stockmarket.app.service.scheduled;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * Creates the monthly partitions of the transactions table ahead of time.
+ *
+ * On PostgreSQL the transactions table is range-partitioned by month on its timestamp
+ * (see V3__partition_transactions_by_month.sql). Rows for a month without a partition
+ * land in the default partition, which every query has to scan, so this job keeps the
+ * current month and the next transactions.partitions.months-ahead months created.
+ * It runs at startup and then daily.
+ *
+ * Other databases (the H2 dev profile) keep an unpartitioned table and the job does nothing.
+ */
+@Component
+@Slf4j
+public class TransactionPartitionMaintenance {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private volatile Boolean partitioned;
+
+    public TransactionPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                           @Value("${transactions.partitions.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        createUpcomingPartitions();
+    }
+
+    /**
+     * Make sure the partitions from the current month up to monthsAhead months from now exist.
+     *
+     * @return the number of months checked, or 0 if the table is not partitioned
+     */
+    @Scheduled(cron = "${transactions.partitions.cron:0 0 1 * * *}")
+    public int createUpcomingPartitions() {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        int checked = 0;
+        for (int i = 0; i <= monthsAhead; i++, month = month.plusMonths(1)) {
+            try {
+                String partition = jdbcTemplate.queryForObject(
+                        "SELECT create_transactions_partition(?)", String.class, Date.valueOf(month));
+                log.debug("Transaction partition {} is in place", partition);
+                checked++;
+            } catch (DataAccessException e) {
+                // E.g. the default partition already holds rows of that month; they must be moved first
+                log.error("Could not create the transaction partition for {}: {}", month, e.getMessage());
+            }
+        }
+        return checked;
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            partitioned = "PostgreSQL".equals(product);
+            log.info("Transactions table is {}partitioned on {}", partitioned ? "" : "not ", product);
+        }
+        return partitioned;
+    }
+}
@@ -0,0 +1,334 @@
+package com.stockmarket.app.service.serialization;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.model.Transaction;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Compact, versioned binary encoding of price updates and transactions.
+ *
+ * Every message starts with a three byte header: the magic byte 0xC5 (which can never
+ * start a JSON document), the format version and the event type. It is followed by a
+ * bit mask of the fields that are not null and then the fields themselves, in a fixed order:
+ * <ul>
+ *     <li>integers are zig-zag varints, so small values take one or two bytes;</li>
+ *     <li>a BigDecimal is its scale and unscaled value, so 190.30 stays 190.30 (not 190.3);</li>
+ *     <li>a LocalDateTime is its epoch second and nanosecond, read as UTC;</li>
+ *     <li>a string is its UTF-8 length followed by the bytes;</li>
+ *     <li>a boolean that is true is only its bit in the mask (version 2 adds Transaction.counterLeg this way).</li>
+ * </ul>
+ *
+ * A typical price update takes 27 bytes, against 109 bytes of JSON plus a 53 byte type header.
+ *
+ * Changing the layout of an event means a new VERSION; decoders reject versions they do not know.
+ * Version 1 payloads, written before transactions carried counterLeg, are still decoded
+ * (as counterLeg false), so records already in the topics stay readable.
+ */
+public final class BinaryEventCodec {
+
+    public static final byte MAGIC = (byte) 0xC5;
+    public static final byte VERSION = 2;
+    // Oldest version decode still reads
+    static final byte MIN_VERSION = 1;
+
+    static final byte TYPE_PRICE_UPDATE = 1;
+    static final byte TYPE_TRANSACTION = 2;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private BinaryEventCodec() {
+    }
+
+    /**
+     * Whether the value has a binary encoding.
+     */
+    public static boolean supports(Object value) {
+        return value instanceof StockPriceUpdateDTO || value instanceof Transaction;
+    }
+
+    /**
+     * Whether the payload was written by this codec.
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER_LENGTH && data[0] == MAGIC;
+    }
+
+    /**
+     * Encode a price update or a transaction.
+     *
+     * @throws SerializationException for any other type
+     */
+    public static byte[] encode(Object value) {
+        if (value instanceof StockPriceUpdateDTO) {
+            return encodePriceUpdate((StockPriceUpdateDTO) value);
+        }
+        if (value instanceof Transaction) {
+            return encodeTransaction((Transaction) value);
+        }
+        throw new SerializationException("No binary encoding for " + (value == null ? "null" : value.getClass().getName()));
+    }
+
+    /**
+     * Decode a payload written by encode.
+     *
+     * @throws SerializationException if the payload is not binary, has an unknown version or type, or is malformed
+     */
+    public static Object decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new SerializationException("Not a binary event payload");
+        }
+        if (data[1] < MIN_VERSION || data[1] > VERSION) {
+            throw new SerializationException("Unsupported binary event version " + data[1]
+                    + " (expected " + MIN_VERSION + " to " + VERSION + ")");
+        }
+        Reader reader = new Reader(data, HEADER_LENGTH);
+        try {
+            switch (data[2]) {
+                case TYPE_PRICE_UPDATE:
+                    return decodePriceUpdate(reader);
+                case TYPE_TRANSACTION:
+                    return decodeTransaction(reader);
+                default:
+                    throw new SerializationException("Unknown binary event type " + data[2]);
+            }
+        } catch (ArrayIndexOutOfBoundsException | ArithmeticException | DateTimeException e) {
+            throw new SerializationException("Malformed binary event payload of " + data.length + " bytes", e);
+        }
+    }
+
+    private static byte[] encodePriceUpdate(StockPriceUpdateDTO update) {
+        Writer writer = new Writer(TYPE_PRICE_UPDATE, 48);
+        writer.writeVarLong(mask(update.getSymbol(), update.getPrice(), update.getChange(),
+                update.getChangePercent(), update.getTimestamp()));
+        writer.writeString(update.getSymbol());
+        writer.writeDecimal(update.getPrice());
+        writer.writeDecimal(update.getChange());
+        writer.writeDecimal(update.getChangePercent());
+        writer.writeTimestamp(update.getTimestamp());
+        return writer.toByteArray();
+    }
+
+    private static StockPriceUpdateDTO decodePriceUpdate(Reader reader) {
+        long mask = reader.readVarLong();
+        return StockPriceUpdateDTO.builder()
+                .symbol(present(mask, 0) ? reader.readString() : null)
+                .price(present(mask, 1) ? reader.readDecimal() : null)
+                .change(present(mask, 2) ? reader.readDecimal() : null)
+                .changePercent(present(mask, 3) ? reader.readDecimal() : null)
+                .timestamp(present(mask, 4) ? reader.readTimestamp() : null)
+                .build();
+    }
+
+    private static byte[] encodeTransaction(Transaction transaction) {
+        Writer writer = new Writer(TYPE_TRANSACTION, 96);
+        writer.writeVarLong(mask(transaction.getId(), transaction.getType(), transaction.getStockSymbol(),
+                transaction.getQuantity(), transaction.getPricePerShare(), transaction.getTotalValue(),
+                transaction.getTimestamp(), transaction.getUserId(), transaction.getPortfolioId(),
+                transaction.getNotes(), transaction.isCounterLeg() ? Boolean.TRUE : null));
+        if (transaction.getId() != null) {
+            writer.writeVarLong(transaction.getId());
+        }
+        if (transaction.getType() != null) {
+            writer.writeVarLong(typeCode(transaction.getType()));
+        }
+        writer.writeString(transaction.getStockSymbol());
+        if (transaction.getQuantity() != null) {
+            writer.writeVarLong(transaction.getQuantity());
+        }
+        writer.writeDecimal(transaction.getPricePerShare());
+        writer.writeDecimal(transaction.getTotalValue());
+        writer.writeTimestamp(transaction.getTimestamp());
+        writer.writeString(transaction.getUserId());
+        if (transaction.getPortfolioId() != null) {
+            writer.writeVarLong(transaction.getPortfolioId());
+        }
+        writer.writeString(transaction.getNotes());
+        return writer.toByteArray();
+    }
+
+    private static Transaction decodeTransaction(Reader reader) {
+        long mask = reader.readVarLong();
+        return Transaction.builder()
+                .id(present(mask, 0) ? reader.readVarLong() : null)
+                .type(present(mask, 1) ? transactionType((int) reader.readVarLong()) : null)
+                .stockSymbol(present(mask, 2) ? reader.readString() : null)
+                .quantity(present(mask, 3) ? Math.toIntExact(reader.readVarLong()) : null)
+                .pricePerShare(present(mask, 4) ? reader.readDecimal() : null)
+                .totalValue(present(mask, 5) ? reader.readDecimal() : null)
+                .timestamp(present(mask, 6) ? reader.readTimestamp() : null)
+                .userId(present(mask, 7) ? reader.readString() : null)
+                .portfolioId(present(mask, 8) ? reader.readVarLong() : null)
+                .notes(present(mask, 9) ? reader.readString() : null)
+                // Never set in version 1 payloads
+                .counterLeg(present(mask, 10))
+                .build();
+    }
+
+    // Stable codes, independent of the enum declaration order
+    private static int typeCode(TransactionType type) {
+        return type == TransactionType.BUY ? 1 : 2;
+    }
+
+    private static TransactionType transactionType(int code) {
+        switch (code) {
+            case 1:
+                return TransactionType.BUY;
+            case 2:
+                return TransactionType.SELL;
+            default:
+                throw new SerializationException("Unknown transaction type code " + code);
+        }
+    }
+
+    private static long mask(Object... fields) {
+        long mask = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static boolean present(long mask, int field) {
+        return (mask & (1L << field)) != 0;
+    }
+
+    /**
+     * Growable output buffer; null values are skipped, the presence mask records them.
+     */
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        private Writer(byte type, int initialCapacity) {
+            buffer = new byte[initialCapacity];
+            buffer[0] = MAGIC;
+            buffer[1] = VERSION;
+            buffer[2] = type;
+            position = HEADER_LENGTH;
+        }
+
+        private void writeVarLong(long value) {
+            // Zig-zag so small negative numbers stay short
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensureCapacity(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[position++] = (byte) zigzag;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeString(String value) {
+            if (value != null) {
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void writeDecimal(BigDecimal value) {
+            if (value == null) {
+                return;
+            }
+            BigInteger unscaled = value.unscaledValue();
+            // The lowest bit tells whether the unscaled value fits in a long
+            if (unscaled.bitLength() < Long.SIZE) {
+                writeVarLong((long) value.scale() << 1);
+                writeVarLong(unscaled.longValue());
+            } else {
+                writeVarLong(((long) value.scale() << 1) | 1);
+                writeBytes(unscaled.toByteArray());
+            }
+        }
+
+        private void writeTimestamp(LocalDateTime value) {
+            if (value != null) {
+                writeVarLong(value.toEpochSecond(ZoneOffset.UTC));
+                writeVarLong(value.getNano());
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = data[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new SerializationException("Malformed varint at byte " + position);
+        }
+
+        private byte[] readBytes() {
+            int length = Math.toIntExact(readVarLong());
+            if (length < 0 || position + length > data.length) {
+                throw new ArrayIndexOutOfBoundsException(position + length);
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        private String readString() {
+            int length = Math.toIntExact(readVarLong());
+            if (length < 0 || position + length > data.length) {
+                throw new ArrayIndexOutOfBoundsException(position + length);
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private BigDecimal readDecimal() {
+            long header = readVarLong();
+            int scale = Math.toIntExact(header >> 1);
+            if ((header & 1) == 0) {
+                return BigDecimal.valueOf(readVarLong(), scale);
+            }
+            return new BigDecimal(new BigInteger(readBytes()), scale);
+        }
+
+        private LocalDateTime readTimestamp() {
+            long epochSecond = readVarLong();
+            int nano = Math.toIntExact(readVarLong());
+            return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+        }
+    }
+}
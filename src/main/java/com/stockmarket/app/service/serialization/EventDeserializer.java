@@ -0,0 +1,49 @@
+package com.stockmarket.app.service.serialization;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/**
+ * Kafka value deserializer that reads both encodings of EventSerializer.
+ *
+ * Binary payloads are recognised by the BinaryEventCodec magic byte; anything else is
+ * handed to the JSON deserializer, which uses the type header written by the JSON serializer.
+ * A topic can therefore hold both formats while producers are being migrated.
+ */
+public class EventDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> json;
+
+    public EventDeserializer(JsonDeserializer<Object> json) {
+        this.json = json;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (BinaryEventCodec.isBinary(data)) {
+            return BinaryEventCodec.decode(data);
+        }
+        return json.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (BinaryEventCodec.isBinary(data)) {
+            return BinaryEventCodec.decode(data);
+        }
+        return json.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
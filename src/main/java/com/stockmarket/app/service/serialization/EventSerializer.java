@@ -0,0 +1,80 @@
+package com.stockmarket.app.service.serialization;
+
+import com.stockmarket.app.enums.SerializationFormat;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka value serializer that writes events as JSON or in the BinaryEventCodec format.
+ *
+ * With the BINARY format, price updates and transactions are binary and every other
+ * value falls back to JSON. The size and the encoding time of every record are recorded
+ * (kafka.serialization.bytes and kafka.serialization.duration, tagged by format and type)
+ * so both formats can be compared on live traffic.
+ */
+public class EventSerializer implements Serializer<Object> {
+
+    private final SerializationFormat format;
+    private final JsonSerializer<Object> json;
+    private final MeterRegistry meterRegistry;
+
+    public EventSerializer(SerializationFormat format, JsonSerializer<Object> json, MeterRegistry meterRegistry) {
+        this.format = format;
+        this.json = json;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        boolean binary = format == SerializationFormat.BINARY && BinaryEventCodec.supports(data);
+        // Binary payloads identify their type themselves, so they need no type header
+        byte[] bytes = binary ? BinaryEventCodec.encode(data) : json.serialize(topic, headers, data);
+        record(binary ? "binary" : "json", data.getClass().getSimpleName(), bytes, System.nanoTime() - start);
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+
+    private void record(String encoding, String type, byte[] bytes, long nanos) {
+        if (meterRegistry == null || bytes == null) {
+            return;
+        }
+        DistributionSummary.builder("kafka.serialization.bytes")
+                .description("Size of the serialized Kafka record values")
+                .baseUnit("bytes")
+                .tag("format", encoding)
+                .tag("type", type)
+                .register(meterRegistry)
+                .record(bytes.length);
+        Timer.builder("kafka.serialization.duration")
+                .description("Time to serialize a Kafka record value")
+                .tag("format", encoding)
+                .tag("type", type)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
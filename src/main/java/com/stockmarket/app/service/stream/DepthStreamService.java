@@ -0,0 +1,156 @@
+package com.stockmarket.app.service.stream;
+
+import com.stockmarket.app.dto.DepthLevelDTO;
+import com.stockmarket.app.dto.OrderBookDeltaDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Pushes the L2 deltas of the order books to browsers over Server-Sent Events.
+ *
+ * A client opens the stream of a stock, then takes a snapshot with
+ * GET /api/stocks/symbol/{symbol}/depth and applies the "delta" events on top of it by
+ * sequence number (see OrderBookDeltaDTO). Only changed levels are sent, so the traffic
+ * follows the changes of the book and not its size.
+ *
+ * The subscribers, sender threads (depthstream.sender-threads), heartbeats and slow-client
+ * eviction (depthstream.send-timeout) are handled by an SseBroadcaster, as for the
+ * PriceStreamService. A slow client does not build up a backlog: while a delta is waiting
+ * to be sent, the next ones are merged into it, keeping the latest quantity of each level
+ * and widening its sequence range.
+ */
+@Service
+public class DepthStreamService {
+
+    private final SseBroadcaster<Subscriber> broadcaster;
+    private final long timeoutMillis;
+
+    public DepthStreamService(MeterRegistry meterRegistry,
+                              @Value("${depthstream.sender-threads:2}") int senderThreads,
+                              @Value("${depthstream.max-subscribers:10000}") int maxSubscribers,
+                              @Value("${depthstream.timeout:1800000}") long timeoutMillis,
+                              @Value("${depthstream.send-timeout:10000}") long sendTimeoutMillis) {
+        this.broadcaster = new SseBroadcaster<>("depth-stream", senderThreads, maxSubscribers, sendTimeoutMillis);
+        this.timeoutMillis = timeoutMillis;
+        Gauge.builder("depthstream.subscribers", broadcaster, SseBroadcaster::getSubscriberCount)
+                .description("Number of connected order book depth stream subscribers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register a new subscriber for the deltas of one stock.
+     *
+     * @return the emitter to return from the controller, or empty if the subscriber limit is reached
+     */
+    public Optional<SseEmitter> subscribe(String symbol) {
+        String key = symbol.trim().toUpperCase(Locale.ROOT);
+        return broadcaster.subscribe(() -> new Subscriber(newEmitter(timeoutMillis), key))
+                .map(Subscriber::getEmitter);
+    }
+
+    /**
+     * Merge a delta into the pending delta of every subscriber of its stock.
+     * Called on the matching shard's thread, so it only queues work.
+     */
+    @EventListener
+    public void onDelta(OrderBookDeltaDTO delta) {
+        broadcaster.publish(delta.getSymbol().toUpperCase(Locale.ROOT), subscriber -> subscriber.merge(delta));
+    }
+
+    /**
+     * Send a comment to every subscriber so dead connections are noticed and proxies keep them open.
+     */
+    @Scheduled(fixedDelayString = "${depthstream.heartbeat-interval:15000}")
+    public void heartbeat() {
+        broadcaster.heartbeat();
+    }
+
+    /**
+     * Evict the subscribers whose current send has been blocked for longer than the send timeout.
+     */
+    @Scheduled(fixedDelayString = "${depthstream.send-timeout:10000}")
+    public void evictSlowSubscribers() {
+        broadcaster.evictSlowSubscribers();
+    }
+
+    public int getSubscriberCount() {
+        return broadcaster.getSubscriberCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        broadcaster.shutdown();
+    }
+
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private static final class Subscriber extends SseBroadcaster.Subscriber {
+        private final String symbol;
+        // The pending delta, guarded by this subscriber; previousSequence is -1 when nothing is pending
+        private long previousSequence = -1;
+        private long sequence;
+        private final TreeMap<BigDecimal, DepthLevelDTO> bids = new TreeMap<>(Collections.reverseOrder());
+        private final TreeMap<BigDecimal, DepthLevelDTO> asks = new TreeMap<>();
+
+        private Subscriber(SseEmitter emitter, String symbol) {
+            super(emitter, Set.of(symbol));
+            this.symbol = symbol;
+        }
+
+        @Override
+        void sendPending() throws IOException {
+            OrderBookDeltaDTO delta = take();
+            if (delta != null) {
+                send(SseEmitter.event().name("delta").data(delta));
+            }
+        }
+
+        @Override
+        synchronized boolean hasPending() {
+            return previousSequence >= 0;
+        }
+
+        private synchronized void merge(OrderBookDeltaDTO delta) {
+            if (previousSequence < 0) {
+                previousSequence = delta.getPreviousSequence();
+            }
+            sequence = delta.getSequence();
+            delta.getBids().forEach(level -> bids.put(level.getPrice(), level));
+            delta.getAsks().forEach(level -> asks.put(level.getPrice(), level));
+        }
+
+        private synchronized OrderBookDeltaDTO take() {
+            if (previousSequence < 0) {
+                return null;
+            }
+            OrderBookDeltaDTO delta = OrderBookDeltaDTO.builder()
+                    .symbol(symbol)
+                    .previousSequence(previousSequence)
+                    .sequence(sequence)
+                    .bids(new ArrayList<>(bids.values()))
+                    .asks(new ArrayList<>(asks.values()))
+                    .build();
+            previousSequence = -1;
+            bids.clear();
+            asks.clear();
+            return delta;
+        }
+    }
+}
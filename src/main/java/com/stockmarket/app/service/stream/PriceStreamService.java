@@ -0,0 +1,125 @@
+package com.stockmarket.app.service.stream;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes price updates to browsers over Server-Sent Events.
+ *
+ * The subscribers, sender threads (pricestream.sender-threads), heartbeats and slow-client
+ * eviction (pricestream.send-timeout) are handled by an SseBroadcaster.
+ *
+ * Every subscriber has a map of pending updates keyed by symbol. A new update for a
+ * symbol replaces the pending one, so a slow client only ever receives the latest price
+ * of each symbol instead of an unbounded backlog.
+ */
+@Service
+public class PriceStreamService {
+
+    private final SseBroadcaster<Subscriber> broadcaster;
+    private final long timeoutMillis;
+
+    public PriceStreamService(MeterRegistry meterRegistry,
+                              @Value("${pricestream.sender-threads:2}") int senderThreads,
+                              @Value("${pricestream.max-subscribers:10000}") int maxSubscribers,
+                              @Value("${pricestream.timeout:1800000}") long timeoutMillis,
+                              @Value("${pricestream.send-timeout:10000}") long sendTimeoutMillis) {
+        this.broadcaster = new SseBroadcaster<>("price-stream", senderThreads, maxSubscribers, sendTimeoutMillis);
+        this.timeoutMillis = timeoutMillis;
+        Gauge.builder("pricestream.subscribers", broadcaster, SseBroadcaster::getSubscriberCount)
+                .description("Number of connected price stream subscribers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register a new subscriber.
+     *
+     * @param symbols the symbols to receive, or an empty collection for all symbols
+     * @return the emitter to return from the controller, or empty if the subscriber limit is reached
+     */
+    public Optional<SseEmitter> subscribe(Collection<String> symbols) {
+        Set<String> filter = symbols.stream()
+                .map(symbol -> symbol.trim().toUpperCase(Locale.ROOT))
+                .filter(symbol -> !symbol.isEmpty())
+                .collect(Collectors.toSet());
+        return broadcaster.subscribe(() -> new Subscriber(newEmitter(timeoutMillis), filter))
+                .map(Subscriber::getEmitter);
+    }
+
+    /**
+     * Fan a published price update out to the matching subscribers.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceUpdate(StockPriceUpdateDTO update) {
+        String symbol = update.getSymbol().toUpperCase(Locale.ROOT);
+        broadcaster.publish(symbol, subscriber -> subscriber.pending.put(symbol, update));
+    }
+
+    /**
+     * Send a comment to every subscriber so dead connections are noticed and proxies keep them open.
+     */
+    @Scheduled(fixedDelayString = "${pricestream.heartbeat-interval:15000}")
+    public void heartbeat() {
+        broadcaster.heartbeat();
+    }
+
+    /**
+     * Evict the subscribers whose current send has been blocked for longer than the send timeout.
+     */
+    @Scheduled(fixedDelayString = "${pricestream.send-timeout:10000}")
+    public void evictSlowSubscribers() {
+        broadcaster.evictSlowSubscribers();
+    }
+
+    public int getSubscriberCount() {
+        return broadcaster.getSubscriberCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        broadcaster.shutdown();
+    }
+
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private static final class Subscriber extends SseBroadcaster.Subscriber {
+        private final Map<String, StockPriceUpdateDTO> pending = new ConcurrentHashMap<>();
+
+        private Subscriber(SseEmitter emitter, Set<String> symbols) {
+            super(emitter, symbols);
+        }
+
+        @Override
+        void sendPending() throws IOException {
+            for (Map.Entry<String, StockPriceUpdateDTO> entry : pending.entrySet()) {
+                StockPriceUpdateDTO update = entry.getValue();
+                // Only remove this value; a newer one that just replaced it stays pending
+                pending.remove(entry.getKey(), update);
+                send(SseEmitter.event().name("price").data(update));
+            }
+        }
+
+        @Override
+        boolean hasPending() {
+            return !pending.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.stockmarket.app.service.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Fans events out to Server-Sent Events subscribers; the engine behind the price and the
+ * order book depth streams.
+ *
+ * Subscribers are SseEmitters, which use servlet async requests, so an idle subscriber
+ * does not hold a thread. A small pool of sender threads writes to all of them.
+ *
+ * Each subscriber keeps what is waiting to be sent in its own conflated form (the latest
+ * price per symbol, or one merged delta), so a slow client never builds up a backlog.
+ * publish() only hands an event to the subscribers of its topic and queues each of them on
+ * the sender pool, at most once at a time; the sender sends whatever is pending when it runs.
+ *
+ * A send blocks its sender thread while the client's socket buffer is full. A subscriber
+ * whose send has been blocked for longer than the send timeout is evicted: it is dropped
+ * and its sender thread is interrupted, so one stalled client cannot hold up the pool for
+ * everyone else.
+ *
+ * @param <S> the subscriber type, which holds the pending events
+ */
+@Slf4j
+class SseBroadcaster<S extends SseBroadcaster.Subscriber> {
+
+    // Topic of the subscribers that receive every event
+    private static final String ALL_TOPICS = "*";
+
+    private final String name;
+    // Subscribers by topic
+    private final Map<String, Set<S>> topics = new ConcurrentHashMap<>();
+    // Reserved before a subscriber is added, so the limit holds under concurrent subscribes
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders;
+    private final int maxSubscribers;
+    private final long sendTimeoutMillis;
+
+    /**
+     * @param name names the sender threads and log messages, e.g. "price-stream"
+     */
+    SseBroadcaster(String name, int senderThreads, int maxSubscribers, long sendTimeoutMillis) {
+        this.name = name;
+        this.maxSubscribers = maxSubscribers;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Register a new subscriber.
+     *
+     * @param factory creates the subscriber and its emitter once a place is reserved
+     * @return the subscriber, or empty if the subscriber limit is reached
+     */
+    Optional<S> subscribe(Supplier<S> factory) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            log.warn("Rejecting {} subscriber: limit of {} reached", name, maxSubscribers);
+            return Optional.empty();
+        }
+        S subscriber;
+        try {
+            subscriber = factory.get();
+            subscriber.emitter.onCompletion(() -> remove(subscriber));
+            subscriber.emitter.onTimeout(() -> remove(subscriber));
+            subscriber.emitter.onError(e -> remove(subscriber));
+            for (String topic : topicsOf(subscriber)) {
+                topics.computeIfAbsent(topic, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            }
+        } catch (RuntimeException e) {
+            // Give the reserved place back
+            subscriberCount.decrementAndGet();
+            throw e;
+        }
+
+        log.debug("{} subscriber added for {} ({} connected)", name,
+                subscriber.topics.isEmpty() ? "all topics" : subscriber.topics, subscriberCount.get());
+        return Optional.of(subscriber);
+    }
+
+    /**
+     * Hand an event to the subscribers of its topic and to those of all topics, and queue
+     * them for sending. Only queues work, so it is safe on hot threads.
+     *
+     * @param offer adds the event to what is pending for one subscriber
+     */
+    void publish(String topic, Consumer<S> offer) {
+        publishTo(topics.get(topic), offer);
+        publishTo(topics.get(ALL_TOPICS), offer);
+    }
+
+    /**
+     * Send a comment to every subscriber so dead connections are noticed and proxies keep them open.
+     */
+    void heartbeat() {
+        forEachSubscriber(subscriber -> {
+            subscriber.heartbeatDue = true;
+            schedule(subscriber);
+        });
+    }
+
+    /**
+     * Evict the subscribers whose current send has been blocked for longer than the send timeout.
+     */
+    void evictSlowSubscribers() {
+        long deadline = System.currentTimeMillis() - sendTimeoutMillis;
+        forEachSubscriber(subscriber -> {
+            if (subscriber.evictIfSendingSince(deadline)) {
+                log.warn("Evicting {} subscriber: a send was blocked for more than {} ms", name, sendTimeoutMillis);
+                remove(subscriber);
+            }
+        });
+    }
+
+    int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    void shutdown() {
+        forEachSubscriber(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private void publishTo(Set<S> subscribers, Consumer<S> offer) {
+        if (subscribers == null) {
+            return;
+        }
+        for (S subscriber : subscribers) {
+            offer.accept(subscriber);
+            schedule(subscriber);
+        }
+    }
+
+    private void forEachSubscriber(Consumer<S> action) {
+        // A subscriber of several topics is visited once per topic; the actions are idempotent
+        for (Set<S> subscribers : topics.values()) {
+            subscribers.forEach(action);
+        }
+    }
+
+    private void remove(S subscriber) {
+        boolean removed = false;
+        for (String topic : topicsOf(subscriber)) {
+            Set<S> subscribers = topics.get(topic);
+            removed |= subscribers != null && subscribers.remove(subscriber);
+        }
+        if (removed) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private static Set<String> topicsOf(Subscriber subscriber) {
+        return subscriber.topics.isEmpty() ? Set.of(ALL_TOPICS) : subscriber.topics;
+    }
+
+    private void schedule(S subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Send everything pending for one subscriber. Runs on a sender thread, never twice at once
+     * for the same subscriber.
+     */
+    private void drain(S subscriber) {
+        try {
+            if (subscriber.heartbeatDue) {
+                subscriber.heartbeatDue = false;
+                subscriber.send(SseEmitter.event().comment("heartbeat"));
+            }
+            subscriber.sendPending();
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; the emitter callbacks are not always called in that case
+            log.debug("Dropping {} subscriber: {}", name, e.getMessage());
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            // An eviction may have interrupted this thread; the next subscriber's send must not see it
+            Thread.interrupted();
+            subscriber.scheduled.set(false);
+        }
+        // An event may have arrived after the pending ones were sent but before the flag was cleared
+        if (subscriber.hasPending()) {
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * One connected client: its emitter, its topics and the events waiting to be sent to it.
+     * The package-private state belongs to the broadcaster.
+     */
+    abstract static class Subscriber {
+        final SseEmitter emitter;
+        // Empty for all topics
+        final Set<String> topics;
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        volatile boolean heartbeatDue;
+        // The thread of the send in progress and when it started, guarded by this subscriber
+        private Thread sender;
+        private long sendStartedAt;
+        private volatile boolean evicted;
+
+        Subscriber(SseEmitter emitter, Set<String> topics) {
+            this.emitter = emitter;
+            this.topics = topics;
+        }
+
+        SseEmitter getEmitter() {
+            return emitter;
+        }
+
+        /**
+         * Send the pending events with send(). Runs on a sender thread.
+         */
+        abstract void sendPending() throws IOException;
+
+        abstract boolean hasPending();
+
+        final void send(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (this) {
+                if (evicted) {
+                    throw new IOException("Evicted as a slow subscriber");
+                }
+                sender = Thread.currentThread();
+                sendStartedAt = System.currentTimeMillis();
+            }
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (this) {
+                    sender = null;
+                }
+            }
+            // Evicted while this send was blocked; the broadcaster closes the emitter
+            if (evicted) {
+                throw new IOException("Evicted as a slow subscriber");
+            }
+        }
+
+        /**
+         * Interrupt a send that started before the deadline and refuse any further sends.
+         *
+         * @return true if the subscriber was evicted
+         */
+        synchronized boolean evictIfSendingSince(long deadline) {
+            if (evicted || sender == null || sendStartedAt > deadline) {
+                return false;
+            }
+            evicted = true;
+            sender.interrupt();
+            return true;
+        }
+    }
+}
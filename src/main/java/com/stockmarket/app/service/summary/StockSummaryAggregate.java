@@ -0,0 +1,209 @@
+package com.stockmarket.app.service.summary;
+
+import com.stockmarket.app.dto.StockSummaryDTO;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.StockSummaryRepository;
+import com.stockmarket.app.util.AfterCommit;
+import com.stockmarket.app.util.FixedPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory per-symbol totals of all transactions, behind GET /api/stock-summaries.
+ *
+ * For every symbol it keeps the number of transactions and the sums of price, quantity
+ * and notional (total value). The quantity is the traded volume, so the counter leg of a
+ * matched trade adds nothing to it: its BUY already counts the shares. TransactionServiceImpl adds, replaces and subtracts the
+ * contribution of a transaction when it creates, updates or deletes one, so a summary
+ * request costs O(symbols) instead of a GROUP BY over the whole transactions table.
+ * Changes made inside a transaction are applied after it commits.
+ *
+ * The totals are loaded from the database at startup, and rebuild() reloads them for
+ * recovery. Transactions that commit while a rebuild query runs may be counted twice
+ * or not at all, so a rebuild is best run when no trades are being written.
+ */
+@Component
+@Slf4j
+public class StockSummaryAggregate {
+
+    private final StockSummaryRepository stockSummaryRepository;
+    private volatile Map<String, Totals> totals = new ConcurrentHashMap<>();
+
+    public StockSummaryAggregate(StockSummaryRepository stockSummaryRepository) {
+        this.stockSummaryRepository = stockSummaryRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Reload all totals from the transactions table.
+     *
+     * @return the number of symbols loaded
+     */
+    public synchronized int rebuild() {
+        Map<String, Totals> loaded = new ConcurrentHashMap<>();
+        for (Object[] row : stockSummaryRepository.findSymbolTotals()) {
+            loaded.put((String) row[0], new Totals(
+                    ((Number) row[1]).longValue(),
+                    FixedPoint.of(toBigDecimal(row[2])),
+                    ((Number) row[3]).longValue(),
+                    FixedPoint.of(toBigDecimal(row[4]))));
+        }
+        totals = loaded;
+        log.info("Rebuilt stock summaries for {} symbols", loaded.size());
+        return loaded.size();
+    }
+
+    /**
+     * Add a newly created transaction.
+     */
+    public void add(Contribution contribution) {
+        AfterCommit.run(() -> apply(contribution, 1));
+    }
+
+    /**
+     * Add many new transactions, e.g. a chunk of a batch import.
+     * The rows are summed per symbol first, so each symbol is updated once.
+     */
+    public void addAll(Collection<Transaction> transactions) {
+        Map<String, Totals> bySymbol = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            Contribution contribution = Contribution.of(transaction);
+            bySymbol.merge(contribution.symbol, Totals.of(contribution), Totals::plus);
+        }
+        AfterCommit.run(() -> bySymbol.forEach(this::apply));
+    }
+
+    /**
+     * Replace the contribution of an updated transaction with its new values.
+     */
+    public void replace(Contribution before, Contribution after) {
+        AfterCommit.run(() -> {
+            apply(before, -1);
+            apply(after, 1);
+        });
+    }
+
+    /**
+     * Subtract a deleted transaction.
+     */
+    public void subtract(Contribution contribution) {
+        AfterCommit.run(() -> apply(contribution, -1));
+    }
+
+    /**
+     * Summaries of all symbols, the most traded first.
+     */
+    public List<StockSummaryDTO> getSummaries() {
+        return totals.entrySet().stream()
+                .map(entry -> toDTO(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparing(StockSummaryDTO::getTotalTransactions).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Summary of one symbol, or empty if it has no transactions.
+     */
+    public Optional<StockSummaryDTO> getSummary(String symbol) {
+        return Optional.ofNullable(totals.get(symbol)).map(symbolTotals -> toDTO(symbol, symbolTotals));
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        Totals delta = Totals.of(contribution);
+        apply(contribution.symbol, sign > 0 ? delta : delta.negate());
+    }
+
+    private void apply(String symbol, Totals delta) {
+        // compute is atomic per symbol; returning null drops a symbol whose last transaction is gone
+        totals.compute(symbol, (key, current) -> {
+            Totals next = current != null ? current.plus(delta) : delta;
+            return next.count > 0 ? next : null;
+        });
+    }
+
+    private StockSummaryDTO toDTO(String symbol, Totals symbolTotals) {
+        BigDecimal averagePrice = FixedPoint.toBigDecimal(symbolTotals.priceSum)
+                .divide(BigDecimal.valueOf(symbolTotals.count), FixedPoint.SCALE, RoundingMode.HALF_UP);
+        return new StockSummaryDTO(
+                symbol,
+                symbolTotals.count,
+                averagePrice,
+                BigDecimal.valueOf(symbolTotals.quantitySum),
+                FixedPoint.toBigDecimalAtLeast(symbolTotals.notionalSum, 2));
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+
+    /**
+     * What one transaction adds to the totals of its symbol. Capture it before changing
+     * a transaction, so the old values can be subtracted afterwards.
+     */
+    public static final class Contribution {
+        private final String symbol;
+        private final long price;
+        private final long quantity;
+        private final long notional;
+
+        private Contribution(String symbol, long price, long quantity, long notional) {
+            this.symbol = symbol;
+            this.price = price;
+            this.quantity = quantity;
+            this.notional = notional;
+        }
+
+        public static Contribution of(Transaction transaction) {
+            return new Contribution(
+                    transaction.getStockSymbol(),
+                    FixedPoint.of(transaction.getPricePerShare()),
+                    transaction.isCounterLeg() ? 0 : transaction.getQuantity(),
+                    FixedPoint.of(transaction.getTotalValue()));
+        }
+    }
+
+    private static final class Totals {
+        private final long count;
+        private final long priceSum;
+        private final long quantitySum;
+        private final long notionalSum;
+
+        private Totals(long count, long priceSum, long quantitySum, long notionalSum) {
+            this.count = count;
+            this.priceSum = priceSum;
+            this.quantitySum = quantitySum;
+            this.notionalSum = notionalSum;
+        }
+
+        private static Totals of(Contribution contribution) {
+            return new Totals(1, contribution.price, contribution.quantity, contribution.notional);
+        }
+
+        private Totals plus(Totals other) {
+            return new Totals(count + other.count, priceSum + other.priceSum,
+                    quantitySum + other.quantitySum, notionalSum + other.notionalSum);
+        }
+
+        private Totals negate() {
+            return new Totals(-count, -priceSum, -quantitySum, -notionalSum);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.stockmarket.app.service.valuation;
+
+import com.stockmarket.app.dto.StockDTO;
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.repository.PortfolioValuationRepository;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.util.FixedPoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Marks portfolio holdings to market as prices change.
+ *
+ * The holdings are kept in an inverted index from stock symbol to the portfolio items
+ * holding that stock, loaded once at startup. A price update (simulator tick, trade or
+ * updateStock) revalues only the holdings of its symbol and moves the total of each affected
+ * portfolio by the difference, so the work per tick follows the number of holders of that
+ * stock and no portfolio is ever rescanned.
+ *
+ * Revalued holdings and portfolios are only marked dirty. A scheduled flush
+ * (valuation.flush-interval) writes the latest value of each of them with one JDBC batch,
+ * however many ticks came in between. A failed write-back stays dirty and is retried.
+ *
+ * The index is a snapshot of portfolio_items taken at startup. Nothing in the application
+ * changes portfolio items, so holdings added, changed or removed directly in the database
+ * are only picked up after a restart.
+ */
+@Service
+@Slf4j
+public class PortfolioValuationService {
+
+    // Values are stored with two decimals
+    private static final int DECIMALS = 2;
+
+    private final PortfolioValuationRepository valuationRepository;
+    private final StockQuoteCache quoteCache;
+    // Holdings by upper-case symbol
+    private final Map<String, SymbolHoldings> symbols = new ConcurrentHashMap<>();
+    // Total value of each portfolio in FixedPoint
+    private final Map<Long, AtomicLong> totals = new ConcurrentHashMap<>();
+    private final Set<HoldingValue> dirtyHoldings = ConcurrentHashMap.newKeySet();
+    private final Set<Long> dirtyPortfolios = ConcurrentHashMap.newKeySet();
+    private final Counter revalued;
+
+    public PortfolioValuationService(PortfolioValuationRepository valuationRepository,
+                                     StockQuoteCache quoteCache,
+                                     MeterRegistry meterRegistry) {
+        this.valuationRepository = valuationRepository;
+        this.quoteCache = quoteCache;
+        this.revalued = Counter.builder("valuation.holdings.revalued")
+                .description("Holdings whose market value changed with a price update")
+                .register(meterRegistry);
+        Gauge.builder("valuation.holdings.dirty", dirtyHoldings, Set::size)
+                .description("Revalued holdings waiting to be written back")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Build the index from the stored holdings and mark them at the current prices.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        List<PortfolioValuationRepository.Holding> holdings = valuationRepository.findAllHoldings();
+        for (PortfolioValuationRepository.Holding holding : holdings) {
+            if (holding.getStockSymbol() == null) {
+                continue;
+            }
+            long stored = holding.getCurrentValue() != null ? FixedPoint.of(holding.getCurrentValue()) : 0;
+            symbolHoldings(holding.getStockSymbol())
+                    .put(holding.getItemId(), holding.getPortfolioId(), holding.getQuantity(), stored);
+        }
+        // Portfolios whose stored total does not match their holdings are written back on the next flush
+        valuationRepository.findPortfolioTotals().forEach((portfolioId, stored) -> {
+            AtomicLong total = totals.get(portfolioId);
+            long value = total != null ? total.get() : 0;
+            if (stored == null || FixedPoint.of(stored) != value) {
+                dirtyPortfolios.add(portfolioId);
+            }
+        });
+        log.info("Valuation index built with {} holdings of {} stocks in {} ms", holdings.size(), symbols.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Revalue the holdings of the updated stock.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceUpdate(StockPriceUpdateDTO update) {
+        if (update.getPrice() == null) {
+            return;
+        }
+        symbolHoldings(update.getSymbol()).revalue(FixedPoint.of(update.getPrice()));
+    }
+
+    /**
+     * The current market value of a portfolio, or empty if it holds nothing that is indexed.
+     */
+    public Optional<BigDecimal> getPortfolioValue(long portfolioId) {
+        AtomicLong total = totals.get(portfolioId);
+        return Optional.ofNullable(total).map(value -> FixedPoint.toBigDecimal(value.get(), DECIMALS));
+    }
+
+    public int getDirtyCount() {
+        return dirtyHoldings.size() + dirtyPortfolios.size();
+    }
+
+    /**
+     * Write the latest value of every holding and portfolio revalued since the last flush.
+     */
+    @Scheduled(fixedDelayString = "${valuation.flush-interval:5000}")
+    public void flush() {
+        Map<Long, BigDecimal> itemValues = new HashMap<>();
+        List<HoldingValue> flushed = new ArrayList<>();
+        for (Iterator<HoldingValue> it = dirtyHoldings.iterator(); it.hasNext(); ) {
+            HoldingValue holding = it.next();
+            // Remove before reading, so a revaluation after this point marks it dirty again
+            it.remove();
+            itemValues.put(holding.itemId, FixedPoint.toBigDecimal(holding.value, DECIMALS));
+            flushed.add(holding);
+        }
+        Map<Long, BigDecimal> portfolioTotals = new HashMap<>();
+        for (Iterator<Long> it = dirtyPortfolios.iterator(); it.hasNext(); ) {
+            Long portfolioId = it.next();
+            it.remove();
+            AtomicLong total = totals.get(portfolioId);
+            portfolioTotals.put(portfolioId, FixedPoint.toBigDecimal(total != null ? total.get() : 0, DECIMALS));
+        }
+        if (itemValues.isEmpty() && portfolioTotals.isEmpty()) {
+            return;
+        }
+        try {
+            valuationRepository.updateValues(itemValues, portfolioTotals, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.error("Could not write back {} holding values and {} portfolio totals: {}",
+                    itemValues.size(), portfolioTotals.size(), e.getMessage(), e);
+            dirtyHoldings.addAll(flushed);
+            dirtyPortfolios.addAll(portfolioTotals.keySet());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private SymbolHoldings symbolHoldings(String symbol) {
+        return symbols.computeIfAbsent(symbol.toUpperCase(Locale.ROOT), SymbolHoldings::new);
+    }
+
+    /**
+     * Set the value of a holding and move its portfolio's total by the difference.
+     */
+    private void setValue(HoldingValue holding, long value) {
+        long difference = value - holding.value;
+        if (difference == 0) {
+            return;
+        }
+        holding.value = value;
+        dirtyHoldings.add(holding);
+        addToTotal(holding.portfolioId, difference);
+    }
+
+    private void addToTotal(Long portfolioId, long difference) {
+        if (portfolioId == null) {
+            return;
+        }
+        totals.computeIfAbsent(portfolioId, id -> new AtomicLong()).addAndGet(difference);
+        dirtyPortfolios.add(portfolioId);
+    }
+
+    /**
+     * The holdings of one stock and its last price. Updates of one symbol are serialized on
+     * this object; different symbols are revalued in parallel.
+     */
+    private final class SymbolHoldings {
+        private final String symbol;
+        private final Map<Long, HoldingValue> holdings = new HashMap<>();
+        // FixedPoint; 0 until the first price update
+        private long lastPrice;
+
+        private SymbolHoldings(String symbol) {
+            this.symbol = symbol;
+        }
+
+        synchronized void revalue(long price) {
+            lastPrice = price;
+            int changed = 0;
+            for (HoldingValue holding : holdings.values()) {
+                long before = holding.value;
+                setValue(holding, FixedPoint.multiplyByQuantity(price, holding.quantity));
+                if (holding.value != before) {
+                    changed++;
+                }
+            }
+            revalued.increment(changed);
+        }
+
+        /**
+         * Index a stored holding, counting its stored value in its portfolio's total, and
+         * value it at the current price if one is known.
+         */
+        synchronized void put(long itemId, Long portfolioId, int quantity, long storedValue) {
+            HoldingValue holding = holdings.get(itemId);
+            if (holding == null) {
+                holding = new HoldingValue(itemId, portfolioId);
+                holdings.put(itemId, holding);
+                if (storedValue > 0 && portfolioId != null) {
+                    // Counted in the total as stored, without writing it back
+                    holding.value = storedValue;
+                    totals.computeIfAbsent(portfolioId, id -> new AtomicLong()).addAndGet(storedValue);
+                }
+            }
+            holding.quantity = quantity;
+            long price = currentPrice();
+            if (price > 0) {
+                setValue(holding, FixedPoint.multiplyByQuantity(price, quantity));
+            }
+        }
+
+        private long currentPrice() {
+            if (lastPrice == 0) {
+                lastPrice = quoteCache.get(symbol)
+                        .map(StockDTO::getCurrentPrice)
+                        .map(FixedPoint::of)
+                        .orElse(0L);
+            }
+            return lastPrice;
+        }
+    }
+
+    /**
+     * The indexed state of one portfolio item. Written under the lock of its SymbolHoldings;
+     * the value is read by the flush without it.
+     */
+    private static final class HoldingValue {
+        private final long itemId;
+        private final Long portfolioId;
+        private int quantity;
+        // FixedPoint
+        private volatile long value;
+
+        private HoldingValue(long itemId, Long portfolioId) {
+            this.itemId = itemId;
+            this.portfolioId = portfolioId;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.stockmarket.app.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs in-memory updates only once the database change they follow has committed.
+ * <p>
+ * The caches and projections (quotes, stock summaries, positions) must never show a
+ * change that is later rolled back, so their updates are deferred to the commit of the
+ * current transaction. Outside a transaction there is nothing to wait for and the update
+ * runs straight away.
+ * </p>
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Run the action after the current transaction commits, or now if there is none.
+     * The action is dropped if the transaction rolls back.
+     *
+     * @param action the in-memory update
+     */
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.stockmarket.app.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point arithmetic on scaled longs for prices, percentages and notionals.
+ * <p>
+ * A value is represented as a primitive {@code long} holding the amount multiplied by
+ * 10^{@link #SCALE}, e.g. 152.35 is stored as 1_523_500. The hot paths (price simulation,
+ * change calculation, transaction totals) work on these longs and only convert to
+ * {@link BigDecimal} where values enter or leave the entities and DTOs, so no objects
+ * are allocated per calculation.
+ * </p>
+ * <p>
+ * All rounding is HALF_UP, matching the BigDecimal code it replaces. Arithmetic that
+ * would overflow a long throws an {@link ArithmeticException} instead of wrapping.
+ * </p>
+ */
+public final class FixedPoint {
+
+    /**
+     * Number of decimal places kept by every fixed-point value.
+     */
+    public static final int SCALE = 4;
+
+    /**
+     * The fixed-point representation of 1.
+     */
+    public static final long ONE = 10_000L;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L
+    };
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Convert a BigDecimal to fixed point, rounding HALF_UP to {@link #SCALE} decimals.
+     *
+     * @param value the value to convert
+     * @return the scaled long
+     * @throws ArithmeticException if the value does not fit in a long
+     */
+    public static long of(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convert a double to fixed point, rounding HALF_UP to the given number of decimals.
+     *
+     * @param value    the value to convert
+     * @param decimals number of decimals to keep (0 to {@link #SCALE})
+     * @return the scaled long
+     */
+    public static long of(double value, int decimals) {
+        long unit = unit(decimals);
+        double scaled = value * POWERS_OF_TEN[decimals];
+        long rounded = (long) (scaled + Math.copySign(0.5, scaled));
+        return Math.multiplyExact(rounded, unit);
+    }
+
+    /**
+     * Convert a fixed-point value to a BigDecimal with {@link #SCALE} decimals. Exact.
+     */
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    /**
+     * Convert a fixed-point value to a BigDecimal with the given number of decimals.
+     * Exact when the value is already rounded to that many decimals, HALF_UP otherwise.
+     */
+    public static BigDecimal toBigDecimal(long value, int decimals) {
+        return BigDecimal.valueOf(round(value, decimals) / unit(decimals), decimals);
+    }
+
+    /**
+     * Convert a fixed-point value to a BigDecimal with at least the given number of decimals,
+     * keeping more only when the value really has them (e.g. 150.00 but 150.1234).
+     */
+    public static BigDecimal toBigDecimalAtLeast(long value, int decimals) {
+        return round(value, decimals) == value ? toBigDecimal(value, decimals) : toBigDecimal(value);
+    }
+
+    /**
+     * The number of decimals of a BigDecimal, clamped to the range this class can represent.
+     * Useful to convert a result back with the same scale as its input.
+     */
+    public static int decimalsOf(BigDecimal value) {
+        return Math.max(0, Math.min(SCALE, value.scale()));
+    }
+
+    /**
+     * Round a fixed-point value HALF_UP to the given number of decimals.
+     */
+    public static long round(long value, int decimals) {
+        long unit = unit(decimals);
+        return divideHalfUp(value, unit) * unit;
+    }
+
+    /**
+     * Multiply two fixed-point values.
+     */
+    public static long multiply(long a, long b) {
+        return divideHalfUp(Math.multiplyExact(a, b), ONE);
+    }
+
+    /**
+     * Multiply a fixed-point value by a whole quantity (e.g. price times number of shares).
+     */
+    public static long multiplyByQuantity(long value, int quantity) {
+        return Math.multiplyExact(value, (long) quantity);
+    }
+
+    /**
+     * Divide two fixed-point values.
+     *
+     * @throws ArithmeticException if the divisor is zero
+     */
+    public static long divide(long dividend, long divisor) {
+        return divideHalfUp(Math.multiplyExact(dividend, ONE), divisor);
+    }
+
+    /**
+     * Compute {@code percent}% of a value with a single HALF_UP rounding to the given decimals.
+     *
+     * @param value    fixed-point value
+     * @param percent  fixed-point percentage (e.g. 2.5% is {@code 25_000})
+     * @param decimals number of decimals of the result
+     * @return the fixed-point result
+     */
+    public static long percentOf(long value, long percent, int decimals) {
+        long unit = unit(decimals);
+        long divisor = Math.multiplyExact(100 * ONE, unit);
+        return divideHalfUp(Math.multiplyExact(value, percent), divisor) * unit;
+    }
+
+    /**
+     * Integer division rounding HALF_UP (ties away from zero), like BigDecimal.
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder != 0 && Math.abs(remainder) >= Math.abs(divisor) - Math.abs(remainder)) {
+            quotient += (dividend ^ divisor) < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Size of one unit in the last of {@code decimals} places, in fixed-point terms.
+     */
+    private static long unit(int decimals) {
+        if (decimals < 0 || decimals > SCALE) {
+            throw new IllegalArgumentException("Decimals must be between 0 and " + SCALE + ": " + decimals);
+        }
+        return POWERS_OF_TEN[SCALE - decimals];
+    }
+}
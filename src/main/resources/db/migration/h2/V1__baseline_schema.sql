@@ -0,0 +1,63 @@
+-- Baseline schema, as previously created by Hibernate (ddl-auto=update).
+-- Existing databases are baselined at this version and only receive later migrations.
+
+CREATE TABLE stocks (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    after_hours_price NUMERIC(19, 2),
+    change            NUMERIC(19, 2),
+    change_percent    NUMERIC(19, 2),
+    company_name      VARCHAR(255),
+    current_price     NUMERIC(19, 2) NOT NULL,
+    description       VARCHAR(255),
+    industry          VARCHAR(255),
+    last_updated      TIMESTAMP,
+    pre_market_price  NUMERIC(19, 2),
+    previous_close    NUMERIC(19, 2),
+    sector            VARCHAR(255),
+    symbol            VARCHAR(255),
+    volume            BIGINT,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE transactions (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    notes           VARCHAR(255),
+    portfolio_id    BIGINT,
+    price_per_share NUMERIC(19, 2) NOT NULL,
+    quantity        INTEGER        NOT NULL,
+    stock_symbol    VARCHAR(255),
+    timestamp       TIMESTAMP      NOT NULL,
+    total_value     NUMERIC(19, 2) NOT NULL,
+    type            VARCHAR(255)   NOT NULL,
+    user_id         VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE portfolios (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    created_at TIMESTAMP NOT NULL,
+    name       VARCHAR(255),
+    updated_at TIMESTAMP,
+    username   VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE portfolio_items (
+    id                     BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    average_purchase_price NUMERIC(19, 2) NOT NULL,
+    current_value          NUMERIC(19, 2) NOT NULL,
+    quantity               INTEGER        NOT NULL,
+    stock_symbol           VARCHAR(255),
+    portfolio_id           BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_portfolio_items_portfolio FOREIGN KEY (portfolio_id) REFERENCES portfolios (id)
+);
+
+-- Join table of the unidirectional Portfolio.items mapping
+CREATE TABLE portfolios_items (
+    portfolio_id BIGINT NOT NULL,
+    items_id     BIGINT NOT NULL,
+    CONSTRAINT uk_portfolios_items_item UNIQUE (items_id),
+    CONSTRAINT fk_portfolios_items_portfolio FOREIGN KEY (portfolio_id) REFERENCES portfolios (id),
+    CONSTRAINT fk_portfolios_items_item FOREIGN KEY (items_id) REFERENCES portfolio_items (id)
+);
@@ -0,0 +1,4 @@
+-- Market value of all holdings of a portfolio, maintained by PortfolioValuationService
+-- together with portfolio_items.current_value and written back in batches.
+
+ALTER TABLE portfolios ADD COLUMN total_value NUMERIC(19, 2) DEFAULT 0 NOT NULL;
@@ -0,0 +1,4 @@
+-- A matched trade is stored as a BUY transaction for the buyer and a SELL transaction for
+-- the seller. counter_leg marks the SELL, so volume counts the shares of each trade once.
+
+ALTER TABLE transactions ADD COLUMN counter_leg BOOLEAN DEFAULT FALSE NOT NULL;
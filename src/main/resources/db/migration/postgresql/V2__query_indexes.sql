@@ -0,0 +1,28 @@
+-- Indexes for the repository query methods, which otherwise scan whole tables.
+-- Keep the names in sync with SchemaIndexVerifier.
+
+-- StockRepository.findBySymbol; a symbol identifies exactly one stock
+CREATE UNIQUE INDEX ux_stocks_symbol ON stocks (symbol);
+-- findBySector (leading column) and sector + industry filters
+CREATE INDEX ix_stocks_sector_industry ON stocks (sector, industry);
+-- findByIndustry
+CREATE INDEX ix_stocks_industry ON stocks (industry);
+-- findTop10ByOrderByVolumeDesc and findTop10ByOrderByChangePercentDesc.
+-- The price simulator only writes current_price and last_updated, so these are not touched by ticks
+-- and the tick updates stay eligible for HOT updates. DESC (nulls first) matches the generated ORDER BY.
+CREATE INDEX ix_stocks_volume ON stocks (volume DESC);
+CREATE INDEX ix_stocks_change_percent ON stocks (change_percent DESC);
+
+-- TransactionRepository.findByStockSymbol and findTransactionsBySymbolAndMinAmount (ORDER BY timestamp DESC).
+-- The included value columns let the stock summary rebuild (GROUP BY stock_symbol) use an index-only scan.
+CREATE INDEX ix_transactions_symbol_timestamp ON transactions (stock_symbol, timestamp)
+    INCLUDE (price_per_share, quantity, total_value);
+-- findByType; the timestamp keeps each type's rows in time order
+CREATE INDEX ix_transactions_type_timestamp ON transactions (type, timestamp);
+-- findByTimestampBetween
+CREATE INDEX ix_transactions_timestamp ON transactions (timestamp);
+
+-- Portfolio lookups by owner and holdings by portfolio or symbol
+CREATE INDEX ix_portfolios_username ON portfolios (username);
+CREATE INDEX ix_portfolio_items_portfolio ON portfolio_items (portfolio_id);
+CREATE INDEX ix_portfolio_items_symbol ON portfolio_items (stock_symbol);
@@ -0,0 +1,78 @@
+-- Range-partition transactions by month on timestamp, so queries with a time range only
+-- read the partitions that can match (partition pruning) and old months can be detached.
+-- TransactionPartitionMaintenance calls create_transactions_partition for the coming months.
+
+-- Creates the partition for the month containing month_start if it does not exist yet
+CREATE FUNCTION create_transactions_partition(month_start DATE) RETURNS TEXT AS $$
+DECLARE
+    from_date      DATE := date_trunc('month', month_start)::DATE;
+    to_date        DATE := (date_trunc('month', month_start) + INTERVAL '1 month')::DATE;
+    partition_name TEXT := 'transactions_' || to_char(from_date, 'YYYY_MM');
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, from_date, to_date);
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+ALTER TABLE transactions_unpartitioned RENAME CONSTRAINT transactions_pkey TO transactions_unpartitioned_pkey;
+ALTER INDEX ix_transactions_symbol_timestamp RENAME TO ix_transactions_unpartitioned_symbol_timestamp;
+ALTER INDEX ix_transactions_type_timestamp RENAME TO ix_transactions_unpartitioned_type_timestamp;
+ALTER INDEX ix_transactions_timestamp RENAME TO ix_transactions_unpartitioned_timestamp;
+
+-- Identity columns are not supported on partitioned tables before PostgreSQL 17, so the id
+-- comes from a sequence default; Hibernate's IDENTITY strategy only needs a generated key.
+CREATE SEQUENCE transactions_partitioned_id_seq;
+
+-- A primary key of a partitioned table must contain the partition key
+CREATE TABLE transactions (
+    id              BIGINT         NOT NULL DEFAULT nextval('transactions_partitioned_id_seq'),
+    notes           VARCHAR(255),
+    portfolio_id    BIGINT,
+    price_per_share NUMERIC(19, 2) NOT NULL,
+    quantity        INTEGER        NOT NULL,
+    stock_symbol    VARCHAR(255),
+    timestamp       TIMESTAMP      NOT NULL,
+    total_value     NUMERIC(19, 2) NOT NULL,
+    type            VARCHAR(255)   NOT NULL,
+    user_id         VARCHAR(255),
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+ALTER SEQUENCE transactions_partitioned_id_seq OWNED BY transactions.id;
+
+-- Catches rows outside every monthly partition instead of failing the insert
+CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+-- Partitions for the months of the existing rows and the next three months
+DO $$
+DECLARE
+    month_start DATE;
+    last_month  DATE := (date_trunc('month', now()) + INTERVAL '3 months')::DATE;
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(timestamp)), date_trunc('month', now()))::DATE
+    INTO month_start
+    FROM transactions_unpartitioned;
+    WHILE month_start <= last_month LOOP
+        PERFORM create_transactions_partition(month_start);
+        month_start := (month_start + INTERVAL '1 month')::DATE;
+    END LOOP;
+END;
+$$;
+
+INSERT INTO transactions (id, notes, portfolio_id, price_per_share, quantity, stock_symbol,
+                          timestamp, total_value, type, user_id)
+SELECT id, notes, portfolio_id, price_per_share, quantity, stock_symbol,
+       timestamp, total_value, type, user_id
+FROM transactions_unpartitioned;
+
+SELECT setval('transactions_partitioned_id_seq', COALESCE((SELECT MAX(id) FROM transactions), 0) + 1, false);
+
+DROP TABLE transactions_unpartitioned;
+
+-- Indexes on the partitioned table are created on every partition, including future ones
+CREATE INDEX ix_transactions_symbol_timestamp ON transactions (stock_symbol, timestamp)
+    INCLUDE (price_per_share, quantity, total_value);
+CREATE INDEX ix_transactions_type_timestamp ON transactions (type, timestamp);
+CREATE INDEX ix_transactions_timestamp ON transactions (timestamp);
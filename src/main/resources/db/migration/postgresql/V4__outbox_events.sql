@@ -0,0 +1,13 @@
+-- Transactional outbox: events are written in the same transaction as the change they describe
+-- and published to Kafka by OutboxRelay, which deletes them once the broker has acknowledged them.
+-- The relay reads in id order, so the events of one key are published in the order they were written.
+
+CREATE TABLE outbox_events (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    topic        VARCHAR(255) NOT NULL,
+    message_key  VARCHAR(255),
+    payload_type VARCHAR(255) NOT NULL,
+    payload      TEXT         NOT NULL,
+    created_at   TIMESTAMP    NOT NULL,
+    PRIMARY KEY (id)
+);
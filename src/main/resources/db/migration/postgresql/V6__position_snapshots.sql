@@ -0,0 +1,16 @@
+-- Snapshots of the position projection, which folds the transactions of each portfolio into
+-- its positions. version is the id of the last transaction folded into the snapshot, so a
+-- portfolio is rebuilt from its latest snapshot and the transactions after it.
+-- PositionProjection writes one every positions.snapshot-every transactions of a portfolio.
+
+CREATE TABLE position_snapshots (
+    portfolio_id BIGINT    NOT NULL,
+    version      BIGINT    NOT NULL,
+    event_count  BIGINT    NOT NULL,
+    positions    TEXT NOT NULL,
+    created_at   TIMESTAMP NOT NULL,
+    PRIMARY KEY (portfolio_id, version)
+);
+
+-- Replaying the transactions of one portfolio after its snapshot
+CREATE INDEX ix_transactions_portfolio_id ON transactions (portfolio_id, id);
@@ -0,0 +1,95 @@
+package com.stockmarket.app.benchmark;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.service.serialization.BinaryEventCodec;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the JSON and binary encodings of a price update, per record.
+ *
+ * Run it like PriceArithmeticBenchmark:
+ * java -cp target/test-classes:target/classes:$(cat target/bench.classpath) com.stockmarket.app.benchmark.EventSerializationBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+
+    private StockPriceUpdateDTO update;
+    private RecordHeaders headers;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        // Keep the type header, as the same headers are read on every invocation
+        jsonDeserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.stockmarket.app.dto",
+                JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false), false);
+        update = StockPriceUpdateDTO.builder()
+                .symbol("AAPL")
+                .price(new BigDecimal("190.30"))
+                .change(new BigDecimal("1.20"))
+                .changePercent(new BigDecimal("0.63"))
+                .timestamp(LocalDateTime.of(2024, 3, 15, 14, 30, 5, 123_000_000))
+                .build();
+        headers = new RecordHeaders();
+        json = jsonSerializer.serialize("stock-price-updates", headers, update);
+        binary = BinaryEventCodec.encode(update);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return jsonSerializer.serialize("stock-price-updates", new RecordHeaders(), update);
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return BinaryEventCodec.encode(update);
+    }
+
+    @Benchmark
+    public Object jsonDeserialize() {
+        return jsonDeserializer.deserialize("stock-price-updates", headers, json);
+    }
+
+    @Benchmark
+    public Object binaryDeserialize() {
+        return BinaryEventCodec.decode(binary);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EventSerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
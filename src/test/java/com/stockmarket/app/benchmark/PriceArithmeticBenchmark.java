@@ -0,0 +1,118 @@
+package com.stockmarket.app.benchmark;
+
+import com.stockmarket.app.util.FixedPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the simulator tick arithmetic in BigDecimal (the previous implementation)
+ * and in FixedPoint longs.
+ *
+ * Run with the GC profiler to see allocation per tick (JMH forks a JVM, so it needs a plain classpath):
+ * mvn test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/bench.classpath
+ * java -cp target/test-classes:target/classes:$(cat target/bench.classpath) com.stockmarket.app.benchmark.PriceArithmeticBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceArithmeticBenchmark {
+
+    @Param({"1000"})
+    private int stocks;
+
+    private BigDecimal[] prices;
+    private double[] randomPercents;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        prices = new BigDecimal[stocks];
+        randomPercents = new double[stocks];
+        for (int i = 0; i < stocks; i++) {
+            prices[i] = BigDecimal.valueOf(random.nextInt(1_000_000) + 1, 2);
+            randomPercents[i] = random.nextDouble() * 10.0 - 5.0;
+        }
+    }
+
+    /**
+     * The per-stock tick math as it was written before the FixedPoint change.
+     */
+    @Benchmark
+    public void bigDecimalTick(Blackhole blackhole) {
+        for (int i = 0; i < stocks; i++) {
+            BigDecimal currentPrice = prices[i];
+            BigDecimal changePercent = new BigDecimal(randomPercents[i]).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal change = currentPrice.multiply(changePercent)
+                    .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+            BigDecimal newPrice = currentPrice.add(change).setScale(2, RoundingMode.HALF_UP);
+            if (newPrice.compareTo(new BigDecimal("0.01")) < 0) {
+                newPrice = new BigDecimal("0.01");
+            }
+            blackhole.consume(newPrice);
+            blackhole.consume(change);
+        }
+    }
+
+    /**
+     * The same math on scaled longs; conversion happens once per stock at the entity boundary.
+     */
+    @Benchmark
+    public void fixedPointTick(Blackhole blackhole) {
+        long minPrice = FixedPoint.ONE / 100;
+        for (int i = 0; i < stocks; i++) {
+            long currentPrice = FixedPoint.of(prices[i]);
+            long changePercent = FixedPoint.of(randomPercents[i], 2);
+            long change = FixedPoint.percentOf(currentPrice, changePercent, 2);
+            long newPrice = FixedPoint.round(currentPrice + change, 2);
+            if (newPrice < minPrice) {
+                newPrice = minPrice;
+            }
+            blackhole.consume(newPrice);
+            blackhole.consume(change);
+        }
+    }
+
+    /**
+     * Only the arithmetic, with prices already held as longs.
+     */
+    @Benchmark
+    public void fixedPointArithmeticOnly(Blackhole blackhole) {
+        for (int i = 0; i < stocks; i++) {
+            long currentPrice = 1_000_000L + i;
+            long changePercent = FixedPoint.of(randomPercents[i], 2);
+            long change = FixedPoint.percentOf(currentPrice, changePercent, 2);
+            blackhole.consume(FixedPoint.round(currentPrice + change, 2));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PriceArithmeticBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
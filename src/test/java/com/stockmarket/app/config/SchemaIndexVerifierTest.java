@@ -0,0 +1,57 @@
+package com.stockmarket.app.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the H2 migrations together with the SchemaIndexVerifier
+ */
+class SchemaIndexVerifierTest {
+
+    @Test
+    @DisplayName("Should find every expected index after all migrations ran")
+    void findMissingIndexes_AfterMigrations() throws SQLException {
+        // Given
+        DriverManagerDataSource dataSource = dataSource("verifier-all");
+        migrate(dataSource, null);
+
+        // When / Then
+        assertEquals(List.of(), new SchemaIndexVerifier(dataSource, true, true).findMissingIndexes());
+    }
+
+    @Test
+    @DisplayName("Should report the indexes of migrations that did not run and fail when configured to")
+    void verify_MissingIndexes() throws SQLException {
+        // Given - only the baseline schema
+        DriverManagerDataSource dataSource = dataSource("verifier-baseline");
+        migrate(dataSource, "1");
+
+        // When
+        List<String> missing = new SchemaIndexVerifier(dataSource, true, true).findMissingIndexes();
+
+        // Then
+        assertTrue(missing.contains("stocks.ux_stocks_symbol"));
+        assertTrue(missing.contains("transactions.ix_transactions_symbol_timestamp"));
+        assertThrows(IllegalStateException.class, () -> new SchemaIndexVerifier(dataSource, true, true).verify());
+    }
+
+    private DriverManagerDataSource dataSource(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    private void migrate(DriverManagerDataSource dataSource, String target) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/h2")
+                .target(target != null ? target : "latest")
+                .load()
+                .migrate();
+    }
+}
@@ -0,0 +1,111 @@
+package com.stockmarket.app.service;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.repository.StockPriceBatchRepository;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.service.dispatch.SymbolLaneDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the KafkaConsumerService
+ */
+@ExtendWith(MockitoExtension.class)
+class KafkaConsumerServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 15, 14, 30);
+
+    @Mock
+    private StockPriceBatchRepository stockPriceBatchRepository;
+
+    @Mock
+    private StockQuoteCache quoteCache;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SymbolLaneDispatcher dispatcher = new SymbolLaneDispatcher(meterRegistry, 3, 8);
+    private KafkaConsumerService consumerService;
+
+    @BeforeEach
+    void setUp() {
+        consumerService = new KafkaConsumerService(stockPriceBatchRepository, quoteCache, dispatcher, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep only the newest update per symbol, in order of first appearance")
+    void conflate_KeepsNewestPerSymbol() {
+        // Given - MSFT has an older update after a newer one
+        List<StockPriceUpdateDTO> updates = List.of(
+                update("AAPL", "150.00", NOW),
+                update("MSFT", "301.00", NOW.plusSeconds(2)),
+                update("AAPL", "151.00", NOW.plusSeconds(1)),
+                update("MSFT", "300.00", NOW.plusSeconds(1)),
+                update("AAPL", "152.00", NOW.plusSeconds(2)));
+
+        // When
+        List<StockPriceUpdateDTO> latest = KafkaConsumerService.conflate(updates, NOW);
+
+        // Then
+        assertEquals(2, latest.size());
+        assertEquals("AAPL", latest.get(0).getSymbol());
+        assertEquals(new BigDecimal("152.00"), latest.get(0).getPrice());
+        assertEquals(new BigDecimal("301.00"), latest.get(1).getPrice());
+    }
+
+    @Test
+    @DisplayName("Should write a batch with one bulk statement per lane and refresh the cache for applied updates only")
+    void consumeStockPriceUpdates_AppliesSurvivors() {
+        // Given - 1000 records for 10 symbols; the stored GOOGL price is newer than the batch
+        List<StockPriceUpdateDTO> updates = new ArrayList<>();
+        String[] symbols = {"AAPL", "MSFT", "GOOGL", "AMZN", "META", "TSLA", "NVDA", "NFLX", "INTC", "AMD"};
+        for (int i = 0; i < 1000; i++) {
+            updates.add(update(symbols[i % symbols.length], i + ".00", NOW.plusSeconds(i)));
+        }
+        when(stockPriceBatchRepository.applyPriceUpdates(anyList())).thenAnswer(invocation -> {
+            List<StockPriceUpdateDTO> latest = invocation.getArgument(0);
+            List<StockPriceUpdateDTO> applied = new ArrayList<>(latest);
+            applied.removeIf(update -> update.getSymbol().equals("GOOGL"));
+            return applied;
+        });
+
+        // When
+        consumerService.consumeStockPriceUpdates(updates);
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockPriceUpdateDTO>> written = ArgumentCaptor.forClass(List.class);
+        verify(stockPriceBatchRepository, atLeastOnce()).applyPriceUpdates(written.capture());
+        assertTrue(written.getAllValues().size() <= 3);
+        List<StockPriceUpdateDTO> all = written.getAllValues().stream().flatMap(List::stream).collect(Collectors.toList());
+        assertEquals(10, all.size());
+        assertTrue(all.stream().anyMatch(update -> update.getPrice().equals(new BigDecimal("990.00"))));
+        verify(quoteCache, times(9)).applyPriceUpdate(any());
+        assertEquals(1000.0, meterRegistry.get("kafka.consumer.price-updates").tag("result", "received").counter().count());
+        assertEquals(9.0, meterRegistry.get("kafka.consumer.price-updates").tag("result", "applied").counter().count());
+    }
+
+    private StockPriceUpdateDTO update(String symbol, String price, LocalDateTime timestamp) {
+        return StockPriceUpdateDTO.builder().symbol(symbol).price(new BigDecimal(price)).timestamp(timestamp).build();
+    }
+}
@@ -0,0 +1,180 @@
+package com.stockmarket.app.service;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.dto.TransactionDeletedEvent;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.service.outbox.OutboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the KafkaProducerService
+ */
+@ExtendWith(MockitoExtension.class)
+class KafkaProducerServiceTest {
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private OutboxService outboxService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<SettableListenableFuture<SendResult<String, Object>>> futures = new ArrayList<>();
+
+    private KafkaProducerService producerService;
+
+    @BeforeEach
+    void setUp() {
+        // A window of two records, and no waiting for a free permit
+        producerService = new KafkaProducerService(kafkaTemplate, eventPublisher, outboxService,
+                meterRegistry, 2, 0L);
+        ReflectionTestUtils.setField(producerService, "stockPriceUpdatesTopic", "stock-price-updates");
+        lenient().when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            SettableListenableFuture<SendResult<String, Object>> future = new SettableListenableFuture<>();
+            futures.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    @DisplayName("Should publish the application event and write the update to the outbox")
+    void sendStockPriceUpdate_Outbox() {
+        // When
+        StockPriceUpdateDTO update = update("AAPL");
+        producerService.sendStockPriceUpdate(update);
+
+        // Then - nothing is sent to Kafka until the relay picks it up
+        verify(eventPublisher).publishEvent(update);
+        verify(outboxService).enqueue("stock-price-updates", "AAPL", update);
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    @DisplayName("Should write a deleted transaction to the outbox as a delete event keyed by symbol")
+    void sendTransactionDeleted_Outbox() {
+        // Given
+        ReflectionTestUtils.setField(producerService, "stockTransactionsTopic", "stock-transactions");
+        Transaction transaction = Transaction.builder()
+                .id(7L)
+                .portfolioId(3L)
+                .stockSymbol("AAPL")
+                .type(TransactionType.BUY)
+                .quantity(10)
+                .build();
+
+        // When
+        producerService.sendTransactionDeleted(transaction);
+
+        // Then
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(outboxService).enqueue(eq("stock-transactions"), eq("AAPL"), event.capture());
+        TransactionDeletedEvent deleted = (TransactionDeletedEvent) event.getValue();
+        assertEquals(7L, deleted.getTransactionId());
+        assertEquals(3L, deleted.getPortfolioId());
+        assertEquals(10, deleted.getQuantity());
+        assertNotNull(deleted.getDeletedAt());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    @DisplayName("Should not wait for the broker and record the latency when it answers")
+    void send_Async() {
+        // When
+        CompletableFuture<Void> delivery = send("AAPL");
+
+        // Then - the record is in flight until the broker answers
+        assertEquals(1, producerService.getInFlightCount());
+        assertFalse(delivery.isDone());
+
+        futures.get(0).set(null);
+
+        assertEquals(0, producerService.getInFlightCount());
+        assertTrue(delivery.isDone() && !delivery.isCompletedExceptionally());
+        assertEquals(1, meterRegistry.get("kafka.producer.send.latency").tag("result", "success").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should fail records and count them when the in-flight window stays full")
+    void send_Backpressure() {
+        // Given - the window is full
+        send("AAPL");
+        send("MSFT");
+
+        // When
+        CompletableFuture<Void> rejected = send("GOOGL");
+
+        // Then - the third record never reached the producer
+        assertTrue(rejected.isCompletedExceptionally());
+        verify(kafkaTemplate, times(2)).send(anyString(), anyString(), any());
+        assertEquals(1, meterRegistry.get("kafka.producer.send.failures").tag("reason", "backpressure").counter().count());
+
+        // And a delivery frees the window again
+        futures.get(0).set(null);
+        send("GOOGL");
+        verify(kafkaTemplate, times(3)).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should count failed deliveries and release their permits")
+    void send_DeliveryFailure() {
+        // When
+        CompletableFuture<Void> delivery = send("AAPL");
+        futures.get(0).setException(new TimeoutException("Expiring 1 record(s)"));
+
+        // Then
+        assertTrue(delivery.isCompletedExceptionally());
+        assertEquals(0, producerService.getInFlightCount());
+        assertEquals(1, meterRegistry.get("kafka.producer.send.failures").tag("reason", "delivery").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should release the permit when the send fails synchronously")
+    void send_SynchronousFailure() {
+        // Given
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenThrow(new IllegalStateException("No broker"));
+
+        // When
+        CompletableFuture<Void> delivery = send("AAPL");
+
+        // Then
+        assertTrue(delivery.isCompletedExceptionally());
+        assertEquals(0, producerService.getInFlightCount());
+        assertEquals(1, meterRegistry.get("kafka.producer.send.failures").tag("reason", "send").counter().count());
+    }
+
+    private CompletableFuture<Void> send(String symbol) {
+        return producerService.send("stock-price-updates", symbol, update(symbol));
+    }
+
+    private StockPriceUpdateDTO update(String symbol) {
+        return StockPriceUpdateDTO.builder().symbol(symbol).price(new BigDecimal("100.00")).build();
+    }
+}
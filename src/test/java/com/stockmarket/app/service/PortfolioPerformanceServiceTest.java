@@ -0,0 +1,164 @@
+package com.stockmarket.app.service;
+
+import com.stockmarket.app.dto.PortfolioPerformanceDTO;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.repository.PerformanceRepository;
+import com.stockmarket.app.service.history.TickHistoryStore;
+import com.stockmarket.app.service.impl.PortfolioPerformanceServiceImpl;
+import com.stockmarket.app.util.FixedPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the PortfolioPerformanceService
+ */
+@ExtendWith(MockitoExtension.class)
+class PortfolioPerformanceServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2024, 1, 3);
+
+    @Mock
+    private PerformanceRepository performanceRepository;
+
+    @TempDir
+    Path tickDirectory;
+
+    private PortfolioPerformanceServiceImpl performanceService;
+
+    @BeforeEach
+    void setUp() {
+        TickHistoryStore tickHistoryStore = new TickHistoryStore(tickDirectory.toString(), 64, true);
+        performanceService = new PortfolioPerformanceServiceImpl(performanceRepository, tickHistoryStore, 2, 3660);
+        // Portfolio 1 holds 10 AAPL before the window and buys 10 more on its second day;
+        // portfolio 2 buys 1 MSFT, which has no ticks; portfolio 3 holds 10 IBM for years
+        List<Trade> trades = List.of(
+                new Trade(1L, LocalDateTime.of(2023, 12, 30, 10, 0), "AAPL", 10, "100.00"),
+                new Trade(1L, LocalDateTime.of(2024, 1, 2, 10, 0), "AAPL", 10, "110.00"),
+                new Trade(2L, LocalDateTime.of(2024, 1, 1, 10, 0), "MSFT", 1, "50.00"),
+                new Trade(3L, LocalDateTime.of(2021, 12, 20, 10, 0), "IBM", 10, "90.00"));
+        lenient().doAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            PerformanceRepository.TradeVisitor visitor = invocation.getArgument(2);
+            for (Trade trade : trades.stream().filter(t -> ids.contains(t.portfolioId)).collect(Collectors.toList())) {
+                visitor.visit(trade.portfolioId, trade.timestamp, trade.symbol, TransactionType.BUY,
+                        trade.quantity, new BigDecimal(trade.price));
+            }
+            return null;
+        }).when(performanceRepository).forEachTrade(any(), any(), any());
+        // No tick on January 2nd, which keeps the close of the day before
+        tick(tickHistoryStore, "AAPL", LocalDate.of(2023, 12, 31), "105.00");
+        tick(tickHistoryStore, "AAPL", LocalDate.of(2024, 1, 1), "110.00");
+        tick(tickHistoryStore, "AAPL", LocalDate.of(2024, 1, 3), "121.00");
+        tick(tickHistoryStore, "IBM", LocalDate.of(2021, 12, 31), "100.00");
+        tick(tickHistoryStore, "IBM", LocalDate.of(2023, 12, 31), "121.00");
+    }
+
+    @AfterEach
+    void tearDown() {
+        performanceService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should value the holdings at the daily closes and leave the purchase out of the return")
+    void getPerformance_TimeWeighted() {
+        // When
+        PortfolioPerformanceDTO performance = performanceService.getPerformance(1L, FROM, TO).orElseThrow();
+
+        // Then - daily returns of 1100/1050, 2200/(1100 + 1100) and 2420/2200
+        assertEquals(3, performance.getDays());
+        assertEquals(new BigDecimal("1050.00"), performance.getStartValue());
+        assertEquals(new BigDecimal("2420.00"), performance.getEndValue());
+        assertEquals(new BigDecimal("1100.00"), performance.getNetInflow());
+        assertEquals(new BigDecimal("0.152381"), performance.getTimeWeightedReturn());
+        assertEquals(new BigDecimal("0.000000"), performance.getMaxDrawdown());
+        // 1050 * g^3 + 1100 * g^2 = 2420 for the daily rate g, over three days
+        assertEquals(new BigDecimal("0.152904"), performance.getMoneyWeightedReturn());
+        // Too short to annualize
+        assertNull(performance.getAnnualizedTimeWeightedReturn());
+        assertNull(performance.getAnnualizedMoneyWeightedReturn());
+        verify(performanceRepository).forEachTrade(eq(List.of(1L)), eq(TO.plusDays(1).atStartOfDay()), any());
+    }
+
+    @Test
+    @DisplayName("Should annualize the returns of a window of two years")
+    void getPerformance_MultiYear() {
+        // When - 1000 of IBM at the start grows to 1210 without flows
+        PortfolioPerformanceDTO performance = performanceService
+                .getPerformance(3L, LocalDate.of(2022, 1, 1), LocalDate.of(2023, 12, 31)).orElseThrow();
+
+        // Then
+        assertEquals(730, performance.getDays());
+        assertEquals(new BigDecimal("1000.00"), performance.getStartValue());
+        assertEquals(new BigDecimal("1210.00"), performance.getEndValue());
+        assertEquals(new BigDecimal("0.210000"), performance.getTimeWeightedReturn());
+        assertEquals(new BigDecimal("0.100000"), performance.getAnnualizedTimeWeightedReturn());
+        assertEquals(new BigDecimal("0.210000"), performance.getMoneyWeightedReturn());
+        assertEquals(new BigDecimal("0.100000"), performance.getAnnualizedMoneyWeightedReturn());
+        assertEquals(new BigDecimal("0.000000"), performance.getMaxDrawdown());
+    }
+
+    @Test
+    @DisplayName("Should calculate a batch in the order of the ids and skip portfolios without trades")
+    void getPerformance_Batch() {
+        // When
+        List<PortfolioPerformanceDTO> performances = performanceService.getPerformance(List.of(2L, 4L, 1L), null, TO);
+
+        // Then - portfolio 2 starts at its first trade and keeps the traded price
+        assertEquals(List.of(2L, 1L), performances.stream()
+                .map(PortfolioPerformanceDTO::getPortfolioId).collect(Collectors.toList()));
+        PortfolioPerformanceDTO msft = performances.get(0);
+        assertEquals(FROM, msft.getFrom());
+        assertEquals(new BigDecimal("50.00"), msft.getEndValue());
+        assertEquals(new BigDecimal("0.000000"), msft.getTimeWeightedReturn());
+        assertEquals(new BigDecimal("0.000000"), msft.getVolatility());
+        assertEquals(LocalDate.of(2023, 12, 30), performances.get(1).getFrom());
+    }
+
+    @Test
+    @DisplayName("Should report nothing for a portfolio without trades and reject an empty window")
+    void getPerformance_NoTradesAndInvalidWindow() {
+        assertTrue(performanceService.getPerformance(9L, FROM, TO).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> performanceService.getPerformance(1L, TO, FROM));
+        verify(performanceRepository, times(1)).forEachTrade(any(), any(), any());
+    }
+
+    private static void tick(TickHistoryStore store, String symbol, LocalDate day, String price) {
+        store.append(symbol, TickHistoryStore.toEpochMillis(day.atTime(15, 0)), FixedPoint.of(new BigDecimal(price)), 0, 0);
+    }
+
+    private static final class Trade {
+        private final long portfolioId;
+        private final LocalDateTime timestamp;
+        private final String symbol;
+        private final int quantity;
+        private final String price;
+
+        private Trade(long portfolioId, LocalDateTime timestamp, String symbol, int quantity, String price) {
+            this.portfolioId = portfolioId;
+            this.timestamp = timestamp;
+            this.symbol = symbol;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+}
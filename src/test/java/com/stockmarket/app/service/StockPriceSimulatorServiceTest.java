@@ -1,23 +1,37 @@
 package com.stockmarket.app.service;
 
+import com.stockmarket.app.dto.StockDTO;
 import com.stockmarket.app.dto.StockPriceUpdateDTO;
 import com.stockmarket.app.model.Stock;
+import com.stockmarket.app.repository.StockPriceBatchRepository;
 import com.stockmarket.app.repository.StockRepository;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.service.outbox.OutboxService;
+import com.stockmarket.app.service.pricemodel.PriceModel;
+import com.stockmarket.app.service.pricemodel.UniformPriceModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,14 +45,22 @@ class StockPriceSimulatorServiceTest {
     @Mock
     private StockRepository stockRepository;
     
+    @Mock
+    private StockPriceBatchRepository stockPriceBatchRepository;
+    
     @Mock
     private KafkaProducerService kafkaProducerService;
     
-    @InjectMocks
+    @Mock
+    private OutboxService outboxService;
+    
+    @Mock
+    private StockQuoteCache quoteCache;
+    
     private StockPriceSimulatorService simulatorService;
     
     @Captor
-    private ArgumentCaptor<Stock> stockCaptor;
+    private ArgumentCaptor<List<Stock>> stocksCaptor;
     
     @Captor
     private ArgumentCaptor<StockPriceUpdateDTO> updateCaptor;
@@ -47,10 +69,7 @@ class StockPriceSimulatorServiceTest {
     
     @BeforeEach
     void setUp() {
-        // Configure simulator properties
-        ReflectionTestUtils.setField(simulatorService, "enabled", true);
-        ReflectionTestUtils.setField(simulatorService, "minChangePercent", -5.0);
-        ReflectionTestUtils.setField(simulatorService, "maxChangePercent", 5.0);
+        simulatorService = newSimulator(new UniformPriceModel(-5.0, 5.0), 1, null);
         
         // Create test stocks
         Stock stock1 = Stock.builder()
@@ -76,21 +95,55 @@ class StockPriceSimulatorServiceTest {
         testStocks = Arrays.asList(stock1, stock2);
     }
     
+    @AfterEach
+    void tearDown() {
+        simulatorService.stop();
+    }
+    
+    private StockPriceSimulatorService newSimulator(PriceModel model, int workers, Long seed) {
+        StockPriceSimulatorService simulator = new StockPriceSimulatorService(stockRepository,
+                stockPriceBatchRepository, kafkaProducerService, outboxService, quoteCache, new SimpleMeterRegistry(), List.of(model),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        
+        // Configure simulator properties
+        ReflectionTestUtils.setField(simulator, "enabled", true);
+        ReflectionTestUtils.setField(simulator, "modelName", model.getName());
+        ReflectionTestUtils.setField(simulator, "workers", workers);
+        ReflectionTestUtils.setField(simulator, "configuredSeed", seed);
+        simulator.start();
+        return simulator;
+    }
+    
+    private List<Stock> createStocks(int count) {
+        List<Stock> stocks = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            stocks.add(Stock.builder()
+                    .id(i)
+                    .symbol("SYM" + i)
+                    .companyName("Company " + i)
+                    .currentPrice(new BigDecimal("100.00"))
+                    .lastUpdated(LocalDateTime.now())
+                    .build());
+        }
+        return stocks;
+    }
+    
     @Test
     @DisplayName("Should simulate price changes for all stocks")
     void simulateStockPriceChanges_Success() {
         // Given
         when(stockRepository.findAll()).thenReturn(testStocks);
-        when(stockRepository.save(any(Stock.class))).thenAnswer(i -> i.getArgument(0));
         
         // When
         simulatorService.simulateStockPriceChanges();
         
         // Then
-        verify(stockRepository, times(2)).save(stockCaptor.capture());
+        verify(stockPriceBatchRepository, times(1)).updatePrices(stocksCaptor.capture());
+        verify(stockRepository, never()).save(any());
         verify(kafkaProducerService, times(2)).sendStockPriceUpdate(updateCaptor.capture());
+        verify(quoteCache, times(2)).put(any(StockDTO.class));
         
-        List<Stock> updatedStocks = stockCaptor.getAllValues();
+        List<Stock> updatedStocks = stocksCaptor.getValue();
         List<StockPriceUpdateDTO> updates = updateCaptor.getAllValues();
         
         // Verify first stock update
@@ -121,7 +174,22 @@ class StockPriceSimulatorServiceTest {
         
         // Then
         verify(stockRepository, never()).findAll();
-        verify(stockRepository, never()).save(any());
+        verify(stockPriceBatchRepository, never()).updatePrices(any());
+        verify(kafkaProducerService, never()).sendStockPriceUpdate(any());
+    }
+    
+    @Test
+    @DisplayName("Should skip price simulation while the outbox backlog is over its limit")
+    void simulateStockPriceChanges_OutboxBacklogged() {
+        // Given
+        when(outboxService.isBacklogged()).thenReturn(true);
+        
+        // When
+        boolean ran = simulatorService.simulateStockPriceChanges();
+        
+        // Then
+        assertFalse(ran);
+        verify(stockRepository, never()).findAll();
         verify(kafkaProducerService, never()).sendStockPriceUpdate(any());
     }
     
@@ -136,7 +204,7 @@ class StockPriceSimulatorServiceTest {
         
         // Then
         verify(stockRepository, times(1)).findAll();
-        verify(stockRepository, never()).save(any());
+        verify(stockPriceBatchRepository, never()).updatePrices(any());
         verify(kafkaProducerService, never()).sendStockPriceUpdate(any());
     }
     
@@ -155,20 +223,121 @@ class StockPriceSimulatorServiceTest {
                 .build();
         
         when(stockRepository.findAll()).thenReturn(List.of(lowPriceStock));
-        when(stockRepository.save(any(Stock.class))).thenAnswer(i -> i.getArgument(0));
         
         // Set min change to a large negative value to force price reduction
-        ReflectionTestUtils.setField(simulatorService, "minChangePercent", -90.0);
-        ReflectionTestUtils.setField(simulatorService, "maxChangePercent", -50.0);
+        simulatorService = newSimulator(new UniformPriceModel(-90.0, -50.0), 1, null);
         
         // When
         simulatorService.simulateStockPriceChanges();
         
         // Then
-        verify(stockRepository).save(stockCaptor.capture());
+        verify(stockPriceBatchRepository).updatePrices(stocksCaptor.capture());
         
-        Stock updatedStock = stockCaptor.getValue();
+        Stock updatedStock = stocksCaptor.getValue().get(0);
         // Verify that price was limited to minimum of 0.01
         assertTrue(updatedStock.getCurrentPrice().compareTo(new BigDecimal("0.01")) >= 0);
     }
-} 
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Should split a large stock universe into one batch per worker")
+    void simulateStockPriceChanges_Sharded() {
+        // Given
+        simulatorService = newSimulator(new UniformPriceModel(-5.0, 5.0), 4, null);
+        when(stockRepository.findAll()).thenReturn(createStocks(1000));
+        
+        // When
+        boolean ran = simulatorService.simulateStockPriceChanges();
+        
+        // Then
+        assertTrue(ran);
+        verify(stockPriceBatchRepository, times(4)).updatePrices(stocksCaptor.capture());
+        verify(kafkaProducerService, times(1000)).sendStockPriceUpdate(any());
+        assertEquals(1000, stocksCaptor.getAllValues().stream().mapToInt(List::size).sum());
+    }
+    
+    @Test
+    @DisplayName("Should publish identical ticks for the same seed regardless of worker count")
+    void simulateStockPriceChanges_SameSeedIsReproducible() {
+        // Given
+        StockPriceSimulatorService singleWorker = newSimulator(new UniformPriceModel(-5.0, 5.0), 1, 42L);
+        StockPriceSimulatorService fourWorkers = newSimulator(new UniformPriceModel(-5.0, 5.0), 4, 42L);
+        
+        // When - two cycles on each simulator, each starting from the same data
+        when(stockRepository.findAll()).thenReturn(createStocks(1000));
+        singleWorker.simulateStockPriceChanges();
+        singleWorker.simulateStockPriceChanges();
+        when(stockRepository.findAll()).thenReturn(createStocks(1000));
+        fourWorkers.simulateStockPriceChanges();
+        fourWorkers.simulateStockPriceChanges();
+        fourWorkers.stop();
+        
+        // Then - the first half of the captured updates came from the single worker run
+        verify(kafkaProducerService, times(4000)).sendStockPriceUpdate(updateCaptor.capture());
+        List<StockPriceUpdateDTO> updates = updateCaptor.getAllValues();
+        assertEquals(sortedTicks(updates.subList(0, 2000)), sortedTicks(updates.subList(2000, 4000)));
+    }
+    
+    @Test
+    @DisplayName("Should publish different ticks for different seeds")
+    void simulateStockPriceChanges_DifferentSeeds() {
+        // Given
+        StockPriceSimulatorService first = newSimulator(new UniformPriceModel(-5.0, 5.0), 1, 1L);
+        StockPriceSimulatorService second = newSimulator(new UniformPriceModel(-5.0, 5.0), 1, 2L);
+        
+        // When
+        when(stockRepository.findAll()).thenReturn(createStocks(100));
+        first.simulateStockPriceChanges();
+        when(stockRepository.findAll()).thenReturn(createStocks(100));
+        second.simulateStockPriceChanges();
+        
+        // Then
+        verify(kafkaProducerService, times(200)).sendStockPriceUpdate(updateCaptor.capture());
+        List<StockPriceUpdateDTO> updates = updateCaptor.getAllValues();
+        assertNotEquals(sortedTicks(updates.subList(0, 100)), sortedTicks(updates.subList(100, 200)));
+    }
+    
+    @Test
+    @DisplayName("Should keep the cycle running until its started shards finish when interrupted")
+    void simulateStockPriceChanges_InterruptedWaitsForShards() throws Exception {
+        // Given - two shards that block while writing
+        simulatorService = newSimulator(new UniformPriceModel(-5.0, 5.0), 2, null);
+        when(stockRepository.findAll()).thenReturn(createStocks(1000));
+        CountDownLatch writing = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return invocation.getArgument(0, List.class).size();
+        }).when(stockPriceBatchRepository).updatePrices(any());
+        AtomicBoolean interruptRestored = new AtomicBoolean();
+        Thread scheduler = new Thread(() -> {
+            simulatorService.simulateStockPriceChanges();
+            interruptRestored.set(Thread.currentThread().isInterrupted());
+        });
+        scheduler.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // When
+        scheduler.interrupt();
+
+        // Then - the cycle is still in progress while the shards write
+        scheduler.join(200);
+        assertTrue(scheduler.isAlive());
+        assertFalse(simulatorService.simulateStockPriceChanges());
+
+        // And it ends once they are done, with the interrupt flag restored
+        release.countDown();
+        scheduler.join(5000);
+        assertFalse(scheduler.isAlive());
+        assertTrue(interruptRestored.get());
+        verify(kafkaProducerService, times(1000)).sendStockPriceUpdate(any());
+    }
+    
+    // Ticks as "symbol=price" strings in a stable order; shards may publish in any order
+    private List<String> sortedTicks(List<StockPriceUpdateDTO> updates) {
+        return updates.stream()
+                .map(update -> update.getSymbol() + "=" + update.getPrice())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -1,10 +1,13 @@
 package com.stockmarket.app.service;
 
+import com.stockmarket.app.dto.StockChangesDTO;
 import com.stockmarket.app.dto.StockCreateRequest;
 import com.stockmarket.app.dto.StockDTO;
 import com.stockmarket.app.dto.StockUpdateRequest;
 import com.stockmarket.app.model.Stock;
 import com.stockmarket.app.repository.StockRepository;
+import com.stockmarket.app.service.cache.StockCatalogVersion;
+import com.stockmarket.app.service.cache.StockQuoteCache;
 import com.stockmarket.app.service.impl.StockServiceImpl;
 import javax.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
@@ -49,6 +53,19 @@ class StockServiceTest {
     @Mock
     private StockRepository stockRepository;
 
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+
+    /**
+     * Mock the quote cache so every lookup goes to the (mocked) repository
+     * unless a test stubs a cache hit explicitly.
+     */
+    @Mock
+    private StockQuoteCache quoteCache;
+    
+    @Spy
+    private StockCatalogVersion catalogVersion = new StockCatalogVersion();
+
     /**
      * Inject mocks into the service.
      * This creates an instance of StockServiceImpl and injects the mocked
@@ -183,6 +200,42 @@ class StockServiceTest {
         });
     }
 
+    /**
+     * Test that a symbol lookup is answered from the quote cache without touching the repository.
+     */
+    @Test
+    @DisplayName("Should serve stock by symbol from the quote cache on a hit")
+    void getStockBySymbol_CacheHit() {
+        // Setup mock behavior
+        when(quoteCache.get("AAPL")).thenReturn(Optional.of(StockDTO.fromEntity(testStock)));
+
+        // Execute service method
+        StockDTO result = stockService.getStockBySymbol("AAPL");
+
+        // Verify results
+        assertEquals("AAPL", result.getSymbol());
+        verifyNoInteractions(stockRepository);
+    }
+
+    /**
+     * Test that a cache miss loads the stock from the repository and populates the cache.
+     */
+    @Test
+    @DisplayName("Should load stock by symbol from the repository on a cache miss")
+    void getStockBySymbol_CacheMiss() {
+        // Setup mock behavior
+        when(quoteCache.get("AAPL")).thenReturn(Optional.empty());
+        when(quoteCache.currentVersion()).thenReturn(42L);
+        when(stockRepository.findBySymbol("AAPL")).thenReturn(Optional.of(testStock));
+
+        // Execute service method
+        StockDTO result = stockService.getStockBySymbol("AAPL");
+
+        // Verify results, and that the cache gets the version read before the load
+        assertEquals("AAPL", result.getSymbol());
+        verify(quoteCache, times(1)).populate(result, 42L);
+    }
+
     /**
      * Test getting all stocks successfully.
      */
@@ -210,6 +263,76 @@ class StockServiceTest {
         assertEquals("MSFT", results.get(1).getSymbol());
     }
 
+    @Test
+    @DisplayName("Should reuse the loaded catalogue until the catalogue version changes")
+    void getAllStocks_ReusedUntilVersionChanges() {
+        // Given
+        when(stockRepository.findAll()).thenReturn(List.of(testStock));
+        
+        // When
+        List<StockDTO> first = stockService.getAllStocks();
+        List<StockDTO> second = stockService.getAllStocks();
+        catalogVersion.markChanged("AAPL");
+        stockService.getAllStocks();
+        
+        // Then
+        assertSame(first, second);
+        verify(stockRepository, times(2)).findAll();
+    }
+    
+    @Test
+    @DisplayName("Should return only the stocks changed since a catalogue version")
+    void getChangesSince_ReturnsDelta() {
+        // Given
+        String since = catalogVersion.currentToken();
+        catalogVersion.markChanged("AAPL");
+        catalogVersion.markRemoved("MSFT");
+        when(quoteCache.get("AAPL")).thenReturn(Optional.of(StockDTO.fromEntity(testStock)));
+        
+        // When
+        StockChangesDTO changes = stockService.getChangesSince(since);
+        
+        // Then
+        assertFalse(changes.isFull());
+        assertEquals(catalogVersion.token(catalogVersion.current()), changes.getVersion());
+        assertNotEquals(since, changes.getVersion());
+        assertEquals(1, changes.getChanged().size());
+        assertEquals("AAPL", changes.getChanged().get(0).getSymbol());
+        assertEquals(List.of("MSFT"), changes.getRemoved());
+        assertTrue(stockService.getChangesSince(changes.getVersion()).getChanged().isEmpty());
+        verify(stockRepository, never()).findAll();
+    }
+    
+    @Test
+    @DisplayName("Should return every stock for a version from before a restart")
+    void getChangesSince_UnknownVersion() {
+        // Given
+        when(stockRepository.findAll()).thenReturn(List.of(testStock));
+        
+        // When
+        String otherRun = new StockCatalogVersion().currentToken();
+        StockChangesDTO changes = stockService.getChangesSince(otherRun);
+        
+        // Then
+        assertTrue(changes.isFull());
+        assertEquals(1, changes.getChanged().size());
+        assertEquals(catalogVersion.currentToken(), changes.getVersion());
+    }
+    
+    @Test
+    @DisplayName("Should accept a quoted ETag as the since token")
+    void getChangesSince_AcceptsQuotedEtag() {
+        // Given
+        String etag = "\"" + stockService.getCatalogVersion() + "\"";
+        
+        // When
+        StockChangesDTO changes = stockService.getChangesSince(etag);
+        
+        // Then
+        assertFalse(changes.isFull());
+        assertTrue(changes.getChanged().isEmpty());
+    }
+    
     /**
      * Test updating a stock successfully.
      */
@@ -279,8 +402,9 @@ class StockServiceTest {
         // Execute service method
         stockService.deleteStock("AAPL");
 
-        // Verify the repository was called correctly
+        // Verify the repository was called correctly and the cache entry was dropped
         verify(stockRepository, times(1)).delete(any(Stock.class));
+        verify(quoteCache, times(1)).evict("AAPL");
     }
 
     /**
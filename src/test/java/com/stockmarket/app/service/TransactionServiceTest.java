@@ -1,22 +1,38 @@
 package com.stockmarket.app.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stockmarket.app.dto.StockSummaryDTO;
 import com.stockmarket.app.dto.TransactionCreateRequest;
 import com.stockmarket.app.dto.TransactionDTO;
 import com.stockmarket.app.dto.TransactionUpdateRequest;
+import com.stockmarket.app.enums.ExportFormat;
 import com.stockmarket.app.enums.TransactionType;
 import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.StockSummaryRepository;
 import com.stockmarket.app.repository.TransactionRepository;
 import com.stockmarket.app.service.impl.TransactionServiceImpl;
+import com.stockmarket.app.service.positions.PositionProjection;
+import com.stockmarket.app.service.summary.StockSummaryAggregate;
+import com.stockmarket.app.service.summary.StockSummaryAggregate.Contribution;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
@@ -45,6 +61,26 @@ public class TransactionServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StockSummaryAggregate stockSummaries;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+
+    @Mock
+    private PositionProjection positionProjection;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
     /**
      * @InjectMocks - Creates an instance of TransactionServiceImpl and injects the mocked repository into it.
      * This sets up the service to use our mocked repository for testing.
@@ -166,6 +202,51 @@ public class TransactionServiceTest {
 
         // Verify repository interaction
         verify(transactionRepository, times(1)).save(any(Transaction.class));
+        verify(eventPublisher, times(1)).publishEvent(any(Transaction.class));
+        verify(kafkaProducerService, times(1)).sendTransaction(any(Transaction.class));
+        verify(stockSummaries, times(1)).add(any(StockSummaryAggregate.Contribution.class));
+    }
+
+    /**
+     * Test that a price with more decimals than the column is rounded before it is saved.
+     * The summary is built from the saved entity, so it must see the values the database
+     * stores; otherwise deleting the transaction later would subtract different values.
+     */
+    @Test
+    @DisplayName("Should round a 3-decimal price to the column scale before saving and summarising it")
+    void createTransaction_RoundsToColumnScale() {
+        // Given a price with 3 decimals
+        TransactionCreateRequest createRequest = TransactionCreateRequest.builder()
+                .type(TransactionType.BUY)
+                .stockSymbol("AAPL")
+                .quantity(3)
+                .pricePerShare(new BigDecimal("150.125"))
+                .build();
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ArgumentCaptor<Contribution> added = ArgumentCaptor.forClass(Contribution.class);
+
+        // When
+        TransactionDTO result = transactionService.createTransaction(createRequest);
+
+        // Then the stored values are rounded HALF_UP like the NUMERIC(19, 2) column
+        assertEquals(new BigDecimal("150.13"), result.getPricePerShare());
+        assertEquals(new BigDecimal("450.39"), result.getTotalValue());
+
+        // And subtracting the row as the database returns it leaves no error in the summary
+        verify(stockSummaries).add(added.capture());
+        Transaction stored = Transaction.builder()
+                .stockSymbol("AAPL")
+                .quantity(3)
+                .pricePerShare(new BigDecimal("150.13"))
+                .totalValue(new BigDecimal("450.39"))
+                .build();
+        StockSummaryAggregate summaries = new StockSummaryAggregate(mock(StockSummaryRepository.class));
+        summaries.add(added.getValue());
+        summaries.add(Contribution.of(stored));
+        summaries.subtract(Contribution.of(stored));
+        StockSummaryDTO summary = summaries.getSummary("AAPL").orElseThrow();
+        assertEquals(0, new BigDecimal("150.13").compareTo(summary.getAveragePrice()));
+        assertEquals(0, new BigDecimal("450.39").compareTo(summary.getTotalNotional()));
     }
 
     /**
@@ -236,6 +317,53 @@ public class TransactionServiceTest {
         verify(transactionRepository, times(1)).findAll();
     }
 
+    /**
+     * Test for exporting transactions as newline-delimited JSON.
+     * This verifies every row is written on its own line and detached from the persistence context.
+     */
+    @Test
+    @DisplayName("Should export transactions as NDJSON and detach each entity")
+    void exportTransactions_Ndjson() throws IOException {
+        // Mock repository behavior
+        when(transactionRepository.streamAll()).thenReturn(transactions.stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When exporting the transactions
+        long count = transactionService.exportTransactions(ExportFormat.NDJSON, out);
+
+        // Then each transaction is one JSON object on its own line
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].startsWith("{"));
+        assertEquals("AAPL", objectMapper.readTree(lines[0]).get("stockSymbol").asText());
+        assertEquals("MSFT", objectMapper.readTree(lines[1]).get("stockSymbol").asText());
+
+        // Verify the entities were detached as they were written
+        verify(entityManager).detach(transaction1);
+        verify(entityManager).detach(transaction2);
+    }
+
+    /**
+     * Test for exporting transactions as a JSON array.
+     */
+    @Test
+    @DisplayName("Should export transactions as a JSON array")
+    void exportTransactions_Json() throws IOException {
+        // Mock repository behavior
+        when(transactionRepository.streamAll()).thenReturn(transactions.stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When exporting the transactions
+        transactionService.exportTransactions(ExportFormat.JSON, out);
+
+        // Then the output is a single array of transactions
+        TransactionDTO[] result = objectMapper.readValue(out.toByteArray(), TransactionDTO[].class);
+        assertEquals(2, result.length);
+        assertEquals(1L, result[0].getId());
+        assertEquals(2L, result[1].getId());
+    }
+
     /**
      * Test for getting transactions by stock symbol.
      * This verifies the service correctly filters transactions by stock symbol.
@@ -261,6 +389,34 @@ public class TransactionServiceTest {
         verify(transactionRepository, times(1)).findByStockSymbol(stockSymbol);
     }
 
+    /**
+     * Test for getting the transactions of a stock above a value within a time range.
+     * This verifies the service uses the time-bounded query, which prunes partitions.
+     */
+    @Test
+    @DisplayName("Should return transactions of a stock above a value within a time range")
+    void getTransactionsBySymbolAndMinAmount_Success() {
+        // Given a symbol, an amount and a month
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+        BigDecimal minAmount = new BigDecimal("1000");
+
+        // Mock repository behavior
+        when(transactionRepository.findTransactionsBySymbolAndMinAmountBetween("AAPL", minAmount, from, to))
+                .thenReturn(List.of(transaction1));
+
+        // When retrieving the transactions
+        List<TransactionDTO> result = transactionService.getTransactionsBySymbolAndMinAmount("AAPL", minAmount, from, to);
+
+        // Then the result should hold the matching transaction
+        assertEquals(1, result.size());
+        assertEquals("AAPL", result.get(0).getStockSymbol());
+
+        // And a range ending before it starts is rejected
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getTransactionsBySymbolAndMinAmount("AAPL", minAmount, to, from));
+    }
+
     /**
      * Test for getting transactions by type.
      * This verifies the service correctly filters transactions by type.
@@ -363,15 +519,17 @@ public class TransactionServiceTest {
         Long id = 1L;
 
         // Mock repository behavior
-        when(transactionRepository.existsById(id)).thenReturn(true);
-        doNothing().when(transactionRepository).deleteById(id);
+        when(transactionRepository.findById(id)).thenReturn(Optional.of(transaction1));
+        doNothing().when(transactionRepository).delete(transaction1);
 
         // When deleting the transaction
         transactionService.deleteTransaction(id);
 
-        // Verify repository interactions
-        verify(transactionRepository, times(1)).existsById(id);
-        verify(transactionRepository, times(1)).deleteById(id);
+        // Verify repository interactions and that the summary was adjusted
+        verify(transactionRepository, times(1)).findById(id);
+        verify(transactionRepository, times(1)).delete(transaction1);
+        verify(stockSummaries, times(1)).subtract(any(StockSummaryAggregate.Contribution.class));
+        verify(kafkaProducerService, times(1)).sendTransactionDeleted(transaction1);
     }
 
     /**
@@ -385,13 +543,14 @@ public class TransactionServiceTest {
         Long id = 999L;
 
         // Mock repository behavior
-        when(transactionRepository.existsById(id)).thenReturn(false);
+        when(transactionRepository.findById(id)).thenReturn(Optional.empty());
 
         // When/Then deleting the transaction should throw EntityNotFoundException
         assertThrows(EntityNotFoundException.class, () -> transactionService.deleteTransaction(id));
 
         // Verify repository interaction
-        verify(transactionRepository, times(1)).existsById(id);
-        verify(transactionRepository, never()).deleteById(anyLong());
+        verify(transactionRepository, times(1)).findById(id);
+        verify(transactionRepository, never()).delete(any(Transaction.class));
+        verifyNoInteractions(stockSummaries);
     }
 } 
\ No newline at end of file
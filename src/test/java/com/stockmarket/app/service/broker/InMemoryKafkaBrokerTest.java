@@ -0,0 +1,170 @@
+package com.stockmarket.app.service.broker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the InMemoryKafkaBroker and InMemoryProducer
+ */
+class InMemoryKafkaBrokerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private InMemoryKafkaBroker broker;
+
+    @AfterEach
+    void tearDown() {
+        broker.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should deliver every record through a KafkaTemplate, in order per key")
+    void send_KeepsOrderPerKey() throws Exception {
+        // Given - three partitions read by two listener threads in batches of at most 10
+        broker = new InMemoryKafkaBroker(meterRegistry, 3, 100, 1000L, 1, 0L);
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(500);
+        broker.subscribe("prices", "group", 2, 10, (List<String[]> records) -> {
+            synchronized (batchSizes) {
+                batchSizes.add(records.size());
+            }
+            for (String[] record : records) {
+                received.computeIfAbsent(record[0], key -> new ArrayList<>()).add(Integer.parseInt(record[1]));
+                done.countDown();
+            }
+        });
+        KafkaTemplate<String, Object> template = new KafkaTemplate<>(() -> new InMemoryProducer(broker));
+
+        // When - 10 keys with 50 records each, interleaved
+        SendResult<String, Object> last = null;
+        for (int sequence = 0; sequence < 50; sequence++) {
+            for (int key = 0; key < 10; key++) {
+                String symbol = "SYM" + key;
+                last = template.send("prices", symbol, new String[]{symbol, String.valueOf(sequence)}).get();
+            }
+        }
+
+        // Then - every key arrived in order, on the partition Kafka would have chosen
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(10, received.size());
+        for (List<Integer> sequence : received.values()) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i, sequence.get(i));
+            }
+        }
+        synchronized (batchSizes) {
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+        }
+        int expectedPartition = Utils.toPositive(Utils.murmur2("SYM9".getBytes(StandardCharsets.UTF_8))) % 3;
+        assertEquals(expectedPartition, last.getRecordMetadata().partition());
+    }
+
+    @Test
+    @DisplayName("Should fail the send when a partition queue stays full")
+    void send_FullQueueTimesOut() throws Exception {
+        // Given - one partition of two records, and a listener stuck on the first record
+        broker = new InMemoryKafkaBroker(meterRegistry, 1, 2, 50L, 1, 0L);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        broker.subscribe("prices", "group", 1, 10, (List<Object> records) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        KafkaTemplate<String, Object> template = new KafkaTemplate<>(() -> new InMemoryProducer(broker));
+        template.send("prices", "AAPL", "1").get();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        template.send("prices", "AAPL", "2").get();
+        template.send("prices", "AAPL", "3").get();
+
+        // When - the template reports a send that failed straight away by throwing, as with a real producer
+        KafkaException failure = assertThrows(KafkaException.class, () -> template.send("prices", "AAPL", "4"));
+
+        // Then
+        assertInstanceOf(TimeoutException.class, failure.getCause());
+        assertEquals(2.0, meterRegistry.get("kafka.in-memory.queued").gauge().value());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Should redeliver a failing batch and keep the records behind it waiting")
+    void listenerFailure_IsRedelivered() throws Exception {
+        // Given - a listener that fails on its first two deliveries
+        broker = new InMemoryKafkaBroker(meterRegistry, 1, 10, 1000L, 3, 20L);
+        List<List<String>> deliveries = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(2);
+        broker.subscribe("prices", "group", 1, 1, (List<String> records) -> {
+            deliveries.add(List.copyOf(records));
+            if (deliveries.size() <= 2) {
+                throw new IllegalStateException("temporarily unavailable");
+            }
+            delivered.countDown();
+        });
+
+        // When
+        broker.append("prices", 0, "first");
+        broker.append("prices", 0, "second");
+
+        // Then - the first record is delivered again until it succeeds, and only then the second one
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("first"), List.of("first"), List.of("first"), List.of("second")), deliveries);
+        assertEquals(2.0, meterRegistry.get("kafka.in-memory.listener.redeliveries").counter().count());
+        assertEquals(0.0, meterRegistry.get("kafka.in-memory.listener.failures").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should skip a batch that still fails after every attempt and keep delivering the next records")
+    void listenerFailure_IsSkippedAfterMaxAttempts() throws Exception {
+        // Given
+        broker = new InMemoryKafkaBroker(meterRegistry, 1, 10, 1000L, 2, 10L);
+        List<String> attempts = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        broker.subscribe("prices", "group", 1, 10, (List<String> records) -> {
+            if (records.contains("bad")) {
+                attempts.add("bad");
+                throw new IllegalStateException("cannot handle " + records);
+            }
+            delivered.countDown();
+        });
+
+        // When
+        broker.append("prices", 0, "bad");
+        waitFor(() -> meterRegistry.get("kafka.in-memory.listener.failures").counter().count() == 1);
+        broker.append("prices", 0, "good");
+
+        // Then
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.size());
+        assertEquals(1.0, meterRegistry.get("kafka.in-memory.listener.failures").counter().count());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
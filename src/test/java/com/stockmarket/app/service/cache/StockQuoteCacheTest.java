@@ -0,0 +1,120 @@
+package com.stockmarket.app.service.cache;
+
+import com.stockmarket.app.dto.StockDTO;
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the StockQuoteCache
+ */
+class StockQuoteCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private StockQuoteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new StockQuoteCache(meterRegistry, new StockCatalogVersion(), 2);
+    }
+
+    @Test
+    @DisplayName("Should count hits and misses")
+    void get_CountsHitsAndMisses() {
+        // Given
+        cache.put(quote("AAPL", "150.00"));
+
+        // When
+        assertTrue(cache.get("AAPL").isPresent());
+        assertTrue(cache.get("MSFT").isEmpty());
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("stock.quote.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("stock.quote.cache.requests").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should not let a populate after a miss overwrite a write-through")
+    void populate_DoesNotOverwriteNewerValue() {
+        // Given
+        cache.put(quote("AAPL", "151.00"));
+
+        // When
+        cache.populate(quote("AAPL", "150.00"), cache.currentVersion());
+
+        // Then
+        assertEquals(new BigDecimal("151.00"), cache.get("AAPL").orElseThrow().getCurrentPrice());
+    }
+
+    @Test
+    @DisplayName("Should not cache a quote loaded before its stock was deleted")
+    void populate_AfterConcurrentEvictIsDropped() {
+        // Given - a load that starts, then a delete that commits before the load finishes
+        long loadVersion = cache.currentVersion();
+        cache.evict("AAPL");
+
+        // When
+        cache.populate(quote("AAPL", "150.00"), loadVersion);
+
+        // Then - the deleted stock is not cached, while other loads still are
+        assertTrue(cache.get("AAPL").isEmpty());
+        cache.populate(quote("MSFT", "350.00"), loadVersion);
+        assertTrue(cache.get("MSFT").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should evict entries beyond the size limit and on delete")
+    void evictions_AreCounted() {
+        // Given
+        cache.put(quote("AAPL", "150.00"));
+        cache.put(quote("MSFT", "350.00"));
+
+        // When
+        cache.put(quote("GOOGL", "2800.00"));
+        cache.evict("GOOGL");
+
+        // Then
+        assertEquals(1, cache.size());
+        assertEquals(2.0, meterRegistry.get("stock.quote.cache.evictions").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should apply newer price updates to cached quotes only")
+    void applyPriceUpdate_UpdatesCachedQuote() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        StockDTO cached = quote("AAPL", "150.00");
+        cached.setLastUpdated(now);
+        cache.put(cached);
+
+        // When
+        cache.applyPriceUpdate(update("AAPL", "149.00", now.minusSeconds(1)));
+        cache.applyPriceUpdate(update("MSFT", "350.00", now));
+        BigDecimal afterOlderUpdate = cache.get("AAPL").orElseThrow().getCurrentPrice();
+        cache.applyPriceUpdate(update("AAPL", "151.00", now.plusSeconds(1)));
+
+        // Then
+        assertEquals(new BigDecimal("150.00"), afterOlderUpdate);
+        assertEquals(new BigDecimal("151.00"), cache.get("AAPL").orElseThrow().getCurrentPrice());
+        assertTrue(cache.get("MSFT").isEmpty());
+    }
+
+    private StockPriceUpdateDTO update(String symbol, String price, LocalDateTime timestamp) {
+        return StockPriceUpdateDTO.builder().symbol(symbol).price(new BigDecimal(price)).timestamp(timestamp).build();
+    }
+
+    private StockDTO quote(String symbol, String price) {
+        return StockDTO.builder()
+                .symbol(symbol)
+                .currentPrice(new BigDecimal(price))
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package com.stockmarket.app.service.candles;
+
+import com.stockmarket.app.dto.CandleDTO;
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CandleAggregator
+ */
+class CandleAggregatorTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 2, 9, 30);
+
+    private CandleAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new CandleAggregator(100, ZoneOffset.UTC);
+    }
+
+    @Test
+    @DisplayName("Should build open, high, low and close from the ticks of a bar")
+    void onPriceUpdate_BuildsOpenBar() {
+        // Given / When
+        aggregator.onPriceUpdate(update("AAPL", START.plusSeconds(1), "150.00"));
+        aggregator.onPriceUpdate(update("AAPL", START.plusSeconds(20), "152.50"));
+        aggregator.onPriceUpdate(update("AAPL", START.plusSeconds(40), "149.25"));
+        aggregator.onPriceUpdate(update("AAPL", START.plusSeconds(59), "151.00"));
+
+        // Then
+        List<CandleDTO> candles = aggregator.getCandles("aapl", CandleInterval.ONE_MINUTE, 10);
+        assertEquals(1, candles.size());
+        CandleDTO bar = candles.get(0);
+        assertEquals(START, bar.getOpenTime());
+        assertEquals(new BigDecimal("150.00"), bar.getOpen());
+        assertEquals(new BigDecimal("152.50"), bar.getHigh());
+        assertEquals(new BigDecimal("149.25"), bar.getLow());
+        assertEquals(new BigDecimal("151.00"), bar.getClose());
+        assertEquals(4, bar.getTicks());
+        assertFalse(bar.isComplete());
+    }
+
+    @Test
+    @DisplayName("Should complete bars when a tick falls into the next bar and keep them after a flush")
+    void flush_MovesCompletedBarsToHistory() {
+        // Given - one tick per minute for 6 minutes
+        for (int minute = 0; minute < 6; minute++) {
+            aggregator.onPriceUpdate(update("MSFT", START.plusMinutes(minute), "30" + minute + ".00"));
+        }
+
+        // When
+        aggregator.flush();
+
+        // Then - the last bars are in the past too, so the flush has completed every bar
+        List<CandleDTO> minutes = aggregator.getCandles("MSFT", CandleInterval.ONE_MINUTE, 100);
+        assertEquals(6, minutes.size());
+        assertTrue(minutes.stream().allMatch(CandleDTO::isComplete));
+
+        List<CandleDTO> fiveMinutes = aggregator.getCandles("MSFT", CandleInterval.FIVE_MINUTES, 100);
+        assertEquals(2, fiveMinutes.size());
+        assertEquals(new BigDecimal("300.00"), fiveMinutes.get(0).getOpen());
+        assertEquals(new BigDecimal("304.00"), fiveMinutes.get(0).getClose());
+        assertEquals(5, fiveMinutes.get(0).getTicks());
+
+        // And the limit returns only the most recent bars
+        List<CandleDTO> lastTwo = aggregator.getCandles("MSFT", CandleInterval.ONE_MINUTE, 2);
+        assertEquals(START.plusMinutes(4), lastTwo.get(0).getOpenTime());
+        assertEquals(START.plusMinutes(5), lastTwo.get(1).getOpenTime());
+    }
+
+    @Test
+    @DisplayName("Should add transaction quantities to the volume, counting a matched trade once")
+    void onTransaction_AddsVolume() {
+        // Given
+        aggregator.onPriceUpdate(update("IBM", START, "140.00"));
+
+        // When - a matched trade of 25 shares, as its BUY and its counter leg SELL
+        aggregator.onTransaction(Transaction.builder()
+                .type(TransactionType.BUY)
+                .stockSymbol("IBM")
+                .quantity(25)
+                .pricePerShare(new BigDecimal("140.00"))
+                .timestamp(START.plusSeconds(5))
+                .build());
+        aggregator.onTransaction(Transaction.builder()
+                .type(TransactionType.SELL)
+                .stockSymbol("IBM")
+                .quantity(25)
+                .pricePerShare(new BigDecimal("140.00"))
+                .timestamp(START.plusSeconds(5))
+                .counterLeg(true)
+                .build());
+
+        // Then
+        assertEquals(25, aggregator.getCandles("IBM", CandleInterval.ONE_DAY, 1).get(0).getVolume());
+    }
+
+    @Test
+    @DisplayName("Should never open or price a bar from a transaction, and keep its volume for the next tick")
+    void onTransaction_NeverSetsPrices() {
+        // Given - a bar that the flush has closed
+        aggregator.onPriceUpdate(update("IBM", START, "140.00"));
+        aggregator.flush();
+
+        // When - a late transaction for the closed bar, and one ahead of the ticks, at other prices
+        aggregator.onTransaction(transaction("IBM", START.plusSeconds(30), 10, "90.00"));
+        aggregator.onTransaction(transaction("IBM", START.plusMinutes(5), 5, "99.00"));
+
+        // Then - no bar was created for them
+        List<CandleDTO> minutes = aggregator.getCandles("IBM", CandleInterval.ONE_MINUTE, 100);
+        assertEquals(1, minutes.size());
+        assertEquals(0, minutes.get(0).getVolume());
+
+        // And the next tick opens the bar at its own price and takes their volume
+        aggregator.onPriceUpdate(update("IBM", START.plusMinutes(5), "141.00"));
+        CandleDTO current = aggregator.getCandles("IBM", CandleInterval.ONE_MINUTE, 100).get(1);
+        assertEquals(START.plusMinutes(5), current.getOpenTime());
+        assertEquals(new BigDecimal("141.00"), current.getOpen());
+        assertEquals(new BigDecimal("141.00"), current.getLow());
+        assertEquals(15, current.getVolume());
+    }
+
+    @Test
+    @DisplayName("Should be created by Spring through its public constructor")
+    void springContext_CreatesAggregator() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(CandleAggregator.class)) {
+            assertNotNull(context.getBean(CandleAggregator.class));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject unknown intervals")
+    void fromCode_Unknown() {
+        assertEquals(CandleInterval.ONE_HOUR, CandleInterval.fromCode("1h"));
+        assertThrows(IllegalArgumentException.class, () -> CandleInterval.fromCode("2m"));
+    }
+
+    private StockPriceUpdateDTO update(String symbol, LocalDateTime timestamp, String price) {
+        return StockPriceUpdateDTO.builder()
+                .symbol(symbol)
+                .price(new BigDecimal(price))
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private Transaction transaction(String symbol, LocalDateTime timestamp, int quantity, String price) {
+        return Transaction.builder()
+                .type(TransactionType.BUY)
+                .stockSymbol(symbol)
+                .quantity(quantity)
+                .pricePerShare(new BigDecimal(price))
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.stockmarket.app.service.dispatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SymbolLaneDispatcher
+ */
+class SymbolLaneDispatcherTest {
+
+    private final SymbolLaneDispatcher dispatcher = new SymbolLaneDispatcher(new SimpleMeterRegistry(), 4, 2);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep the order of every symbol and use several lanes")
+    void dispatchAndWait_KeepsOrderPerSymbol() {
+        // Given - 20 symbols with 50 sequence numbers each, interleaved
+        List<String[]> items = new ArrayList<>();
+        for (int sequence = 0; sequence < 50; sequence++) {
+            for (int symbol = 0; symbol < 20; symbol++) {
+                items.add(new String[]{"SYM" + symbol, String.valueOf(sequence)});
+            }
+        }
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        // When - the dispatch is repeated several times
+        for (int round = 0; round < 5; round++) {
+            dispatcher.dispatchAndWait(items, item -> item[0], laneItems -> {
+                threads.add(Thread.currentThread().getName());
+                for (String[] item : laneItems) {
+                    seen.computeIfAbsent(item[0], symbol -> new ArrayList<>()).add(Integer.parseInt(item[1]));
+                }
+            });
+        }
+
+        // Then - every symbol saw its sequence in order, every round
+        assertEquals(20, seen.size());
+        for (List<Integer> sequence : seen.values()) {
+            assertEquals(250, sequence.size());
+            for (int i = 0; i < sequence.size(); i++) {
+                assertEquals(i % 50, sequence.get(i));
+            }
+        }
+        assertTrue(threads.size() > 1, "only used " + threads);
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("symbol-lane-")));
+    }
+
+    @Test
+    @DisplayName("Should always put a symbol on the same lane")
+    void laneOf_IsStable() {
+        Set<Integer> lanes = List.of("AAPL", "MSFT", "GOOGL", "AMZN", "META", "TSLA", "NVDA", "NFLX").stream()
+                .map(dispatcher::laneOf)
+                .collect(Collectors.toSet());
+
+        assertEquals(dispatcher.laneOf("AAPL"), dispatcher.laneOf(new String("AAPL")));
+        assertTrue(lanes.stream().allMatch(lane -> lane >= 0 && lane < dispatcher.getLaneCount()));
+        assertTrue(lanes.size() > 1);
+    }
+
+    @Test
+    @DisplayName("Should rethrow a lane failure after every lane has finished")
+    void dispatchAndWait_RethrowsFailure() {
+        // Given
+        List<String> symbols = List.of("AAPL", "MSFT", "GOOGL", "AMZN", "META", "TSLA");
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+
+        // When
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () ->
+                dispatcher.dispatchAndWait(symbols, symbol -> symbol, laneSymbols -> {
+                    handled.addAll(laneSymbols);
+                    if (laneSymbols.contains("AAPL")) {
+                        throw new IllegalStateException("database down");
+                    }
+                }));
+
+        // Then
+        assertEquals("database down", failure.getMessage());
+        assertEquals(Set.copyOf(symbols), handled);
+    }
+}
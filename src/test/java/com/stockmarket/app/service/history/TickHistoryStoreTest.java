@@ -0,0 +1,133 @@
+package com.stockmarket.app.service.history;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.util.FixedPoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TickHistoryStore
+ */
+class TickHistoryStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 2, 9, 30);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should take the last tick of each day as its close and keep it over days without ticks")
+    void dailyCloses_AfterReopen() {
+        // Given - ticks on January 2nd and 4th, read back after a restart
+        TickHistoryStore store = new TickHistoryStore(directory.toString(), 4, true);
+        for (int i = 0; i < 6; i++) {
+            store.onPriceUpdate(update("AAPL", START.plusHours(i), "150." + i + "0"));
+        }
+        store.onPriceUpdate(update("AAPL", START.plusDays(2), "155.00"));
+        store.flush();
+        TickHistoryStore reopened = new TickHistoryStore(directory.toString(), 4, true);
+
+        // When - January 1st to 5th
+        long[] closes = reopened.dailyCloses("AAPL", START.toLocalDate().minusDays(1), 5);
+
+        // Then
+        assertEquals(TickHistoryStore.NO_PRICE, closes[0]);
+        assertEquals(FixedPoint.of(new BigDecimal("150.50")), closes[1]);
+        assertEquals(FixedPoint.of(new BigDecimal("150.50")), closes[2]);
+        assertEquals(FixedPoint.of(new BigDecimal("155.00")), closes[3]);
+        assertEquals(FixedPoint.of(new BigDecimal("155.00")), closes[4]);
+        assertEquals(TickHistoryStore.NO_PRICE, reopened.dailyCloses("MSFT", START.toLocalDate(), 1)[0]);
+    }
+
+    @Test
+    @DisplayName("Should roll segments and read a time range across them")
+    void readTicks_AcrossSegments() throws IOException {
+        // Given - 4 ticks per segment, one tick per second
+        TickHistoryStore store = new TickHistoryStore(directory.toString(), 4, true);
+        for (int i = 0; i < 10; i++) {
+            store.onPriceUpdate(update("AAPL", START.plusSeconds(i), "150." + i + "0"));
+        }
+
+        // When
+        List<Long> prices = new ArrayList<>();
+        long count = store.readTicks("AAPL", START.plusSeconds(3), START.plusSeconds(8), Long.MAX_VALUE,
+                (epochMillis, price, change, changePercent) -> prices.add(price));
+
+        // Then
+        assertEquals(6, count);
+        assertEquals(FixedPoint.of(new BigDecimal("150.30")), prices.get(0));
+        assertEquals(FixedPoint.of(new BigDecimal("150.80")), prices.get(5));
+        try (Stream<Path> files = Files.list(directory.resolve("AAPL"))) {
+            assertEquals(3, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep ticks across restarts")
+    void readTicks_AfterReopen() throws IOException {
+        // Given
+        TickHistoryStore store = new TickHistoryStore(directory.toString(), 4, true);
+        for (int i = 0; i < 6; i++) {
+            store.onPriceUpdate(update("MSFT", START.plusSeconds(i), "300.00"));
+        }
+        store.flush();
+
+        // When - a new store on the same directory appends and reads
+        TickHistoryStore reopened = new TickHistoryStore(directory.toString(), 4, true);
+        reopened.onPriceUpdate(update("MSFT", START.plusSeconds(6), "301.00"));
+        long count = reopened.readTicks("MSFT", START, START.plusSeconds(10), Long.MAX_VALUE,
+                (epochMillis, price, change, changePercent) -> { });
+
+        // Then
+        assertEquals(7, count);
+        assertEquals(7, reopened.size("MSFT"));
+    }
+
+    @Test
+    @DisplayName("Should write ticks as a JSON array and honour the limit")
+    void writeTicksAsJson_Limit() throws IOException {
+        // Given
+        TickHistoryStore store = new TickHistoryStore(directory.toString(), 16, true);
+        store.onPriceUpdate(update("IBM", START, "140.50"));
+        store.onPriceUpdate(update("IBM", START.plusSeconds(1), "141.25"));
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.writeTicksAsJson("ibm", START, START.plusSeconds(1), 1, out);
+
+        // Then
+        assertEquals("[{\"timestamp\":\"2024-01-02T09:30\",\"price\":140.50,\"change\":1.00,\"changePercent\":0.50}]",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should reject symbols that are not safe as file names")
+    void normalize_RejectsPathCharacters() {
+        assertThrows(IllegalArgumentException.class, () -> TickHistoryStore.normalize("../etc"));
+        assertEquals("AAPL", TickHistoryStore.normalize("aapl"));
+    }
+
+    private StockPriceUpdateDTO update(String symbol, LocalDateTime timestamp, String price) {
+        return StockPriceUpdateDTO.builder()
+                .symbol(symbol)
+                .price(new BigDecimal(price))
+                .change(new BigDecimal("1.00"))
+                .changePercent(new BigDecimal("0.50"))
+                .timestamp(timestamp)
+                .build();
+    }
+}
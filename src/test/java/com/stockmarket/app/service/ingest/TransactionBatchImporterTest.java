@@ -0,0 +1,190 @@
+package com.stockmarket.app.service.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stockmarket.app.dto.TransactionBatchResultDTO;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.TransactionBatchRepository;
+import com.stockmarket.app.service.summary.StockSummaryAggregate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the TransactionBatchImporter
+ */
+@ExtendWith(MockitoExtension.class)
+class TransactionBatchImporterTest {
+
+    @Mock
+    private TransactionBatchRepository batchRepository;
+
+    @Mock
+    private StockSummaryAggregate stockSummaries;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private TransactionBatchImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        importer = new TransactionBatchImporter(new ObjectMapper().registerModule(new JavaTimeModule()), Validation.buildDefaultValidatorFactory(),
+                batchRepository, stockSummaries, eventPublisher, 2, 10, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importer.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should store valid NDJSON rows in chunks and report the invalid rows")
+    @SuppressWarnings("unchecked")
+    void importTransactions_Ndjson() throws IOException {
+        // Given - rows 2 and 4 are invalid
+        String body = row("AAPL", 10, "150.00") + "\n"
+                + "{\"type\":\"HOLD\",\"stockSymbol\":\"AAPL\",\"quantity\":1,\"pricePerShare\":1}\n"
+                + row("MSFT", 5, "300.50") + "\n"
+                + row("IBM", -1, "140.00") + "\n"
+                + row("GOOG", 2, "120.25") + "\n";
+        when(batchRepository.insertAll(anyList())).thenAnswer(invocation -> (long) ((List<?>) invocation.getArgument(0)).size());
+
+        // When
+        TransactionBatchResultDTO result = importer.importTransactions(stream(body));
+
+        // Then
+        assertEquals(5, result.getReceived());
+        assertEquals(3, result.getInserted());
+        assertEquals(2, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertEquals(4, result.getErrors().get(1).getRow());
+        assertTrue(result.getErrors().get(1).getMessage().contains("quantity"));
+
+        // And the valid rows went out in chunks of two, with the total value calculated
+        ArgumentCaptor<List<Transaction>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(batchRepository, times(2)).insertAll(chunks.capture());
+        assertEquals(2, chunks.getAllValues().get(0).size());
+        assertEquals(new BigDecimal("1502.50"), chunks.getAllValues().get(0).get(1).getTotalValue());
+        verify(stockSummaries, times(2)).addAll(anyList());
+        verify(eventPublisher, times(2)).publishEvent(any(TransactionsImportedEvent.class));
+    }
+
+    @Test
+    @DisplayName("Should keep the timestamp and counter-leg flag of a replayed trade")
+    @SuppressWarnings("unchecked")
+    void importTransactions_KeepsTimestampAndCounterLeg() throws IOException {
+        // Given - the two sides of a dead-lettered trade, and a plain row
+        String body = "{\"type\":\"BUY\",\"stockSymbol\":\"AAPL\",\"quantity\":10,\"pricePerShare\":150.00,"
+                + "\"timestamp\":\"2024-01-02T10:00:00\"}\n"
+                + "{\"type\":\"SELL\",\"stockSymbol\":\"AAPL\",\"quantity\":10,\"pricePerShare\":150.00,"
+                + "\"timestamp\":\"2024-01-02T10:00:00\",\"counterLeg\":true}\n"
+                + row("MSFT", 5, "300.50") + "\n";
+        when(batchRepository.insertAll(anyList())).thenAnswer(invocation -> (long) ((List<?>) invocation.getArgument(0)).size());
+
+        // When
+        TransactionBatchResultDTO result = importer.importTransactions(stream(body));
+
+        // Then
+        assertEquals(3, result.getInserted());
+        ArgumentCaptor<List<Transaction>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(batchRepository, times(2)).insertAll(chunks.capture());
+        List<Transaction> trade = chunks.getAllValues().get(0);
+        assertEquals(LocalDateTime.of(2024, 1, 2, 10, 0), trade.get(0).getTimestamp());
+        assertFalse(trade.get(0).isCounterLeg());
+        assertTrue(trade.get(1).isCounterLeg());
+        // A row without a timestamp is stamped with the import time
+        Transaction plain = chunks.getAllValues().get(1).get(0);
+        assertFalse(plain.isCounterLeg());
+        assertTrue(plain.getTimestamp().isAfter(LocalDateTime.now().minusMinutes(1)));
+    }
+
+    @Test
+    @DisplayName("Should read a JSON array and retry a rejected chunk row by row")
+    void importTransactions_JsonArrayWithRejectedChunk() throws IOException {
+        // Given - the database rejects the chunk because of the second row
+        String body = "[" + row("AAPL", 1, "150.00") + "," + row("BAD", 1, "1.00") + "]";
+        when(batchRepository.insertAll(anyList())).thenThrow(new DataIntegrityViolationException("value too long"));
+        doAnswer(invocation -> {
+            if (invocation.<Transaction>getArgument(0).getStockSymbol().equals("BAD")) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return null;
+        }).when(batchRepository).insert(any(Transaction.class));
+
+        // When
+        TransactionBatchResultDTO result = importer.importTransactions(stream(body));
+
+        // Then
+        assertEquals(2, result.getReceived());
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        verify(batchRepository, times(2)).insert(any(Transaction.class));
+        verify(stockSummaries, times(1)).addAll(argThat(stored -> stored.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should stop at malformed JSON and keep the rows before it")
+    void importTransactions_MalformedJson() throws IOException {
+        // Given
+        String body = row("AAPL", 1, "150.00") + "\n{\"type\":\"BUY\",\"stockSymbol\":";
+        when(batchRepository.insertAll(anyList())).thenReturn(1L);
+
+        // When
+        TransactionBatchResultDTO result = importer.importTransactions(stream(body));
+
+        // Then
+        assertEquals(2, result.getReceived());
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getFailed());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Malformed JSON"));
+    }
+
+    @Test
+    @DisplayName("Should count a malformed trailing array element as a received row")
+    void importTransactions_MalformedTrailingElement() throws IOException {
+        // Given - the array breaks after its second row
+        String body = "[" + row("AAPL", 1, "150.00") + "," + row("MSFT", 2, "300.00") + ", x]";
+        when(batchRepository.insertAll(anyList())).thenReturn(2L);
+
+        // When
+        TransactionBatchResultDTO result = importer.importTransactions(stream(body));
+
+        // Then - received = inserted + failed, with the broken element as row 3
+        assertEquals(3, result.getReceived());
+        assertEquals(2, result.getInserted());
+        assertEquals(1, result.getFailed());
+        assertEquals(3, result.getErrors().get(0).getRow());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Malformed JSON"));
+    }
+
+    private String row(String symbol, int quantity, String price) {
+        return "{\"type\":\"BUY\",\"stockSymbol\":\"" + symbol + "\",\"quantity\":" + quantity
+                + ",\"pricePerShare\":" + price + ",\"userId\":\"1\"}";
+    }
+
+    private ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
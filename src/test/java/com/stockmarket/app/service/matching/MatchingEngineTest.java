@@ -0,0 +1,178 @@
+package com.stockmarket.app.service.matching;
+
+import com.stockmarket.app.dto.OrderBookDeltaDTO;
+import com.stockmarket.app.dto.OrderBookDepthDTO;
+import com.stockmarket.app.dto.OrderRequest;
+import com.stockmarket.app.dto.OrderResultDTO;
+import com.stockmarket.app.enums.OrderStatus;
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.enums.TransactionType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the MatchingEngine
+ */
+@ExtendWith(MockitoExtension.class)
+class MatchingEngineTest {
+
+    @Mock
+    private TradeRecorder tradeRecorder;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Captor
+    private ArgumentCaptor<List<Fill>> fillsCaptor;
+
+    private MatchingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new MatchingEngine(tradeRecorder, eventPublisher, new SimpleMeterRegistry(), 4, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should rest a limit order, fill it and hand the trade to the recorder")
+    void submit_MatchesAndRecords() {
+        // Given
+        OrderResultDTO resting = engine.submit(limit(TransactionType.SELL, "AAPL", "150.00", 10)).join();
+        assertEquals(OrderStatus.NEW, resting.getStatus());
+        assertEquals(10, resting.getRemainingQuantity());
+
+        // When
+        OrderResultDTO buy = engine.submit(market(TransactionType.BUY, "AAPL", 4)).join();
+
+        // Then
+        assertEquals(OrderStatus.FILLED, buy.getStatus());
+        assertEquals(4, buy.getFilledQuantity());
+        assertEquals(new BigDecimal("150.00"), buy.getAveragePrice());
+        verify(tradeRecorder).record(fillsCaptor.capture());
+        Fill fill = fillsCaptor.getValue().get(0);
+        assertEquals(resting.getOrderId(), fill.getSellOrder().getId());
+        assertEquals(buy.getOrderId(), fill.getBuyOrder().getId());
+    }
+
+    @Test
+    @DisplayName("Should match a batch in list order per symbol and return the results in request order")
+    void submitAll_KeepsOrderPerSymbol() {
+        // Given - asks and crossing bids for several symbols, interleaved
+        List<String> symbols = List.of("AAPL", "MSFT", "GOOGL", "AMZN", "META", "TSLA");
+        List<OrderRequest> requests = new ArrayList<>();
+        for (String symbol : symbols) {
+            requests.add(limit(TransactionType.SELL, symbol, "100.00", 5));
+        }
+        for (String symbol : symbols) {
+            requests.add(limit(TransactionType.BUY, symbol, "101.00", 5));
+        }
+
+        // When
+        List<OrderResultDTO> results = engine.submitAll(requests);
+
+        // Then - every ask rested before its bid arrived, and every bid filled at the ask price
+        assertEquals(requests.size(), results.size());
+        for (int i = 0; i < symbols.size(); i++) {
+            assertEquals(symbols.get(i), results.get(i).getStockSymbol());
+            assertEquals(OrderStatus.NEW, results.get(i).getStatus());
+            OrderResultDTO bid = results.get(symbols.size() + i);
+            assertEquals(symbols.get(i), bid.getStockSymbol());
+            assertEquals(OrderStatus.FILLED, bid.getStatus());
+            assertEquals(new BigDecimal("100.00"), bid.getAveragePrice());
+        }
+        verify(tradeRecorder, times(symbols.size())).record(anyList());
+    }
+
+    @Test
+    @DisplayName("Should cancel a resting order once and a market order without liquidity at once")
+    void cancel_AndMarketWithoutLiquidity() {
+        // Given
+        OrderResultDTO resting = engine.submit(limit(TransactionType.BUY, "AAPL", "99.50", 10)).join();
+
+        // When
+        Optional<OrderResultDTO> cancelled = engine.cancel("AAPL", resting.getOrderId()).join();
+        Optional<OrderResultDTO> again = engine.cancel("AAPL", resting.getOrderId()).join();
+        OrderResultDTO market = engine.submit(market(TransactionType.SELL, "AAPL", 3)).join();
+
+        // Then
+        assertEquals(OrderStatus.CANCELLED, cancelled.orElseThrow().getStatus());
+        assertTrue(again.isEmpty());
+        assertEquals(OrderStatus.CANCELLED, market.getStatus());
+        assertEquals(0, market.getFilledQuantity());
+        assertNull(market.getAveragePrice());
+        verifyNoInteractions(tradeRecorder);
+    }
+
+    @Test
+    @DisplayName("Should publish a numbered delta for every book change that lines up with the snapshot")
+    void depth_LinesUpWithDeltas() {
+        // Given
+        engine.submit(limit(TransactionType.BUY, "AAPL", "99.00", 10)).join();
+        OrderResultDTO ask = engine.submit(limit(TransactionType.SELL, "AAPL", "101.00", 10)).join();
+        engine.cancel("AAPL", ask.getOrderId()).join();
+
+        // When
+        OrderBookDepthDTO depth = engine.depth("AAPL", 5).join();
+
+        // Then
+        ArgumentCaptor<OrderBookDeltaDTO> deltas = ArgumentCaptor.forClass(OrderBookDeltaDTO.class);
+        verify(eventPublisher, times(3)).publishEvent(deltas.capture());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, deltas.getAllValues().get(i).getPreviousSequence());
+            assertEquals(i + 1, deltas.getAllValues().get(i).getSequence());
+        }
+        assertEquals(0, deltas.getAllValues().get(2).getAsks().get(0).getQuantity());
+        assertEquals(3, depth.getSequence());
+        assertEquals(1, depth.getBids().size());
+        assertTrue(depth.getAsks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject limit orders without a price or with fractions of a cent")
+    void submit_RejectsInvalidLimitPrice() {
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.submit(limit(TransactionType.BUY, "AAPL", null, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.submit(limit(TransactionType.BUY, "AAPL", "10.005", 1)));
+    }
+
+    private static OrderRequest limit(TransactionType side, String symbol, String price, int quantity) {
+        return OrderRequest.builder()
+                .side(side)
+                .type(OrderType.LIMIT)
+                .stockSymbol(symbol)
+                .limitPrice(price != null ? new BigDecimal(price) : null)
+                .quantity(quantity)
+                .build();
+    }
+
+    private static OrderRequest market(TransactionType side, String symbol, int quantity) {
+        return OrderRequest.builder()
+                .side(side)
+                .type(OrderType.MARKET)
+                .stockSymbol(symbol)
+                .quantity(quantity)
+                .build();
+    }
+}
@@ -0,0 +1,187 @@
+package com.stockmarket.app.service.matching;
+
+import com.stockmarket.app.dto.DepthLevelDTO;
+import com.stockmarket.app.dto.OrderBookDeltaDTO;
+import com.stockmarket.app.dto.OrderBookDepthDTO;
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.util.FixedPoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the OrderBook
+ */
+class OrderBookTest {
+
+    private final OrderBook book = new OrderBook("AAPL");
+    private final LocalDateTime now = LocalDateTime.now();
+    private long nextId = 1;
+
+    @Test
+    @DisplayName("Should match the best price first and the oldest order first at one price")
+    void submit_PriceTimePriority() {
+        // Given - two asks at 101 (oldest first) and a better one at 100
+        Order first101 = rest(TransactionType.SELL, "101.00", 5);
+        Order second101 = rest(TransactionType.SELL, "101.00", 5);
+        Order best = rest(TransactionType.SELL, "100.00", 5);
+
+        // When - a buy for 12 up to 101
+        List<Fill> fills = new ArrayList<>();
+        Order buy = limit(TransactionType.BUY, "101.00", 12);
+        book.submit(buy, now, fills);
+
+        // Then - 5 at 100, 5 at 101 from the oldest order, 2 from the next one, at the resting prices
+        assertEquals(3, fills.size());
+        assertFill(fills.get(0), best, "100.00", 5);
+        assertFill(fills.get(1), first101, "101.00", 5);
+        assertFill(fills.get(2), second101, "101.00", 2);
+        assertEquals(0, buy.getRemaining());
+        assertEquals(3, second101.getRemaining());
+        assertEquals(FixedPoint.of(new BigDecimal("101.00")), book.bestAsk());
+        assertEquals(0, book.bestBid());
+    }
+
+    @Test
+    @DisplayName("Should rest what is left of a limit order that no longer crosses")
+    void submit_LimitRemainderRests() {
+        // Given
+        rest(TransactionType.SELL, "100.00", 5);
+        rest(TransactionType.SELL, "102.00", 5);
+
+        // When
+        List<Fill> fills = new ArrayList<>();
+        Order buy = limit(TransactionType.BUY, "101.00", 8);
+        book.submit(buy, now, fills);
+
+        // Then - only the ask at 100 traded; 3 now bid at 101
+        assertEquals(1, fills.size());
+        assertEquals(3, buy.getRemaining());
+        assertEquals(FixedPoint.of(new BigDecimal("101.00")), book.bestBid());
+        assertEquals(FixedPoint.of(new BigDecimal("102.00")), book.bestAsk());
+        assertEquals(2, book.getRestingOrderCount());
+    }
+
+    @Test
+    @DisplayName("Should never rest a market order")
+    void submit_MarketOrderDoesNotRest() {
+        // Given
+        rest(TransactionType.BUY, "99.00", 4);
+
+        // When - a market sell for more than the book holds
+        List<Fill> fills = new ArrayList<>();
+        Order sell = new Order(nextId++, "AAPL", TransactionType.SELL, OrderType.MARKET, 0, 10, null, null);
+        book.submit(sell, now, fills);
+
+        // Then
+        assertEquals(1, fills.size());
+        assertEquals(4, fills.get(0).getQuantity());
+        assertEquals(TransactionType.SELL, fills.get(0).getAggressorSide());
+        assertEquals(6, sell.getRemaining());
+        assertEquals(0, book.getRestingOrderCount());
+        assertEquals(0, book.bestBid());
+        assertEquals(0, book.bestAsk());
+    }
+
+    @Test
+    @DisplayName("Should skip cancelled orders and drop levels that become empty")
+    void cancel_SkipsCancelledOrders() {
+        // Given
+        Order cancelled = rest(TransactionType.SELL, "100.00", 5);
+        Order kept = rest(TransactionType.SELL, "100.00", 5);
+        Order alone = rest(TransactionType.SELL, "99.00", 5);
+
+        // When
+        assertSame(cancelled, book.cancel(cancelled.getId()));
+        assertSame(alone, book.cancel(alone.getId()));
+        assertNull(book.cancel(alone.getId()));
+
+        // Then - the level at 99 is gone and the buy trades with the order behind the cancelled one
+        assertEquals(FixedPoint.of(new BigDecimal("100.00")), book.bestAsk());
+        List<Fill> fills = new ArrayList<>();
+        book.submit(limit(TransactionType.BUY, "100.00", 5), now, fills);
+        assertEquals(1, fills.size());
+        assertSame(kept, fills.get(0).getSellOrder());
+        assertEquals(0, book.bestAsk());
+    }
+
+    @Test
+    @DisplayName("Should aggregate the best levels of each side for a depth snapshot")
+    void depth_AggregatesLevels() {
+        // Given
+        rest(TransactionType.BUY, "99.00", 5);
+        rest(TransactionType.BUY, "99.00", 7);
+        rest(TransactionType.BUY, "98.00", 1);
+        rest(TransactionType.BUY, "97.00", 1);
+        Order cancelled = rest(TransactionType.SELL, "101.00", 3);
+        rest(TransactionType.SELL, "101.00", 4);
+        book.cancel(cancelled.getId());
+
+        // When
+        OrderBookDepthDTO depth = book.depth(2);
+
+        // Then - best two bids from the top, cancelled order no longer counted
+        assertEquals(2, depth.getBids().size());
+        assertLevel(depth.getBids().get(0), "99.00", 12, 2);
+        assertLevel(depth.getBids().get(1), "98.00", 1, 1);
+        assertEquals(1, depth.getAsks().size());
+        assertLevel(depth.getAsks().get(0), "101.00", 4, 1);
+    }
+
+    @Test
+    @DisplayName("Should put only the changed levels in a delta and number the deltas")
+    void takeDelta_ChangedLevelsOnly() {
+        // Given
+        rest(TransactionType.BUY, "99.00", 5);
+        rest(TransactionType.SELL, "100.00", 5);
+        rest(TransactionType.SELL, "101.00", 5);
+        book.takeDelta();
+        long sequence = book.getSequence();
+
+        // When - a buy takes the whole level at 100 and part of 101
+        book.submit(limit(TransactionType.BUY, "101.00", 7), now, new ArrayList<>());
+        OrderBookDeltaDTO delta = book.takeDelta();
+
+        // Then - the bid side did not change; 100 is gone and 101 has 3 left
+        assertEquals(sequence, delta.getPreviousSequence());
+        assertEquals(sequence + 1, delta.getSequence());
+        assertTrue(delta.getBids().isEmpty());
+        assertEquals(2, delta.getAsks().size());
+        assertLevel(delta.getAsks().get(0), "100.00", 0, 0);
+        assertLevel(delta.getAsks().get(1), "101.00", 3, 1);
+        assertNull(book.takeDelta());
+        assertEquals(sequence + 1, book.depth(10).getSequence());
+    }
+
+    private static void assertLevel(DepthLevelDTO level, String price, long quantity, int orders) {
+        assertEquals(new BigDecimal(price), level.getPrice());
+        assertEquals(quantity, level.getQuantity());
+        assertEquals(orders, level.getOrders());
+    }
+
+    private Order rest(TransactionType side, String price, int quantity) {
+        Order order = limit(side, price, quantity);
+        List<Fill> fills = new ArrayList<>();
+        book.submit(order, now, fills);
+        assertTrue(fills.isEmpty());
+        return order;
+    }
+
+    private Order limit(TransactionType side, String price, int quantity) {
+        return new Order(nextId++, "AAPL", side, OrderType.LIMIT, FixedPoint.of(new BigDecimal(price)),
+                quantity, "user", null);
+    }
+
+    private static void assertFill(Fill fill, Order resting, String price, int quantity) {
+        assertSame(resting, fill.getSellOrder());
+        assertEquals(FixedPoint.of(new BigDecimal(price)), fill.getPrice());
+        assertEquals(quantity, fill.getQuantity());
+    }
+}
@@ -0,0 +1,166 @@
+package com.stockmarket.app.service.matching;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stockmarket.app.dto.TransactionImportRow;
+import com.stockmarket.app.enums.OrderType;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.StockPriceBatchRepository;
+import com.stockmarket.app.repository.TransactionBatchRepository;
+import com.stockmarket.app.service.KafkaProducerService;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import com.stockmarket.app.service.ingest.TransactionsImportedEvent;
+import com.stockmarket.app.service.summary.StockSummaryAggregate;
+import com.stockmarket.app.util.FixedPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the TradeRecorder
+ */
+@ExtendWith(MockitoExtension.class)
+class TradeRecorderTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 2, 10, 0);
+
+    // Configured like the application's ObjectMapper
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Mock
+    private TransactionBatchRepository transactionBatchRepository;
+
+    @Mock
+    private StockPriceBatchRepository stockPriceBatchRepository;
+
+    @Mock
+    private StockQuoteCache quoteCache;
+
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+
+    @Mock
+    private StockSummaryAggregate stockSummaries;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Captor
+    private ArgumentCaptor<TransactionsImportedEvent> eventCaptor;
+
+    @TempDir
+    Path directory;
+
+    private Path deadLetterFile;
+    private TradeRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        deadLetterFile = directory.resolve("dead-letter.ndjson");
+        recorder = new TradeRecorder(transactionBatchRepository, stockPriceBatchRepository, quoteCache,
+                kafkaProducerService, stockSummaries, eventPublisher, transactionTemplate, objectMapper,
+                new SimpleMeterRegistry(), 16, 16, 1, 0, deadLetterFile.toString());
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Should store the fills of a rejected batch one at a time and dead-letter the bad one")
+    void write_FallsBackToSingleFills() throws Exception {
+        // Given - the database rejects every insert that contains the fill of 13 shares
+        doAnswer(invocation -> {
+            List<Transaction> transactions = invocation.getArgument(0);
+            if (transactions.stream().anyMatch(transaction -> transaction.getQuantity() == 13)) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            return (long) transactions.size();
+        }).when(transactionBatchRepository).insertAll(anyList());
+
+        // When
+        recorder.write(List.of(fill(1, 10), fill(3, 13), fill(5, 20)));
+
+        // Then - two batch attempts, then one insert per fill
+        verify(transactionBatchRepository, times(5)).insertAll(anyList());
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(4, eventCaptor.getValue().getTransactions().size());
+        verify(stockSummaries).addAll(eventCaptor.getValue().getTransactions());
+
+        List<String> lines = Files.readAllLines(deadLetterFile);
+        assertEquals(2, lines.size());
+        TransactionImportRow buy = objectMapper.readValue(lines.get(0), TransactionImportRow.class);
+        assertEquals(TransactionType.BUY, buy.getType());
+        assertEquals(13, buy.getQuantity());
+        assertEquals(new BigDecimal("100.00"), buy.getPricePerShare());
+        assertEquals("Order 3 matched order 4", buy.getNotes());
+        assertFalse(buy.isCounterLeg());
+        // The SELL keeps its counter-leg flag and both keep the trade time, so a re-import counts the fill once
+        TransactionImportRow sell = objectMapper.readValue(lines.get(1), TransactionImportRow.class);
+        assertEquals(TransactionType.SELL, sell.getType());
+        assertTrue(sell.isCounterLeg());
+        assertEquals(TIMESTAMP, buy.getTimestamp());
+        assertEquals(TIMESTAMP, sell.getTimestamp());
+    }
+
+    @Test
+    @DisplayName("Should retry a batch after a transient failure and store it once")
+    void write_RetriesBatch() throws Exception {
+        // Given
+        when(transactionBatchRepository.insertAll(anyList()))
+                .thenThrow(new TransientDataAccessResourceException("connection reset"))
+                .thenReturn(2L);
+
+        // When
+        recorder.write(List.of(fill(1, 10)));
+
+        // Then
+        verify(transactionBatchRepository, times(2)).insertAll(anyList());
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        // The SELL is the counter leg, so the shares count once in volumes
+        List<Transaction> transactions = eventCaptor.getValue().getTransactions();
+        assertFalse(transactions.get(0).isCounterLeg());
+        assertEquals(TransactionType.SELL, transactions.get(1).getType());
+        assertTrue(transactions.get(1).isCounterLeg());
+        assertFalse(Files.exists(deadLetterFile));
+    }
+
+    private static Fill fill(long buyOrderId, int quantity) {
+        long price = FixedPoint.of(new BigDecimal("100.00"));
+        Order buy = new Order(buyOrderId, "AAPL", TransactionType.BUY, OrderType.LIMIT, price, quantity, "buyer", 1L);
+        Order sell = new Order(buyOrderId + 1, "AAPL", TransactionType.SELL, OrderType.LIMIT, price, quantity, "seller", 2L);
+        return new Fill(buy, sell, price, quantity, TIMESTAMP);
+    }
+}
@@ -0,0 +1,131 @@
+package com.stockmarket.app.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.repository.OutboxRepository;
+import com.stockmarket.app.repository.OutboxRepository.OutboxEvent;
+import com.stockmarket.app.service.KafkaProducerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the OutboxRelay
+ */
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+
+    @Captor
+    private ArgumentCaptor<Collection<Long>> deletedCaptor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(outboxRepository, kafkaProducerService, objectMapper,
+                new SimpleMeterRegistry(), true, 3, 1000L);
+    }
+
+    @Test
+    @DisplayName("Should publish every batch and delete the acknowledged events")
+    void relay_PublishesAndDeletes() {
+        // Given - a full batch followed by a partial one
+        when(outboxRepository.findOldest(3)).thenReturn(
+                List.of(event(1L, "AAPL"), event(2L, "MSFT"), event(3L, "AAPL")),
+                List.of(event(4L, "GOOGL")));
+        when(kafkaProducerService.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        int published = relay.relay();
+
+        // Then
+        assertEquals(4, published);
+        verify(outboxRepository, times(2)).findOldest(3);
+        verify(outboxRepository, times(2)).delete(deletedCaptor.capture());
+        assertEquals(List.of(List.of(1L, 2L, 3L), List.of(4L)), deletedCaptor.getAllValues());
+        verify(kafkaProducerService).send(eq("stock-price-updates"), eq("MSFT"), any(StockPriceUpdateDTO.class));
+    }
+
+    @Test
+    @DisplayName("Should keep a failed event and the later events of its key")
+    void relay_KeepsFailedKey() {
+        // Given - the first AAPL event is not acknowledged
+        when(outboxRepository.findOldest(3)).thenReturn(
+                List.of(event(1L, "AAPL"), event(2L, "MSFT"), event(3L, "AAPL")));
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("broker down"));
+        when(kafkaProducerService.send(anyString(), anyString(), any()))
+                .thenReturn(failed, CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(null));
+
+        // When
+        int published = relay.relay();
+
+        // Then - only MSFT is gone; both AAPL events are sent again in order on the next run
+        assertEquals(1, published);
+        verify(outboxRepository, times(1)).findOldest(anyInt());
+        verify(outboxRepository).delete(deletedCaptor.capture());
+        assertEquals(List.of(2L), deletedCaptor.getValue());
+    }
+
+    @Test
+    @DisplayName("Should drop events whose payload type is not an application class")
+    void relay_DropsUntrustedPayload() {
+        // Given
+        OutboxEvent untrusted = new OutboxEvent(1L, "stock-price-updates", "AAPL",
+                "java.lang.ProcessBuilder", "{}", LocalDateTime.now());
+        when(outboxRepository.findOldest(3)).thenReturn(List.of(untrusted));
+
+        // When
+        relay.relay();
+
+        // Then
+        verifyNoInteractions(kafkaProducerService);
+        verify(outboxRepository).delete(List.of(1L));
+    }
+
+    private OutboxEvent event(long id, String symbol) {
+        StockPriceUpdateDTO update = StockPriceUpdateDTO.builder()
+                .symbol(symbol)
+                .price(new BigDecimal("100.00"))
+                .timestamp(LocalDateTime.now())
+                .build();
+        try {
+            return new OutboxEvent(id, "stock-price-updates", symbol, StockPriceUpdateDTO.class.getName(),
+                    objectMapper.writeValueAsString(update), LocalDateTime.now());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
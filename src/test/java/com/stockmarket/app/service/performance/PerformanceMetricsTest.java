@@ -0,0 +1,76 @@
+package com.stockmarket.app.service.performance;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PerformanceMetrics
+ */
+class PerformanceMetricsTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+
+    @Test
+    @DisplayName("Should chain daily returns and find the drawdown without flows")
+    void metrics_WithoutFlows() {
+        // Given - 100 grows to 110, falls to 99 and ends at 121
+        DailySeries series = new DailySeries(FROM, 100, new double[]{110, 99, 121}, new double[3]);
+
+        // When
+        double[] returns = PerformanceMetrics.dailyReturns(series);
+
+        // Then
+        assertArrayEquals(new double[]{0.1, -0.1, 121.0 / 99 - 1}, returns, 1e-12);
+        assertEquals(0.21, PerformanceMetrics.timeWeightedReturn(returns), 1e-12);
+        assertEquals(-0.1, PerformanceMetrics.maxDrawdown(returns), 1e-12);
+        // Without flows the money-weighted return is the time-weighted one
+        assertEquals(0.21, PerformanceMetrics.moneyWeightedReturn(series), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should not count a deposit as a gain in the time-weighted return")
+    void metrics_WithDeposit() {
+        // Given - 10% on day 1, 110 deposited on day 2 with no change, 10% on day 3
+        DailySeries series = new DailySeries(FROM, 100, new double[]{110, 220, 242}, new double[]{0, 110, 0});
+
+        // When
+        double[] returns = PerformanceMetrics.dailyReturns(series);
+        double moneyWeighted = PerformanceMetrics.moneyWeightedReturn(series);
+
+        // Then
+        assertEquals(0.21, PerformanceMetrics.timeWeightedReturn(returns), 1e-12);
+        assertEquals(0, PerformanceMetrics.maxDrawdown(returns));
+        // The daily rate of the period return grows the start value and the deposit into the end value
+        double g = Math.cbrt(1 + moneyWeighted);
+        assertEquals(242, 100 * g * g * g + 110 * g * g, 1e-6);
+        assertEquals(0.186894, moneyWeighted, 1e-6);
+    }
+
+    @Test
+    @DisplayName("Should skip days with nothing invested and annualize the volatility")
+    void volatility_SkipsEmptyDays() {
+        // Given - nothing held on the first day
+        DailySeries series = new DailySeries(FROM, 0, new double[]{0, 102, 99.96}, new double[]{0, 100, 0});
+
+        // When
+        double[] returns = PerformanceMetrics.dailyReturns(series);
+
+        // Then - returns of 2% and -2%
+        assertTrue(Double.isNaN(returns[0]));
+        assertEquals(Math.sqrt(0.0008 * 365), PerformanceMetrics.volatility(returns), 1e-9);
+        assertTrue(Double.isNaN(PerformanceMetrics.volatility(new double[]{Double.NaN, 0.01})));
+    }
+
+    @Test
+    @DisplayName("Should only annualize returns over at least a year")
+    void annualize_OnlyFromOneYear() {
+        assertTrue(Double.isNaN(PerformanceMetrics.annualize(0.21, 3)));
+        assertTrue(Double.isNaN(PerformanceMetrics.annualize(0.05, 364)));
+        assertEquals(0.05, PerformanceMetrics.annualize(0.05, 365), 1e-12);
+        assertEquals(0.1, PerformanceMetrics.annualize(0.21, 730), 1e-12);
+    }
+}
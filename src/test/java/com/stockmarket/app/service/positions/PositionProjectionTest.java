@@ -0,0 +1,197 @@
+package com.stockmarket.app.service.positions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmarket.app.dto.PositionDTO;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.repository.PositionRepository;
+import com.stockmarket.app.repository.PositionRepository.LedgerEvent;
+import com.stockmarket.app.repository.PositionRepository.PositionSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the PositionProjection
+ */
+@ExtendWith(MockitoExtension.class)
+class PositionProjectionTest {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Mock
+    private PositionRepository positionRepository;
+
+    @Captor
+    private ArgumentCaptor<List<PositionSnapshot>> snapshots;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Should fold buys and sells at average cost and snapshot every N transactions")
+    void catchUp_FoldsAtAverageCostAndSnapshots() {
+        // Given - snapshots every 3 transactions
+        PositionProjection projection = projection(3, 60_000);
+        projection.load();
+        when(positionRepository.findEventsAfter(0L, BATCH_SIZE)).thenReturn(List.of(
+                event(1, 1L, TransactionType.BUY, 10, "100.00"),
+                event(2, 1L, TransactionType.BUY, 10, "120.00"),
+                event(3, 1L, TransactionType.SELL, 5, "130.00"),
+                event(4, null, TransactionType.BUY, 1, "50.00")));
+
+        // When
+        projection.catchUp();
+
+        // Then - 15 left at an average of 110, the sale realized 5 x 20
+        PositionDTO position = projection.getPositions(1L).orElseThrow().get(0);
+        assertEquals(15L, position.getQuantity());
+        assertEquals(new BigDecimal("110.00"), position.getAverageCost());
+        assertEquals(new BigDecimal("1650.00"), position.getCostBasis());
+        assertEquals(new BigDecimal("100.00"), position.getRealizedProfit());
+        assertEquals(3L, position.getVersion());
+
+        verify(positionRepository).saveSnapshots(snapshots.capture(), eq(2));
+        PositionSnapshot snapshot = snapshots.getValue().get(0);
+        assertEquals(1L, snapshot.getPortfolioId());
+        assertEquals(3L, snapshot.getVersion());
+        assertEquals(3L, snapshot.getEventCount());
+        assertTrue(snapshot.getPositions().contains("\"quantity\":15"));
+    }
+
+    @Test
+    @DisplayName("Should restore from the latest snapshot and only fold the transactions after it")
+    void load_RestoresFromSnapshot() throws Exception {
+        // Given - a snapshot at transaction 5 holding 10 AAPL at 100
+        PositionProjection projection = projection(100, 60_000);
+        String positions = objectMapper.writeValueAsString(
+                List.of(new PositionProjection.Position("AAPL", 10, 10_000_000L, 0)));
+        when(positionRepository.findMaxEventId()).thenReturn(6L);
+        when(positionRepository.findLatestSnapshots()).thenReturn(List.of(
+                new PositionSnapshot(1L, 5L, 5L, positions, LocalDateTime.now())));
+        // Transaction 4 is already in the snapshot and must not be counted twice
+        replaySinceSnapshots(
+                event(4, 1L, TransactionType.BUY, 10, "100.00"),
+                event(6, 1L, TransactionType.SELL, 4, "110.00"));
+
+        // When
+        projection.load();
+
+        // Then
+        PositionDTO position = projection.getPositions(1L).orElseThrow().get(0);
+        assertEquals(6L, position.getQuantity());
+        assertEquals(new BigDecimal("600.00"), position.getCostBasis());
+        assertEquals(new BigDecimal("40.00"), position.getRealizedProfit());
+        assertEquals(6L, position.getVersion());
+        verify(positionRepository, never()).saveSnapshots(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should wait at a missing transaction id that may still be committed")
+    void catchUp_WaitsAtGap() {
+        // Given - transaction 2 is not visible yet
+        PositionProjection projection = projection(100, 60_000);
+        projection.load();
+        when(positionRepository.findEventsAfter(0L, BATCH_SIZE)).thenReturn(List.of(
+                event(1, 1L, TransactionType.BUY, 10, "100.00"),
+                event(3, 1L, TransactionType.BUY, 10, "100.00")));
+        when(positionRepository.findEventsAfter(1L, BATCH_SIZE)).thenReturn(List.of(
+                event(2, 1L, TransactionType.BUY, 5, "100.00"),
+                event(3, 1L, TransactionType.BUY, 10, "100.00")));
+
+        // When
+        projection.catchUp();
+        long beforeCommit = projection.getPositions(1L).orElseThrow().get(0).getQuantity();
+        projection.catchUp();
+
+        // Then - transaction 3 is only folded once 2 has been
+        assertEquals(10L, beforeCommit);
+        assertEquals(25L, projection.getPositions(1L).orElseThrow().get(0).getQuantity());
+        verify(positionRepository).findEventsAfter(1L, BATCH_SIZE);
+    }
+
+    @Test
+    @DisplayName("Should fold a transaction committed after its id was skipped by refolding its portfolio")
+    @SuppressWarnings("unchecked")
+    void catchUp_RefoldsLateTransaction() {
+        // Given - transaction 2 is still missing when the gap times out
+        PositionProjection projection = projection(100, 0);
+        projection.load();
+        when(positionRepository.findEventsAfter(0L, BATCH_SIZE)).thenReturn(List.of(
+                event(1, 1L, TransactionType.BUY, 10, "100.00"),
+                event(3, 1L, TransactionType.SELL, 5, "130.00")));
+        projection.catchUp();
+        long beforeCommit = projection.getPositions(1L).orElseThrow().get(0).getQuantity();
+
+        // When - it is committed before the next poll
+        LedgerEvent late = event(2, 1L, TransactionType.BUY, 10, "120.00");
+        when(positionRepository.findEventsByIds(any())).thenReturn(List.of(late));
+        doAnswer(invocation -> {
+            Consumer<LedgerEvent> action = invocation.getArgument(3);
+            action.accept(event(1, 1L, TransactionType.BUY, 10, "100.00"));
+            action.accept(late);
+            action.accept(event(3, 1L, TransactionType.SELL, 5, "130.00"));
+            return null;
+        }).when(positionRepository).forEachEventOfPortfolio(eq(1L), eq(0L), eq(3L), any(Consumer.class));
+        projection.catchUp();
+        projection.catchUp();
+
+        // Then - folded in id order: 15 left at an average of 110, the sale realized 5 x 20
+        assertEquals(5L, beforeCommit);
+        PositionDTO position = projection.getPositions(1L).orElseThrow().get(0);
+        assertEquals(15L, position.getQuantity());
+        assertEquals(new BigDecimal("110.00"), position.getAverageCost());
+        assertEquals(new BigDecimal("100.00"), position.getRealizedProfit());
+        verify(positionRepository).deleteSnapshots(1L);
+        verify(positionRepository, times(1)).findEventsByIds(any());
+    }
+
+    @Test
+    @DisplayName("Should report no positions when rebuilding a portfolio without transactions")
+    void rebuild_WithoutTransactions() {
+        // Given
+        PositionProjection projection = projection(100, 60_000);
+        when(positionRepository.findLatestSnapshot(9L)).thenReturn(Optional.empty());
+
+        // When / Then
+        assertTrue(projection.rebuild(9L).isEmpty());
+        assertTrue(projection.getPositions(9L).isEmpty());
+        verify(positionRepository).forEachEventOfPortfolio(eq(9L), eq(0L), eq(0L), any());
+    }
+
+    private PositionProjection projection(int snapshotEvery, long gapTimeoutMillis) {
+        return new PositionProjection(positionRepository, objectMapper, new SimpleMeterRegistry(),
+                snapshotEvery, 2, BATCH_SIZE, gapTimeoutMillis, 60_000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void replaySinceSnapshots(LedgerEvent... events) {
+        doAnswer(invocation -> {
+            Consumer<LedgerEvent> action = invocation.getArgument(1);
+            for (LedgerEvent event : events) {
+                action.accept(event);
+            }
+            return null;
+        }).when(positionRepository).forEachEventSinceSnapshots(anyLong(), any(Consumer.class));
+    }
+
+    private static LedgerEvent event(long id, Long portfolioId, TransactionType type, int quantity, String price) {
+        return new LedgerEvent(id, portfolioId, "AAPL", type, quantity, new BigDecimal(price));
+    }
+}
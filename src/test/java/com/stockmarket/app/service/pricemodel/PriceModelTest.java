@@ -0,0 +1,86 @@
+package com.stockmarket.app.service.pricemodel;
+
+import com.stockmarket.app.model.Stock;
+import com.stockmarket.app.util.FixedPoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PriceModel implementations and TickRandom
+ */
+class PriceModelTest {
+
+    private final Stock stock = Stock.builder()
+            .id(1L)
+            .symbol("AAPL")
+            .currentPrice(new BigDecimal("150.00"))
+            .previousClose(new BigDecimal("100.00"))
+            .build();
+
+    @Test
+    @DisplayName("Should derive the same random stream for the same seed, cycle and stock")
+    void tickRandom_Deterministic() {
+        assertEquals(TickRandom.forStock(42L, 7L, 1L).nextLong(), TickRandom.forStock(42L, 7L, 1L).nextLong());
+        assertNotEquals(TickRandom.forStock(42L, 7L, 1L).nextLong(), TickRandom.forStock(42L, 8L, 1L).nextLong());
+        assertNotEquals(TickRandom.forStock(42L, 7L, 1L).nextLong(), TickRandom.forStock(42L, 7L, 2L).nextLong());
+    }
+
+    @Test
+    @DisplayName("Should keep uniform changes between the configured percentages")
+    void uniform_StaysInRange() {
+        // Given
+        UniformPriceModel model = new UniformPriceModel(-5.0, 5.0);
+        long price = FixedPoint.of(new BigDecimal("100.00"));
+
+        // When / Then
+        for (int cycle = 1; cycle <= 1000; cycle++) {
+            long next = model.nextPrice(stock, price, TickRandom.forStock(1L, cycle, 1L));
+            assertTrue(next >= FixedPoint.of(new BigDecimal("95.00")) && next <= FixedPoint.of(new BigDecimal("105.00")));
+        }
+    }
+
+    @Test
+    @DisplayName("Should produce log returns with the configured GBM volatility")
+    void gbm_MatchesVolatility() {
+        // Given
+        GeometricBrownianMotionPriceModel model = new GeometricBrownianMotionPriceModel(0.0, 2.0);
+        long price = FixedPoint.of(new BigDecimal("100.00"));
+
+        // When
+        int samples = 20_000;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int cycle = 1; cycle <= samples; cycle++) {
+            long next = model.nextPrice(stock, price, TickRandom.forStock(1L, cycle, 1L));
+            assertTrue(next > 0);
+            double logReturn = Math.log((double) next / price);
+            sum += logReturn;
+            sumOfSquares += logReturn * logReturn;
+        }
+
+        // Then
+        double mean = sum / samples;
+        double deviation = Math.sqrt(sumOfSquares / samples - mean * mean);
+        assertEquals(0.02, deviation, 0.001);
+    }
+
+    @Test
+    @DisplayName("Should pull the price back towards the previous close")
+    void meanReverting_RevertsToPreviousClose() {
+        // Given - the stock trades at 150 and previously closed at 100
+        MeanRevertingPriceModel model = new MeanRevertingPriceModel(0.1, 0.0);
+        long price = FixedPoint.of(new BigDecimal("150.00"));
+
+        // When
+        for (int cycle = 1; cycle <= 200; cycle++) {
+            price = model.nextPrice(stock, price, TickRandom.forStock(1L, cycle, 1L));
+        }
+
+        // Then
+        assertEquals(100.0, FixedPoint.toBigDecimal(price).doubleValue(), 0.01);
+    }
+}
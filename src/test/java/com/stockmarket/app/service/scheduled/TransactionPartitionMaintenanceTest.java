@@ -0,0 +1,60 @@
+package com.stockmarket.app.service.scheduled;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the TransactionPartitionMaintenance job
+ */
+@ExtendWith(MockitoExtension.class)
+class TransactionPartitionMaintenanceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Should create the current and the next months' partitions on PostgreSQL")
+    void createUpcomingPartitions_PostgreSQL() {
+        // Given
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject(anyString(), eq(String.class), any(Date.class))).thenReturn("transactions_2024_01");
+        TransactionPartitionMaintenance maintenance = new TransactionPartitionMaintenance(jdbcTemplate, 2);
+
+        // When
+        int checked = maintenance.createUpcomingPartitions();
+
+        // Then
+        assertEquals(3, checked);
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        verify(jdbcTemplate).queryForObject("SELECT create_transactions_partition(?)", String.class, Date.valueOf(month));
+        verify(jdbcTemplate).queryForObject("SELECT create_transactions_partition(?)", String.class, Date.valueOf(month.plusMonths(2)));
+    }
+
+    @Test
+    @DisplayName("Should do nothing on databases without partitioning")
+    void createUpcomingPartitions_H2() {
+        // Given
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("H2");
+        TransactionPartitionMaintenance maintenance = new TransactionPartitionMaintenance(jdbcTemplate, 2);
+
+        // When / Then
+        assertEquals(0, maintenance.createUpcomingPartitions());
+        assertEquals(0, maintenance.createUpcomingPartitions());
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(String.class), any(Date.class));
+    }
+}
@@ -0,0 +1,135 @@
+package com.stockmarket.app.service.serialization;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.enums.SerializationFormat;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BinaryEventCodec and the Kafka serializer pair built on it
+ */
+class BinaryEventCodecTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 3, 15, 14, 30, 5, 123_456_789);
+
+    @Test
+    @DisplayName("Should round-trip a price update, keeping the scale of every decimal")
+    void priceUpdate_RoundTrip() {
+        // Given
+        StockPriceUpdateDTO update = StockPriceUpdateDTO.builder()
+                .symbol("AAPL")
+                .price(new BigDecimal("190.30"))
+                .change(new BigDecimal("-1.20"))
+                .changePercent(new BigDecimal("-0.63"))
+                .timestamp(TIMESTAMP)
+                .build();
+
+        // When
+        byte[] bytes = BinaryEventCodec.encode(update);
+
+        // Then
+        assertEquals(update, BinaryEventCodec.decode(bytes));
+        assertEquals(new BigDecimal("190.30"), ((StockPriceUpdateDTO) BinaryEventCodec.decode(bytes)).getPrice());
+        assertTrue(bytes.length < 40, "binary price update took " + bytes.length + " bytes");
+    }
+
+    @Test
+    @DisplayName("Should round-trip a transaction with optional fields missing and huge decimals")
+    void transaction_RoundTrip() {
+        // Given
+        Transaction transaction = Transaction.builder()
+                .id(42L)
+                .type(TransactionType.SELL)
+                .stockSymbol("MSFT")
+                .quantity(1_000_000)
+                .pricePerShare(new BigDecimal("420.7312"))
+                .totalValue(new BigDecimal("123456789012345678901234567890.12"))
+                .timestamp(TIMESTAMP)
+                .notes("Année fiscale")
+                .build();
+
+        // When
+        Transaction decoded = (Transaction) BinaryEventCodec.decode(BinaryEventCodec.encode(transaction));
+
+        // Then
+        assertEquals(transaction, decoded);
+        assertNull(decoded.getUserId());
+        assertNull(decoded.getPortfolioId());
+    }
+
+    @Test
+    @DisplayName("Should carry the counter-leg flag, and read version 1 payloads without it")
+    void transaction_CounterLeg() {
+        // Given
+        Transaction counterLeg = Transaction.builder()
+                .type(TransactionType.SELL)
+                .stockSymbol("MSFT")
+                .quantity(10)
+                .pricePerShare(new BigDecimal("420.73"))
+                .counterLeg(true)
+                .build();
+        Transaction plain = Transaction.builder()
+                .type(TransactionType.BUY)
+                .stockSymbol("MSFT")
+                .quantity(10)
+                .pricePerShare(new BigDecimal("420.73"))
+                .build();
+
+        // When / Then
+        assertTrue(((Transaction) BinaryEventCodec.decode(BinaryEventCodec.encode(counterLeg))).isCounterLeg());
+        byte[] version1 = BinaryEventCodec.encode(plain);
+        version1[1] = 1;
+        assertEquals(plain, BinaryEventCodec.decode(version1));
+    }
+
+    @Test
+    @DisplayName("Should reject unknown versions and truncated payloads")
+    void decode_RejectsInvalidPayloads() {
+        byte[] bytes = BinaryEventCodec.encode(StockPriceUpdateDTO.builder()
+                .symbol("AAPL").price(new BigDecimal("190.30")).timestamp(TIMESTAMP).build());
+
+        byte[] futureVersion = bytes.clone();
+        futureVersion[1] = BinaryEventCodec.VERSION + 1;
+        assertThrows(SerializationException.class, () -> BinaryEventCodec.decode(futureVersion));
+        assertThrows(SerializationException.class, () -> BinaryEventCodec.decode(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+
+    @Test
+    @DisplayName("Should read JSON and binary records from the same topic")
+    void deserializer_ReadsBothFormats() {
+        // Given
+        StockPriceUpdateDTO update = StockPriceUpdateDTO.builder()
+                .symbol("AAPL").price(new BigDecimal("190.30")).timestamp(TIMESTAMP).build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EventSerializer jsonSerializer = new EventSerializer(SerializationFormat.JSON, new JsonSerializer<>(), meterRegistry);
+        EventSerializer binarySerializer = new EventSerializer(SerializationFormat.BINARY, new JsonSerializer<>(), meterRegistry);
+        EventDeserializer deserializer = new EventDeserializer(new JsonDeserializer<>());
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.stockmarket.app.dto"), false);
+
+        // When
+        RecordHeaders jsonHeaders = new RecordHeaders();
+        byte[] json = jsonSerializer.serialize("prices", jsonHeaders, update);
+        RecordHeaders binaryHeaders = new RecordHeaders();
+        byte[] binary = binarySerializer.serialize("prices", binaryHeaders, update);
+
+        // Then
+        assertEquals(update, deserializer.deserialize("prices", jsonHeaders, json));
+        assertEquals(update, deserializer.deserialize("prices", binaryHeaders, binary));
+        assertTrue(binary.length * 3 < json.length, binary.length + " binary bytes against " + json.length + " JSON bytes");
+        assertEquals(1, meterRegistry.get("kafka.serialization.bytes").tag("format", "binary").summary().count());
+    }
+}
@@ -0,0 +1,95 @@
+package com.stockmarket.app.service.stream;
+
+import com.stockmarket.app.dto.DepthLevelDTO;
+import com.stockmarket.app.dto.OrderBookDeltaDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the DepthStreamService
+ */
+class DepthStreamServiceTest {
+
+    private final RecordingClients<OrderBookDeltaDTO> clients = new RecordingClients<>(OrderBookDeltaDTO.class);
+
+    // One sender thread and emitters that block on the first delta like a slow client
+    private final DepthStreamService service = new DepthStreamService(new SimpleMeterRegistry(), 1, 2, 0L, 60_000L) {
+        @Override
+        SseEmitter newEmitter(long timeout) {
+            return clients.newEmitter(timeout);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should merge the deltas pending for a slow client into one")
+    void onDelta_MergesForSlowClient() throws InterruptedException {
+        // Given
+        assertTrue(service.subscribe("aapl").isPresent());
+
+        // When - the first send blocks while more deltas arrive
+        service.onDelta(delta(0, 1, bid("99.00", 5)));
+        assertTrue(clients.firstSendStarted.await(5, TimeUnit.SECONDS));
+        service.onDelta(delta(1, 2, bid("99.00", 8)));
+        service.onDelta(delta(2, 3, bid("98.00", 1)));
+        service.onDelta(delta(3, 4, bid("99.00", 0)));
+        clients.release();
+
+        // Then - one delta covering 1..4 with the latest quantity per level, best bid first
+        clients.waitForSent(2);
+        assertEquals(2, clients.sent.size());
+        OrderBookDeltaDTO merged = clients.sent.get(1);
+        assertEquals(1, merged.getPreviousSequence());
+        assertEquals(4, merged.getSequence());
+        assertEquals(2, merged.getBids().size());
+        assertEquals(new BigDecimal("99.00"), merged.getBids().get(0).getPrice());
+        assertEquals(0, merged.getBids().get(0).getQuantity());
+        assertEquals(1, merged.getBids().get(1).getQuantity());
+    }
+
+    @Test
+    @DisplayName("Should only deliver the deltas of the subscribed stock")
+    void onDelta_FiltersSymbol() throws InterruptedException {
+        // Given
+        clients.release();
+        service.subscribe("MSFT");
+
+        // When
+        service.onDelta(delta(0, 1, bid("99.00", 5)));
+        OrderBookDeltaDTO msft = delta(0, 1, bid("300.00", 5));
+        msft.setSymbol("MSFT");
+        service.onDelta(msft);
+
+        // Then
+        clients.waitForSent(1);
+        assertEquals(1, clients.sent.size());
+        assertEquals("MSFT", clients.sent.get(0).getSymbol());
+    }
+
+    private static OrderBookDeltaDTO delta(long previousSequence, long sequence, DepthLevelDTO bid) {
+        return OrderBookDeltaDTO.builder()
+                .symbol("AAPL")
+                .previousSequence(previousSequence)
+                .sequence(sequence)
+                .bids(List.of(bid))
+                .asks(List.of())
+                .build();
+    }
+
+    private static DepthLevelDTO bid(String price, long quantity) {
+        return DepthLevelDTO.builder().price(new BigDecimal(price)).quantity(quantity).orders(quantity > 0 ? 1 : 0).build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.stockmarket.app.service.stream;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PriceStreamService
+ */
+class PriceStreamServiceTest {
+
+    private final RecordingClients<StockPriceUpdateDTO> clients = new RecordingClients<>(StockPriceUpdateDTO.class);
+
+    // One sender thread and emitters that block on the first price like a slow client
+    private final PriceStreamService service = new PriceStreamService(new SimpleMeterRegistry(), 1, 2, 0L, 60_000L) {
+        @Override
+        SseEmitter newEmitter(long timeout) {
+            return clients.newEmitter(timeout);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should only deliver the latest pending price per symbol to a slow client")
+    void onPriceUpdate_ConflatesForSlowClient() throws InterruptedException {
+        // Given
+        assertTrue(service.subscribe(List.of()).isPresent());
+
+        // When - the first send blocks while more updates arrive
+        service.onPriceUpdate(update("AAPL", "150.00"));
+        assertTrue(clients.firstSendStarted.await(5, TimeUnit.SECONDS));
+        service.onPriceUpdate(update("AAPL", "151.00"));
+        service.onPriceUpdate(update("AAPL", "152.00"));
+        service.onPriceUpdate(update("MSFT", "300.00"));
+        clients.release();
+
+        // Then - the two intermediate AAPL prices were replaced by the newest one
+        clients.waitForSent(3);
+        List<StockPriceUpdateDTO> sent = clients.sent;
+        assertEquals(3, sent.size());
+        assertEquals(new BigDecimal("150.00"), sent.get(0).getPrice());
+        assertTrue(sent.stream().anyMatch(u -> u.getSymbol().equals("AAPL") && u.getPrice().equals(new BigDecimal("152.00"))));
+        assertTrue(sent.stream().anyMatch(u -> u.getSymbol().equals("MSFT")));
+    }
+
+    @Test
+    @DisplayName("Should only deliver the requested symbols")
+    void onPriceUpdate_FiltersSymbols() throws InterruptedException {
+        // Given
+        clients.release();
+        service.subscribe(List.of("msft", " "));
+
+        // When
+        service.onPriceUpdate(update("AAPL", "150.00"));
+        service.onPriceUpdate(update("MSFT", "300.00"));
+
+        // Then
+        clients.waitForSent(1);
+        assertEquals(1, clients.sent.size());
+        assertEquals("MSFT", clients.sent.get(0).getSymbol());
+    }
+
+    private StockPriceUpdateDTO update(String symbol, String price) {
+        return StockPriceUpdateDTO.builder().symbol(symbol).price(new BigDecimal(price)).build();
+    }
+}
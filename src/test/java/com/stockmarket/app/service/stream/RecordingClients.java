@@ -0,0 +1,68 @@
+package com.stockmarket.app.service.stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emitters for the stream tests that record the events of one type they send. The first of
+ * those sends blocks until release() is called, like a slow client.
+ */
+class RecordingClients<T> {
+
+    final List<T> sent = new CopyOnWriteArrayList<>();
+    final CountDownLatch firstSendStarted = new CountDownLatch(1);
+    final CountDownLatch firstSendInterrupted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstSend = new CountDownLatch(1);
+    private final Class<T> type;
+
+    RecordingClients(Class<T> type) {
+        this.type = type;
+    }
+
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout) {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                    if (type.isInstance(data.getData())) {
+                        if (sent.isEmpty()) {
+                            firstSendStarted.countDown();
+                            awaitRelease();
+                        }
+                        sent.add(type.cast(data.getData()));
+                    }
+                }
+            }
+        };
+    }
+
+    void release() {
+        releaseFirstSend.countDown();
+    }
+
+    /**
+     * Wait until count events were sent, then a little longer to prove nothing else arrives.
+     */
+    void waitForSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+    }
+
+    private void awaitRelease() {
+        try {
+            releaseFirstSend.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            firstSendInterrupted.countDown();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
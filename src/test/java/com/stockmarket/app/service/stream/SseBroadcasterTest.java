@@ -0,0 +1,164 @@
+package com.stockmarket.app.service.stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SseBroadcaster
+ */
+class SseBroadcasterTest {
+
+    private final RecordingClients<Long> clients = new RecordingClients<>(Long.class);
+
+    // One sender thread, at most two subscribers and a send timeout of 50 ms
+    private final SseBroadcaster<TestSubscriber> broadcaster = new SseBroadcaster<>("test-stream", 1, 2, 50L);
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should deliver an event to the subscribers of its topic and of all topics")
+    void publish_RoutesByTopic() throws InterruptedException {
+        // Given
+        clients.release();
+        subscribe(Set.of("MSFT"));
+        subscribe(Set.of());
+
+        // When
+        broadcaster.publish("AAPL", subscriber -> subscriber.pending.set(1L));
+        clients.waitForSent(1);
+        broadcaster.publish("MSFT", subscriber -> subscriber.pending.set(2L));
+
+        // Then
+        clients.waitForSent(3);
+        assertEquals(List.of(1L, 2L, 2L), clients.sent);
+    }
+
+    @Test
+    @DisplayName("Should reject subscribers above the limit and give back the place of a failed subscribe")
+    void subscribe_Limit() {
+        // Given - a subscribe that fails after reserving its place
+        assertThrows(IllegalStateException.class, () -> broadcaster.subscribe(() -> {
+            throw new IllegalStateException("no emitter");
+        }));
+        assertEquals(0, broadcaster.getSubscriberCount());
+
+        // When / Then
+        assertTrue(subscribe(Set.of()).isPresent());
+        assertTrue(subscribe(Set.of("AAPL")).isPresent());
+        assertTrue(subscribe(Set.of()).isEmpty());
+        assertEquals(2, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("Should hold the subscriber limit when clients subscribe at the same time")
+    void subscribe_LimitUnderConcurrency() throws Exception {
+        // Given
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> {
+                start.await();
+                return subscribe(Set.of()).isPresent();
+            }));
+        }
+
+        // When
+        start.countDown();
+        int accepted = 0;
+        for (Future<Boolean> result : results) {
+            accepted += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        callers.shutdown();
+
+        // Then
+        assertEquals(2, accepted);
+        assertEquals(2, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("Should evict a subscriber whose send stays blocked past the send timeout")
+    void evictSlowSubscribers_InterruptsBlockedSend() throws InterruptedException {
+        // Given - the first send blocks for longer than the send timeout
+        subscribe(Set.of());
+        broadcaster.publish("AAPL", subscriber -> subscriber.pending.set(150L));
+        assertTrue(clients.firstSendStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        // When
+        broadcaster.evictSlowSubscribers();
+
+        // Then - the blocked send is interrupted and nothing more goes to the subscriber
+        assertEquals(0, broadcaster.getSubscriberCount());
+        assertTrue(clients.firstSendInterrupted.await(1, TimeUnit.SECONDS));
+        broadcaster.publish("AAPL", subscriber -> subscriber.pending.set(151L));
+        clients.waitForSent(1);
+        assertEquals(List.of(150L), clients.sent);
+    }
+
+    @Test
+    @DisplayName("Should keep a subscriber whose sends finish in time")
+    void evictSlowSubscribers_KeepsIdleSubscriber() throws InterruptedException {
+        // Given
+        clients.release();
+        subscribe(Set.of());
+        broadcaster.publish("AAPL", subscriber -> subscriber.pending.set(150L));
+        clients.waitForSent(1);
+
+        // When
+        broadcaster.evictSlowSubscribers();
+        broadcaster.publish("AAPL", subscriber -> subscriber.pending.set(151L));
+
+        // Then
+        clients.waitForSent(2);
+        assertEquals(1, broadcaster.getSubscriberCount());
+        assertEquals(List.of(150L, 151L), clients.sent);
+    }
+
+    private Optional<TestSubscriber> subscribe(Set<String> topics) {
+        return broadcaster.subscribe(() -> new TestSubscriber(clients.newEmitter(0L), topics));
+    }
+
+    /**
+     * Keeps only the latest pending value, sent as the event data.
+     */
+    private static final class TestSubscriber extends SseBroadcaster.Subscriber {
+        private final AtomicReference<Long> pending = new AtomicReference<>();
+
+        private TestSubscriber(SseEmitter emitter, Set<String> topics) {
+            super(emitter, topics);
+        }
+
+        @Override
+        void sendPending() throws IOException {
+            Long value = pending.getAndSet(null);
+            if (value != null) {
+                send(SseEmitter.event().data(value));
+            }
+        }
+
+        @Override
+        boolean hasPending() {
+            return pending.get() != null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.stockmarket.app.service.summary;
+
+import com.stockmarket.app.dto.StockSummaryDTO;
+import com.stockmarket.app.enums.TransactionType;
+import com.stockmarket.app.model.Transaction;
+import com.stockmarket.app.repository.StockSummaryRepository;
+import com.stockmarket.app.service.summary.StockSummaryAggregate.Contribution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the StockSummaryAggregate
+ */
+@ExtendWith(MockitoExtension.class)
+class StockSummaryAggregateTest {
+
+    @Mock
+    private StockSummaryRepository stockSummaryRepository;
+
+    private StockSummaryAggregate aggregate;
+
+    @BeforeEach
+    void setUp() {
+        aggregate = new StockSummaryAggregate(stockSummaryRepository);
+    }
+
+    @Test
+    @DisplayName("Should add, replace and subtract transactions incrementally")
+    void incrementalUpdates() {
+        // Given
+        Transaction first = transaction("AAPL", 10, "150.00");
+        Transaction second = transaction("AAPL", 5, "160.00");
+        aggregate.add(Contribution.of(first));
+        aggregate.add(Contribution.of(second));
+
+        // When - the second trade is changed and the first is deleted
+        Contribution before = Contribution.of(second);
+        second.setQuantity(20);
+        second.setTotalValue(new BigDecimal("3200.00"));
+        aggregate.replace(before, Contribution.of(second));
+
+        // Then
+        StockSummaryDTO summary = aggregate.getSummary("AAPL").orElseThrow();
+        assertEquals(2, summary.getTotalTransactions());
+        assertEquals(new BigDecimal("155.0000"), summary.getAveragePrice());
+        assertEquals(new BigDecimal("30"), summary.getTotalVolume());
+        assertEquals(new BigDecimal("4700.00"), summary.getTotalNotional());
+
+        // And removing every transaction of a symbol removes its summary
+        aggregate.subtract(Contribution.of(first));
+        aggregate.subtract(Contribution.of(second));
+        assertTrue(aggregate.getSummary("AAPL").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should add a chunk of transactions per symbol")
+    void addAll_SumsPerSymbol() {
+        // When
+        aggregate.addAll(List.of(
+                transaction("AAPL", 10, "150.00"),
+                transaction("MSFT", 1, "300.00"),
+                transaction("AAPL", 30, "160.00")));
+
+        // Then
+        StockSummaryDTO apple = aggregate.getSummary("AAPL").orElseThrow();
+        assertEquals(2, apple.getTotalTransactions());
+        assertEquals(new BigDecimal("40"), apple.getTotalVolume());
+        assertEquals(new BigDecimal("6300.00"), apple.getTotalNotional());
+        assertEquals(1, aggregate.getSummary("MSFT").orElseThrow().getTotalTransactions());
+    }
+
+    @Test
+    @DisplayName("Should count the shares of a matched trade once in the volume")
+    void addAll_CountsMatchedTradeOnce() {
+        // Given - the BUY and SELL legs of one fill of 10 shares
+        Transaction buy = transaction("AAPL", 10, "150.00");
+        Transaction sell = transaction("AAPL", 10, "150.00");
+        sell.setType(TransactionType.SELL);
+        sell.setCounterLeg(true);
+
+        // When
+        aggregate.addAll(List.of(buy, sell));
+
+        // Then - both transactions count, their shares once
+        StockSummaryDTO apple = aggregate.getSummary("AAPL").orElseThrow();
+        assertEquals(2, apple.getTotalTransactions());
+        assertEquals(new BigDecimal("10"), apple.getTotalVolume());
+    }
+
+    @Test
+    @DisplayName("Should rebuild from the database totals and list the most traded symbol first")
+    void rebuild_LoadsTotals() {
+        // Given
+        aggregate.add(Contribution.of(transaction("OLD", 1, "1.00")));
+        when(stockSummaryRepository.findSymbolTotals()).thenReturn(List.of(
+                new Object[]{"MSFT", 2L, new BigDecimal("600.00"), 15L, new BigDecimal("4500.00")},
+                new Object[]{"AAPL", 3L, new BigDecimal("450.00"), 30L, new BigDecimal("4500.00")}));
+
+        // When
+        int symbols = aggregate.rebuild();
+
+        // Then - the previous totals are replaced
+        assertEquals(2, symbols);
+        List<StockSummaryDTO> summaries = aggregate.getSummaries();
+        assertEquals(List.of("AAPL", "MSFT"), summaries.stream().map(StockSummaryDTO::getSymbol).toList());
+        assertEquals(new BigDecimal("300.0000"), summaries.get(1).getAveragePrice());
+        assertTrue(aggregate.getSummary("OLD").isEmpty());
+    }
+
+    private Transaction transaction(String symbol, int quantity, String price) {
+        BigDecimal pricePerShare = new BigDecimal(price);
+        return Transaction.builder()
+                .type(TransactionType.BUY)
+                .stockSymbol(symbol)
+                .quantity(quantity)
+                .pricePerShare(pricePerShare)
+                .totalValue(pricePerShare.multiply(BigDecimal.valueOf(quantity)))
+                .build();
+    }
+}
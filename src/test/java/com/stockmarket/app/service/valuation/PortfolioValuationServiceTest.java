@@ -0,0 +1,107 @@
+package com.stockmarket.app.service.valuation;
+
+import com.stockmarket.app.dto.StockPriceUpdateDTO;
+import com.stockmarket.app.repository.PortfolioValuationRepository;
+import com.stockmarket.app.repository.PortfolioValuationRepository.Holding;
+import com.stockmarket.app.service.cache.StockQuoteCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the PortfolioValuationService
+ */
+@ExtendWith(MockitoExtension.class)
+class PortfolioValuationServiceTest {
+
+    @Mock
+    private PortfolioValuationRepository valuationRepository;
+
+    @Mock
+    private StockQuoteCache quoteCache;
+
+    @Captor
+    private ArgumentCaptor<Map<Long, BigDecimal>> itemValues;
+
+    @Captor
+    private ArgumentCaptor<Map<Long, BigDecimal>> portfolioTotals;
+
+    private PortfolioValuationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PortfolioValuationService(valuationRepository, quoteCache, new SimpleMeterRegistry());
+        lenient().when(quoteCache.get(anyString())).thenReturn(Optional.empty());
+        // Portfolio 1 holds AAPL and MSFT, portfolio 2 holds AAPL
+        when(valuationRepository.findAllHoldings()).thenReturn(List.of(
+                new Holding(10L, 1L, "AAPL", 10, new BigDecimal("1500.00")),
+                new Holding(11L, 1L, "MSFT", 2, new BigDecimal("600.00")),
+                new Holding(20L, 2L, "AAPL", 1, new BigDecimal("150.00"))));
+        when(valuationRepository.findPortfolioTotals()).thenReturn(Map.of(
+                1L, new BigDecimal("2100.00"),
+                2L, new BigDecimal("150.00")));
+        service.load();
+    }
+
+    @Test
+    @DisplayName("Should revalue only the holdings of the updated stock and move the portfolio totals")
+    void onPriceUpdate_RevaluesAffectedHoldings() {
+        // Given - the stored totals match the holdings, so nothing is dirty after loading
+        assertEquals(0, service.getDirtyCount());
+        assertEquals(new BigDecimal("2100.00"), service.getPortfolioValue(1L).orElseThrow());
+
+        // When - two AAPL ticks before the flush
+        service.onPriceUpdate(update("AAPL", "151.00"));
+        service.onPriceUpdate(update("aapl", "152.50"));
+        service.flush();
+
+        // Then - only the AAPL items and their portfolios are written, with the latest value
+        verify(valuationRepository).updateValues(itemValues.capture(), portfolioTotals.capture(), any());
+        assertEquals(Map.of(10L, new BigDecimal("1525.00"), 20L, new BigDecimal("152.50")), itemValues.getValue());
+        assertEquals(Map.of(1L, new BigDecimal("2125.00"), 2L, new BigDecimal("152.50")), portfolioTotals.getValue());
+        assertEquals(0, service.getDirtyCount());
+    }
+
+    @Test
+    @DisplayName("Should keep values dirty when the write-back fails and write them on the next flush")
+    void flush_RetriesAfterFailure() {
+        // Given
+        service.onPriceUpdate(update("MSFT", "310.00"));
+        doThrow(new DataAccessResourceFailureException("down"))
+                .doNothing()
+                .when(valuationRepository).updateValues(anyMap(), anyMap(), any());
+
+        // When
+        service.flush();
+        assertEquals(2, service.getDirtyCount());
+        service.flush();
+
+        // Then
+        verify(valuationRepository, times(2)).updateValues(itemValues.capture(), portfolioTotals.capture(), any());
+        assertEquals(Map.of(11L, new BigDecimal("620.00")), itemValues.getValue());
+        assertEquals(Map.of(1L, new BigDecimal("2120.00")), portfolioTotals.getValue());
+        assertEquals(0, service.getDirtyCount());
+    }
+
+    private static StockPriceUpdateDTO update(String symbol, String price) {
+        return StockPriceUpdateDTO.builder().symbol(symbol).price(new BigDecimal(price)).build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.stockmarket.app.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AfterCommit
+ */
+class AfterCommitTest {
+
+    private final List<String> ran = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should run the action straight away outside a transaction")
+    void run_WithoutTransaction() {
+        AfterCommit.run(() -> ran.add("update"));
+
+        assertEquals(List.of("update"), ran);
+    }
+
+    @Test
+    @DisplayName("Should run the action only once the transaction commits")
+    void run_InTransaction() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        AfterCommit.run(() -> ran.add("update"));
+
+        // Then
+        assertTrue(ran.isEmpty());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(List.of("update"), ran);
+    }
+}
@@ -0,0 +1,69 @@
+package com.stockmarket.app.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FixedPoint, checked against the BigDecimal arithmetic it replaces.
+ */
+class FixedPointTest {
+
+    @Test
+    @DisplayName("Should convert to and from BigDecimal without loss")
+    void conversion_RoundTrips() {
+        BigDecimal price = new BigDecimal("152.35");
+
+        long fixed = FixedPoint.of(price);
+
+        assertEquals(1_523_500L, fixed);
+        assertEquals(new BigDecimal("152.35"), FixedPoint.toBigDecimal(fixed, 2));
+        assertEquals(0, price.compareTo(FixedPoint.toBigDecimal(fixed)));
+    }
+
+    @Test
+    @DisplayName("Should round HALF_UP away from zero like BigDecimal")
+    void round_MatchesBigDecimal() {
+        assertEquals(FixedPoint.of(new BigDecimal("0.13")), FixedPoint.round(FixedPoint.of(new BigDecimal("0.125")), 2));
+        assertEquals(FixedPoint.of(new BigDecimal("-0.13")), FixedPoint.round(FixedPoint.of(new BigDecimal("-0.125")), 2));
+        assertEquals(FixedPoint.of(new BigDecimal("0.12")), FixedPoint.round(FixedPoint.of(new BigDecimal("0.1249")), 2));
+    }
+
+    @Test
+    @DisplayName("Should compute percent changes exactly like the BigDecimal simulator code")
+    void percentOf_MatchesBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(10_000_000) + 1, 2);
+            BigDecimal percent = BigDecimal.valueOf(random.nextInt(1001) - 500, 2);
+
+            BigDecimal expected = price.multiply(percent).divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+            long actual = FixedPoint.percentOf(FixedPoint.of(price), FixedPoint.of(percent), 2);
+
+            assertEquals(expected, FixedPoint.toBigDecimal(actual, 2), "price=" + price + " percent=" + percent);
+        }
+    }
+
+    @Test
+    @DisplayName("Should divide with four decimals like BigDecimal")
+    void divide_MatchesBigDecimal() {
+        BigDecimal change = new BigDecimal("3.50");
+        BigDecimal previous = new BigDecimal("148.50");
+
+        BigDecimal expected = change.divide(previous, 4, RoundingMode.HALF_UP);
+        long actual = FixedPoint.divide(FixedPoint.of(change), FixedPoint.of(previous));
+
+        assertEquals(expected, FixedPoint.toBigDecimal(actual));
+    }
+
+    @Test
+    @DisplayName("Should throw instead of overflowing")
+    void multiply_Overflow() {
+        assertThrows(ArithmeticException.class, () -> FixedPoint.multiplyByQuantity(Long.MAX_VALUE / 2, 3));
+    }
+}